@@ -30,6 +30,12 @@ public final class BrowserEngine implements ReadableBrowserEngine, Serializable
 	@Nonnull
 	private final VersionNumber versionNumber;
 
+	/**
+	 * Hash code, calculated on first use (not serialized, because the hash codes of enum constants differ between
+	 * virtual machines)
+	 */
+	private transient int hash;
+
 	public BrowserEngine(@Nonnull final BrowserEngineFamily family, @Nonnull final String url, @Nonnull final VersionNumber versionNumber) {
 		Check.notNull(family, "family");
 		Check.notNull(url, "infoUrl");
@@ -82,11 +88,15 @@ public final class BrowserEngine implements ReadableBrowserEngine, Serializable
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + family.hashCode();
-		result = prime * result + infoUrl.hashCode();
-		result = prime * result + versionNumber.hashCode();
+		int result = hash;
+		if (result == 0) {
+			final int prime = 31;
+			result = 1;
+			result = prime * result + family.hashCode();
+			result = prime * result + infoUrl.hashCode();
+			result = prime * result + versionNumber.hashCode();
+			hash = result;
+		}
 		return result;
 	}
 
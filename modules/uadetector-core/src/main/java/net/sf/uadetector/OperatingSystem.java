@@ -61,6 +61,12 @@ public final class OperatingSystem implements ReadableOperatingSystem, Serializa
 	@Nonnull
 	private final VersionNumber versionNumber;
 
+	/**
+	 * Hash code, calculated on first use (not serialized, because the hash codes of enum constants differ between
+	 * virtual machines)
+	 */
+	private transient int hash;
+
 	public OperatingSystem(@Nonnull final OperatingSystemFamily family, @Nonnull final String familyName, @Nonnull final String icon,
 			@Nonnull final String name, @Nonnull final String producer, @Nonnull final String producerUrl, @Nonnull final String url,
 			@Nonnull final VersionNumber versionNumber) {
@@ -164,16 +170,20 @@ public final class OperatingSystem implements ReadableOperatingSystem, Serializa
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + family.hashCode();
-		result = prime * result + familyName.hashCode();
-		result = prime * result + icon.hashCode();
-		result = prime * result + name.hashCode();
-		result = prime * result + producer.hashCode();
-		result = prime * result + producerUrl.hashCode();
-		result = prime * result + url.hashCode();
-		result = prime * result + versionNumber.hashCode();
+		int result = hash;
+		if (result == 0) {
+			final int prime = 31;
+			result = 1;
+			result = prime * result + family.hashCode();
+			result = prime * result + familyName.hashCode();
+			result = prime * result + icon.hashCode();
+			result = prime * result + name.hashCode();
+			result = prime * result + producer.hashCode();
+			result = prime * result + producerUrl.hashCode();
+			result = prime * result + url.hashCode();
+			result = prime * result + versionNumber.hashCode();
+			hash = result;
+		}
 		return result;
 	}
 
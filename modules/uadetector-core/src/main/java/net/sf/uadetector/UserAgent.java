@@ -284,6 +284,12 @@ public final class UserAgent implements ReadableUserAgent, Serializable {
 	@Nonnull
 	private final BrowserEngine browserEngine;
 
+	/**
+	 * Hash code, calculated on first use (not serialized, because the hash codes of enum constants differ between
+	 * virtual machines)
+	 */
+	private transient int hash;
+
 	public UserAgent(@Nonnull final DeviceCategory deviceType, @Nonnull final UserAgentFamily family, @Nonnull final String icon,
 			@Nonnull final String name, @Nonnull final OperatingSystem operatingSystem, @Nonnull final String producer,
 			@Nonnull final String producerUrl, @Nonnull final UserAgentType type, @Nonnull final String typeName,
@@ -299,6 +305,7 @@ public final class UserAgent implements ReadableUserAgent, Serializable {
 		Check.notNull(typeName, "typeName");
 		Check.notNull(url, "url");
 		Check.notNull(versionNumber, "versionNumber");
+		Check.notNull(browserEngine, "browserEngine");
 
 		this.deviceCategory = deviceType;
 		this.family = family;
@@ -326,7 +333,10 @@ public final class UserAgent implements ReadableUserAgent, Serializable {
 			return false;
 		}
 		final UserAgent other = (UserAgent) obj;
-		if (deviceCategory != other.deviceCategory) {
+		if (!browserEngine.equals(other.browserEngine)) {
+			return false;
+		}
+		if (!deviceCategory.equals(other.deviceCategory)) {
 			return false;
 		}
 		if (!family.equals(other.family)) {
@@ -425,19 +435,24 @@ public final class UserAgent implements ReadableUserAgent, Serializable {
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + deviceCategory.hashCode();
-		result = prime * result + family.hashCode();
-		result = prime * result + icon.hashCode();
-		result = prime * result + name.hashCode();
-		result = prime * result + operatingSystem.hashCode();
-		result = prime * result + producer.hashCode();
-		result = prime * result + producerUrl.hashCode();
-		result = prime * result + type.hashCode();
-		result = prime * result + typeName.hashCode();
-		result = prime * result + url.hashCode();
-		result = prime * result + versionNumber.hashCode();
+		int result = hash;
+		if (result == 0) {
+			final int prime = 31;
+			result = 1;
+			result = prime * result + browserEngine.hashCode();
+			result = prime * result + deviceCategory.hashCode();
+			result = prime * result + family.hashCode();
+			result = prime * result + icon.hashCode();
+			result = prime * result + name.hashCode();
+			result = prime * result + operatingSystem.hashCode();
+			result = prime * result + producer.hashCode();
+			result = prime * result + producerUrl.hashCode();
+			result = prime * result + type.hashCode();
+			result = prime * result + typeName.hashCode();
+			result = prime * result + url.hashCode();
+			result = prime * result + versionNumber.hashCode();
+			hash = result;
+		}
 		return result;
 	}
 
@@ -184,6 +184,11 @@ public final class VersionNumber implements ReadableVersionNumber, Serializable
 	@Nonnull
 	private final List<String> groups;
 
+	/**
+	 * Hash code, calculated on first use
+	 */
+	private transient int hash;
+
 	/**
 	 * Constructs a {@code VersionNumber} with the given numeric groups, such as major, minor and bugfix number.
 	 * 
@@ -403,10 +408,14 @@ public final class VersionNumber implements ReadableVersionNumber, Serializable
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + groups.hashCode();
-		result = prime * result + extension.hashCode();
+		int result = hash;
+		if (result == 0) {
+			final int prime = 31;
+			result = 1;
+			result = prime * result + groups.hashCode();
+			result = prime * result + extension.hashCode();
+			hash = result;
+		}
 		return result;
 	}
 
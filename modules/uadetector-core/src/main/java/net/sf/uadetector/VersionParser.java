@@ -32,16 +32,51 @@ import net.sf.qualitycheck.Check;
  */
 final class VersionParser {
 
+	/**
+	 * Regular expressions to identify the version number of the operating system <i>Android</i> in the order of their priority
+	 */
+	private static final Pattern[] ANDROID_VERSION_PATTERNS = { Pattern.compile("Android\\s?((\\d+)((\\.\\d+)+)?(\\-(\\w|\\d)+)?);"), Pattern.compile("Android\\-((\\d+)((\\.\\d+)+)?(\\-(\\w|\\d)+)?);") };
+
+	/**
+	 * Regular expression to identify the version number of the operating system <i>Bada</i>
+	 */
+	private static final Pattern BADA_VERSION_PATTERN = Pattern.compile("Bada/((\\d+)((\\.\\d+)+)?)");
+
+	/**
+	 * Regular expression to identify the version number of the operating system <i>BSD</i>
+	 */
+	private static final Pattern BSD_VERSION_PATTERN = Pattern.compile("\\w+bsd\\s?((\\d+)((\\.\\d+)+)?((\\-|_)[\\w\\d\\-]+)?)", Pattern.CASE_INSENSITIVE);
+
 	/**
 	 * Index number of the group in a matching {@link Pattern} which contains the extension/suffix of a version string
 	 */
 	private static final int EXTENSION_INDEX = 5;
 
+	/**
+	 * Regular expressions to identify the version number of the operating system <i>iOS</i> in the order of their priority
+	 */
+	private static final Pattern[] IOS_VERSION_PATTERNS = { Pattern.compile("iPhone OS\\s?((\\d+)((\\_\\d+)+)?) like Mac OS X"), Pattern.compile("CPU OS\\s?((\\d+)((\\_\\d+)+)?) like Mac OS X"), Pattern.compile("iPhone OS\\s?((\\d+)((\\.\\d+)+)?);") };
+
+	/**
+	 * Regular expressions to identify the version number of the operating system <i>Java</i> in the order of their priority
+	 */
+	private static final Pattern[] JAVA_VERSION_PATTERNS = { Pattern.compile("Java/((\\d+)((\\.\\d+)+)?((\\-|_)[\\w\\d\\-]+)?)"), Pattern.compile("Java((\\d+)((\\.\\d+)+)?((\\-|_)[\\w\\d\\-]+)?)") };
+
 	/**
 	 * Index number of the group in a matching {@link Pattern} which contains the first/major number of a version string
 	 */
 	private static final int MAJOR_INDEX = 1;
 
+	/**
+	 * Regular expressions to identify the version number of the operating system <i>OS X</i> in the order of their priority
+	 */
+	private static final Pattern[] OS_X_VERSION_PATTERNS = { Pattern.compile("Mac OS X\\s?((\\d+)((\\.\\d+)+)?);"), Pattern.compile("Mac OS X\\s?((\\d+)((\\_\\d+)+)?);"), Pattern.compile("Mac OS X\\s?((\\d+)((\\_\\d+)+)?)\\)") };
+
+	/**
+	 * Regular expression to identify the version number of the operating system <i>Symbian</i>
+	 */
+	private static final Pattern SYMBIAN_VERSION_PATTERN = Pattern.compile("SymbianOS/((\\d+)((\\.\\d+)+)?s?)");
+
 	/**
 	 * Regular expression to analyze a version number separated by a dot
 	 */
@@ -57,6 +92,16 @@ final class VersionParser {
 	 */
 	private static final Pattern VERSIONSTRING = Pattern.compile("^" + VERSIONNUMBER_WITH_SUFFIX.pattern());
 
+	/**
+	 * Regular expressions to identify the version number of the operating system <i>webOS</i> in the order of their priority
+	 */
+	private static final Pattern[] WEBOS_VERSION_PATTERNS = { Pattern.compile("hpwOS/((\\d+)((\\.\\d+)+)?);"), Pattern.compile("webOS/((\\d+)((\\.\\d+)+)?);") };
+
+	/**
+	 * Regular expressions to identify the version number of the operating system <i>Windows</i> in the order of their priority
+	 */
+	private static final Pattern[] WINDOWS_VERSION_PATTERNS = { Pattern.compile("Windows NT\\s?((\\d+)((\\.\\d+)+)?)"), Pattern.compile("Windows Phone OS ((\\d+)((\\.\\d+)+)?)"), Pattern.compile("Windows CE ((\\d+)((\\.\\d+)+)?)"), Pattern.compile("Windows 2000\\s?((\\d+)((\\.\\d+)+)?)"), Pattern.compile("Windows XP\\s?((\\d+)((\\.\\d+)+)?)"), Pattern.compile("Windows 7\\s?((\\d+)((\\.\\d+)+)?)"), Pattern.compile("Win 9x ((\\d+)((\\.\\d+)+)?)"), Pattern.compile("Windows ((\\d+)((\\.\\d+)+)?)"), Pattern.compile("WebTV/((\\d+)((\\.\\d+)+)?)") };
+
 	/**
 	 * This method try to determine the version number of the operating system <i>Android</i> more accurately.
 	 * 
@@ -66,10 +111,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifyAndroidVersion(@Nonnull final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final List<Pattern> patterns = new ArrayList<Pattern>();
-		patterns.add(Pattern.compile("Android\\s?((\\d+)((\\.\\d+)+)?(\\-(\\w|\\d)+)?);"));
-		patterns.add(Pattern.compile("Android\\-((\\d+)((\\.\\d+)+)?(\\-(\\w|\\d)+)?);"));
-		for (final Pattern pattern : patterns) {
+		for (final Pattern pattern : ANDROID_VERSION_PATTERNS) {
 			final Matcher m = pattern.matcher(userAgent);
 			if (m.find()) {
 				version = parseFirstVersionNumber(m.group(MAJOR_INDEX));
@@ -88,8 +130,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifyBadaVersion(final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final Pattern pattern = Pattern.compile("Bada/((\\d+)((\\.\\d+)+)?)");
-		final Matcher m = pattern.matcher(userAgent);
+		final Matcher m = BADA_VERSION_PATTERN.matcher(userAgent);
 		if (m.find()) {
 			version = parseFirstVersionNumber(m.group(MAJOR_INDEX));
 		}
@@ -105,8 +146,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifyBSDVersion(final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final Pattern pattern = Pattern.compile("\\w+bsd\\s?((\\d+)((\\.\\d+)+)?((\\-|_)[\\w\\d\\-]+)?)", Pattern.CASE_INSENSITIVE);
-		final Matcher m = pattern.matcher(userAgent);
+		final Matcher m = BSD_VERSION_PATTERN.matcher(userAgent);
 		if (m.find()) {
 			version = parseFirstVersionNumber(m.group(MAJOR_INDEX));
 		}
@@ -122,11 +162,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifyIOSVersion(final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final List<Pattern> patterns = new ArrayList<Pattern>();
-		patterns.add(Pattern.compile("iPhone OS\\s?((\\d+)((\\_\\d+)+)?) like Mac OS X"));
-		patterns.add(Pattern.compile("CPU OS\\s?((\\d+)((\\_\\d+)+)?) like Mac OS X"));
-		patterns.add(Pattern.compile("iPhone OS\\s?((\\d+)((\\.\\d+)+)?);"));
-		for (final Pattern pattern : patterns) {
+		for (final Pattern pattern : IOS_VERSION_PATTERNS) {
 			final Matcher m = pattern.matcher(userAgent);
 			if (m.find()) {
 				version = parseFirstVersionNumber(m.group(MAJOR_INDEX).replaceAll("_", "."));
@@ -145,10 +181,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifyJavaVersion(final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final List<Pattern> patterns = new ArrayList<Pattern>();
-		patterns.add(Pattern.compile("Java/((\\d+)((\\.\\d+)+)?((\\-|_)[\\w\\d\\-]+)?)"));
-		patterns.add(Pattern.compile("Java((\\d+)((\\.\\d+)+)?((\\-|_)[\\w\\d\\-]+)?)"));
-		for (final Pattern pattern : patterns) {
+		for (final Pattern pattern : JAVA_VERSION_PATTERNS) {
 			final Matcher m = pattern.matcher(userAgent);
 			if (m.find()) {
 				version = parseFirstVersionNumber(m.group(MAJOR_INDEX));
@@ -167,11 +200,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifyOSXVersion(final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final List<Pattern> patterns = new ArrayList<Pattern>();
-		patterns.add(Pattern.compile("Mac OS X\\s?((\\d+)((\\.\\d+)+)?);"));
-		patterns.add(Pattern.compile("Mac OS X\\s?((\\d+)((\\_\\d+)+)?);"));
-		patterns.add(Pattern.compile("Mac OS X\\s?((\\d+)((\\_\\d+)+)?)\\)"));
-		for (final Pattern pattern : patterns) {
+		for (final Pattern pattern : OS_X_VERSION_PATTERNS) {
 			final Matcher m = pattern.matcher(userAgent);
 			if (m.find()) {
 				version = parseFirstVersionNumber(m.group(MAJOR_INDEX).replaceAll("_", "."));
@@ -190,8 +219,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifySymbianVersion(final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final Pattern pattern = Pattern.compile("SymbianOS/((\\d+)((\\.\\d+)+)?s?)");
-		final Matcher m = pattern.matcher(userAgent);
+		final Matcher m = SYMBIAN_VERSION_PATTERN.matcher(userAgent);
 		if (m.find()) {
 			version = parseFirstVersionNumber(m.group(MAJOR_INDEX));
 		}
@@ -207,10 +235,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifyWebOSVersion(final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final List<Pattern> patterns = new ArrayList<Pattern>();
-		patterns.add(Pattern.compile("hpwOS/((\\d+)((\\.\\d+)+)?);"));
-		patterns.add(Pattern.compile("webOS/((\\d+)((\\.\\d+)+)?);"));
-		for (final Pattern pattern : patterns) {
+		for (final Pattern pattern : WEBOS_VERSION_PATTERNS) {
 			final Matcher m = pattern.matcher(userAgent);
 			if (m.find()) {
 				version = parseFirstVersionNumber(m.group(MAJOR_INDEX));
@@ -229,17 +254,7 @@ final class VersionParser {
 	 */
 	static VersionNumber identifyWindowsVersion(final String userAgent) {
 		VersionNumber version = VersionNumber.UNKNOWN;
-		final List<Pattern> patterns = new ArrayList<Pattern>();
-		patterns.add(Pattern.compile("Windows NT\\s?((\\d+)((\\.\\d+)+)?)"));
-		patterns.add(Pattern.compile("Windows Phone OS ((\\d+)((\\.\\d+)+)?)"));
-		patterns.add(Pattern.compile("Windows CE ((\\d+)((\\.\\d+)+)?)"));
-		patterns.add(Pattern.compile("Windows 2000\\s?((\\d+)((\\.\\d+)+)?)"));
-		patterns.add(Pattern.compile("Windows XP\\s?((\\d+)((\\.\\d+)+)?)"));
-		patterns.add(Pattern.compile("Windows 7\\s?((\\d+)((\\.\\d+)+)?)"));
-		patterns.add(Pattern.compile("Win 9x ((\\d+)((\\.\\d+)+)?)"));
-		patterns.add(Pattern.compile("Windows ((\\d+)((\\.\\d+)+)?)"));
-		patterns.add(Pattern.compile("WebTV/((\\d+)((\\.\\d+)+)?)"));
-		for (final Pattern pattern : patterns) {
+		for (final Pattern pattern : WINDOWS_VERSION_PATTERNS) {
 			final Matcher m = pattern.matcher(userAgent);
 			if (m.find()) {
 				version = parseFirstVersionNumber(m.group(MAJOR_INDEX));
@@ -260,6 +275,11 @@ final class VersionParser {
 	static VersionNumber parseFirstVersionNumber(@Nonnull final String text) {
 		Check.notNull(text, "text");
 
+		final List<String> numbers = splitPlainVersionNumber(text);
+		if (numbers != null) {
+			return new VersionNumber(numbers, VersionNumber.EMPTY_EXTENSION);
+		}
+
 		final Matcher matcher = VERSIONNUMBER_WITH_SUFFIX.matcher(text);
 		String[] split = null;
 		String ext = null;
@@ -346,6 +366,11 @@ final class VersionParser {
 	public static VersionNumber parseVersion(@Nonnull final String version) {
 		Check.notNull(version, "version");
 
+		final List<String> numbers = splitPlainVersionNumber(version);
+		if (numbers != null) {
+			return new VersionNumber(numbers, VersionNumber.EMPTY_EXTENSION);
+		}
+
 		VersionNumber result = new VersionNumber(new ArrayList<String>(0), version);
 		final Matcher matcher = VERSIONSTRING.matcher(version);
 		if (matcher.find()) {
@@ -358,6 +383,37 @@ final class VersionParser {
 		return result;
 	}
 
+	/**
+	 * Splits a version number which consists only of digits separated by single dots (like {@code 537.36}) without
+	 * evaluating a regular expression. Such versions are the common case of the capturing groups of the browser and
+	 * browser engine patterns, and the regular expressions would split them in the same way.
+	 * 
+	 * @param text
+	 *            version number
+	 * @return numeric groups or {@code null} if the text is not a plain version number
+	 */
+	private static List<String> splitPlainVersionNumber(@Nonnull final String text) {
+		final int length = text.length();
+		if (length == 0) {
+			return null;
+		}
+		final List<String> numbers = new ArrayList<String>(4);
+		int start = 0;
+		for (int i = 0; i <= length; i++) {
+			final char c = i < length ? text.charAt(i) : '.';
+			if (c == '.') {
+				if (i == start) {
+					return null;
+				}
+				numbers.add(text.substring(start, i));
+				start = i + 1;
+			} else if (c < '0' || c > '9') {
+				return null;
+			}
+		}
+		return numbers;
+	}
+
 	/**
 	 * Trims the whitespace at the end of the given string.
 	 * 
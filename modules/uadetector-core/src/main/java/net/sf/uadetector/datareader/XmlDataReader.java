@@ -30,6 +30,7 @@ import net.sf.qualitycheck.Check;
 import net.sf.uadetector.exception.CanNotOpenStreamException;
 import net.sf.uadetector.internal.data.Data;
 import net.sf.uadetector.internal.data.DataBuilder;
+import net.sf.uadetector.internal.data.DataProfile;
 import net.sf.uadetector.internal.data.XmlDataHandler;
 import net.sf.uadetector.internal.util.Closeables;
 import net.sf.uadetector.internal.util.UrlUtil;
@@ -84,6 +85,31 @@ public final class XmlDataReader implements DataReader {
 	 */
 	private static final Logger LOG = LoggerFactory.getLogger(XmlDataReader.class);
 
+	/**
+	 * Profile of the data to build
+	 */
+	@Nonnull
+	private final DataProfile profile;
+
+	/**
+	 * Creates a reader which keeps the <em>UAS data</em> as read ({@link DataProfile#FULL}).
+	 */
+	public XmlDataReader() {
+		this(DataProfile.FULL);
+	}
+
+	/**
+	 * Creates a reader which keeps as much of the <em>UAS data</em> as the given profile defines.
+	 * 
+	 * @param profile
+	 *            profile of the data to build
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	public XmlDataReader(@Nonnull final DataProfile profile) {
+		this.profile = Check.notNull(profile, "profile");
+	}
+
 	/**
 	 * Reads the <em>UAS data</em> in XML format based on the given URL.<br>
 	 * <br>
@@ -102,10 +128,34 @@ public final class XmlDataReader implements DataReader {
 	 *             if no stream to the given {@code URL} can be established
 	 */
 	protected static Data readXml(@Nonnull final InputStream inputStream, @Nonnull final Charset charset) {
+		return readXml(inputStream, charset, DataProfile.FULL);
+	}
+
+	/**
+	 * Reads the <em>UAS data</em> in XML format based on the given URL and keeps as much of it as the given profile
+	 * defines.<br>
+	 * <br>
+	 * When during the reading errors occur which lead to a termination of the read operation, the information will be
+	 * written to a log. The termination of the read operation will not lead to a program termination and in this case
+	 * this method returns {@link Data#EMPTY}.
+	 * 
+	 * @param inputStream
+	 *            an input stream for reading <em>UAS data</em>
+	 * @param charset
+	 *            the character set in which the data should be read
+	 * @param profile
+	 *            profile of the data to build
+	 * @return read in <em>UAS data</em> as {@code Data} instance
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if any of the given arguments is {@code null}
+	 */
+	protected static Data readXml(@Nonnull final InputStream inputStream, @Nonnull final Charset charset,
+			@Nonnull final DataProfile profile) {
 		Check.notNull(inputStream, "inputStream");
 		Check.notNull(charset, "charset");
+		Check.notNull(profile, "profile");
 
-		final DataBuilder builder = new DataBuilder();
+		final DataBuilder builder = new DataBuilder().setProfile(profile);
 		boolean hasErrors = false;
 		try {
 			XmlParser.parse(inputStream, builder);
@@ -145,7 +195,7 @@ public final class XmlDataReader implements DataReader {
 	public Data read(@Nonnull final String data) {
 		Check.notNull(data, "data");
 
-		return readXml(new ByteArrayInputStream(data.getBytes(DEFAULT_CHARSET)), DEFAULT_CHARSET);
+		return readXml(new ByteArrayInputStream(data.getBytes(DEFAULT_CHARSET)), DEFAULT_CHARSET, profile);
 	}
 
 	/**
@@ -167,7 +217,7 @@ public final class XmlDataReader implements DataReader {
 
 		Data data = Data.EMPTY;
 		try {
-			data = readXml(UrlUtil.open(url), charset);
+			data = readXml(UrlUtil.open(url), charset, profile);
 		} catch (final CanNotOpenStreamException e) {
 			LOG.warn(e.getLocalizedMessage());
 		}
@@ -17,8 +17,11 @@ package net.sf.uadetector.datastore;
 
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.sf.qualitycheck.Check;
 import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
@@ -48,6 +51,21 @@ public abstract class AbstractRefreshableDataStore implements RefreshableDataSto
 	 */
 	private static final Logger LOG = LoggerFactory.getLogger(AbstractRefreshableDataStore.class);
 
+	/**
+	 * Message for the log when the warm-up of new <em>UAS data</em> is finished
+	 */
+	private static final String MSG_WARM_UP_FINISHED = "Warm-up of UAS data in version '%s' took %d ms.";
+
+	/**
+	 * Message for the log if new <em>UAS data</em> have been rejected by the validator
+	 */
+	private static final String MSG_VALIDATION_REJECTED = "UAS data in version '%s' have been rejected by the validator, the data in version '%s' remain in use.";
+
+	/**
+	 * Message for the log if the warm-up of new <em>UAS data</em> failed
+	 */
+	private static final String MSG_WARM_UP_FAILED = "Warm-up of UAS data in version '%s' failed, the data will be published anyway.";
+
 	/**
 	 * Runtime check that the passed instance of {@link Data} is not empty (respectively {@link Data#EMPTY}).
 	 * 
@@ -71,7 +89,7 @@ public abstract class AbstractRefreshableDataStore implements RefreshableDataSto
 	/**
 	 * Current <em>UAS data</em>
 	 */
-	private Data data;
+	private volatile Data data;
 
 	/**
 	 * The {@code URL} to get <em>UAS data</em>
@@ -99,6 +117,23 @@ public abstract class AbstractRefreshableDataStore implements RefreshableDataSto
 	 */
 	private final URL versionUrl;
 
+	/**
+	 * Optional check which decides whether new <em>UAS data</em> may replace the current ones
+	 */
+	@Nullable
+	private volatile DataValidator validator;
+
+	/**
+	 * Optional warm-up stage which runs before new <em>UAS data</em> will be published
+	 */
+	@Nullable
+	private volatile DataWarmUp warmUp;
+
+	/**
+	 * Duration of the last warm-up in milliseconds
+	 */
+	private volatile long warmUpDuration;
+
 	/**
 	 * Constructs an {@code AbstractDataStore} by reading the given {@code dataUrl} as <em>UAS data</em>.
 	 * 
@@ -192,6 +227,36 @@ public abstract class AbstractRefreshableDataStore implements RefreshableDataSto
 		return versionUrl;
 	}
 
+	/**
+	 * Gets the check which decides whether new <em>UAS data</em> may replace the current ones.
+	 * 
+	 * @return validator or {@code null} if no one is set
+	 */
+	@Nullable
+	public DataValidator getValidator() {
+		return validator;
+	}
+
+	/**
+	 * Gets the warm-up stage which runs before new <em>UAS data</em> will be published.
+	 * 
+	 * @return warm-up stage or {@code null} if no one is set
+	 */
+	@Nullable
+	public DataWarmUp getWarmUp() {
+		return warmUp;
+	}
+
+	/**
+	 * Gets the duration of the last warm-up of new <em>UAS data</em>.
+	 * 
+	 * @return duration of the last warm-up in milliseconds or {@code 0} if no warm-up has been run yet
+	 */
+	@Nonnegative
+	public long getWarmUpDuration() {
+		return warmUpDuration;
+	}
+
 	/**
 	 * Triggers the update of the <code>DataStore</code>. When this action is executed, the current data URL will be
 	 * read in and the <code>DataReader</code> parses and builds a new Data instance. Finally, the currently set
@@ -214,7 +279,8 @@ public abstract class AbstractRefreshableDataStore implements RefreshableDataSto
 	}
 
 	/**
-	 * Sets new <em>UAS data</em> in the store.
+	 * Sets new <em>UAS data</em> in the store. If a warm-up stage is set, it will be run with the new data before they
+	 * replace the current ones.
 	 * 
 	 * @param data
 	 *            <em>UAS data</em> to override the current ({@code null} is not allowed)
@@ -226,7 +292,8 @@ public abstract class AbstractRefreshableDataStore implements RefreshableDataSto
 	protected void setData(@Nonnull final Data data) {
 		Check.notNull(data, "data");
 
-		this.data = checkData(data);
+		warmUp(checkData(data));
+		this.data = data;
 
 		// add some useful UAS data informations to the log
 		if (LOG.isDebugEnabled()) {
@@ -234,6 +301,66 @@ public abstract class AbstractRefreshableDataStore implements RefreshableDataSto
 		}
 	}
 
+	/**
+	 * Checks with the validator, if any, whether the given <em>UAS data</em> may replace the current ones. A rejection
+	 * will be logged.
+	 * 
+	 * @param candidate
+	 *            newly read <em>UAS data</em>
+	 * @return {@code true} if the given data may be published, otherwise {@code false}
+	 */
+	boolean isAcceptable(@Nonnull final Data candidate) {
+		final DataValidator check = validator;
+		final Data current = data;
+		if (check != null && !check.validate(current, candidate)) {
+			LOG.warn(String.format(MSG_VALIDATION_REJECTED, candidate.getVersion(), current.getVersion()));
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Runs the warm-up stage, if any, with the given <em>UAS data</em> and records the time spent.
+	 * 
+	 * @param candidate
+	 *            <em>UAS data</em> which are not yet published
+	 */
+	private void warmUp(@Nonnull final Data candidate) {
+		final DataWarmUp stage = warmUp;
+		if (stage != null) {
+			final long start = System.nanoTime();
+			try {
+				stage.warmUp(candidate);
+			} catch (final RuntimeException e) {
+				LOG.warn(String.format(MSG_WARM_UP_FAILED, candidate.getVersion()), e);
+			}
+			warmUpDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			LOG.info(String.format(MSG_WARM_UP_FINISHED, candidate.getVersion(), warmUpDuration));
+		}
+	}
+
+	/**
+	 * Sets a check which decides on the thread of the update operation whether new <em>UAS data</em> may replace the
+	 * current ones.
+	 * 
+	 * @param validator
+	 *            validator or {@code null} to accept all new data
+	 */
+	public void setValidator(@Nullable final DataValidator validator) {
+		this.validator = validator;
+	}
+
+	/**
+	 * Sets a warm-up stage which will be run with new <em>UAS data</em> on the thread of the update operation before
+	 * they will be published.
+	 * 
+	 * @param warmUp
+	 *            warm-up stage or {@code null} to publish new data immediately
+	 */
+	public void setWarmUp(@Nullable final DataWarmUp warmUp) {
+		this.warmUp = warmUp;
+	}
+
 	/**
 	 * Sets a new update operation.
 	 * 
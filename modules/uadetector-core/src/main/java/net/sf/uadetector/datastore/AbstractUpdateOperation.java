@@ -21,13 +21,22 @@ import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.data.Data;
 import net.sf.uadetector.internal.util.ExecutorServices;
 
 import org.slf4j.Logger;
@@ -40,6 +49,34 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class AbstractUpdateOperation implements UpdateOperation {
 
+	/**
+	 * Update which will be executed once within the background executor. When it is done (regardless of whether it was
+	 * successful, failed or cancelled) it removes itself as the update in flight. A failure will be logged, because the
+	 * future of a triggered update is usually not observed.
+	 */
+	private final class UpdateTask extends FutureTask<Void> {
+
+		UpdateTask(@Nonnull final Runnable update) {
+			super(update, null);
+		}
+
+		@Override
+		protected void done() {
+			inFlight.compareAndSet(this, null);
+			if (!isCancelled()) {
+				try {
+					get();
+				} catch (final InterruptedException e) {
+					// the update is done, so get() does not block
+					Thread.currentThread().interrupt();
+				} catch (final ExecutionException e) {
+					LOG.warn(MSG_UPDATE_FAILED, e.getCause());
+				}
+			}
+		}
+
+	}
+
 	/**
 	 * Defines an empty version string
 	 */
@@ -86,6 +123,13 @@ public abstract class AbstractUpdateOperation implements UpdateOperation {
 	 */
 	private static final String MSG_UPDATE_AVAILABLE = "An update is available. Current version is '%s' and remote version is '%s'.";
 
+	/**
+	 * Message for the log when an update in background terminated with an exception.<br>
+	 * <br>
+	 * <b>Message sample</b>: The update of the UAS data failed.
+	 */
+	private static final String MSG_UPDATE_FAILED = "The update of the UAS data failed.";
+
 	/**
 	 * Pattern of a typical version of <i>UAS data</i>
 	 */
@@ -131,6 +175,50 @@ public abstract class AbstractUpdateOperation implements UpdateOperation {
 	 */
 	private final ExecutorService executorService = ExecutorServices.createBackgroundExecutor();
 
+	/**
+	 * Runs the concrete update operation and records its duration and outcome
+	 */
+	private final Runnable update = new Runnable() {
+		@Override
+		public void run() {
+			final long start = System.nanoTime();
+			final Data before = store.getData();
+			boolean failed = true;
+			try {
+				call();
+				failed = false;
+			} finally {
+				lastUpdateDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				updateCount.incrementAndGet();
+				if (failed) {
+					failedUpdateCount.incrementAndGet();
+				} else if (before != store.getData()) {
+					dataChangeCount.incrementAndGet();
+				}
+			}
+		}
+	};
+
+	/**
+	 * Number of background updates which replaced the <em>UAS data</em> of the store
+	 */
+	private final AtomicLong dataChangeCount = new AtomicLong();
+
+	/**
+	 * Number of background updates which terminated with an exception
+	 */
+	private final AtomicLong failedUpdateCount = new AtomicLong();
+
+	/**
+	 * The update which is currently queued or running, otherwise {@code null}
+	 */
+	private final AtomicReference<UpdateTask> inFlight = new AtomicReference<UpdateTask>();
+
+	/**
+	 * Duration of the last background update in milliseconds
+	 */
+	private volatile long lastUpdateDuration;
+
 	/**
 	 * Time of last update check in milliseconds
 	 */
@@ -141,6 +229,11 @@ public abstract class AbstractUpdateOperation implements UpdateOperation {
 	 */
 	private final RefreshableDataStore store;
 
+	/**
+	 * Number of finished background updates (regardless of their outcome)
+	 */
+	private final AtomicLong updateCount = new AtomicLong();
+
 	public AbstractUpdateOperation(@Nonnull final RefreshableDataStore dataStore) {
 		Check.notNull(dataStore, "dataStore");
 		store = dataStore;
@@ -156,6 +249,26 @@ public abstract class AbstractUpdateOperation implements UpdateOperation {
 		return store.getData().getVersion();
 	}
 
+	/**
+	 * Gets the number of background updates which replaced the <em>UAS data</em> of the store.
+	 * 
+	 * @return number of updates with new data
+	 */
+	@Nonnegative
+	public long getDataChangeCount() {
+		return dataChangeCount.get();
+	}
+
+	/**
+	 * Gets the number of background updates which terminated with an exception.
+	 * 
+	 * @return number of failed updates
+	 */
+	@Nonnegative
+	public long getFailedUpdateCount() {
+		return failedUpdateCount.get();
+	}
+
 	/**
 	 * Gets the time of the last update check in milliseconds.
 	 * 
@@ -166,6 +279,26 @@ public abstract class AbstractUpdateOperation implements UpdateOperation {
 		return lastUpdateCheck;
 	}
 
+	/**
+	 * Gets the duration of the last background update in milliseconds.
+	 * 
+	 * @return duration of the last update or {@code 0} if no update has been finished yet
+	 */
+	@Nonnegative
+	public long getLastUpdateDuration() {
+		return lastUpdateDuration;
+	}
+
+	/**
+	 * Gets the number of finished background updates (regardless of their outcome).
+	 * 
+	 * @return number of finished updates
+	 */
+	@Nonnegative
+	public long getUpdateCount() {
+		return updateCount.get();
+	}
+
 	/**
 	 * Fetches the current version information over HTTP and compares it with the last version of the most recently
 	 * imported data.
@@ -192,16 +325,44 @@ public abstract class AbstractUpdateOperation implements UpdateOperation {
 	}
 
 	/**
-	 * Executes the update at some time in the future (as soon as possible) within a new thread.
+	 * Executes the update at some time in the future (as soon as possible) within a new thread. If an update is already
+	 * in flight, no further one will be queued.
+	 * 
+	 * @see #submit()
 	 */
 	@Override
 	public void run() {
-		executorService.execute(new Runnable() {
-			@Override
-			public void run() {
-				call();
+		submit();
+	}
+
+	/**
+	 * Queues an update within the background executor, unless an update is already in flight. In this case the
+	 * trigger attaches to the running one and its handle will be returned.
+	 * <p>
+	 * The returned {@code Future} can be used to wait for the completion of the update without blocking the thread
+	 * which triggers it (for example a scheduler).
+	 * 
+	 * @return handle of the update which is currently in flight
+	 * @throws RejectedExecutionException
+	 *             if the background executor has been shut down
+	 */
+	@Nonnull
+	public Future<Void> submit() {
+		final UpdateTask task = new UpdateTask(update);
+		UpdateTask current;
+		do {
+			current = inFlight.get();
+			if (current != null && !current.isDone()) {
+				return current;
 			}
-		});
+		} while (!inFlight.compareAndSet(current, task));
+		try {
+			executorService.execute(task);
+		} catch (final RejectedExecutionException e) {
+			inFlight.compareAndSet(task, null);
+			throw e;
+		}
+		return task;
 	}
 
 	/**
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.datastore;
+
+import javax.annotation.Nonnull;
+
+import net.sf.uadetector.internal.data.Data;
+
+/**
+ * Defines a check which decides whether freshly read <em>UAS data</em> may replace the current ones of an
+ * {@link AbstractRefreshableDataStore}.
+ * <p>
+ * The check will be executed by the update operations in background before new data will be cached or published. A
+ * rejected update leaves the current data (and an existing cache file) untouched.
+ */
+public interface DataValidator {
+
+	/**
+	 * Checks whether the candidate <em>UAS data</em> may replace the current ones.
+	 * 
+	 * @param current
+	 *            <em>UAS data</em> which are currently in use
+	 * @param candidate
+	 *            newly read <em>UAS data</em>
+	 * @return {@code true} if the candidate may be published, otherwise {@code false}
+	 */
+	boolean validate(@Nonnull Data current, @Nonnull Data candidate);
+
+}
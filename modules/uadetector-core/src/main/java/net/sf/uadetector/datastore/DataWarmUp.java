@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.datastore;
+
+import javax.annotation.Nonnull;
+
+import net.sf.uadetector.internal.data.Data;
+
+/**
+ * Defines a warm-up stage which will be executed with freshly read <em>UAS data</em> before they are published in a
+ * {@link AbstractRefreshableDataStore}.
+ * <p>
+ * A warm-up runs on the thread of the update operation (in background) and should exercise the new data in the same
+ * way the parser does, so that the first requests after an update do not pay for cold caches.
+ */
+public interface DataWarmUp {
+
+	/**
+	 * Exercises the given <em>UAS data</em> before they will be published.
+	 * 
+	 * @param data
+	 *            candidate <em>UAS data</em> which are not yet visible to any parser
+	 */
+	void warmUp(@Nonnull Data data);
+
+}
@@ -33,7 +33,9 @@ final class UpdateOperationTask extends AbstractUpdateOperation {
 	public void call() {
 		if (isUpdateAvailable()) {
 			final Data data = store.getDataReader().read(store.getDataUrl(), store.getCharset());
-			store.setData(data);
+			if (store.isAcceptable(data)) {
+				store.setData(data);
+			}
 		}
 	}
 
@@ -22,6 +22,7 @@ import java.net.URL;
 import java.nio.charset.Charset;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.sf.qualitycheck.Check;
 import net.sf.uadetector.exception.CanNotOpenStreamException;
@@ -129,6 +130,29 @@ final class UpdateOperationWithCacheFileTask extends AbstractUpdateOperation {
 	 *             if an I/O error occurs
 	 */
 	protected static void readAndSave(@Nonnull final File file, @Nonnull final DataStore store) throws IOException {
+		readAndSave(file, store, null);
+	}
+
+	/**
+	 * Reads the content from the given {@link URL} and saves it to the passed file, if the read <em>UAS data</em> are
+	 * accepted by the given target store.
+	 * 
+	 * @param file
+	 *            file in which the entire contents from the given URL can be saved
+	 * @param store
+	 *            a data store for <em>UAS data</em>
+	 * @param target
+	 *            data store whose validator must accept the read data before they will be saved ({@code null} to save
+	 *            them without validation)
+	 * @return the read <em>UAS data</em> or {@code null} if they have been rejected
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given file or store is {@code null}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Nullable
+	protected static Data readAndSave(@Nonnull final File file, @Nonnull final DataStore store,
+			@Nullable final AbstractRefreshableDataStore target) throws IOException {
 		Check.notNull(file, "file");
 		Check.notNull(store, "store");
 
@@ -139,11 +163,17 @@ final class UpdateOperationWithCacheFileTask extends AbstractUpdateOperation {
 		if (!isEqual) {
 
 			// check if the data can be read in successfully
-			final String data = UrlUtil.read(url, charset);
-			if (Data.EMPTY.equals(store.getDataReader().read(data))) {
+			final String content = UrlUtil.read(url, charset);
+			final Data data = store.getDataReader().read(content);
+			if (Data.EMPTY.equals(data)) {
 				throw new IllegalStateException("The read in content can not be transformed to an instance of 'Data'.");
 			}
 
+			// an existing cache file must not be overridden with rejected data
+			if (target != null && !target.isAcceptable(data)) {
+				return null;
+			}
+
 			final File tempFile = createTemporaryFile(file);
 
 			FileOutputStream outputStream = null;
@@ -151,7 +181,7 @@ final class UpdateOperationWithCacheFileTask extends AbstractUpdateOperation {
 			try {
 				// write data to temporary file
 				outputStream = new FileOutputStream(tempFile);
-				outputStream.write(data.getBytes(charset));
+				outputStream.write(content.getBytes(charset));
 
 				// delete the original file
 				deleteFile(file);
@@ -163,9 +193,12 @@ final class UpdateOperationWithCacheFileTask extends AbstractUpdateOperation {
 
 			// rename the new file to the original one
 			renameFile(tempFile, file);
-		} else {
-			LOG.debug(MSG_SAME_RESOURCES);
+			return data;
 		}
+
+		LOG.debug(MSG_SAME_RESOURCES);
+		final Data data = store.getDataReader().read(url, charset);
+		return target == null || target.isAcceptable(data) ? data : null;
 	}
 
 	/**
@@ -218,8 +251,10 @@ final class UpdateOperationWithCacheFileTask extends AbstractUpdateOperation {
 	private void readDataIfNewerAvailable() {
 		try {
 			if (isUpdateAvailable() || isCacheFileEmpty()) {
-				readAndSave(cacheFile, store);
-				store.setData(store.getDataReader().read(cacheFile.toURI().toURL(), store.getCharset()));
+				final Data data = readAndSave(cacheFile, store, store);
+				if (data != null) {
+					store.setData(data);
+				}
 			}
 		} catch (final CanNotOpenStreamException e) {
 			LOG.warn(String.format(RefreshableDataStore.MSG_URL_NOT_READABLE, e.getLocalizedMessage()));
@@ -237,9 +272,8 @@ final class UpdateOperationWithCacheFileTask extends AbstractUpdateOperation {
 		LOG.info("Reading fallback data...");
 		try {
 			if (isCacheFileEmpty()) {
-				readAndSave(cacheFile, store.getFallback());
-				final Data data = store.getDataReader().read(cacheFile.toURI().toURL(), store.getCharset());
-				if (isNewerData(store.getData(), data)) {
+				final Data data = readAndSave(cacheFile, store.getFallback(), null);
+				if (data != null && isNewerData(store.getData(), data)) {
 					store.setData(data);
 				}
 			}
@@ -101,7 +101,7 @@ public class Data implements Serializable {
 	private final SortedMap<OperatingSystemPattern, OperatingSystem> patternToOperatingSystemMap;
 
 	@Nonnull
-	private final List<Robot> robots;
+	private final RobotTable robots;
 
 	/**
 	 * Version information of the UAS data
@@ -118,6 +118,12 @@ public class Data implements Serializable {
 	@Nonnull
 	private final SortedMap<BrowserEnginePattern, BrowserEngine> patternToBrowserEngineMap;
 
+	/**
+	 * Profile with which the data have been built ({@code null} if deserialized from an older form, which means
+	 * {@link DataProfile#FULL})
+	 */
+	private final DataProfile profile;
+
 	public Data(@Nonnull final Set<Browser> browsers, @Nonnull final Map<Integer, SortedSet<BrowserPattern>> browserPatterns,
 			@Nonnull final Map<Integer, BrowserType> browserTypes, @Nonnull final SortedMap<BrowserPattern, Browser> patternToBrowserMap,
 			@Nonnull final Set<BrowserOperatingSystemMapping> browserToOperatingSystemMappings,
@@ -130,6 +136,23 @@ public class Data implements Serializable {
 			@Nonnull final Set<BrowserEngine> browserEngines,
 			@Nonnull final Map<Integer, SortedSet<BrowserEnginePattern>> browserEnginePatterns,
 			@Nonnull final SortedMap<BrowserEnginePattern, BrowserEngine> patternToBrowserEngineMap) {
+		this(browsers, browserPatterns, browserTypes, patternToBrowserMap, browserToOperatingSystemMappings, operatingSystems,
+				operatingSystemPatterns, patternToOperatingSystemMap, robots, devices, devicePatterns, patternToDeviceMap, version,
+				browserEngines, browserEnginePatterns, patternToBrowserEngineMap, DataProfile.FULL);
+	}
+
+	public Data(@Nonnull final Set<Browser> browsers, @Nonnull final Map<Integer, SortedSet<BrowserPattern>> browserPatterns,
+			@Nonnull final Map<Integer, BrowserType> browserTypes, @Nonnull final SortedMap<BrowserPattern, Browser> patternToBrowserMap,
+			@Nonnull final Set<BrowserOperatingSystemMapping> browserToOperatingSystemMappings,
+			@Nonnull final Set<OperatingSystem> operatingSystems,
+			@Nonnull final Map<Integer, SortedSet<OperatingSystemPattern>> operatingSystemPatterns,
+			@Nonnull final SortedMap<OperatingSystemPattern, OperatingSystem> patternToOperatingSystemMap,
+			@Nonnull final List<Robot> robots, @Nonnull final Set<Device> devices,
+			@Nonnull final Map<Integer, SortedSet<DevicePattern>> devicePatterns,
+			@Nonnull final SortedMap<DevicePattern, Device> patternToDeviceMap, @Nonnull final String version,
+			@Nonnull final Set<BrowserEngine> browserEngines,
+			@Nonnull final Map<Integer, SortedSet<BrowserEnginePattern>> browserEnginePatterns,
+			@Nonnull final SortedMap<BrowserEnginePattern, BrowserEngine> patternToBrowserEngineMap, @Nonnull final DataProfile profile) {
 		Check.notNull(browsers, "browsers");
 		Check.notNull(browserPatterns, "browserPatterns");
 		Check.notNull(browserTypes, "browserTypes");
@@ -146,6 +169,7 @@ public class Data implements Serializable {
 		Check.notNull(browserEngines, "browserEngines");
 		Check.notNull(browserEnginePatterns, "browserEnginePatterns");
 		Check.notNull(patternToBrowserEngineMap, "patternToBrowserEngineMap");
+		Check.notNull(profile, "profile");
 
 		this.browsers = Collections.unmodifiableSet(new HashSet<Browser>(browsers));
 		this.browserPatterns = Collections.unmodifiableMap(new HashMap<Integer, SortedSet<BrowserPattern>>(browserPatterns));
@@ -158,7 +182,7 @@ public class Data implements Serializable {
 				operatingSystemPatterns));
 		this.patternToOperatingSystemMap = Collections.unmodifiableSortedMap(new TreeMap<OperatingSystemPattern, OperatingSystem>(
 				patternToOperatingSystemMap));
-		this.robots = Collections.unmodifiableList(new ArrayList<Robot>(robots));
+		this.robots = RobotTable.of(robots);
 		this.devices = Collections.unmodifiableSet(new HashSet<Device>(devices));
 		this.devicePatterns = Collections.unmodifiableMap(new HashMap<Integer, SortedSet<DevicePattern>>(devicePatterns));
 		this.patternToDeviceMap = Collections.unmodifiableSortedMap(new TreeMap<DevicePattern, Device>(patternToDeviceMap));
@@ -166,6 +190,7 @@ public class Data implements Serializable {
 		this.browserEngines = Collections.unmodifiableSet(new HashSet<BrowserEngine>(browserEngines));
 		this.browserEnginePatterns = Collections.unmodifiableMap(new HashMap<Integer, SortedSet<BrowserEnginePattern>>(browserEnginePatterns));
 		this.patternToBrowserEngineMap = Collections.unmodifiableSortedMap(new TreeMap<BrowserEnginePattern, BrowserEngine>(patternToBrowserEngineMap));
+		this.profile = profile;
 	}
 
 	@Override
@@ -286,11 +311,38 @@ public class Data implements Serializable {
 		return patternToOperatingSystemMap;
 	}
 
+	/**
+	 * Gets the robots of the UAS data. They are kept outside of the Java heap, so that every access of an element creates
+	 * a new {@code Robot}.
+	 * 
+	 * @return unmodifiable list of robots
+	 */
 	@Nonnull
 	public List<Robot> getRobots() {
 		return robots;
 	}
 
+	/**
+	 * Gets the profile with which the UAS data have been built. Only data of the profile {@link DataProfile#FULL} can be
+	 * written again.
+	 * 
+	 * @return profile of the data
+	 */
+	@Nonnull
+	public DataProfile getProfile() {
+		return profile != null ? profile : DataProfile.FULL;
+	}
+
+	/**
+	 * Gets the robots of the UAS data as table which can be looked up by user agent string.
+	 * 
+	 * @return table of robots
+	 */
+	@Nonnull
+	public RobotTable getRobotTable() {
+		return robots;
+	}
+
 	/**
 	 * Gets the version of the UAS data which are available within this instance.
 	 * 
@@ -276,6 +276,9 @@ public class DataBuilder {
 
 	private String version;
 
+	@Nonnull
+	private DataProfile profile = DataProfile.FULL;
+
 	@Nonnull
 	private final Set<BrowserEngine> browserEngines = new HashSet<BrowserEngine>();
 
@@ -550,6 +553,10 @@ public class DataBuilder {
 		final Set<BrowserEngine> browserEngineSet = buildBrowserEngines(browserEngineBuilders);
 		browserEngineSet.addAll(browserEngines);
 
+		if (profile != DataProfile.FULL) {
+			return buildCompacted(osSet, browserSet, deviceSet, browserEngineSet);
+		}
+
 		final SortedMap<BrowserPattern, Browser> patternToBrowserMap = buildPatternToBrowserMap(browserSet);
 		final SortedMap<OperatingSystemPattern, OperatingSystem> patternToOperatingSystemMap = buildPatternToOperatingSystemMap(osSet);
 		final SortedMap<DevicePattern, Device> patternToDeviceMap = buildPatternToDeviceMap(deviceSet);
@@ -557,7 +564,49 @@ public class DataBuilder {
 
 		return new Data(browserSet, browserPatterns, browserTypes, patternToBrowserMap, browserToOperatingSystemMap, osSet,
 				operatingSystemPatterns, patternToOperatingSystemMap, robots, deviceSet, devicePatterns, patternToDeviceMap,
-				version, browserEngineSet, browserEnginePatterns, patternToBrowserEngineMap);
+				version, browserEngineSet, browserEnginePatterns, patternToBrowserEngineMap, profile);
+	}
+
+	/**
+	 * Builds the data with shared strings of the given entries. The patterns by ID and the mappings between browsers and
+	 * operating systems are left out, because the entries hold them already and they are only needed to write the data
+	 * again, which is not possible for a profile other than {@link DataProfile#FULL}.
+	 */
+	@Nonnull
+	private Data buildCompacted(@Nonnull final Set<OperatingSystem> osSet, @Nonnull final Set<Browser> browserSet,
+			@Nonnull final Set<Device> deviceSet, @Nonnull final Set<BrowserEngine> browserEngineSet) {
+		final DataCompactor compactor = new DataCompactor(profile);
+		final Set<OperatingSystem> compactedOsSet = compactor.compactOperatingSystems(osSet);
+		final Set<Browser> compactedBrowserSet = compactor.compactBrowsers(browserSet);
+		final Set<Device> compactedDeviceSet = compactor.compactDevices(deviceSet);
+		final Set<BrowserEngine> compactedBrowserEngineSet = compactor.compactBrowserEngines(browserEngineSet);
+		final List<Robot> compactedRobots = compactor.compactRobots(robots);
+		LOG.debug("Shared {} distinct strings between the entries of the UAS data.", compactor.getStringCount());
+
+		return new Data(compactedBrowserSet, new HashMap<Integer, SortedSet<BrowserPattern>>(0), browserTypes,
+				buildPatternToBrowserMap(compactedBrowserSet), new HashSet<BrowserOperatingSystemMapping>(0), compactedOsSet,
+				new HashMap<Integer, SortedSet<OperatingSystemPattern>>(0), buildPatternToOperatingSystemMap(compactedOsSet),
+				compactedRobots, compactedDeviceSet, new HashMap<Integer, SortedSet<DevicePattern>>(0),
+				buildPatternToDeviceMap(compactedDeviceSet), version, compactedBrowserEngineSet,
+				new HashMap<Integer, SortedSet<BrowserEnginePattern>>(0), buildPatternToBrowserEngineMap(compactedBrowserEngineSet),
+				profile);
+	}
+
+	/**
+	 * Sets how much of the data will be kept in memory by the built {@code Data}. Defaults to {@link DataProfile#FULL}.
+	 * 
+	 * @param profile
+	 *            profile of the data to build
+	 * @return itself
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public DataBuilder setProfile(@Nonnull final DataProfile profile) {
+		Check.notNull(profile, "profile");
+
+		this.profile = profile;
+		return this;
 	}
 
 	@Nonnull
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.data.domain.Browser;
+import net.sf.uadetector.internal.data.domain.BrowserEngine;
+import net.sf.uadetector.internal.data.domain.Device;
+import net.sf.uadetector.internal.data.domain.OperatingSystem;
+import net.sf.uadetector.internal.data.domain.Robot;
+
+/**
+ * Rebuilds the entries of the <em>UAS data</em> so that equal strings are shared through one table instead of being
+ * held once per entry, and optionally drops their presentation metadata (icons and info URLs).
+ * <p>
+ * The strings are deduplicated with an own table instead of {@link String#intern()}, so that they can be collected
+ * together with the data.
+ */
+@NotThreadSafe
+final class DataCompactor {
+
+	/**
+	 * Replacement for dropped presentation metadata
+	 */
+	private static final String EMPTY = "";
+
+	/**
+	 * Compacted operating systems by their originals, so that browsers refer to the same instances as the data
+	 */
+	@Nonnull
+	private final Map<OperatingSystem, OperatingSystem> operatingSystems = new HashMap<OperatingSystem, OperatingSystem>();
+
+	/**
+	 * Whether the presentation metadata will be dropped
+	 */
+	private final boolean slim;
+
+	/**
+	 * Shared instances of all strings seen so far
+	 */
+	@Nonnull
+	private final Map<String, String> strings = new HashMap<String, String>();
+
+	/**
+	 * Creates a compactor for the given profile.
+	 * 
+	 * @param profile
+	 *            profile to compact for, must not be {@link DataProfile#FULL}
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given profile keeps the data as read
+	 */
+	DataCompactor(@Nonnull final DataProfile profile) {
+		Check.notNull(profile, "profile");
+		Check.stateIsTrue(profile != DataProfile.FULL, "Argument 'profile' must not be %s.", DataProfile.FULL);
+		slim = profile == DataProfile.SLIM;
+	}
+
+	@Nonnull
+	private BrowserEngine compact(@Nonnull final BrowserEngine engine) {
+		return new BrowserEngine(engine.getId(), engine.getFamily(), share(engine.getFamilyName()), present(engine.getInfoUrl()),
+				engine.getPatterns());
+	}
+
+	@Nonnull
+	private Browser compact(@Nonnull final Browser browser) {
+		return new Browser(browser.getId(), browser.getFamily(), share(browser.getFamilyName()), browser.getPatterns(),
+				browser.getType(), compactOperatingSystem(browser.getOperatingSystem()), present(browser.getIcon()),
+				present(browser.getInfoUrl()), share(browser.getProducer()), share(browser.getProducerUrl()), share(browser.getUrl()));
+	}
+
+	@Nonnull
+	private Device compact(@Nonnull final Device device) {
+		return new Device(share(device.getName()), device.getId(), device.getCategory(), present(device.getIcon()),
+				present(device.getInfoUrl()), device.getPatterns());
+	}
+
+	@Nonnull
+	private Robot compact(@Nonnull final Robot robot) {
+		return new Robot(robot.getId(), robot.getName(), robot.getFamily(), robot.getFamilyName(), slim ? EMPTY : robot.getInfoUrl(),
+				robot.getProducer(), robot.getProducerUrl(), robot.getUserAgentString(), slim ? EMPTY : robot.getIcon());
+	}
+
+	/**
+	 * Compacts the given browser engines.
+	 * 
+	 * @param engines
+	 *            browser engines as read
+	 * @return compacted browser engines
+	 */
+	@Nonnull
+	Set<BrowserEngine> compactBrowserEngines(@Nonnull final Set<BrowserEngine> engines) {
+		final Set<BrowserEngine> result = new HashSet<BrowserEngine>(engines.size());
+		for (final BrowserEngine engine : engines) {
+			result.add(compact(engine));
+		}
+		return result;
+	}
+
+	/**
+	 * Compacts the given browsers. Their operating systems are replaced by the compacted instances.
+	 * 
+	 * @param browsers
+	 *            browsers as read
+	 * @return compacted browsers
+	 */
+	@Nonnull
+	Set<Browser> compactBrowsers(@Nonnull final Set<Browser> browsers) {
+		final Set<Browser> result = new HashSet<Browser>(browsers.size());
+		for (final Browser browser : browsers) {
+			result.add(compact(browser));
+		}
+		return result;
+	}
+
+	/**
+	 * Compacts the given devices.
+	 * 
+	 * @param devices
+	 *            devices as read
+	 * @return compacted devices
+	 */
+	@Nonnull
+	Set<Device> compactDevices(@Nonnull final Set<Device> devices) {
+		final Set<Device> result = new HashSet<Device>(devices.size());
+		for (final Device device : devices) {
+			result.add(compact(device));
+		}
+		return result;
+	}
+
+	@Nullable
+	private OperatingSystem compactOperatingSystem(@Nullable final OperatingSystem os) {
+		if (os == null) {
+			return null;
+		}
+		OperatingSystem compacted = operatingSystems.get(os);
+		if (compacted == null) {
+			compacted = new OperatingSystem(os.getId(), share(os.getName()), share(os.getFamily()), present(os.getInfoUrl()),
+					os.getPatterns(), share(os.getProducer()), share(os.getProducerUrl()), share(os.getUrl()), present(os.getIcon()));
+			operatingSystems.put(os, compacted);
+		}
+		return compacted;
+	}
+
+	/**
+	 * Compacts the given operating systems.
+	 * 
+	 * @param systems
+	 *            operating systems as read
+	 * @return compacted operating systems
+	 */
+	@Nonnull
+	Set<OperatingSystem> compactOperatingSystems(@Nonnull final Set<OperatingSystem> systems) {
+		final Set<OperatingSystem> result = new HashSet<OperatingSystem>(systems.size());
+		for (final OperatingSystem os : systems) {
+			result.add(compactOperatingSystem(os));
+		}
+		return result;
+	}
+
+	/**
+	 * Compacts the given robots preserving their order. Robots are kept outside of the Java heap (see
+	 * {@link RobotTable}), so there are no strings to share and only the presentation metadata will be dropped.
+	 * 
+	 * @param robots
+	 *            robots as read
+	 * @return compacted robots
+	 */
+	@Nonnull
+	List<Robot> compactRobots(@Nonnull final List<Robot> robots) {
+		if (!slim) {
+			return robots;
+		}
+		final List<Robot> result = new ArrayList<Robot>(robots.size());
+		for (final Robot robot : robots) {
+			result.add(compact(robot));
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of distinct strings in the table.
+	 * 
+	 * @return number of shared strings
+	 */
+	@Nonnegative
+	int getStringCount() {
+		return strings.size();
+	}
+
+	/**
+	 * Shares the given presentation metadata or drops it, if the profile is slim.
+	 */
+	@Nonnull
+	private String present(@Nonnull final String value) {
+		return slim ? EMPTY : share(value);
+	}
+
+	/**
+	 * Returns the shared instance of the given string.
+	 */
+	@Nonnull
+	private String share(@Nonnull final String value) {
+		final String shared = strings.get(value);
+		if (shared != null) {
+			return shared;
+		}
+		strings.put(value, value);
+		return value;
+	}
+
+}
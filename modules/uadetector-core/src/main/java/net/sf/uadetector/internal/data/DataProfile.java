@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.data;
+
+/**
+ * Defines how much of the <em>UAS data</em> a {@link DataBuilder} keeps in memory.
+ */
+public enum DataProfile {
+
+	/**
+	 * Keeps all entries with all their strings as read, including the maps of patterns by ID and the mappings between
+	 * browsers and operating systems, so that the data can be written again.
+	 */
+	FULL,
+
+	/**
+	 * Shares equal strings of all entries through one table and drops the structures which are only needed to write
+	 * the data again (the maps of patterns by ID and the mappings between browsers and operating systems). The patterns
+	 * remain available through their entries and the pattern maps used for parsing. Such data can not be written
+	 * again.
+	 */
+	COMPACT,
+
+	/**
+	 * Like {@link #COMPACT}, but additionally drops the presentation metadata (icons and info URLs), for deployments
+	 * which only classify user agents.
+	 */
+	SLIM;
+
+}
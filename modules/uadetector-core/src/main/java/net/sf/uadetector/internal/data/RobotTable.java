@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.data;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.UserAgentFamily;
+import net.sf.uadetector.internal.data.domain.Robot;
+
+/**
+ * Read-only list of robots which keeps its entries outside of the Java heap.
+ * <p>
+ * All strings of the robots are stored one after another in a direct {@link ByteBuffer} (the arena), and an
+ * open-addressing hash index maps the hash code of the user agent string of a robot to its record. A lookup by user
+ * agent string compares the characters within the arena and creates a {@link Robot} only for a hit, so that the robots
+ * neither occupy the heap nor have to be scanned by the garbage collector.
+ * <p>
+ * The buffers are filled once during construction and afterwards only read with absolute access, therefore an
+ * instance can be used concurrently by multiple threads.
+ */
+@Immutable
+public final class RobotTable extends AbstractList<Robot> implements RandomAccess, Serializable {
+
+	/**
+	 * Serialized form of a {@code RobotTable}, because the direct buffers can not be serialized
+	 */
+	private static final class SerializedForm implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@Nonnull
+		private final List<Robot> robots;
+
+		SerializedForm(@Nonnull final List<Robot> robots) {
+			this.robots = robots;
+		}
+
+		private Object readResolve() {
+			return RobotTable.of(robots);
+		}
+
+	}
+
+	/**
+	 * Families of user agents by their ordinal
+	 */
+	private static final UserAgentFamily[] FAMILIES = UserAgentFamily.values();
+
+	/**
+	 * Size of the fixed part of a record (ID and ordinal of the family)
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	private static final long serialVersionUID = 5766426302211596917L;
+
+	/**
+	 * Size of a slot of the index (hash code of the user agent string and position of the robot plus one)
+	 */
+	private static final int SLOT_SIZE = 8;
+
+	/**
+	 * Calculates the size of the record of the given robot in bytes.
+	 */
+	private static int calculateRecordSize(@Nonnull final Robot robot) {
+		int size = HEADER_SIZE;
+		size += calculateStringSize(robot.getUserAgentString());
+		size += calculateStringSize(robot.getName());
+		size += calculateStringSize(robot.getFamilyName());
+		size += calculateStringSize(robot.getInfoUrl());
+		size += calculateStringSize(robot.getProducer());
+		size += calculateStringSize(robot.getProducerUrl());
+		size += calculateStringSize(robot.getIcon());
+		return size;
+	}
+
+	private static int calculateStringSize(@Nonnull final String value) {
+		return 4 + value.length() * 2;
+	}
+
+	/**
+	 * Creates a table with the given robots. If multiple robots have the same user agent string, a lookup finds the
+	 * first one, as a sequential search through the given list would.
+	 * 
+	 * @param robots
+	 *            robots in the order of the <em>UAS data</em>
+	 * @return new table of robots
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public static RobotTable of(@Nonnull final List<Robot> robots) {
+		Check.notNull(robots, "robots");
+		return robots instanceof RobotTable ? (RobotTable) robots : new RobotTable(robots);
+	}
+
+	private static int putString(@Nonnull final ByteBuffer buffer, final int offset, @Nonnull final String value) {
+		buffer.putInt(offset, value.length());
+		int position = offset + 4;
+		for (int i = 0; i < value.length(); i++) {
+			buffer.putChar(position, value.charAt(i));
+			position += 2;
+		}
+		return position;
+	}
+
+	/**
+	 * Strings of all robots
+	 */
+	@Nonnull
+	private final transient ByteBuffer arena;
+
+	/**
+	 * Open-addressing hash index of the robots by the hash codes of their user agent strings
+	 */
+	@Nonnull
+	private final transient ByteBuffer index;
+
+	/**
+	 * Mask to map a hash code to a slot of the index
+	 */
+	private final transient int mask;
+
+	/**
+	 * Offsets of the records within the arena by the position of the robots
+	 */
+	@Nonnull
+	private final transient ByteBuffer offsets;
+
+	/**
+	 * Number of robots
+	 */
+	@Nonnegative
+	private final transient int size;
+
+	private RobotTable(@Nonnull final List<Robot> robots) {
+		size = robots.size();
+		int arenaSize = 0;
+		for (final Robot robot : robots) {
+			arenaSize += calculateRecordSize(Check.notNull(robot, "robot"));
+		}
+		int slots = 2;
+		while (slots < size * 2) {
+			slots <<= 1;
+		}
+		mask = slots - 1;
+		arena = ByteBuffer.allocateDirect(arenaSize);
+		index = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+		offsets = ByteBuffer.allocateDirect(size * 4);
+
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			final Robot robot = robots.get(i);
+			offsets.putInt(i * 4, offset);
+			arena.putInt(offset, robot.getId());
+			arena.putInt(offset + 4, robot.getFamily().ordinal());
+			int position = offset + HEADER_SIZE;
+			position = putString(arena, position, robot.getUserAgentString());
+			position = putString(arena, position, robot.getName());
+			position = putString(arena, position, robot.getFamilyName());
+			position = putString(arena, position, robot.getInfoUrl());
+			position = putString(arena, position, robot.getProducer());
+			position = putString(arena, position, robot.getProducerUrl());
+			position = putString(arena, position, robot.getIcon());
+			if (findPosition(robot.getUserAgentString()) < 0) {
+				addToIndex(robot.getUserAgentString().hashCode(), i);
+			}
+			offset = position;
+		}
+	}
+
+	private void addToIndex(final int hash, final int position) {
+		int slot = hash & mask;
+		while (index.getInt(slot * SLOT_SIZE + 4) != 0) {
+			slot = (slot + 1) & mask;
+		}
+		index.putInt(slot * SLOT_SIZE, hash);
+		index.putInt(slot * SLOT_SIZE + 4, position + 1);
+	}
+
+	/**
+	 * Finds the robot with the given user agent string. The robot will only be created if there is one.
+	 * 
+	 * @param userAgentString
+	 *            user agent string to look up (compared case-sensitive)
+	 * @return the robot or {@code null} if there is none with the given user agent string
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nullable
+	public Robot find(@Nonnull final String userAgentString) {
+		final int position = findPosition(userAgentString);
+		return position < 0 ? null : get(position);
+	}
+
+	/**
+	 * Finds the position of the robot with the given user agent string without creating it.
+	 * 
+	 * @param userAgentString
+	 *            user agent string to look up (compared case-sensitive)
+	 * @return the position of the robot within this list or {@code -1} if there is none with the given user agent
+	 *         string
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	public int findPosition(@Nonnull final String userAgentString) {
+		Check.notNull(userAgentString, "userAgentString");
+		final int hash = userAgentString.hashCode();
+		int slot = hash & mask;
+		int entry = index.getInt(slot * SLOT_SIZE + 4);
+		while (entry != 0) {
+			if (index.getInt(slot * SLOT_SIZE) == hash && matches(offsets.getInt((entry - 1) * 4) + HEADER_SIZE, userAgentString)) {
+				return entry - 1;
+			}
+			slot = (slot + 1) & mask;
+			entry = index.getInt(slot * SLOT_SIZE + 4);
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the position of the robot with the user agent string encoded in the remaining bytes of the given buffer
+	 * (ASCII or ISO-8859-1) without decoding it and without creating the robot. The position of the buffer will not be
+	 * changed.
+	 * 
+	 * @param userAgentString
+	 *            bytes of the user agent string to look up (compared case-sensitive)
+	 * @return the position of the robot within this list or {@code -1} if there is none with the given user agent
+	 *         string
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	public int findPosition(@Nonnull final ByteBuffer userAgentString) {
+		Check.notNull(userAgentString, "userAgentString");
+		final int start = userAgentString.position();
+		final int end = userAgentString.limit();
+
+		// the same hash code as the decoded string
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + (userAgentString.get(i) & 0xFF);
+		}
+
+		int slot = hash & mask;
+		int entry = index.getInt(slot * SLOT_SIZE + 4);
+		while (entry != 0) {
+			if (index.getInt(slot * SLOT_SIZE) == hash && matches(offsets.getInt((entry - 1) * 4) + HEADER_SIZE, userAgentString)) {
+				return entry - 1;
+			}
+			slot = (slot + 1) & mask;
+			entry = index.getInt(slot * SLOT_SIZE + 4);
+		}
+		return -1;
+	}
+
+	@Override
+	public Robot get(final int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Position " + position + " is out of range [0, " + size + ").");
+		}
+		final int offset = offsets.getInt(position * 4);
+		final int id = arena.getInt(offset);
+		final UserAgentFamily family = FAMILIES[arena.getInt(offset + 4)];
+		int next = offset + HEADER_SIZE;
+		final String userAgentString = getString(next);
+		next += calculateStringSize(userAgentString);
+		final String name = getString(next);
+		next += calculateStringSize(name);
+		final String familyName = getString(next);
+		next += calculateStringSize(familyName);
+		final String infoUrl = getString(next);
+		next += calculateStringSize(infoUrl);
+		final String producer = getString(next);
+		next += calculateStringSize(producer);
+		final String producerUrl = getString(next);
+		next += calculateStringSize(producerUrl);
+		final String icon = getString(next);
+		return new Robot(id, name, family, familyName, infoUrl, producer, producerUrl, userAgentString, icon);
+	}
+
+	/**
+	 * Gets the number of bytes which this table occupies outside of the Java heap.
+	 * 
+	 * @return size of the direct buffers in bytes
+	 */
+	@Nonnegative
+	public long getMemoryUsage() {
+		return (long) arena.capacity() + index.capacity() + offsets.capacity();
+	}
+
+	@Nonnull
+	private String getString(final int offset) {
+		final int length = arena.getInt(offset);
+		final char[] chars = new char[length];
+		int position = offset + 4;
+		for (int i = 0; i < length; i++) {
+			chars[i] = arena.getChar(position);
+			position += 2;
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Compares the string at the given offset of the arena with the remaining bytes of the given buffer.
+	 */
+	private boolean matches(final int offset, @Nonnull final ByteBuffer value) {
+		final int start = value.position();
+		if (arena.getInt(offset) != value.limit() - start) {
+			return false;
+		}
+		int position = offset + 4;
+		for (int i = start; i < value.limit(); i++) {
+			if (arena.getChar(position) != (char) (value.get(i) & 0xFF)) {
+				return false;
+			}
+			position += 2;
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the string at the given offset of the arena with the given string without creating a string.
+	 */
+	private boolean matches(final int offset, @Nonnull final String value) {
+		if (arena.getInt(offset) != value.length()) {
+			return false;
+		}
+		int position = offset + 4;
+		for (int i = 0; i < value.length(); i++) {
+			if (arena.getChar(position) != value.charAt(i)) {
+				return false;
+			}
+			position += 2;
+		}
+		return true;
+	}
+
+	private void readObject(final ObjectInputStream stream) throws InvalidObjectException {
+		throw new InvalidObjectException("A serialized form is required.");
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private Object writeReplace() {
+		return new SerializedForm(new ArrayList<Robot>(this));
+	}
+
+}
@@ -9,6 +9,8 @@ import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.util.PatternAnalyzer;
+import net.sf.uadetector.internal.util.PatternMatcher;
 import net.sf.uadetector.internal.util.RegularExpressionConverter;
 
 /**
@@ -202,6 +204,11 @@ public final class BrowserEnginePattern implements Identifiable, OrderedPattern<
 	@Nonnull
 	private final Pattern pattern;
 
+	/**
+	 * Specialized matcher of the regular expression (will be recreated after deserialization)
+	 */
+	private transient PatternMatcher patternMatcher;
+
 	/**
 	 * Position of a {@code BrowserEnginePattern} (only relevant if there are multiple patterns for a engine in a
 	 * {@code SortedSet})
@@ -216,6 +223,7 @@ public final class BrowserEnginePattern implements Identifiable, OrderedPattern<
 
 		this.id = id;
 		this.pattern = pattern;
+		patternMatcher = PatternAnalyzer.analyze(pattern);
 		this.position = position;
 	}
 
@@ -290,6 +298,16 @@ public final class BrowserEnginePattern implements Identifiable, OrderedPattern<
 		return pattern;
 	}
 
+	@Override
+	public PatternMatcher getPatternMatcher() {
+		PatternMatcher matcher = patternMatcher;
+		if (matcher == null) {
+			matcher = PatternAnalyzer.analyze(pattern);
+			patternMatcher = matcher;
+		}
+		return matcher;
+	}
+
 	@Override
 	public int getPosition() {
 		return position;
@@ -24,6 +24,8 @@ import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.util.PatternAnalyzer;
+import net.sf.uadetector.internal.util.PatternMatcher;
 import net.sf.uadetector.internal.util.RegularExpressionConverter;
 
 /**
@@ -217,6 +219,11 @@ public final class DevicePattern implements Identifiable, OrderedPattern<DeviceP
 	@Nonnull
 	private final Pattern pattern;
 
+	/**
+	 * Specialized matcher of the regular expression (will be recreated after deserialization)
+	 */
+	private transient PatternMatcher patternMatcher;
+
 	/**
 	 * Position of a {@code DevicePattern} (only relevant if there are multiple patterns for a device in a
 	 * {@code SortedSet})
@@ -231,6 +238,7 @@ public final class DevicePattern implements Identifiable, OrderedPattern<DeviceP
 
 		this.id = id;
 		this.pattern = pattern;
+		patternMatcher = PatternAnalyzer.analyze(pattern);
 		this.position = position;
 	}
 
@@ -305,6 +313,16 @@ public final class DevicePattern implements Identifiable, OrderedPattern<DeviceP
 		return pattern;
 	}
 
+	@Override
+	public PatternMatcher getPatternMatcher() {
+		PatternMatcher matcher = patternMatcher;
+		if (matcher == null) {
+			matcher = PatternAnalyzer.analyze(pattern);
+			patternMatcher = matcher;
+		}
+		return matcher;
+	}
+
 	@Override
 	public int getPosition() {
 		return position;
@@ -308,6 +308,21 @@ public final class OperatingSystem implements Identifiable, Serializable {
 		builder.setOperatingSystem(new net.sf.uadetector.OperatingSystem(f, family, icon, name, producer, producerUrl, url, version));
 	}
 
+	/**
+	 * Copies all information of the current operating system entry with the given version number to the given user
+	 * agent builder, instead of taking the version from the user agent string of the builder.
+	 * 
+	 * @param builder
+	 *            user agent builder
+	 * @param version
+	 *            version number of the operating system
+	 */
+	public void copyTo(@Nonnull final UserAgent.Builder builder, @Nonnull final VersionNumber version) {
+		Check.notNull(version, "version");
+		final OperatingSystemFamily f = OperatingSystemFamily.evaluate(family);
+		builder.setOperatingSystem(new net.sf.uadetector.OperatingSystem(f, family, icon, name, producer, producerUrl, url, version));
+	}
+
 	@Override
 	public boolean equals(final Object obj) {
 		if (this == obj) {
@@ -25,6 +25,8 @@ import javax.annotation.concurrent.NotThreadSafe;
 
 import net.sf.qualitycheck.Check;
 import net.sf.uadetector.internal.util.CompareNullSafe;
+import net.sf.uadetector.internal.util.PatternAnalyzer;
+import net.sf.uadetector.internal.util.PatternMatcher;
 import net.sf.uadetector.internal.util.RegularExpressionConverter;
 
 /**
@@ -192,6 +194,11 @@ public final class OperatingSystemPattern implements Identifiable, OrderedPatter
 	@Nonnull
 	private final Pattern pattern;
 
+	/**
+	 * Specialized matcher of the regular expression (will be recreated after deserialization)
+	 */
+	private transient PatternMatcher patternMatcher;
+
 	/**
 	 * Position of a {@code OperatingSystemPattern} (only relevant if there are multiple patterns for an operating
 	 * system in a {@code SortedSet})
@@ -206,6 +213,7 @@ public final class OperatingSystemPattern implements Identifiable, OrderedPatter
 
 		this.id = id;
 		this.pattern = pattern;
+		patternMatcher = PatternAnalyzer.analyze(pattern);
 		this.position = position;
 	}
 
@@ -280,6 +288,16 @@ public final class OperatingSystemPattern implements Identifiable, OrderedPatter
 		return pattern;
 	}
 
+	@Override
+	public PatternMatcher getPatternMatcher() {
+		PatternMatcher matcher = patternMatcher;
+		if (matcher == null) {
+			matcher = PatternAnalyzer.analyze(pattern);
+			patternMatcher = matcher;
+		}
+		return matcher;
+	}
+
 	@Override
 	public int getPosition() {
 		return position;
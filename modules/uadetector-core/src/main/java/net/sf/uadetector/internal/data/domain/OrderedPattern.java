@@ -20,6 +20,8 @@ import java.util.regex.Pattern;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 
+import net.sf.uadetector.internal.util.PatternMatcher;
+
 public interface OrderedPattern<T extends OrderedPattern<?>> extends Comparable<T> {
 
 	/**
@@ -30,6 +32,14 @@ public interface OrderedPattern<T extends OrderedPattern<?>> extends Comparable<
 	@Nonnull
 	Pattern getPattern();
 
+	/**
+	 * Gets the specialized matcher of the regular expression, which has been selected when this pattern was created.
+	 * 
+	 * @return specialized matcher of the regular expression
+	 */
+	@Nonnull
+	PatternMatcher getPatternMatcher();
+
 	/**
 	 * Gets the position of a browser pattern in a set of patterns.
 	 * 
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+
+/**
+ * Finds all occurrences of a set of ASCII literals in a single pass over an input (Aho-Corasick automaton).
+ * <p>
+ * The transitions are stored in one table over the characters which occur in the literals, so that every character of
+ * the input costs one array access regardless of the number of literals. Characters which do not occur in any literal
+ * lead back to the initial state.
+ */
+@Immutable
+public final class LiteralAutomaton {
+
+	/**
+	 * Number of ASCII characters
+	 */
+	private static final int ASCII = 128;
+
+	/**
+	 * Empty array of literal IDs
+	 */
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * Checks if the given literal consists only of ASCII characters and is not empty.
+	 * 
+	 * @param literal
+	 *            literal to check
+	 * @return {@code true} if the literal can be added to an automaton, otherwise {@code false}
+	 */
+	public static boolean isSupported(@Nonnull final String literal) {
+		Check.notNull(literal, "literal");
+		if (literal.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < literal.length(); i++) {
+			if (literal.charAt(i) >= ASCII) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a state of the trie without any transitions.
+	 * 
+	 * @param alphabetSize
+	 *            number of characters which occur in the literals
+	 * @return transitions of the new state
+	 */
+	private static int[] newState(final int alphabetSize) {
+		final int[] state = new int[alphabetSize];
+		for (int i = 0; i < alphabetSize; i++) {
+			state[i] = -1;
+		}
+		return state;
+	}
+
+	/**
+	 * Merges the IDs of the literals which end in a state with the IDs inherited from its failure state.
+	 * 
+	 * @param own
+	 *            IDs of the literals which end in the state
+	 * @param inherited
+	 *            IDs of the failure state or {@code null}
+	 * @return all IDs of the state
+	 */
+	private static int[] toArray(@Nonnull final List<Integer> own, @Nullable final int[] inherited) {
+		final int inheritedLength = inherited != null ? inherited.length : 0;
+		if (own.isEmpty() && inheritedLength == 0) {
+			return NONE;
+		}
+		final int[] result = new int[own.size() + inheritedLength];
+		for (int i = 0; i < own.size(); i++) {
+			result[i] = own.get(i);
+		}
+		if (inheritedLength > 0) {
+			System.arraycopy(inherited, 0, result, own.size(), inheritedLength);
+		}
+		return result;
+	}
+
+	/**
+	 * Number of characters which occur in the literals
+	 */
+	@Nonnegative
+	private final int alphabetSize;
+
+	/**
+	 * Index of every ASCII character in the alphabet or {@code -1} if the character does not occur in any literal
+	 */
+	@Nonnull
+	private final int[] classes;
+
+	/**
+	 * Literals of this automaton (their index is their ID)
+	 */
+	@Nonnull
+	private final String[] literals;
+
+	/**
+	 * IDs of the literals which end in a state
+	 */
+	@Nonnull
+	private final int[][] outputs;
+
+	/**
+	 * Transitions of all states ({@code state * alphabetSize + class})
+	 */
+	@Nonnull
+	private final int[] transitions;
+
+	/**
+	 * Builds an automaton for the given literals. The ID of a literal is its index in the given list.
+	 * 
+	 * @param literals
+	 *            literals to search for (each must fulfill {@link #isSupported(String)})
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if one of the literals is not supported
+	 */
+	public LiteralAutomaton(@Nonnull final List<String> literals) {
+		Check.notNull(literals, "literals");
+		this.literals = literals.toArray(new String[literals.size()]);
+
+		// alphabet
+		classes = new int[ASCII];
+		for (int i = 0; i < ASCII; i++) {
+			classes[i] = -1;
+		}
+		int size = 0;
+		for (final String literal : this.literals) {
+			Check.stateIsTrue(isSupported(literal), "Literal '%s' must be non-empty and consist of ASCII characters.", literal);
+			for (int i = 0; i < literal.length(); i++) {
+				if (classes[literal.charAt(i)] < 0) {
+					classes[literal.charAt(i)] = size++;
+				}
+			}
+		}
+		alphabetSize = Math.max(size, 1);
+
+		// trie
+		final List<int[]> gotos = new ArrayList<int[]>();
+		final List<List<Integer>> ends = new ArrayList<List<Integer>>();
+		gotos.add(newState(alphabetSize));
+		ends.add(new ArrayList<Integer>(1));
+		for (int id = 0; id < this.literals.length; id++) {
+			final String literal = this.literals[id];
+			int state = 0;
+			for (int i = 0; i < literal.length(); i++) {
+				final int c = classes[literal.charAt(i)];
+				if (gotos.get(state)[c] < 0) {
+					gotos.get(state)[c] = gotos.size();
+					gotos.add(newState(alphabetSize));
+					ends.add(new ArrayList<Integer>(1));
+				}
+				state = gotos.get(state)[c];
+			}
+			ends.get(state).add(id);
+		}
+
+		// failure links (breadth first), completing the transitions
+		final int states = gotos.size();
+		final int[] failures = new int[states];
+		transitions = new int[states * alphabetSize];
+		outputs = new int[states][];
+		final Queue<Integer> queue = new LinkedList<Integer>();
+		for (int c = 0; c < alphabetSize; c++) {
+			final int next = gotos.get(0)[c];
+			transitions[c] = next < 0 ? 0 : next;
+			if (next > 0) {
+				failures[next] = 0;
+				queue.add(next);
+			}
+		}
+		outputs[0] = toArray(ends.get(0), null);
+		while (!queue.isEmpty()) {
+			final int state = queue.remove();
+			outputs[state] = toArray(ends.get(state), outputs[failures[state]]);
+			for (int c = 0; c < alphabetSize; c++) {
+				final int next = gotos.get(state)[c];
+				if (next < 0) {
+					transitions[state * alphabetSize + c] = transitions[failures[state] * alphabetSize + c];
+				} else {
+					transitions[state * alphabetSize + c] = next;
+					failures[next] = transitions[failures[state] * alphabetSize + c];
+					queue.add(next);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the literal with the given ID.
+	 * 
+	 * @param id
+	 *            ID of a literal
+	 * @return the literal
+	 */
+	@Nonnull
+	public String getLiteral(@Nonnegative final int id) {
+		return literals[id];
+	}
+
+	/**
+	 * Gets the number of literals of this automaton.
+	 * 
+	 * @return number of literals
+	 */
+	@Nonnegative
+	public int getLiteralCount() {
+		return literals.length;
+	}
+
+	/**
+	 * Gets the number of states of this automaton.
+	 * 
+	 * @return number of states
+	 */
+	@Nonnegative
+	public int getStateCount() {
+		return outputs.length;
+	}
+
+	/**
+	 * Scans the given input and marks the positions of all characters which are covered by an occurrence of a literal.
+	 * 
+	 * @param input
+	 *            input to scan (compared case-sensitive)
+	 * @param covered
+	 *            receives the positions of the covered characters of the input
+	 */
+	public void mark(@Nonnull final CharSequence input, @Nonnull final BitSet covered) {
+		int state = 0;
+		for (int i = 0; i < input.length(); i++) {
+			final char c = input.charAt(i);
+			final int cls = c < ASCII ? classes[c] : -1;
+			state = cls < 0 ? 0 : transitions[state * alphabetSize + cls];
+			final int[] ids = outputs[state];
+			for (int j = 0; j < ids.length; j++) {
+				covered.set(i + 1 - literals[ids[j]].length(), i + 1);
+			}
+		}
+	}
+
+	/**
+	 * Scans the given input and marks the IDs of all literals which occur in it.
+	 * 
+	 * @param input
+	 *            input to scan (compared case-sensitive)
+	 * @param found
+	 *            receives the IDs of the found literals
+	 */
+	public void scan(@Nonnull final CharSequence input, @Nonnull final BitSet found) {
+		int state = 0;
+		for (int i = 0; i < input.length(); i++) {
+			final char c = input.charAt(i);
+			final int cls = c < ASCII ? classes[c] : -1;
+			state = cls < 0 ? 0 : transitions[state * alphabetSize + cls];
+			final int[] ids = outputs[state];
+			for (int j = 0; j < ids.length; j++) {
+				found.set(ids[j]);
+			}
+		}
+	}
+
+}
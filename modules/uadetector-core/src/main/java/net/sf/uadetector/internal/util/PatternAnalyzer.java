@@ -0,0 +1,527 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.util.PatternMatcher.Strategy;
+
+/**
+ * Analyzes a compiled regular expression of the <em>UAS data</em> to select the cheapest strategy to match it (see
+ * {@link PatternMatcher}).
+ * <p>
+ * The analysis is conservative: only the top-level sequence of a pattern will be examined and every construct which is
+ * not fully understood leads to the evaluation of the regular expression. Alternations at the top level, inline flags,
+ * back references, quoting and all flags except {@link Pattern#CASE_INSENSITIVE}, {@link Pattern#DOTALL} and
+ * {@link Pattern#MULTILINE} are not analyzed at all.
+ */
+@ThreadSafe
+public final class PatternAnalyzer {
+
+	/**
+	 * Kind of a top-level element of a regular expression
+	 */
+	private enum Atom {
+
+		/**
+		 * Matches any character ({@code .} in {@link Pattern#DOTALL} mode)
+		 */
+		ANY,
+
+		/**
+		 * Matches exactly one character
+		 */
+		LITERAL,
+
+		/**
+		 * Any other construct (character classes, groups, anchors in the middle etc.)
+		 */
+		OTHER,
+
+		/**
+		 * A construct which prevents the analysis
+		 */
+		UNSUPPORTED
+
+	}
+
+	/**
+	 * Escaped letters which stand for a predefined character class or a boundary
+	 */
+	private static final String ESCAPED_CLASSES = "bBdDsSwW";
+
+	/**
+	 * Escaped letters which are kept unchanged in the lower case form of a pattern
+	 */
+	private static final String ESCAPED_LETTERS_IN_LOWER_CASE = ESCAPED_CLASSES + "aefnrt";
+
+	/**
+	 * Prefixes of special groups which can be kept in the lower case form of a pattern (all others, like inline flags
+	 * or named groups, prevent the conversion)
+	 */
+	private static final String[] SPECIAL_GROUPS_IN_LOWER_CASE = { "(?:", "(?=", "(?!", "(?<=", "(?<!", "(?>" };
+
+	/**
+	 * Flags which are understood by the analysis
+	 */
+	private static final int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL | Pattern.MULTILINE;
+
+	/**
+	 * Analyzes the given pattern and returns the cheapest matcher which gives the same answers.
+	 * 
+	 * @param pattern
+	 *            compiled regular expression
+	 * @return specialized matcher of the given pattern
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public static PatternMatcher analyze(@Nonnull final Pattern pattern) {
+		Check.notNull(pattern, "pattern");
+
+		final int flags = pattern.flags();
+		if ((flags & ~SUPPORTED_FLAGS) != 0) {
+			return new PatternMatcher(pattern, null, false);
+		}
+		final boolean beginAnchored = isBeginAnchored(pattern);
+		final boolean ignoreCase = (flags & Pattern.CASE_INSENSITIVE) != 0;
+		final boolean dotAll = (flags & Pattern.DOTALL) != 0;
+		final String regex = pattern.pattern();
+
+		final List<String> literals = new ArrayList<String>();
+		final StringBuilder run = new StringBuilder();
+		boolean anchored = false;
+		boolean exact = true;
+		int index = 0;
+		if ((flags & Pattern.MULTILINE) == 0 && regex.startsWith("^")) {
+			anchored = true;
+			index = 1;
+		}
+		while (index < regex.length()) {
+			final char c = regex.charAt(index);
+			final Atom atom;
+			char literal = c;
+			int end = index + 1;
+			if (isSurrogate(c)) {
+				atom = Atom.UNSUPPORTED;
+			} else if (c == '\\') {
+				if (end >= regex.length()) {
+					atom = Atom.UNSUPPORTED;
+				} else {
+					literal = regex.charAt(end);
+					end++;
+					atom = escaped(literal);
+				}
+			} else if (c == '.') {
+				atom = dotAll ? Atom.ANY : Atom.OTHER;
+			} else if (c == '[') {
+				end = skipCharacterClass(regex, index);
+				atom = end < 0 ? Atom.UNSUPPORTED : Atom.OTHER;
+			} else if (c == '(') {
+				end = skipGroup(regex, index);
+				atom = end < 0 ? Atom.UNSUPPORTED : Atom.OTHER;
+			} else if ("|)?*+{".indexOf(c) >= 0) {
+				atom = Atom.UNSUPPORTED;
+			} else if ("^$]}".indexOf(c) >= 0) {
+				atom = Atom.OTHER;
+			} else {
+				atom = Atom.LITERAL;
+			}
+			if (atom == Atom.UNSUPPORTED) {
+				return new PatternMatcher(pattern, toLowerCasePattern(pattern), beginAnchored);
+			}
+
+			final int quantifierEnd = skipQuantifier(regex, end);
+			if (quantifierEnd < 0) {
+				return new PatternMatcher(pattern, toLowerCasePattern(pattern), beginAnchored);
+			}
+			final boolean quantified = quantifierEnd > end;
+			final char quantifier = quantified ? regex.charAt(end) : 0;
+			final boolean possessive = quantified && quantifierEnd - end > 1 && regex.charAt(quantifierEnd - 1) == '+'
+					&& quantifier != '{';
+
+			if (atom == Atom.LITERAL && !quantified) {
+				run.append(ignoreCase ? toLowerAscii(literal) : literal);
+			} else {
+				if (atom == Atom.LITERAL && quantifier == '+') {
+					// the character occurs at least once
+					run.append(ignoreCase ? toLowerAscii(literal) : literal);
+				}
+				if (run.length() > 0) {
+					literals.add(run.toString());
+					run.setLength(0);
+				} else if (literals.isEmpty()) {
+					// something precedes the first literal
+					anchored = false;
+				}
+				final boolean anyGap = atom == Atom.ANY && quantifier == '*' && !possessive;
+				if (!anyGap) {
+					exact = false;
+				}
+			}
+			index = quantifierEnd;
+		}
+		if (run.length() > 0) {
+			literals.add(run.toString());
+		}
+
+		final Strategy strategy;
+		if (exact) {
+			strategy = Strategy.LITERALS;
+		} else if (literals.isEmpty()) {
+			return new PatternMatcher(pattern, toLowerCasePattern(pattern), beginAnchored);
+		} else {
+			strategy = Strategy.PREFILTERED_REGULAR_EXPRESSION;
+		}
+		final Pattern lowerCasePattern = exact ? null : toLowerCasePattern(pattern);
+		return new PatternMatcher(pattern, strategy, literals, anchored, beginAnchored, ignoreCase, lowerCasePattern);
+	}
+
+	/**
+	 * Classifies the character after a backslash.
+	 * 
+	 * @param c
+	 *            escaped character
+	 * @return kind of the escape sequence
+	 */
+	private static Atom escaped(final char c) {
+		final Atom atom;
+		if (ESCAPED_CLASSES.indexOf(c) >= 0) {
+			atom = Atom.OTHER;
+		} else if (c < 128 && Character.isLetterOrDigit(c) || isSurrogate(c)) {
+			// back references, quoting, octal, hexadecimal and unicode escapes etc.
+			atom = Atom.UNSUPPORTED;
+		} else {
+			atom = Atom.LITERAL;
+		}
+		return atom;
+	}
+
+	/**
+	 * Checks whether every match of the given pattern begins at the start of the input, because the regular expression
+	 * starts with {@code ^} (without {@link Pattern#MULTILINE}) and has no alternation at the top level. For such a
+	 * pattern {@link java.util.regex.Matcher#lookingAt()} gives the same answer as {@link java.util.regex.Matcher#find()}
+	 * without trying every position of the input.
+	 * 
+	 * @param pattern
+	 *            compiled regular expression
+	 * @return {@code true} if the pattern is anchored at the beginning of the input, otherwise {@code false}
+	 */
+	static boolean isBeginAnchored(@Nonnull final Pattern pattern) {
+		final int flags = pattern.flags();
+		final String regex = pattern.pattern();
+		if ((flags & ~SUPPORTED_FLAGS) != 0 || (flags & Pattern.MULTILINE) != 0 || !regex.startsWith("^")
+				|| skipQuantifier(regex, 1) != 1) {
+			return false;
+		}
+		int depth = 0;
+		int index = 1;
+		while (index < regex.length()) {
+			final char c = regex.charAt(index);
+			if (c == '\\') {
+				if (index + 1 >= regex.length() || regex.charAt(index + 1) == 'Q') {
+					return false;
+				}
+				index++;
+			} else if (c == '[') {
+				index = skipCharacterClass(regex, index);
+				if (index < 0) {
+					return false;
+				}
+				continue;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == '|' && depth == 0) {
+				return false;
+			}
+			index++;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the given character is an ASCII letter.
+	 * 
+	 * @param c
+	 *            character
+	 * @return {@code true} if the character is an ASCII letter, otherwise {@code false}
+	 */
+	private static boolean isAsciiLetter(final char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+	}
+
+	/**
+	 * Checks if a range of a character class can be converted into lower case. This is the case if the range contains
+	 * no ASCII letters at all or only letters of the same case.
+	 * 
+	 * @param from
+	 *            first character of the range
+	 * @param to
+	 *            last character of the range
+	 * @return {@code true} if the range can be converted, otherwise {@code false}
+	 */
+	private static boolean isLowerCaseConvertible(final char from, final char to) {
+		if (from >= 'a' && to <= 'z' || from >= 'A' && to <= 'Z') {
+			return true;
+		}
+		return to < 'A' || from > 'z' || from > 'Z' && to < 'a';
+	}
+
+	/**
+	 * Checks if the given character is a part of a surrogate pair.
+	 * 
+	 * @param c
+	 *            character
+	 * @return {@code true} if the character is a high or low surrogate, otherwise {@code false}
+	 */
+	private static boolean isSurrogate(final char c) {
+		return Character.isHighSurrogate(c) || Character.isLowSurrogate(c);
+	}
+
+	/**
+	 * Skips a character class.
+	 * 
+	 * @param regex
+	 *            regular expression
+	 * @param start
+	 *            index of the opening bracket
+	 * @return index after the closing bracket or {@code -1} if the class cannot be skipped safely
+	 */
+	private static int skipCharacterClass(@Nonnull final String regex, @Nonnegative final int start) {
+		int index = start + 1;
+		if (index < regex.length() && regex.charAt(index) == '^') {
+			index++;
+		}
+		if (index < regex.length() && regex.charAt(index) == ']') {
+			// a leading closing bracket is a literal
+			index++;
+		}
+		int depth = 1;
+		while (index < regex.length()) {
+			final char c = regex.charAt(index);
+			if (c == '\\') {
+				if (index + 1 >= regex.length() || regex.charAt(index + 1) == 'Q') {
+					return -1;
+				}
+				index++;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']') {
+				depth--;
+				if (depth == 0) {
+					return index + 1;
+				}
+			}
+			index++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips a group. Groups with special constructs (like inline flags or look-around) will not be skipped, because
+	 * they can change the meaning of the following literals.
+	 * 
+	 * @param regex
+	 *            regular expression
+	 * @param start
+	 *            index of the opening parenthesis
+	 * @return index after the closing parenthesis or {@code -1} if the group cannot be skipped safely
+	 */
+	private static int skipGroup(@Nonnull final String regex, @Nonnegative final int start) {
+		if (regex.startsWith("(?", start) && !regex.startsWith("(?:", start)) {
+			return -1;
+		}
+		int index = start + 1;
+		int depth = 1;
+		while (index < regex.length()) {
+			final char c = regex.charAt(index);
+			if (c == '\\') {
+				if (index + 1 >= regex.length() || regex.charAt(index + 1) == 'Q') {
+					return -1;
+				}
+				index++;
+			} else if (c == '[') {
+				index = skipCharacterClass(regex, index);
+				if (index < 0) {
+					return -1;
+				}
+				continue;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+				if (depth == 0) {
+					return index + 1;
+				}
+			}
+			index++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips a quantifier (including a lazy or possessive suffix), if there is one.
+	 * 
+	 * @param regex
+	 *            regular expression
+	 * @param start
+	 *            index after an atom
+	 * @return index after the quantifier (or the given index if there is none) or {@code -1} if the quantifier is
+	 *         malformed
+	 */
+	private static int skipQuantifier(@Nonnull final String regex, @Nonnegative final int start) {
+		if (start >= regex.length()) {
+			return start;
+		}
+		int index = start;
+		final char c = regex.charAt(index);
+		if (c == '?' || c == '*' || c == '+') {
+			index++;
+		} else if (c == '{') {
+			index = regex.indexOf('}', index);
+			if (index < 0) {
+				return -1;
+			}
+			index++;
+		} else {
+			return start;
+		}
+		if (index < regex.length() && (regex.charAt(index) == '?' || regex.charAt(index) == '+')) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Converts an ASCII letter into lower case. All other characters are returned unchanged.
+	 * 
+	 * @param c
+	 *            character
+	 * @return the character in lower case
+	 */
+	static char toLowerAscii(final char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * Rewrites a case-insensitive pattern into a case-sensitive lower case form, which finds the same matches in an
+	 * input converted by {@link PatternMatcher#toLowerCase(String)} as the given pattern in the original input. All
+	 * ASCII letters of literals and character classes will be converted into lower case; escape sequences and special
+	 * constructs which cannot be converted safely prevent the rewriting.
+	 * 
+	 * @param pattern
+	 *            compiled regular expression
+	 * @return the lower case form or {@code null} if the pattern is not case-insensitive or cannot be rewritten
+	 */
+	@Nullable
+	static Pattern toLowerCasePattern(@Nonnull final Pattern pattern) {
+		final int flags = pattern.flags();
+		if ((flags & Pattern.CASE_INSENSITIVE) == 0 || (flags & ~SUPPORTED_FLAGS) != 0) {
+			return null;
+		}
+		final String regex = pattern.pattern();
+		final StringBuilder result = new StringBuilder(regex.length());
+		int classDepth = 0;
+		int index = 0;
+		while (index < regex.length()) {
+			final char c = regex.charAt(index);
+			if (c == '\\') {
+				if (index + 1 >= regex.length()) {
+					return null;
+				}
+				final char escaped = regex.charAt(index + 1);
+				if (escaped < 128 && Character.isLetterOrDigit(escaped) && ESCAPED_LETTERS_IN_LOWER_CASE.indexOf(escaped) < 0) {
+					return null;
+				}
+				if (classDepth > 0 && regex.startsWith("-", index + 2) && !regex.startsWith("-]", index + 2)) {
+					// ranges which start with an escaped character are not analyzed
+					return null;
+				}
+				result.append(c).append(escaped);
+				index += 2;
+				continue;
+			}
+			if (classDepth == 0 && c == '(' && regex.startsWith("(?", index)) {
+				String prefix = null;
+				for (final String special : SPECIAL_GROUPS_IN_LOWER_CASE) {
+					if (regex.startsWith(special, index)) {
+						prefix = special;
+						break;
+					}
+				}
+				if (prefix == null) {
+					return null;
+				}
+				result.append(prefix);
+				index += prefix.length();
+				continue;
+			}
+			if (c == '[') {
+				classDepth++;
+				result.append(c);
+				index++;
+				if (regex.startsWith("^", index)) {
+					result.append('^');
+					index++;
+				}
+				if (regex.startsWith("]", index)) {
+					result.append(']');
+					index++;
+				}
+				continue;
+			}
+			if (classDepth > 0 && c == ']') {
+				classDepth--;
+			} else if (classDepth > 0 && index + 2 < regex.length() && regex.charAt(index + 1) == '-' && regex.charAt(index + 2) != ']') {
+				// a range of a character class
+				final char to = regex.charAt(index + 2);
+				if (to == '\\' || to == '[' || !isLowerCaseConvertible(c, to)) {
+					return null;
+				}
+				result.append(toLowerAscii(c)).append('-').append(toLowerAscii(to));
+				index += 3;
+				continue;
+			}
+			result.append(isAsciiLetter(c) ? toLowerAscii(c) : c);
+			index++;
+		}
+
+		try {
+			return Pattern.compile(result.toString(), flags & ~Pattern.CASE_INSENSITIVE);
+		} catch (final PatternSyntaxException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * <strong>Attention:</strong> This class is not intended to create objects from it.
+	 */
+	private PatternAnalyzer() {
+		// This class is not intended to create objects from it.
+	}
+
+}
@@ -0,0 +1,777 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.util.RegularExpressionParser.Expression;
+import net.sf.uadetector.internal.util.RegularExpressionParser.UnsupportedPatternException;
+
+/**
+ * Determines in a single pass over an input the first pattern of a list which finds a match (like
+ * {@link java.util.regex.Matcher#find()}). All regular patterns (see {@link #isSupported(Pattern)}) are combined into
+ * one nondeterministic automaton, whose deterministic states will be constructed lazily while scanning and cached up
+ * to a limit. The costs of a scan depend therefore on the length of the input, but not on the number of patterns.
+ * <p>
+ * The automaton answers only which pattern matches. Capturing groups must be extracted afterwards with the regular
+ * expression of the found pattern, and patterns which are not supported must be evaluated separately.
+ */
+@ThreadSafe
+public final class PatternAutomaton {
+
+	/**
+	 * Deterministic state, which is a set of states of the nondeterministic automaton
+	 */
+	@Immutable
+	private static final class State {
+
+		/**
+		 * Lowest index of a pattern which matches at the end of the input in this state or {@link Integer#MAX_VALUE}
+		 */
+		private final int endAccept;
+
+		/**
+		 * Lowest index of a pattern which has found a match when reaching this state or {@link Integer#MAX_VALUE}
+		 */
+		private final int minAccept;
+
+		/**
+		 * Sorted nodes of this state (without the nodes which belong to every state)
+		 */
+		@Nonnull
+		private final int[] nodes;
+
+		/**
+		 * Successors of this state per class of characters. Entries will be filled lazily, a {@code null} means the
+		 * successor is not known (yet), which is benign because all fields of a state are final.
+		 */
+		@Nonnull
+		private final State[] successors;
+
+		State(@Nonnull final int[] nodes, final int minAccept, final int endAccept, @Nonnegative final int classes) {
+			this.nodes = nodes;
+			this.minAccept = minAccept;
+			this.endAccept = endAccept;
+			successors = new State[classes];
+		}
+
+	}
+
+	/**
+	 * Key of a state in the cache
+	 */
+	@Immutable
+	private static final class Key {
+
+		private final int hash;
+
+		@Nonnull
+		private final int[] nodes;
+
+		Key(@Nonnull final int[] nodes) {
+			this.nodes = nodes;
+			hash = Arrays.hashCode(nodes);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof Key && Arrays.equals(nodes, ((Key) obj).nodes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+	/**
+	 * Translates expression trees into the nodes of a nondeterministic automaton (Thompson construction)
+	 */
+	@NotThreadSafe
+	private static final class Builder {
+
+		@Nonnull
+		private final List<int[]> characterSets = new ArrayList<int[]>();
+
+		@Nonnull
+		private byte[] kinds = new byte[64];
+
+		@Nonnull
+		private int[] outs = new int[64];
+
+		@Nonnegative
+		private int size;
+
+		@Nonnull
+		private int[] splits = new int[64];
+
+		@Nonnull
+		private int[] values = new int[64];
+
+		/**
+		 * Adds a node and returns its index.
+		 */
+		int add(final byte kind, final int out, final int value) {
+			if (size == kinds.length) {
+				kinds = Arrays.copyOf(kinds, size * 2);
+				outs = Arrays.copyOf(outs, size * 2);
+				splits = Arrays.copyOf(splits, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			kinds[size] = kind;
+			outs[size] = out;
+			splits[size] = -1;
+			values[size] = value;
+			return size++;
+		}
+
+		/**
+		 * Compiles the given expression backwards, so that every node knows its successor when it is created.
+		 * 
+		 * @param expression
+		 *            expression to compile
+		 * @param next
+		 *            node which follows after the expression has been matched
+		 * @return first node of the expression
+		 */
+		int compile(@Nonnull final Expression expression, final int next) {
+			final List<Expression> children = expression.getChildren();
+			switch (expression.getKind()) {
+				case ALTERNATION:
+					int alternatives = compile(children.get(children.size() - 1), next);
+					for (int i = children.size() - 2; i >= 0; i--) {
+						alternatives = split(compile(children.get(i), next), alternatives);
+					}
+					return alternatives;
+				case BEGIN:
+					return add(BEGIN, next, -1);
+				case CHARACTERS:
+					characterSets.add(expression.getRanges());
+					return add(CHARACTER, next, characterSets.size() - 1);
+				case END:
+					return add(END, next, -1);
+				case REPETITION:
+					final Expression child = children.get(0);
+					int current = next;
+					if (expression.getMax() < 0) {
+						final int loop = split(-1, next);
+						// the arrays may grow during the compilation of the child
+						final int body = compile(child, loop);
+						outs[loop] = body;
+						current = loop;
+					} else {
+						for (int i = expression.getMin(); i < expression.getMax(); i++) {
+							current = split(compile(child, current), next);
+						}
+					}
+					for (int i = 0; i < expression.getMin(); i++) {
+						current = compile(child, current);
+					}
+					return current;
+				default:
+					int sequence = next;
+					for (int i = children.size() - 1; i >= 0; i--) {
+						sequence = compile(children.get(i), sequence);
+					}
+					return sequence;
+			}
+		}
+
+		private int split(final int first, final int second) {
+			final int node = add(SPLIT, first, -1);
+			splits[node] = second;
+			return node;
+		}
+
+	}
+
+	/**
+	 * Growable list of primitive integers
+	 */
+	@NotThreadSafe
+	private static final class IntList {
+
+		@Nonnegative
+		private int size;
+
+		@Nonnull
+		private int[] values = new int[16];
+
+		void add(final int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		@Nonnull
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+
+	}
+
+	/**
+	 * Kind of a node which accepts the pattern with the index in {@link #values}
+	 */
+	private static final byte ACCEPT = 0;
+
+	/**
+	 * Kind of a node which matches only at the beginning of the input
+	 */
+	private static final byte BEGIN = 1;
+
+	/**
+	 * Kind of a node which matches one character of the set with the index in {@link #values}
+	 */
+	private static final byte CHARACTER = 2;
+
+	/**
+	 * Kind of a node which matches only at the end of the input
+	 */
+	private static final byte END = 3;
+
+	/**
+	 * Kind of a node which branches into two nodes without consuming a character
+	 */
+	private static final byte SPLIT = 4;
+
+	/**
+	 * Number of ASCII characters
+	 */
+	private static final int ASCII = 128;
+
+	/**
+	 * Default maximum number of cached deterministic states
+	 */
+	public static final int DEFAULT_STATE_LIMIT = 32768;
+
+	/**
+	 * Result of a scan, if no supported pattern matches
+	 */
+	public static final int NO_MATCH = -1;
+
+	/**
+	 * Result of a scan, if the input contains line terminators or surrogates, which the automaton does not handle
+	 */
+	public static final int UNSUPPORTED_INPUT = -2;
+
+	/**
+	 * Checks if the given pattern can be translated into an automaton.
+	 * 
+	 * @param pattern
+	 *            compiled pattern
+	 * @return {@code true} if the pattern is regular and supported, otherwise {@code false}
+	 */
+	public static boolean isSupported(@Nonnull final Pattern pattern) {
+		Check.notNull(pattern, "pattern");
+		try {
+			RegularExpressionParser.parse(pattern);
+			return true;
+		} catch (final UnsupportedPatternException e) {
+			return false;
+		}
+	}
+
+	private static boolean isUnsupported(final char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == 0x2028 || c == 0x2029 || Character.isHighSurrogate(c)
+				|| Character.isLowSurrogate(c);
+	}
+
+	/**
+	 * Lowest index of a pattern which matches the empty input at any position or {@link Integer#MAX_VALUE}
+	 */
+	private final int baseAccept;
+
+	/**
+	 * Whether a node belongs to every state, because it is reachable from the start of a pattern without consuming a
+	 * character
+	 */
+	@Nonnull
+	private final boolean[] baseNodes;
+
+	/**
+	 * End nodes which belong to every state
+	 */
+	@Nonnull
+	private final int[] baseEnds;
+
+	/**
+	 * Nodes reachable from the nodes which belong to every state by consuming a character of a class
+	 */
+	@Nonnull
+	private final int[][] baseSuccessors;
+
+	/**
+	 * Bounds of the classes of characters beyond ASCII (the first character of every class)
+	 */
+	@Nonnull
+	private final int[] boundaries;
+
+	/**
+	 * Cached states
+	 */
+	@GuardedBy("this")
+	private final Map<Key, State> cache = new HashMap<Key, State>();
+
+	/**
+	 * Class of every ASCII character
+	 */
+	@Nonnull
+	private final int[] asciiClasses;
+
+	/**
+	 * Number of classes of characters
+	 */
+	@Nonnegative
+	private final int classCount;
+
+	/**
+	 * Classes of characters which a character node matches
+	 */
+	@Nonnull
+	private final BitSet[] classesOfNode;
+
+	/**
+	 * Lowest index of a supported pattern or {@link Integer#MAX_VALUE}
+	 */
+	private final int firstSupported;
+
+	/**
+	 * Initial state of the scan
+	 */
+	@Nonnull
+	private volatile State initial;
+
+	/**
+	 * Kind of every node
+	 */
+	@Nonnull
+	private final byte[] kinds;
+
+	/**
+	 * Generation of the marks of visited nodes
+	 */
+	@GuardedBy("this")
+	private int mark;
+
+	/**
+	 * Marks of visited nodes during the computation of a closure
+	 */
+	@GuardedBy("this")
+	@Nonnull
+	private final int[] marks;
+
+	/**
+	 * Number of nodes
+	 */
+	@Nonnegative
+	private final int nodeCount;
+
+	/**
+	 * Successor of every node (the first branch of a split)
+	 */
+	@Nonnull
+	private final int[] outs;
+
+	/**
+	 * Second branch of every split
+	 */
+	@Nonnull
+	private final int[] splits;
+
+	/**
+	 * Start nodes of all supported patterns
+	 */
+	@Nonnull
+	private final int[] starts;
+
+	/**
+	 * Maximum number of cached states
+	 */
+	@Nonnegative
+	private final int stateLimit;
+
+	/**
+	 * Whether a pattern is supported
+	 */
+	@Nonnull
+	private final boolean[] supported;
+
+	/**
+	 * Index of the pattern (accepting nodes) or of the character set (character nodes)
+	 */
+	@Nonnull
+	private final int[] values;
+
+	/**
+	 * Builds an automaton for the given patterns. The index of a pattern in the list is its priority, lower indices win.
+	 * Patterns which are not supported will be ignored.
+	 * 
+	 * @param patterns
+	 *            patterns in order of their priority
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	public PatternAutomaton(@Nonnull final List<Pattern> patterns) {
+		this(patterns, DEFAULT_STATE_LIMIT);
+	}
+
+	/**
+	 * Builds an automaton for the given patterns. The index of a pattern in the list is its priority, lower indices win.
+	 * Patterns which are not supported will be ignored.
+	 * 
+	 * @param patterns
+	 *            patterns in order of their priority
+	 * @param stateLimit
+	 *            maximum number of cached states (the cache will be cleared when it is full)
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given patterns are {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given limit is not greater than {@code 0}
+	 */
+	public PatternAutomaton(@Nonnull final List<Pattern> patterns, @Nonnegative final int stateLimit) {
+		Check.notNull(patterns, "patterns");
+		Check.stateIsTrue(stateLimit > 0, "Argument 'stateLimit' must be greater than 0, but was %s.", stateLimit);
+		this.stateLimit = stateLimit;
+
+		final Builder builder = new Builder();
+		supported = new boolean[patterns.size()];
+		final int[] startNodes = new int[patterns.size()];
+		int supportedCount = 0;
+		int first = Integer.MAX_VALUE;
+		for (int index = 0; index < patterns.size(); index++) {
+			try {
+				final Expression expression = RegularExpressionParser.parse(Check.notNull(patterns.get(index), "patterns[]"));
+				startNodes[supportedCount++] = builder.compile(expression, builder.add(ACCEPT, -1, index));
+				supported[index] = true;
+				first = Math.min(first, index);
+			} catch (final UnsupportedPatternException e) {
+				supported[index] = false;
+			}
+		}
+		firstSupported = first;
+		starts = Arrays.copyOf(startNodes, supportedCount);
+		nodeCount = builder.size;
+		kinds = Arrays.copyOf(builder.kinds, nodeCount);
+		outs = Arrays.copyOf(builder.outs, nodeCount);
+		splits = Arrays.copyOf(builder.splits, nodeCount);
+		values = Arrays.copyOf(builder.values, nodeCount);
+		marks = new int[nodeCount];
+
+		// classes of characters which are not distinguished by any character set
+		final BitSet cuts = new BitSet(Character.MAX_VALUE + 2);
+		cuts.set(0);
+		cuts.set(ASCII);
+		for (final int[] ranges : builder.characterSets) {
+			for (int i = 0; i < ranges.length; i += 2) {
+				cuts.set(ranges[i]);
+				cuts.set(ranges[i + 1] + 1);
+			}
+		}
+		cuts.clear(Character.MAX_VALUE + 1);
+		classCount = cuts.cardinality();
+		final int[] firsts = new int[classCount];
+		for (int c = cuts.nextSetBit(0), i = 0; c >= 0; c = cuts.nextSetBit(c + 1), i++) {
+			firsts[i] = c;
+		}
+		asciiClasses = new int[ASCII];
+		for (int c = 0; c < ASCII; c++) {
+			asciiClasses[c] = classOf(firsts, c);
+		}
+		boundaries = firsts;
+		classesOfNode = new BitSet[nodeCount];
+		for (int node = 0; node < nodeCount; node++) {
+			if (kinds[node] == CHARACTER) {
+				final int[] ranges = builder.characterSets.get(values[node]);
+				final BitSet classes = new BitSet(classCount);
+				for (int i = 0; i < ranges.length; i += 2) {
+					classes.set(classOf(firsts, ranges[i]), classOf(firsts, ranges[i + 1]) + 1);
+				}
+				classesOfNode[node] = classes;
+			}
+		}
+
+		// nodes which belong to every state, because every pattern can start at any position
+		baseNodes = new boolean[nodeCount];
+		synchronized (this) {
+			final IntList base = new IntList();
+			baseAccept = closure(starts, starts.length, false, false, base);
+			final IntList ends = new IntList();
+			for (int i = 0; i < base.size; i++) {
+				baseNodes[base.values[i]] = true;
+				if (kinds[base.values[i]] == END) {
+					ends.add(base.values[i]);
+				}
+			}
+			baseEnds = ends.toArray();
+			baseSuccessors = new int[classCount][];
+			for (int cls = 0; cls < classCount; cls++) {
+				final IntList successors = new IntList();
+				for (int i = 0; i < base.size; i++) {
+					final int node = base.values[i];
+					if (kinds[node] == CHARACTER && classesOfNode[node].get(cls)) {
+						successors.add(outs[node]);
+					}
+				}
+				baseSuccessors[cls] = successors.toArray();
+			}
+			initial = createInitial();
+		}
+	}
+
+	/**
+	 * Finds the index of the class of the given character.
+	 */
+	private static int classOf(@Nonnull final int[] firsts, final int c) {
+		final int index = Arrays.binarySearch(firsts, c);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * Computes all nodes which are reachable from the given seeds without consuming a character.
+	 * 
+	 * @param seeds
+	 *            nodes to start from
+	 * @param count
+	 *            number of seeds
+	 * @param atBegin
+	 *            whether the position is the beginning of the input
+	 * @param atEnd
+	 *            whether the position is the end of the input
+	 * @param result
+	 *            receives all character, end and accepting nodes (which are not marked yet)
+	 * @return lowest index of an accepted pattern or {@link Integer#MAX_VALUE}
+	 */
+	@GuardedBy("this")
+	private int closure(@Nonnull final int[] seeds, @Nonnegative final int count, final boolean atBegin, final boolean atEnd,
+			@Nonnull final IntList result) {
+		mark++;
+		int accept = Integer.MAX_VALUE;
+		final IntList stack = new IntList();
+		for (int i = 0; i < count; i++) {
+			stack.add(seeds[i]);
+		}
+		while (stack.size > 0) {
+			final int node = stack.values[--stack.size];
+			if (marks[node] == mark) {
+				continue;
+			}
+			marks[node] = mark;
+			switch (kinds[node]) {
+				case ACCEPT:
+					accept = Math.min(accept, values[node]);
+					result.add(node);
+					break;
+				case BEGIN:
+					if (atBegin) {
+						stack.add(outs[node]);
+					}
+					break;
+				case CHARACTER:
+					result.add(node);
+					break;
+				case END:
+					if (atEnd) {
+						stack.add(outs[node]);
+					} else {
+						result.add(node);
+					}
+					break;
+				default:
+					stack.add(splits[node]);
+					stack.add(outs[node]);
+					break;
+			}
+		}
+		return accept;
+	}
+
+	/**
+	 * Creates a state from the result of a closure.
+	 * 
+	 * @param closure
+	 *            nodes of the closure
+	 * @param accept
+	 *            lowest index of a pattern accepted by the closure
+	 * @param atBegin
+	 *            whether the state is the initial one
+	 * @return new state
+	 */
+	@GuardedBy("this")
+	private State createState(@Nonnull final IntList closure, final int accept, final boolean atBegin) {
+		final IntList own = new IntList();
+		final IntList ends = new IntList();
+		for (final int node : baseEnds) {
+			ends.add(node);
+		}
+		for (int i = 0; i < closure.size; i++) {
+			final int node = closure.values[i];
+			if (!baseNodes[node]) {
+				own.add(node);
+				if (kinds[node] == END) {
+					ends.add(node);
+				}
+			}
+		}
+		final int[] nodes = own.toArray();
+		Arrays.sort(nodes);
+		final int endAccept = ends.size > 0 ? closure(ends.values, ends.size, atBegin, true, new IntList()) : Integer.MAX_VALUE;
+		return new State(nodes, Math.min(accept, baseAccept), endAccept, classCount);
+	}
+
+	@GuardedBy("this")
+	private State createInitial() {
+		final IntList closure = new IntList();
+		final int accept = closure(starts, starts.length, true, false, closure);
+		return createState(closure, accept, true);
+	}
+
+	/**
+	 * Scans the given input and returns the lowest index of a supported pattern which finds a match in it.
+	 * 
+	 * @param input
+	 *            input to scan
+	 * @return index of the first matching pattern, {@link #NO_MATCH} if no supported pattern matches or
+	 *         {@link #UNSUPPORTED_INPUT} if the input contains line terminators or surrogates
+	 */
+	public int findFirst(@Nonnull final CharSequence input) {
+		State state = initial;
+		int min = state.minAccept;
+		for (int i = 0; i < input.length() && min > firstSupported; i++) {
+			final char c = input.charAt(i);
+			if (isUnsupported(c)) {
+				return UNSUPPORTED_INPUT;
+			}
+			final int cls = c < ASCII ? asciiClasses[c] : classOf(boundaries, c);
+			State next = state.successors[cls];
+			if (next == null) {
+				next = step(state, cls);
+			}
+			state = next;
+			min = Math.min(min, state.minAccept);
+		}
+		min = Math.min(min, state.endAccept);
+		return min == Integer.MAX_VALUE ? NO_MATCH : min;
+	}
+
+	/**
+	 * Gets the number of deterministic states which are cached currently.
+	 * 
+	 * @return number of cached states
+	 */
+	@Nonnegative
+	public synchronized int getCachedStateCount() {
+		return cache.size();
+	}
+
+	/**
+	 * Gets the number of nodes of the nondeterministic automaton.
+	 * 
+	 * @return number of nodes
+	 */
+	@Nonnegative
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Gets the number of patterns (supported or not) of this automaton.
+	 * 
+	 * @return number of patterns
+	 */
+	@Nonnegative
+	public int getPatternCount() {
+		return supported.length;
+	}
+
+	/**
+	 * Checks if the pattern with the given index has been translated into this automaton.
+	 * 
+	 * @param index
+	 *            index of a pattern
+	 * @return {@code true} if the pattern is supported, otherwise {@code false}
+	 */
+	public boolean isSupported(@Nonnegative final int index) {
+		return supported[index];
+	}
+
+	/**
+	 * Computes the successor of a state for a class of characters and caches it.
+	 */
+	@Nonnull
+	private synchronized State step(@Nonnull final State state, @Nonnegative final int cls) {
+		final State known = state.successors[cls];
+		if (known != null) {
+			return known;
+		}
+		final IntList seeds = new IntList();
+		for (final int node : baseSuccessors[cls]) {
+			seeds.add(node);
+		}
+		for (final int node : state.nodes) {
+			if (kinds[node] == CHARACTER && classesOfNode[node].get(cls)) {
+				seeds.add(outs[node]);
+			}
+		}
+		final IntList closure = new IntList();
+		final int accept = closure(seeds.values, seeds.size, false, false, closure);
+		State next = createState(closure, accept, false);
+		final Key key = new Key(next.nodes);
+		final State cached = cache.get(key);
+		if (cached != null) {
+			next = cached;
+		} else {
+			if (cache.size() >= stateLimit) {
+				// start over with an empty cache, states which are still in use remain valid
+				cache.clear();
+				initial = createInitial();
+			}
+			cache.put(key, next);
+		}
+		state.successors[cls] = next;
+		return next;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("PatternAutomaton [patterns=");
+		builder.append(supported.length);
+		builder.append(", nodes=");
+		builder.append(nodeCount);
+		builder.append(", classes=");
+		builder.append(classCount);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
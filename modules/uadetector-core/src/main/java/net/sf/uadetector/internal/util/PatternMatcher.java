@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+
+/**
+ * Specialized matcher of a regular expression of the <em>UAS data</em>, which has been selected by
+ * {@link PatternAnalyzer} when the pattern was loaded.
+ * <p>
+ * Many patterns of the <em>UAS data</em> are in fact literals or sequences of literals separated by {@code .*}. Such a
+ * pattern can be decided by searching its literals, without running the regular expression engine at all. For all
+ * other patterns the literals which every match must contain are used to reject most of the user agent strings before
+ * the regular expression will be evaluated.
+ */
+@Immutable
+public final class PatternMatcher {
+
+	/**
+	 * Strategy which decides whether a pattern matches
+	 */
+	public enum Strategy {
+
+		/**
+		 * The literals alone decide whether the pattern matches.
+		 */
+		LITERALS,
+
+		/**
+		 * The literals are necessary for a match, but the regular expression decides.
+		 */
+		PREFILTERED_REGULAR_EXPRESSION,
+
+		/**
+		 * Only the regular expression decides.
+		 */
+		REGULAR_EXPRESSION
+
+	}
+
+	/**
+	 * Empty array of literals
+	 */
+	private static final String[] NO_LITERALS = new String[0];
+
+	/**
+	 * Checks if the given characters are equal, whereby ASCII letters are compared case-insensitive like
+	 * {@link Pattern#CASE_INSENSITIVE} without {@link Pattern#UNICODE_CASE} does.
+	 * 
+	 * @param lowerCase
+	 *            character of a literal (already converted into lower case, if it is an ASCII letter)
+	 * @param c
+	 *            character of the input
+	 * @return {@code true} if both characters are equal, otherwise {@code false}
+	 */
+	private static boolean equalsIgnoreAsciiCase(final char lowerCase, final char c) {
+		return lowerCase == c || lowerCase >= 'a' && lowerCase <= 'z' && lowerCase == (c | 0x20);
+	}
+
+	/**
+	 * Searches the given literal in the input.
+	 * 
+	 * @param input
+	 *            input to search in
+	 * @param literal
+	 *            literal to search for
+	 * @param from
+	 *            index of the input to start from
+	 * @param ignoreCase
+	 *            whether ASCII letters should be compared case-insensitive (the literal must be in lower case then)
+	 * @return index of the first occurrence or {@code -1} if the literal does not occur
+	 */
+	static int indexOf(@Nonnull final CharSequence input, @Nonnull final String literal, @Nonnegative final int from,
+			final boolean ignoreCase) {
+		if (!ignoreCase && input instanceof String) {
+			return ((String) input).indexOf(literal, from);
+		}
+		final int last = input.length() - literal.length();
+		for (int i = from; i <= last; i++) {
+			if (regionMatches(input, i, literal, ignoreCase)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if the given literal occurs in the input at the given index.
+	 * 
+	 * @param input
+	 *            input to search in
+	 * @param offset
+	 *            index of the input
+	 * @param literal
+	 *            literal to compare with
+	 * @param ignoreCase
+	 *            whether ASCII letters should be compared case-insensitive (the literal must be in lower case then)
+	 * @return {@code true} if the literal occurs at the given index, otherwise {@code false}
+	 */
+	static boolean regionMatches(@Nonnull final CharSequence input, @Nonnegative final int offset, @Nonnull final String literal,
+			final boolean ignoreCase) {
+		if (offset + literal.length() > input.length()) {
+			return false;
+		}
+		for (int i = 0; i < literal.length(); i++) {
+			final char expected = literal.charAt(i);
+			final char c = input.charAt(offset + i);
+			if (ignoreCase ? !equalsIgnoreAsciiCase(expected, c) : expected != c) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Converts all ASCII letters of the given input into lower case, like the case-insensitive matching of a pattern
+	 * without {@link Pattern#UNICODE_CASE} folds them. All other characters remain unchanged, so that the converted
+	 * input has the same length.
+	 * 
+	 * @param input
+	 *            input to convert
+	 * @return the input in lower case (the same instance if there are no upper case ASCII letters)
+	 */
+	@Nonnull
+	public static String toLowerCase(@Nonnull final String input) {
+		Check.notNull(input, "input");
+		for (int i = 0; i < input.length(); i++) {
+			final char c = input.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				final char[] chars = input.toCharArray();
+				for (int j = i; j < chars.length; j++) {
+					chars[j] = PatternAnalyzer.toLowerAscii(chars[j]);
+				}
+				return new String(chars);
+			}
+		}
+		return input;
+	}
+
+	/**
+	 * Whether the first literal must occur at the beginning of the input
+	 */
+	private final boolean anchored;
+
+	/**
+	 * Whether every match of the regular expression begins at the start of the input
+	 */
+	private final boolean beginAnchored;
+
+	/**
+	 * Whether ASCII letters of the literals are compared case-insensitive
+	 */
+	private final boolean ignoreCase;
+
+	/**
+	 * Literals which every match contains in this order (in lower case, if case-insensitive)
+	 */
+	@Nonnull
+	private final String[] literals;
+
+	/**
+	 * Case-sensitive lower case form of the pattern, if the pattern is case-insensitive and could be rewritten
+	 */
+	@Nullable
+	private final Pattern lowerCasePattern;
+
+	/**
+	 * The analyzed pattern
+	 */
+	@Nonnull
+	private final Pattern pattern;
+
+	/**
+	 * Strategy which decides whether the pattern matches
+	 */
+	@Nonnull
+	private final Strategy strategy;
+
+	/**
+	 * Constructs a matcher which uses only the regular expression.
+	 * 
+	 * @param pattern
+	 *            the analyzed pattern
+	 * @param lowerCasePattern
+	 *            case-sensitive lower case form of a case-insensitive pattern or {@code null}
+	 * @param beginAnchored
+	 *            whether every match of the regular expression begins at the start of the input
+	 */
+	PatternMatcher(@Nonnull final Pattern pattern, @Nullable final Pattern lowerCasePattern, final boolean beginAnchored) {
+		this(pattern, Strategy.REGULAR_EXPRESSION, Collections.<String> emptyList(), false, beginAnchored, lowerCasePattern != null,
+				lowerCasePattern);
+	}
+
+	/**
+	 * Constructs a matcher.
+	 * 
+	 * @param pattern
+	 *            the analyzed pattern
+	 * @param strategy
+	 *            strategy which decides whether the pattern matches
+	 * @param literals
+	 *            literals which every match contains in this order
+	 * @param anchored
+	 *            whether the first literal must occur at the beginning of the input
+	 * @param beginAnchored
+	 *            whether every match of the regular expression begins at the start of the input
+	 * @param ignoreCase
+	 *            whether ASCII letters of the literals are compared case-insensitive
+	 * @param lowerCasePattern
+	 *            case-sensitive lower case form of a case-insensitive pattern or {@code null}
+	 */
+	PatternMatcher(@Nonnull final Pattern pattern, @Nonnull final Strategy strategy, @Nonnull final List<String> literals,
+			final boolean anchored, final boolean beginAnchored, final boolean ignoreCase, @Nullable final Pattern lowerCasePattern) {
+		Check.notNull(pattern, "pattern");
+		Check.notNull(strategy, "strategy");
+		Check.notNull(literals, "literals");
+		this.pattern = pattern;
+		this.strategy = strategy;
+		this.literals = literals.isEmpty() ? NO_LITERALS : literals.toArray(new String[literals.size()]);
+		this.anchored = anchored;
+		this.beginAnchored = beginAnchored;
+		this.ignoreCase = ignoreCase;
+		this.lowerCasePattern = lowerCasePattern;
+	}
+
+	/**
+	 * Gets the literals which every match contains in this order. If the pattern is case-insensitive the literals are
+	 * in lower case.
+	 * 
+	 * @return literals of the pattern
+	 */
+	@Nonnull
+	public List<String> getLiterals() {
+		return Collections.unmodifiableList(Arrays.asList(literals));
+	}
+
+	/**
+	 * Gets the case-sensitive lower case form of the pattern, which finds the same matches (at the same positions) in
+	 * an input converted by {@link #toLowerCase(String)} as the pattern in the original input.
+	 * 
+	 * @return lower case form or {@code null} if the pattern is not case-insensitive, could not be rewritten or needs
+	 *         not to be evaluated at all (see {@link #isExact()})
+	 */
+	@Nullable
+	public Pattern getLowerCasePattern() {
+		return lowerCasePattern;
+	}
+
+	/**
+	 * Gets the analyzed pattern.
+	 * 
+	 * @return the pattern
+	 */
+	@Nonnull
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Gets the strategy which decides whether the pattern matches.
+	 * 
+	 * @return the strategy
+	 */
+	@Nonnull
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Checks whether the first literal must occur at the beginning of the input.
+	 * 
+	 * @return {@code true} if the pattern is anchored, otherwise {@code false}
+	 */
+	public boolean isAnchored() {
+		return anchored;
+	}
+
+	/**
+	 * Checks whether every match of the regular expression begins at the start of the input. If so, the regular
+	 * expression can be evaluated with {@link java.util.regex.Matcher#lookingAt()} instead of
+	 * {@link java.util.regex.Matcher#find()}, which would try every position of the input.
+	 * 
+	 * @return {@code true} if the regular expression is anchored at the beginning, otherwise {@code false}
+	 */
+	public boolean isBeginAnchored() {
+		return beginAnchored;
+	}
+
+	/**
+	 * Checks whether {@link #mayMatch(CharSequence)} already decides if the pattern can be found in an input.
+	 * 
+	 * @return {@code true} if the regular expression needs not to be evaluated, otherwise {@code false}
+	 */
+	public boolean isExact() {
+		return strategy == Strategy.LITERALS;
+	}
+
+	/**
+	 * Checks whether ASCII letters of the literals are compared case-insensitive. If so, the literals are in lower case
+	 * and {@link #mayMatchLowerCase(CharSequence)} can be used.
+	 * 
+	 * @return {@code true} if the pattern is case-insensitive, otherwise {@code false}
+	 */
+	public boolean isIgnoreCase() {
+		return ignoreCase;
+	}
+
+	/**
+	 * Checks whether the pattern can be found in the given input. If this matcher is exact (see {@link #isExact()}) the
+	 * answer is the same as of {@link java.util.regex.Matcher#find()}, otherwise {@code false} means only that the
+	 * pattern cannot be found.
+	 * 
+	 * @param input
+	 *            input to search in
+	 * @return {@code true} if the pattern may be found, otherwise {@code false}
+	 */
+	public boolean mayMatch(@Nonnull final CharSequence input) {
+		return mayMatch(input, ignoreCase);
+	}
+
+	private boolean mayMatch(@Nonnull final CharSequence input, final boolean ignoreCase) {
+		int from = 0;
+		for (int i = 0; i < literals.length; i++) {
+			final String literal = literals[i];
+			final int index;
+			if (i == 0 && anchored) {
+				index = regionMatches(input, 0, literal, ignoreCase) ? 0 : -1;
+			} else {
+				index = indexOf(input, literal, from, ignoreCase);
+			}
+			if (index < 0) {
+				return false;
+			}
+			from = index + literal.length();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks like {@link #mayMatch(CharSequence)} whether the pattern can be found in the given input, which has been
+	 * converted by {@link #toLowerCase(String)}. The literals will be compared case-sensitive, therefore this method
+	 * must only be used if the pattern is case-insensitive (see {@link #isIgnoreCase()}).
+	 * 
+	 * @param lowerCaseInput
+	 *            input in lower case to search in
+	 * @return {@code true} if the pattern may be found, otherwise {@code false}
+	 */
+	public boolean mayMatchLowerCase(@Nonnull final CharSequence lowerCaseInput) {
+		return mayMatch(lowerCaseInput, false);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("PatternMatcher [strategy=");
+		builder.append(strategy);
+		builder.append(", literals=");
+		builder.append(Arrays.toString(literals));
+		builder.append(", anchored=");
+		builder.append(anchored);
+		builder.append(", beginAnchored=");
+		builder.append(beginAnchored);
+		builder.append(", ignoreCase=");
+		builder.append(ignoreCase);
+		builder.append(", lowerCasePattern=");
+		builder.append(lowerCasePattern);
+		builder.append(", pattern=");
+		builder.append(pattern);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
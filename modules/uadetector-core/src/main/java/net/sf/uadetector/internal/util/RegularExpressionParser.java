@@ -0,0 +1,644 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Parses the regular subset of a compiled {@link Pattern} into an expression tree, which can be translated into a
+ * finite automaton (see {@link PatternAutomaton}).
+ * <p>
+ * A pattern is regular, if it consists only of characters, character classes, the predefined classes {@code \d},
+ * {@code \s}, {@code \w} (and their negations), groups, alternations, greedy or reluctant quantifiers and the anchors
+ * {@code ^} and {@code $} outside of {@link Pattern#MULTILINE} mode. Only the flags {@link Pattern#CASE_INSENSITIVE}
+ * and {@link Pattern#DOTALL} are supported. Back references, lookaround, possessive quantifiers, boundaries, quoting,
+ * Unicode properties, nested classes and all other constructs are rejected with an {@link UnsupportedPatternException}.
+ */
+@NotThreadSafe
+final class RegularExpressionParser {
+
+	/**
+	 * Node of an expression tree
+	 */
+	@Immutable
+	static final class Expression {
+
+		/**
+		 * Kind of a node
+		 */
+		enum Kind {
+
+			/**
+			 * Matches one of its children
+			 */
+			ALTERNATION,
+
+			/**
+			 * Matches only at the beginning of the input ({@code ^})
+			 */
+			BEGIN,
+
+			/**
+			 * Matches one character of a set of ranges
+			 */
+			CHARACTERS,
+
+			/**
+			 * Matches only at the end of the input ({@code $})
+			 */
+			END,
+
+			/**
+			 * Matches its child repeatedly
+			 */
+			REPETITION,
+
+			/**
+			 * Matches its children one after another
+			 */
+			SEQUENCE
+
+		}
+
+		@Nonnull
+		private final List<Expression> children;
+
+		@Nonnull
+		private final Kind kind;
+
+		private final int max;
+
+		private final int min;
+
+		@Nonnull
+		private final int[] ranges;
+
+		private Expression(@Nonnull final Kind kind, @Nonnull final List<Expression> children, final int min, final int max,
+				@Nonnull final int[] ranges) {
+			this.kind = kind;
+			this.children = children;
+			this.min = min;
+			this.max = max;
+			this.ranges = ranges;
+		}
+
+		/**
+		 * Gets the children of an alternation, a repetition (exactly one) or a sequence.
+		 * 
+		 * @return children of this node
+		 */
+		@Nonnull
+		List<Expression> getChildren() {
+			return children;
+		}
+
+		@Nonnull
+		Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * Gets the maximum number of repetitions.
+		 * 
+		 * @return maximum number of repetitions or {@code -1} if unbounded
+		 */
+		int getMax() {
+			return max;
+		}
+
+		/**
+		 * Gets the minimum number of repetitions.
+		 * 
+		 * @return minimum number of repetitions
+		 */
+		int getMin() {
+			return min;
+		}
+
+		/**
+		 * Gets the sorted and disjoint ranges of characters of a {@link Kind#CHARACTERS} node.
+		 * 
+		 * @return pairs of the first and last character of every range
+		 */
+		@Nonnull
+		int[] getRanges() {
+			return ranges;
+		}
+
+	}
+
+	/**
+	 * Signals that a pattern contains a construct which is not regular or not supported.
+	 */
+	static final class UnsupportedPatternException extends Exception {
+
+		private static final long serialVersionUID = 5311425702845380312L;
+
+		UnsupportedPatternException() {
+			super();
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+
+	}
+
+	/**
+	 * Highest character
+	 */
+	private static final int MAX_CHAR = Character.MAX_VALUE;
+
+	/**
+	 * Maximum number of repetitions of a bounded quantifier
+	 */
+	private static final int MAX_REPETITIONS = 32;
+
+	/**
+	 * Ranges of the characters which terminate a line
+	 */
+	private static final int[] LINE_TERMINATORS = { '\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029 };
+
+	/**
+	 * Ranges of {@code \d}
+	 */
+	private static final int[] DIGITS = { '0', '9' };
+
+	/**
+	 * Ranges of {@code \s}
+	 */
+	private static final int[] WHITESPACES = { '\t', '\r', ' ', ' ' };
+
+	/**
+	 * Ranges of {@code \w}
+	 */
+	private static final int[] WORD_CHARACTERS = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+
+	/**
+	 * Flags which can be translated
+	 */
+	private static final int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+
+	/**
+	 * Complements the given ranges.
+	 * 
+	 * @param ranges
+	 *            sorted and disjoint ranges
+	 * @return ranges of all other characters
+	 */
+	@Nonnull
+	static int[] complement(@Nonnull final int[] ranges) {
+		final int[] result = new int[ranges.length + 2];
+		int size = 0;
+		int next = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] > next) {
+				result[size++] = next;
+				result[size++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+		if (next <= MAX_CHAR) {
+			result[size++] = next;
+			result[size++] = MAX_CHAR;
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Adds the other case of all ASCII letters to the given ranges, like {@link Pattern#CASE_INSENSITIVE} without
+	 * {@link Pattern#UNICODE_CASE} does.
+	 * 
+	 * @param ranges
+	 *            sorted and disjoint ranges
+	 * @return sorted and disjoint ranges which contain both cases of every ASCII letter
+	 */
+	@Nonnull
+	static int[] foldCase(@Nonnull final int[] ranges) {
+		final List<Integer> added = new ArrayList<Integer>();
+		for (int i = 0; i < ranges.length; i += 2) {
+			for (int c = Math.max(ranges[i], 'A'); c <= Math.min(ranges[i + 1], 'z'); c++) {
+				if (c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z') {
+					added.add(c ^ 0x20);
+					added.add(c ^ 0x20);
+				}
+			}
+		}
+		final int[] result = Arrays.copyOf(ranges, ranges.length + added.size());
+		for (int i = 0; i < added.size(); i++) {
+			result[ranges.length + i] = added.get(i);
+		}
+		return normalize(result);
+	}
+
+	/**
+	 * Sorts and merges the given ranges.
+	 * 
+	 * @param ranges
+	 *            pairs of the first and last character of every range
+	 * @return sorted and disjoint ranges
+	 */
+	@Nonnull
+	static int[] normalize(@Nonnull final int[] ranges) {
+		final long[] packed = new long[ranges.length / 2];
+		for (int i = 0; i < packed.length; i++) {
+			packed[i] = (long) ranges[2 * i] << 32 | ranges[2 * i + 1];
+		}
+		Arrays.sort(packed);
+		final int[] result = new int[ranges.length];
+		int size = 0;
+		for (final long range : packed) {
+			final int first = (int) (range >>> 32);
+			final int last = (int) range;
+			if (size > 0 && first <= result[size - 1] + 1) {
+				result[size - 1] = Math.max(result[size - 1], last);
+			} else {
+				result[size++] = first;
+				result[size++] = last;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Parses the given pattern into an expression tree.
+	 * 
+	 * @param pattern
+	 *            compiled pattern
+	 * @return expression tree which matches exactly the same inputs as the pattern
+	 * @throws UnsupportedPatternException
+	 *             if the pattern contains a construct which is not regular or not supported
+	 */
+	@Nonnull
+	static Expression parse(@Nonnull final Pattern pattern) throws UnsupportedPatternException {
+		if ((pattern.flags() & ~SUPPORTED_FLAGS) != 0) {
+			throw new UnsupportedPatternException();
+		}
+		final RegularExpressionParser parser = new RegularExpressionParser(pattern.pattern(), pattern.flags());
+		final Expression expression = parser.parseAlternation();
+		if (parser.position != parser.regex.length()) {
+			throw new UnsupportedPatternException();
+		}
+		return expression;
+	}
+
+	private static Expression characters(@Nonnull final int[] ranges) {
+		return new Expression(Expression.Kind.CHARACTERS, Collections.<Expression> emptyList(), 1, 1, ranges);
+	}
+
+	private static Expression node(@Nonnull final Expression.Kind kind, @Nonnull final List<Expression> children) {
+		return new Expression(kind, children, 1, 1, new int[0]);
+	}
+
+	/**
+	 * Current flags (inline flags may change them within a group)
+	 */
+	private int flags;
+
+	/**
+	 * Index of the next character to parse
+	 */
+	@Nonnegative
+	private int position;
+
+	/**
+	 * Source of the pattern
+	 */
+	@Nonnull
+	private final String regex;
+
+	private RegularExpressionParser(@Nonnull final String regex, final int flags) {
+		this.regex = regex;
+		this.flags = flags;
+	}
+
+	/**
+	 * Creates a node which matches the given ranges and considers the current case sensitivity.
+	 */
+	private Expression characterSet(@Nonnull final int[] ranges, final boolean negated) {
+		final int[] folded = isCaseInsensitive() ? foldCase(ranges) : ranges;
+		return characters(negated ? complement(folded) : folded);
+	}
+
+	private boolean isCaseInsensitive() {
+		return (flags & Pattern.CASE_INSENSITIVE) != 0;
+	}
+
+	private boolean more() {
+		return position < regex.length();
+	}
+
+	private Expression parseAlternation() throws UnsupportedPatternException {
+		final List<Expression> alternatives = new ArrayList<Expression>(1);
+		alternatives.add(parseSequence());
+		while (more() && regex.charAt(position) == '|') {
+			position++;
+			alternatives.add(parseSequence());
+		}
+		return alternatives.size() == 1 ? alternatives.get(0) : node(Expression.Kind.ALTERNATION, alternatives);
+	}
+
+	/**
+	 * Parses an atom and returns {@code null} if it was an inline flag which matches nothing.
+	 */
+	private Expression parseAtom() throws UnsupportedPatternException {
+		final char c = regex.charAt(position++);
+		switch (c) {
+			case '(':
+				return parseGroup();
+			case '[':
+				return parseCharacterClass();
+			case '.':
+				return characters((flags & Pattern.DOTALL) != 0 ? new int[] { 0, MAX_CHAR } : complement(LINE_TERMINATORS));
+			case '^':
+				return node(Expression.Kind.BEGIN, Collections.<Expression> emptyList());
+			case '$':
+				return node(Expression.Kind.END, Collections.<Expression> emptyList());
+			case '\\':
+				return parseEscape(false);
+			case '*':
+			case '+':
+			case '?':
+			case '{':
+				throw new UnsupportedPatternException();
+			default:
+				return literal(c);
+		}
+	}
+
+	private Expression parseCharacterClass() throws UnsupportedPatternException {
+		final boolean negated = more() && regex.charAt(position) == '^';
+		if (negated) {
+			position++;
+		}
+		if (more() && regex.charAt(position) == ']') {
+			throw new UnsupportedPatternException();
+		}
+		final List<Integer> ranges = new ArrayList<Integer>();
+		while (true) {
+			if (!more()) {
+				throw new UnsupportedPatternException();
+			}
+			final char c = regex.charAt(position++);
+			if (c == ']') {
+				break;
+			}
+			if (c == '[' || c == '&' && more() && regex.charAt(position) == '&') {
+				throw new UnsupportedPatternException();
+			}
+			if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+				throw new UnsupportedPatternException();
+			}
+			final int[] item = c == '\\' ? parseEscape(true).getRanges() : singleton(c);
+			if (item.length == 2 && item[0] == item[1] && position + 1 < regex.length() && regex.charAt(position) == '-'
+					&& regex.charAt(position + 1) != ']') {
+				position++;
+				final char d = regex.charAt(position++);
+				if (d == '[' || Character.isHighSurrogate(d) || Character.isLowSurrogate(d)) {
+					throw new UnsupportedPatternException();
+				}
+				final int[] last = d == '\\' ? parseEscape(true).getRanges() : singleton(d);
+				if (last.length != 2 || last[0] != last[1] || last[0] < item[0]) {
+					throw new UnsupportedPatternException();
+				}
+				ranges.add(item[0]);
+				ranges.add(last[0]);
+			} else {
+				for (final int bound : item) {
+					ranges.add(bound);
+				}
+			}
+		}
+		final int[] result = new int[ranges.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ranges.get(i);
+		}
+		return characterSet(normalize(result), negated);
+	}
+
+	/**
+	 * Parses an escape sequence after the backslash. Within a character class the case sensitivity will be applied
+	 * later to the whole class.
+	 */
+	private Expression parseEscape(final boolean inClass) throws UnsupportedPatternException {
+		if (!more()) {
+			throw new UnsupportedPatternException();
+		}
+		final char c = regex.charAt(position++);
+		switch (c) {
+			case 'd':
+				return characters(DIGITS);
+			case 'D':
+				return characters(complement(DIGITS));
+			case 's':
+				return characters(WHITESPACES);
+			case 'S':
+				return characters(complement(WHITESPACES));
+			case 'w':
+				return characters(WORD_CHARACTERS);
+			case 'W':
+				return characters(complement(WORD_CHARACTERS));
+			case 't':
+				return characters(singleton('\t'));
+			case 'n':
+				return characters(singleton('\n'));
+			case 'r':
+				return characters(singleton('\r'));
+			case 'f':
+				return characters(singleton('\f'));
+			case 'a':
+				return characters(singleton('\u0007'));
+			case 'e':
+				return characters(singleton('\u001B'));
+			case 'x':
+				return escaped(parseHex(2), inClass);
+			case 'u':
+				return escaped(parseHex(4), inClass);
+			default:
+				if (c < 128 && !Character.isLetterOrDigit(c)) {
+					return escaped(c, inClass);
+				}
+				throw new UnsupportedPatternException();
+		}
+	}
+
+	private Expression escaped(final char c, final boolean inClass) throws UnsupportedPatternException {
+		return inClass ? characters(singleton(c)) : literal(c);
+	}
+
+	private Expression parseGroup() throws UnsupportedPatternException {
+		final int outerFlags = flags;
+		if (more() && regex.charAt(position) == '?') {
+			position++;
+			if (!more()) {
+				throw new UnsupportedPatternException();
+			}
+			if (regex.charAt(position) != ':') {
+				if (parseInlineFlags()) {
+					// flags like (?i) apply until the end of the enclosing group
+					return null;
+				}
+			}
+			position++;
+		}
+		final Expression expression = parseAlternation();
+		if (!more() || regex.charAt(position) != ')') {
+			throw new UnsupportedPatternException();
+		}
+		position++;
+		flags = outerFlags;
+		return expression;
+	}
+
+	private char parseHex(final int digits) throws UnsupportedPatternException {
+		if (position + digits > regex.length()) {
+			throw new UnsupportedPatternException();
+		}
+		int value = 0;
+		for (int i = 0; i < digits; i++) {
+			final int digit = Character.digit(regex.charAt(position++), 16);
+			if (digit < 0) {
+				throw new UnsupportedPatternException();
+			}
+			value = value * 16 + digit;
+		}
+		return (char) value;
+	}
+
+	/**
+	 * Parses inline flags like {@code (?i)} or {@code (?s-i:} up to the closing parenthesis or the colon.
+	 * 
+	 * @return {@code true} if the flags apply to the rest of the enclosing group, {@code false} if a group follows
+	 */
+	private boolean parseInlineFlags() throws UnsupportedPatternException {
+		boolean enable = true;
+		while (more()) {
+			final char c = regex.charAt(position);
+			if (c == ')') {
+				position++;
+				return true;
+			} else if (c == ':') {
+				return false;
+			} else if (c == '-' && enable) {
+				enable = false;
+			} else if (c == 'i' || c == 's') {
+				final int flag = c == 'i' ? Pattern.CASE_INSENSITIVE : Pattern.DOTALL;
+				flags = enable ? flags | flag : flags & ~flag;
+			} else {
+				throw new UnsupportedPatternException();
+			}
+			position++;
+		}
+		throw new UnsupportedPatternException();
+	}
+
+	/**
+	 * Parses an optional quantifier after an atom.
+	 * 
+	 * @return {@code min} and {@code max} ({@code -1} if unbounded) or {@code null} if no quantifier follows
+	 */
+	private int[] parseQuantifier() throws UnsupportedPatternException {
+		if (!more()) {
+			return null;
+		}
+		final int[] bounds;
+		final char c = regex.charAt(position);
+		if (c == '*') {
+			bounds = new int[] { 0, -1 };
+			position++;
+		} else if (c == '+') {
+			bounds = new int[] { 1, -1 };
+			position++;
+		} else if (c == '?') {
+			bounds = new int[] { 0, 1 };
+			position++;
+		} else if (c == '{') {
+			final int end = regex.indexOf('}', position);
+			if (end < 0) {
+				throw new UnsupportedPatternException();
+			}
+			final String[] parts = regex.substring(position + 1, end).split(",", -1);
+			if (parts.length > 2) {
+				throw new UnsupportedPatternException();
+			}
+			try {
+				final int min = Integer.parseInt(parts[0]);
+				final int max = parts.length == 1 ? min : parts[1].isEmpty() ? -1 : Integer.parseInt(parts[1]);
+				if (min > MAX_REPETITIONS || max > MAX_REPETITIONS || max >= 0 && max < min) {
+					throw new UnsupportedPatternException();
+				}
+				bounds = new int[] { min, max };
+			} catch (final NumberFormatException e) {
+				throw new UnsupportedPatternException();
+			}
+			position = end + 1;
+		} else {
+			return null;
+		}
+		if (more() && regex.charAt(position) == '?') {
+			// a reluctant quantifier accepts the same inputs
+			position++;
+		} else if (more() && regex.charAt(position) == '+') {
+			// a possessive quantifier can reject inputs which the greedy one would accept
+			throw new UnsupportedPatternException();
+		}
+		return bounds;
+	}
+
+	private Expression parseSequence() throws UnsupportedPatternException {
+		final List<Expression> elements = new ArrayList<Expression>();
+		while (more() && regex.charAt(position) != '|' && regex.charAt(position) != ')') {
+			final Expression atom = parseAtom();
+			if (atom == null) {
+				continue;
+			}
+			final int[] bounds = parseQuantifier();
+			if (bounds == null) {
+				elements.add(atom);
+			} else if (atom.getKind() == Expression.Kind.BEGIN || atom.getKind() == Expression.Kind.END) {
+				throw new UnsupportedPatternException();
+			} else {
+				elements.add(new Expression(Expression.Kind.REPETITION, Collections.singletonList(atom), bounds[0], bounds[1], new int[0]));
+			}
+			if (more() && "*+?{".indexOf(regex.charAt(position)) >= 0) {
+				throw new UnsupportedPatternException();
+			}
+		}
+		return elements.size() == 1 ? elements.get(0) : node(Expression.Kind.SEQUENCE, elements);
+	}
+
+	private Expression literal(final char c) throws UnsupportedPatternException {
+		if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+			throw new UnsupportedPatternException();
+		}
+		return characterSet(singleton(c), false);
+	}
+
+	private static int[] singleton(final char c) {
+		return new int[] { c, c };
+	}
+
+}
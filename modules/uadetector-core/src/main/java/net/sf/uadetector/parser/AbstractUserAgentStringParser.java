@@ -15,18 +15,30 @@
  ******************************************************************************/
 package net.sf.uadetector.parser;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.BrowserEngineFamily;
 import net.sf.uadetector.DeviceCategory;
+import net.sf.uadetector.OperatingSystemFamily;
 import net.sf.uadetector.ReadableDeviceCategory.Category;
 import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.UserAgentFamily;
 import net.sf.uadetector.UserAgentStringParser;
 import net.sf.uadetector.UserAgentType;
 import net.sf.uadetector.VersionNumber;
+import net.sf.uadetector.datastore.AbstractUpdateOperation;
 import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.RefreshableDataStore;
+import net.sf.uadetector.datastore.UpdateOperation;
 import net.sf.uadetector.internal.data.Data;
 import net.sf.uadetector.internal.data.domain.Browser;
 import net.sf.uadetector.internal.data.domain.BrowserEngine;
@@ -37,59 +49,146 @@ import net.sf.uadetector.internal.data.domain.DevicePattern;
 import net.sf.uadetector.internal.data.domain.OperatingSystem;
 import net.sf.uadetector.internal.data.domain.OperatingSystemPattern;
 import net.sf.uadetector.internal.data.domain.Robot;
+import net.sf.uadetector.parser.ParserMetrics.Stage;
 
 public abstract class AbstractUserAgentStringParser implements UserAgentStringParser {
 
 	/**
-	 * The number of capturing groups if nothing matches
+	 * Character set of user agent strings which are passed as bytes (covers ASCII)
 	 */
-	private static final int ZERO_MATCHING_GROUPS = 0;
+	private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
 
 	/**
-	 * Examines the user agent string whether it is a browser.
+	 * Decodes the remaining bytes of the given buffer as ISO-8859-1 (which covers ASCII) without changing its position.
+	 * 
+	 * @param bytes
+	 *            bytes of a user agent string
+	 * @return decoded user agent string
+	 */
+	@Nonnull
+	private static String decode(@Nonnull final ByteBuffer bytes) {
+		if (bytes.hasArray()) {
+			return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), LATIN_1);
+		}
+		final char[] chars = new char[bytes.remaining()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) (bytes.get(bytes.position() + i) & 0xFF);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Examines the given user agent string with the passed <em>UAS data</em>.
 	 * 
 	 * @param userAgent
 	 *            String of an user agent
+	 * @param data
+	 *            <em>UAS data</em> to work with during the whole analysis
+	 * @return information about the user agent
+	 */
+	static UserAgent examine(final String userAgent, @Nonnull final Data data) {
+		final UserAgent.Builder builder = new UserAgent.Builder(userAgent);
+		examine(builder, data, new ParseContext(userAgent), null);
+		return builder.build();
+	}
+
+	/**
+	 * Examines the user agent string of the given builder with the passed <em>UAS data</em> and records the time spent in
+	 * every stage and the number of tried patterns, if metrics are passed.
+	 * 
 	 * @param builder
 	 *            Builder for an user agent information
+	 * @param data
+	 *            <em>UAS data</em> to work with during the whole analysis
+	 * @param context
+	 *            input to match and optional profiler
+	 * @param metrics
+	 *            metrics to record or {@code null}
+	 * @throws GuardedCharSequence.BudgetExceededException
+	 *             if the input of the context is guarded and its budget is exhausted
 	 */
-	private static void examineAsBrowser(final UserAgent.Builder builder, final Data data) {
-		Matcher matcher;
-		VersionNumber version = VersionNumber.UNKNOWN;
-		for (final Entry<BrowserPattern, Browser> entry : data.getPatternToBrowserMap().entrySet()) {
-			matcher = entry.getKey().getPattern().matcher(builder.getUserAgentString());
-			if (matcher.find()) {
-
-				entry.getValue().copyTo(builder);
+	static void examine(@Nonnull final UserAgent.Builder builder, @Nonnull final Data data, @Nonnull final ParseContext context,
+			@Nullable final ParserMetrics metrics) {
+		if (metrics == null) {
+			examineAsRobot(builder, data, context);
+			if (UserAgentType.ROBOT != builder.getType()) {
+				examineAsBrowser(builder, data, context);
+				examineAsBrowserEngine(builder, data, context);
+				examineOperatingSystem(builder, data, context);
+			}
+			examineDeviceCategory(builder, data, context);
+			return;
+		}
 
-				// try to get the browser version from the first subgroup
-				if (matcher.groupCount() > ZERO_MATCHING_GROUPS) {
-					version = VersionNumber.parseVersion(matcher.group(1) != null ? matcher.group(1) : "");
-				}
-				builder.setVersionNumber(version);
+		long start = System.nanoTime();
+		long end;
+		int tried = examineAsRobot(builder, data, context);
+		end = System.nanoTime();
+		metrics.recordStage(Stage.ROBOT, end - start, tried);
+		if (UserAgentType.ROBOT != builder.getType()) {
+			start = end;
+			tried = examineAsBrowser(builder, data, context);
+			end = System.nanoTime();
+			metrics.recordStage(Stage.BROWSER, end - start, tried);
+
+			start = end;
+			tried = examineAsBrowserEngine(builder, data, context);
+			end = System.nanoTime();
+			metrics.recordStage(Stage.BROWSER_ENGINE, end - start, tried);
+
+			start = end;
+			tried = examineOperatingSystem(builder, data, context);
+			end = System.nanoTime();
+			metrics.recordStage(Stage.OPERATING_SYSTEM, end - start, tried);
+		}
+		start = end;
+		tried = examineDeviceCategory(builder, data, context);
+		metrics.recordStage(Stage.DEVICE_CATEGORY, System.nanoTime() - start, tried);
+	}
 
-				break;
+	/**
+	 * Examines the user agent string whether it is a browser.
+	 * 
+	 * @param userAgent
+	 *            String of an user agent
+	 * @param builder
+	 *            Builder for an user agent information
+	 * @return number of tried patterns
+	 */
+	private static int examineAsBrowser(final UserAgent.Builder builder, final Data data, final ParseContext context) {
+		final int evaluations = context.getEvaluations();
+		final Entry<BrowserPattern, Browser> entry = context.getEngine().find(data, data.getPatternToBrowserMap(), context);
+		if (entry != null) {
+			setBrowser(builder, entry.getValue(), context);
+
+			// try to get the browser version from the first subgroup
+			VersionNumber version = VersionNumber.UNKNOWN;
+			final String group = context.getFirstGroup();
+			if (group != null) {
+				version = VersionNumber.parseVersion(group);
 			}
+			builder.setVersionNumber(version);
 		}
+		return context.getEvaluations() - evaluations;
 	}
 
-	private static void examineAsBrowserEngine(final UserAgent.Builder builder, final Data data) {
-		Matcher matcher;
-		VersionNumber version = VersionNumber.UNKNOWN;
-
-		for (final Entry<BrowserEnginePattern, BrowserEngine> entry : data.getPatternToBrowserEngineMap().entrySet()) {
-			matcher = entry.getKey().getPattern().matcher(builder.getUserAgentString());
-			if (matcher.find()) {
-
-				// try to get the browser version from the first subgroup
-				if (matcher.groupCount() > ZERO_MATCHING_GROUPS) {
-					version = VersionNumber.parseVersion(matcher.group(1) != null ? matcher.group(1) : "");
-				}
-
-				builder.setBrowserEngine(entry.getValue(), version);
-				break;
+	private static int examineAsBrowserEngine(final UserAgent.Builder builder, final Data data, final ParseContext context) {
+		final int evaluations = context.getEvaluations();
+		final Entry<BrowserEnginePattern, BrowserEngine> entry = context.getEngine().find(data, data.getPatternToBrowserEngineMap(),
+				context);
+		if (entry != null) {
+
+			// try to get the browser version from the first subgroup
+			VersionNumber version = VersionNumber.UNKNOWN;
+			final String group = context.getFirstGroup();
+			if (group != null) {
+				version = VersionNumber.parseVersion(group);
 			}
+
+			builder.setBrowserEngine(entry.getValue(), version);
+			context.getMatches().setBrowserEngineId(entry.getValue().getId());
 		}
+		return context.getEvaluations() - evaluations;
 	}
 
 	/**
@@ -99,24 +198,14 @@ public abstract class AbstractUserAgentStringParser implements UserAgentStringPa
 	 *            String of an user agent
 	 * @param builder
 	 *            Builder for an user agent information
-	 * @return {@code true} if it is a robot, otherwise {@code false}
+	 * @return number of lookups in the table of robots
 	 */
-	private static boolean examineAsRobot(final UserAgent.Builder builder, final Data data) {
-		boolean isRobot = false;
-		VersionNumber version;
-		for (final Robot robot : data.getRobots()) {
-			if (robot.getUserAgentString().equals(builder.getUserAgentString())) {
-				isRobot = true;
-				robot.copyTo(builder);
-
-				// try to get the version from the last found group
-				version = VersionNumber.parseLastVersionNumber(robot.getName());
-				builder.setVersionNumber(version);
-
-				break;
-			}
+	private static int examineAsRobot(final UserAgent.Builder builder, final Data data, final ParseContext context) {
+		final Robot robot = data.getRobotTable().find(builder.getUserAgentString());
+		if (robot != null) {
+			setRobot(builder, robot, context);
 		}
-		return isRobot;
+		return 1;
 	}
 
 	/**
@@ -126,51 +215,48 @@ public abstract class AbstractUserAgentStringParser implements UserAgentStringPa
 	 *            String of an user agent
 	 * @param builder
 	 *            Builder for an user agent information
+	 * @return number of tried patterns
 	 */
-	private static void examineDeviceCategory(final UserAgent.Builder builder, final Data data) {
+	private static int examineDeviceCategory(final UserAgent.Builder builder, final Data data, final ParseContext context) {
 
 		// a robot will be classified as 'Other'
 		if (UserAgentType.ROBOT == builder.getType()) {
-			final DeviceCategory category = findDeviceCategoryByValue(Category.OTHER, data);
-			builder.setDeviceCategory(category);
-			return;
+			setDeviceCategory(builder, Category.OTHER, data, context);
+			return 0;
 		}
 
 		// classification depends on matching order
-		for (final Entry<DevicePattern, Device> entry : data.getPatternToDeviceMap().entrySet()) {
-			final Matcher matcher = entry.getKey().getPattern().matcher(builder.getUserAgentString());
-			if (matcher.find()) {
-				final Category category = Category.evaluate(entry.getValue().getName());
-				final DeviceCategory deviceCategory = findDeviceCategoryByValue(category, data);
-				builder.setDeviceCategory(deviceCategory);
-				return;
-			}
+		final int evaluations = context.getEvaluations();
+		final Entry<DevicePattern, Device> entry = context.getEngine().find(data, data.getPatternToDeviceMap(), context);
+		final int tried = context.getEvaluations() - evaluations;
+		if (entry != null) {
+			final Category category = Category.evaluate(entry.getValue().getName());
+			setDeviceCategory(builder, category, data, context);
+			return tried;
 		}
 
 		// an unknown user agent type should lead to an unknown device
 		if (UserAgentType.UNKNOWN == builder.getType()) {
 			builder.setDeviceCategory(DeviceCategory.EMPTY);
-			return;
+			return tried;
 		}
 
 		// if no pattern is available but the type is Other, Library, Validator or UA Anonymizer
 		// than classify it as 'Other'
 		if (UserAgentType.OTHER == builder.getType() || UserAgentType.LIBRARY == builder.getType()
 				|| UserAgentType.VALIDATOR == builder.getType() || UserAgentType.USERAGENT_ANONYMIZER == builder.getType()) {
-			final DeviceCategory category = findDeviceCategoryByValue(Category.OTHER, data);
-			builder.setDeviceCategory(category);
-			return;
+			setDeviceCategory(builder, Category.OTHER, data, context);
+			return tried;
 		}
 
 		// if no pattern is available but the type is a mobile or WAP browser than classify it as 'Smartphone'
 		if (UserAgentType.MOBILE_BROWSER == builder.getType() || UserAgentType.WAP_BROWSER == builder.getType()) {
-			final DeviceCategory category = findDeviceCategoryByValue(Category.SMARTPHONE, data);
-			builder.setDeviceCategory(category);
-			return;
+			setDeviceCategory(builder, Category.SMARTPHONE, data, context);
+			return tried;
 		}
 
-		final DeviceCategory category = findDeviceCategoryByValue(Category.PERSONAL_COMPUTER, data);
-		builder.setDeviceCategory(category);
+		setDeviceCategory(builder, Category.PERSONAL_COMPUTER, data, context);
+		return tried;
 	}
 
 	/**
@@ -180,26 +266,172 @@ public abstract class AbstractUserAgentStringParser implements UserAgentStringPa
 	 *            String of an user agent
 	 * @param builder
 	 *            Builder for an user agent information
+	 * @return number of tried patterns
 	 */
-	private static void examineOperatingSystem(final UserAgent.Builder builder, final Data data) {
+	private static int examineOperatingSystem(final UserAgent.Builder builder, final Data data, final ParseContext context) {
+		final int evaluations = context.getEvaluations();
 		if (net.sf.uadetector.OperatingSystem.EMPTY.equals(builder.getOperatingSystem())) {
-			for (final Entry<OperatingSystemPattern, OperatingSystem> entry : data.getPatternToOperatingSystemMap().entrySet()) {
-				final Matcher matcher = entry.getKey().getPattern().matcher(builder.getUserAgentString());
-				if (matcher.find()) {
-					entry.getValue().copyTo(builder);
-					break;
-				}
+			final Entry<OperatingSystemPattern, OperatingSystem> entry = context.getEngine().find(data,
+					data.getPatternToOperatingSystemMap(), context);
+			if (entry != null) {
+				entry.getValue().copyTo(builder);
+				context.getMatches().setOperatingSystemId(entry.getValue().getId());
 			}
 		}
+		return context.getEvaluations() - evaluations;
 	}
 
-	private static DeviceCategory findDeviceCategoryByValue(@Nonnull final Category category, @Nonnull final Data data) {
+	/**
+	 * Finds the first device of the given category.
+	 * 
+	 * @param category
+	 *            category of a device
+	 * @param data
+	 *            <em>UAS data</em> to search in
+	 * @return the first device of the category or {@code null} if the data contain no such device
+	 */
+	@Nullable
+	static Device findDeviceByCategory(@Nonnull final Category category, @Nonnull final Data data) {
 		for (final Device device : data.getDevices()) {
 			if (category == device.getCategory()) {
-				return new DeviceCategory(category, device.getIcon(), device.getInfoUrl(), device.getName());
+				return device;
 			}
 		}
-		return DeviceCategory.EMPTY;
+		return null;
+	}
+
+	/**
+	 * Takes over the information of the given browser and the operating system it is mapped to.
+	 */
+	private static void setBrowser(@Nonnull final UserAgent.Builder builder, @Nonnull final Browser browser,
+			@Nonnull final ParseContext context) {
+		browser.copyTo(builder);
+		context.getMatches().setBrowserId(browser.getId());
+		if (browser.getOperatingSystem() != null) {
+			context.getMatches().setOperatingSystemId(browser.getOperatingSystem().getId());
+		}
+	}
+
+	/**
+	 * Sets the device category which is described by the first device of the given category or
+	 * {@link DeviceCategory#EMPTY} if the <em>UAS data</em> contain no such device.
+	 */
+	private static void setDeviceCategory(@Nonnull final UserAgent.Builder builder, @Nonnull final Category category,
+			@Nonnull final Data data, @Nonnull final ParseContext context) {
+		final Device device = findDeviceByCategory(category, data);
+		if (device != null) {
+			builder.setDeviceCategory(new DeviceCategory(category, device.getIcon(), device.getInfoUrl(), device.getName()));
+			context.getMatches().setDeviceId(device.getId());
+		} else {
+			builder.setDeviceCategory(DeviceCategory.EMPTY);
+		}
+	}
+
+	/**
+	 * Takes over the given operating system which belongs to the platform of the passed hints. Its name will be taken
+	 * from the hints, unless the operating system is named like its family, and its version always.
+	 */
+	private static void setOperatingSystem(@Nonnull final UserAgent.Builder builder, @Nonnull final OperatingSystem operatingSystem,
+			@Nonnull final ClientHints hints, @Nonnull final ParseContext context) {
+		final OperatingSystemFamily platform = hints.getOperatingSystemFamily();
+		final VersionNumber version = VersionNumber.parseVersion(hints.getPlatformVersion());
+		if (operatingSystem.getName().equals(operatingSystem.getFamily())) {
+			operatingSystem.copyTo(builder, version);
+			context.getMatches().setOperatingSystemId(operatingSystem.getId());
+		} else {
+			builder.setOperatingSystem(new net.sf.uadetector.OperatingSystem(platform, operatingSystem.getFamily(), operatingSystem
+					.getIcon(), hints.getPlatform(), operatingSystem.getProducer(), operatingSystem.getProducerUrl(), operatingSystem
+					.getUrl(), version));
+		}
+	}
+
+	/**
+	 * Takes over the information of the given robot which matched the user agent string.
+	 */
+	private static void setRobot(@Nonnull final UserAgent.Builder builder, @Nonnull final Robot robot,
+			@Nonnull final ParseContext context) {
+		robot.copyTo(builder);
+		context.getMatches().setRobotId(robot.getId());
+
+		// try to get the version from the last found group
+		builder.setVersionNumber(VersionNumber.parseLastVersionNumber(robot.getName()));
+	}
+
+	/**
+	 * Number of parsings which have been aborted because their budget was exhausted
+	 */
+	private final AtomicLong abortedParseCount = new AtomicLong();
+
+	/**
+	 * Browsers and operating systems of the <em>UAS data</em> by their families, which are looked up for User-Agent
+	 * Client Hints
+	 */
+	private final FamilyIndex families = new FamilyIndex();
+
+	/**
+	 * Budget which limits the pattern matching of every parsing or {@code null} to parse without limits
+	 */
+	@Nullable
+	private volatile ParseBudget budget;
+
+	/**
+	 * Interner which shares equal results and their parts or {@code null} to return every result as it is
+	 */
+	@Nullable
+	private volatile UserAgentInterner interner;
+
+	/**
+	 * <em>UAS data</em> with which the results of the interner have been parsed
+	 */
+	@Nullable
+	private volatile Data internedData;
+
+	/**
+	 * Whether case-insensitive patterns will be evaluated against the user agent string in lower case
+	 */
+	private volatile boolean lowerCaseMatching;
+
+	/**
+	 * Engine which finds the first matching pattern of a stage or {@code null} to scan the patterns in order
+	 */
+	@Nullable
+	private volatile MatchingEngine matchingEngine;
+
+	/**
+	 * Metrics to record during parsing or {@code null} to parse without instrumentation
+	 */
+	@Nullable
+	private volatile ParserMetrics metrics;
+
+	/**
+	 * Normalizer which preprocesses every user agent string or {@code null} to parse the strings as they are
+	 */
+	@Nullable
+	private volatile UserAgentNormalizer normalizer;
+
+	/**
+	 * Profiler to record the costs of every pattern or {@code null} to parse without profiling
+	 */
+	@Nullable
+	private volatile PatternProfiler profiler;
+
+	/**
+	 * Gets the number of parsings which have been aborted because their budget was exhausted.
+	 * 
+	 * @return number of aborted parsings
+	 */
+	public long getAbortedParseCount() {
+		return abortedParseCount.get();
+	}
+
+	/**
+	 * Gets the budget which limits the pattern matching of every parsing.
+	 * 
+	 * @return budget or {@code null} if parsing is not limited
+	 */
+	@Nullable
+	public ParseBudget getBudget() {
+		return budget;
 	}
 
 	/**
@@ -214,20 +446,399 @@ public abstract class AbstractUserAgentStringParser implements UserAgentStringPa
 		return getDataStore().getData().getVersion();
 	}
 
+	/**
+	 * Gets the interner which shares equal results and their parts.
+	 * 
+	 * @return interner or {@code null} if every result will be returned as it is
+	 */
+	@Nullable
+	public UserAgentInterner getInterner() {
+		return interner;
+	}
+
+	/**
+	 * Gets the engine which finds the first matching pattern of every stage.
+	 * 
+	 * @return matching engine or {@code null} if the patterns will be scanned in order
+	 */
+	@Nullable
+	public MatchingEngine getMatchingEngine() {
+		return matchingEngine;
+	}
+
+	/**
+	 * Gets the metrics which will be recorded during parsing.
+	 * 
+	 * @return metrics or {@code null} if the instrumentation is disabled
+	 */
+	@Nullable
+	public ParserMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Gets the normalizer which preprocesses every user agent string before parsing.
+	 * 
+	 * @return normalizer or {@code null} if the user agent strings will be parsed as they are
+	 */
+	@Nullable
+	public UserAgentNormalizer getNormalizer() {
+		return normalizer;
+	}
+
+	/**
+	 * Gets the profiler which records the costs of every evaluated pattern.
+	 * 
+	 * @return profiler or {@code null} if profiling is disabled
+	 */
+	@Nullable
+	public PatternProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Returns the interned instance of the given result, if an interner is set. The interner will be cleared as soon as
+	 * the result has been parsed with another version of the <em>UAS data</em> than the results before.
+	 */
+	@Nonnull
+	private UserAgent intern(@Nonnull final UserAgent result, @Nonnull final Data data) {
+		final UserAgentInterner currentInterner = interner;
+		if (currentInterner == null) {
+			return result;
+		}
+		if (internedData != data) {
+			internedData = data;
+			currentInterner.clear();
+		}
+		return currentInterner.intern(result);
+	}
+
+	/**
+	 * Checks whether case-insensitive patterns will be evaluated against the user agent string in lower case.
+	 * 
+	 * @return {@code true} if the lower case matching is enabled, otherwise {@code false}
+	 */
+	public boolean isLowerCaseMatching() {
+		return lowerCaseMatching;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If a budget is set and exhausted during parsing, the analysis will be aborted and the information found so far
+	 * will be returned (for example an unknown user agent if the browser could not be determined).
+	 * <p>
+	 * If a normalizer is set, the normalized user agent string will be parsed instead of the given one.
+	 * <p>
+	 * If an interner is set, the returned result is the interned instance which equals the result.
+	 */
 	@Override
 	public UserAgent parse(final String userAgent) {
-		final UserAgent.Builder builder = new UserAgent.Builder(userAgent);
+		// work during the analysis always with the same reference of data
+		return parse(userAgent, getDataStore().getData(), null);
+	}
+
+	/**
+	 * Parses the given user agent string with the passed <em>UAS data</em> like {@link #parse(String)} and records the
+	 * IDs of the matched entries and whether the parsing has been aborted.
+	 * 
+	 * @param userAgent
+	 *            user agent string to parse
+	 * @param data
+	 *            <em>UAS data</em> to work with during the whole analysis
+	 * @param matches
+	 *            receives the IDs of the matched entries and the abort of the parsing or {@code null}
+	 * @return information about the user agent
+	 */
+	@Nonnull
+	UserAgent parse(final String userAgent, @Nonnull final Data data, @Nullable final MatchedEntries matches) {
+		return intern(analyze(userAgent, data, matches != null ? matches : new MatchedEntries()).build(), data);
+	}
+
+	/**
+	 * Parses the given bytes of a user agent string like {@link #parse(String)}. The bytes are interpreted as ASCII or
+	 * ISO-8859-1, as HTTP header values are transmitted.
+	 * 
+	 * @param userAgent
+	 *            array which contains the bytes of a user agent string
+	 * @param offset
+	 *            index of the first byte of the user agent string
+	 * @param length
+	 *            number of bytes of the user agent string
+	 * @return information about the user agent
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given array is {@code null}
+	 * @throws IndexOutOfBoundsException
+	 *             if the given range is not within the array
+	 * @see #parse(ByteBuffer)
+	 */
+	@Nonnull
+	public UserAgent parse(@Nonnull final byte[] userAgent, @Nonnegative final int offset, @Nonnegative final int length) {
+		Check.notNull(userAgent, "userAgent");
+		return parse(ByteBuffer.wrap(userAgent, offset, length));
+	}
+
+	/**
+	 * Parses the remaining bytes of the given buffer like {@link #parse(String)}, without changing the position of the
+	 * buffer. The bytes are interpreted as ASCII or ISO-8859-1, as HTTP header values are transmitted.
+	 * <p>
+	 * Robots are looked up directly on the bytes, so that the user agent string will only be decoded if the patterns
+	 * have to be evaluated. If a normalizer or metrics are set, the bytes are decoded first and parsed as usual.
+	 * 
+	 * @param userAgent
+	 *            buffer which contains the bytes of a user agent string between its position and limit
+	 * @return information about the user agent
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given buffer is {@code null}
+	 */
+	@Nonnull
+	public UserAgent parse(@Nonnull final ByteBuffer userAgent) {
+		Check.notNull(userAgent, "userAgent");
 
 		// work during the analysis always with the same reference of data
 		final Data data = getDataStore().getData();
+		if (normalizer == null && metrics == null) {
+			final int position = data.getRobotTable().findPosition(userAgent);
+			if (position >= 0) {
+				final UserAgent.Builder builder = new UserAgent.Builder();
+				final ParseContext context = new ParseContext("");
+				setRobot(builder, data.getRobotTable().get(position), context);
+				setDeviceCategory(builder, Category.OTHER, data, context);
+				return intern(builder.build(), data);
+			}
+		}
+		return parse(decode(userAgent), data, null);
+	}
 
-		if (!examineAsRobot(builder, data)) {
-			examineAsBrowser(builder, data);
-			examineAsBrowserEngine(builder, data);
-			examineOperatingSystem(builder, data);
+	/**
+	 * Parses the given character sequence like {@link #parse(String)}. The sequence is converted to a string once, as
+	 * robots and patterns are evaluated against it multiple times.
+	 * 
+	 * @param userAgent
+	 *            character sequence of a user agent string
+	 * @return information about the user agent
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public UserAgent parse(@Nonnull final CharSequence userAgent) {
+		Check.notNull(userAgent, "userAgent");
+		return parse(userAgent.toString());
+	}
+
+	/**
+	 * Parses the User-Agent Client Hints of the given header fields ({@code Sec-CH-UA}, {@code Sec-CH-UA-Mobile},
+	 * {@code Sec-CH-UA-Platform} and {@code Sec-CH-UA-Platform-Version}) and takes the user agent string of the header
+	 * field {@code User-Agent} only for the information which is missing in the hints. The names of the header fields
+	 * are compared case-insensitive.
+	 * <p>
+	 * A user agent string which is known as a robot will be parsed like {@link #parse(String)}, whatever the hints say.
+	 * Otherwise, if the hints name a known brand and whether the device is mobile, the browser, its engine and the
+	 * device category will be taken from the hints without evaluating any pattern:
+	 * <ul>
+	 * <li>the version of the browser from {@code Sec-CH-UA-Full-Version-List} or {@code Sec-CH-UA-Full-Version}, if
+	 * hinted, otherwise the significant version of {@code Sec-CH-UA},</li>
+	 * <li>the browser engine Blink (every browser which sends hints is based on Chromium) with the version of the brand
+	 * {@code Chromium},</li>
+	 * <li>the operating system of the <em>UAS data</em> which belongs to {@code Sec-CH-UA-Platform}.</li>
+	 * </ul>
+	 * Only if the platform is unknown or the data contain no such browser engine, the patterns of the missing stage
+	 * will be evaluated against the user agent string. If the hints are insufficient, or if a normalizer or metrics are
+	 * set, the user agent string will be parsed like {@link #parse(String)}.
+	 * 
+	 * @param headers
+	 *            header fields of a request by their names
+	 * @return information about the user agent
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public UserAgent parse(@Nonnull final Map<String, String> headers) {
+		Check.notNull(headers, "headers");
+		final String header = ClientHints.getHeader(headers, ClientHints.USER_AGENT);
+		final String userAgent = header != null ? header : "";
+
+		// work during the analysis always with the same reference of data
+		final Data data = getDataStore().getData();
+		final ClientHints hints = ClientHints.parse(headers);
+		final UserAgentFamily family = hints != null ? hints.getFamily() : null;
+		final Browser browser = family != null ? families.findBrowser(family, data) : null;
+		if (browser == null || normalizer != null || metrics != null || data.getRobotTable().findPosition(userAgent) >= 0) {
+			return parse(userAgent, data, null);
 		}
-		examineDeviceCategory(builder, data);
-		return builder.build();
+
+		final UserAgent.Builder builder = new UserAgent.Builder(userAgent);
+		final ParseContext context = ParseContext.create(userAgent, budget, lowerCaseMatching, profiler, matchingEngine,
+				new MatchedEntries());
+		setBrowser(builder, browser, context);
+		final String fullVersion = hints.getFullVersion();
+		builder.setVersionNumber(VersionNumber.parseVersion(fullVersion != null ? fullVersion : hints.getVersion()));
+		final BrowserEngine browserEngine = families.findBrowserEngine(BrowserEngineFamily.BLINK, data);
+		if (browserEngine != null) {
+			builder.setBrowserEngine(browserEngine, VersionNumber.parseVersion(hints.getEngineVersion()));
+			context.getMatches().setBrowserEngineId(browserEngine.getId());
+		}
+		final OperatingSystemFamily platform = hints.getOperatingSystemFamily();
+		final OperatingSystem operatingSystem = OperatingSystemFamily.UNKNOWN != platform ? families.findOperatingSystem(platform,
+				data) : null;
+		if (operatingSystem != null) {
+			setOperatingSystem(builder, operatingSystem, hints, context);
+		} else if (OperatingSystemFamily.UNKNOWN != platform) {
+			builder.setOperatingSystem(new net.sf.uadetector.OperatingSystem(platform, platform.getName(), "", hints.getPlatform(), "",
+					"", "", VersionNumber.parseVersion(hints.getPlatformVersion())));
+		}
+		try {
+			if (browserEngine == null) {
+				examineAsBrowserEngine(builder, data, context);
+			}
+			if (OperatingSystemFamily.UNKNOWN == platform) {
+				examineOperatingSystem(builder, data, context);
+			}
+		} catch (final GuardedCharSequence.BudgetExceededException e) {
+			abortedParseCount.incrementAndGet();
+			context.getMatches().setAborted(true);
+		}
+		setDeviceCategory(builder, hints.getDeviceCategory(), data, context);
+		return intern(builder.build(), data);
+	}
+
+	/**
+	 * Parses the given user agent string like {@link #parse(String)}, but returns only the IDs of the matched entries of
+	 * the <em>UAS data</em> and the packed version numbers. The full result can be restored with a
+	 * {@link CompactUserAgentResolver} as long as the data have not been updated.
+	 * 
+	 * @param userAgent
+	 *            user agent string to parse
+	 * @return compact information about the user agent
+	 */
+	@Nonnull
+	public CompactUserAgent parseCompact(final String userAgent) {
+		final MatchedEntries matches = new MatchedEntries();
+		return CompactUserAgent.encode(matches, analyze(userAgent, getDataStore().getData(), matches));
+	}
+
+	/**
+	 * Analyzes the given user agent string with all settings of this parser.
+	 * 
+	 * @return builder which holds the information about the user agent
+	 */
+	@Nonnull
+	private UserAgent.Builder analyze(final String userAgent, @Nonnull final Data data, @Nonnull final MatchedEntries matches) {
+		final UserAgentNormalizer currentNormalizer = normalizer;
+		final String input = currentNormalizer != null && userAgent != null ? currentNormalizer.normalize(userAgent) : userAgent;
+
+		final ParserMetrics currentMetrics = metrics;
+		final PatternProfiler currentProfiler = profiler;
+		final ParseBudget currentBudget = budget;
+		final boolean currentLowerCaseMatching = lowerCaseMatching;
+		final MatchingEngine currentMatchingEngine = matchingEngine;
+		final UserAgent.Builder builder = new UserAgent.Builder(input);
+		if (currentMetrics == null && currentProfiler == null && currentBudget == null && !currentLowerCaseMatching
+				&& currentMatchingEngine == null) {
+			examine(builder, data, new ParseContext(input, matches), null);
+			return builder;
+		}
+
+		try {
+			examine(builder, data,
+					ParseContext.create(input, currentBudget, currentLowerCaseMatching, currentProfiler, currentMatchingEngine, matches),
+					currentMetrics);
+		} catch (final GuardedCharSequence.BudgetExceededException e) {
+			abortedParseCount.incrementAndGet();
+			matches.setAborted(true);
+			if (currentMetrics != null) {
+				currentMetrics.recordAbort();
+			}
+		}
+		if (currentMetrics != null) {
+			currentMetrics.recordParse(UserAgentType.UNKNOWN == builder.getType());
+		}
+		return builder;
+	}
+
+	/**
+	 * Limits the pattern matching of every parsing of this parser. A parsing which exhausts the given budget will be
+	 * aborted and counted (see {@link #getAbortedParseCount()}).
+	 * 
+	 * @param budget
+	 *            budget of every parsing or {@code null} to parse without limits
+	 */
+	public void setBudget(@Nullable final ParseBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Sets the interner which shares equal results and their parts, so that the results held by a cache (see
+	 * {@link CachingUserAgentStringParser}) occupy only one instance per distinct value. The interner will be cleared
+	 * as soon as this parser works with an updated version of the <em>UAS data</em>.
+	 * 
+	 * @param interner
+	 *            interner to use or {@code null} to return every result as it is
+	 */
+	public void setInterner(@Nullable final UserAgentInterner interner) {
+		this.interner = interner;
+	}
+
+	/**
+	 * Enables or disables the lower case matching. If enabled, the user agent string will be converted once per parsing
+	 * into lower case and all case-insensitive patterns, which could be rewritten into a case-sensitive lower case
+	 * form when the <em>UAS data</em> were loaded, will be evaluated against it. This avoids the case folding of the
+	 * regular expression engine on every comparison. The versions are still taken from the original user agent string.
+	 * 
+	 * @param lowerCaseMatching
+	 *            {@code true} to enable the lower case matching, otherwise {@code false}
+	 */
+	public void setLowerCaseMatching(final boolean lowerCaseMatching) {
+		this.lowerCaseMatching = lowerCaseMatching;
+	}
+
+	/**
+	 * Sets the engine which finds the first matching pattern of every stage. All engines lead to the same results, they
+	 * differ only in their costs. An engine with an index (see {@link MatchingEngine#createLiteralIndex()}) compiles it
+	 * during the first parsing after the <em>UAS data</em> have been loaded or updated, or already during the warm-up of
+	 * updated data, if this parser has been passed to {@link CorpusDataWarmUp#setParser(AbstractUserAgentStringParser)}.
+	 * 
+	 * @param matchingEngine
+	 *            engine to use or {@code null} to scan the patterns in order
+	 */
+	public void setMatchingEngine(@Nullable final MatchingEngine matchingEngine) {
+		this.matchingEngine = matchingEngine;
+	}
+
+	/**
+	 * Enables or disables the instrumentation of this parser. If the data store of this parser is refreshable, the
+	 * outcomes of its background updates will be published with the given metrics too.
+	 * 
+	 * @param metrics
+	 *            metrics to record or {@code null} to disable the instrumentation
+	 */
+	public void setMetrics(@Nullable final ParserMetrics metrics) {
+		if (metrics != null && getDataStore() instanceof RefreshableDataStore) {
+			final UpdateOperation operation = ((RefreshableDataStore) getDataStore()).getUpdateOperation();
+			metrics.setUpdateOperation(operation instanceof AbstractUpdateOperation ? (AbstractUpdateOperation) operation : null);
+		}
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets the normalizer which preprocesses every user agent string before parsing, so that the costs of a parsing are
+	 * bounded by the maximum length of the normalizer.
+	 * 
+	 * @param normalizer
+	 *            normalizer to use or {@code null} to parse the user agent strings as they are
+	 */
+	public void setNormalizer(@Nullable final UserAgentNormalizer normalizer) {
+		this.normalizer = normalizer;
+	}
+
+	/**
+	 * Enables or disables the profiling of every pattern evaluation of this parser.
+	 * 
+	 * @param profiler
+	 *            profiler to record the costs of every pattern or {@code null} to disable profiling
+	 */
+	public void setProfiler(@Nullable final PatternProfiler profiler) {
+		this.profiler = profiler;
 	}
 
 	@Override
@@ -235,4 +846,25 @@ public abstract class AbstractUserAgentStringParser implements UserAgentStringPa
 		// nothing to shutdown
 	}
 
+	/**
+	 * Examines the given user agent string with the passed <em>UAS data</em> like this parser would do it, but without
+	 * recording anything in the metrics, the profiler, the interner or the number of aborted parsings. So the matching
+	 * engine of this parser compiles its index for new data before they will be published.
+	 * 
+	 * @param userAgent
+	 *            user agent string to examine
+	 * @param data
+	 *            <em>UAS data</em> which are not yet published
+	 */
+	void warmUp(@Nonnull final String userAgent, @Nonnull final Data data) {
+		final UserAgentNormalizer currentNormalizer = normalizer;
+		final String input = currentNormalizer != null ? currentNormalizer.normalize(userAgent) : userAgent;
+		try {
+			examine(new UserAgent.Builder(input), data,
+					ParseContext.create(input, budget, lowerCaseMatching, null, matchingEngine, new MatchedEntries()), null);
+		} catch (final GuardedCharSequence.BudgetExceededException e) {
+			// an aborted warm-up will not be counted as an aborted parsing
+		}
+	}
+
 }
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.util.ExecutorServices;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This parser is available immediately after construction, while the actual parser (and therefore the <em>UAS
+ * data</em>) will be loaded in background. The progress of the loading can be observed with the future returned by
+ * {@link #getReadiness()}.
+ * <p>
+ * As long as the data are not loaded, a call of {@link #parse(String)} waits at most the configured timeout. If the
+ * parser is still not available afterwards (or the timeout is {@code 0}), {@link UserAgent#EMPTY} will be returned.
+ */
+@ThreadSafe
+public final class AsyncUserAgentStringParser implements UserAgentStringParser {
+
+	/**
+	 * Corresponding default logger of this class
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncUserAgentStringParser.class);
+
+	/**
+	 * Message for the log if the parser could not be loaded
+	 */
+	private static final String MSG_LOADING_FAILED = "The user agent string parser could not be loaded: %s";
+
+	/**
+	 * The parser as soon as it is loaded, otherwise {@code null}
+	 */
+	@Nullable
+	private volatile UserAgentStringParser delegate;
+
+	/**
+	 * Guards the publication of the loaded parser against a concurrent shutdown
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Whether this parser has been shut down
+	 */
+	@GuardedBy("lock")
+	private boolean shutdown;
+
+	/**
+	 * {@link ExecutorService} to load the parser in background
+	 */
+	private final ExecutorService executorService = ExecutorServices.createBackgroundExecutor();
+
+	/**
+	 * Loading of the parser which signals its readiness
+	 */
+	@Nonnull
+	private final FutureTask<UserAgentStringParser> readiness;
+
+	/**
+	 * Maximum time in nanoseconds to wait for the parser during parsing
+	 */
+	@Nonnegative
+	private final long timeout;
+
+	/**
+	 * Constructs an {@code AsyncUserAgentStringParser} which starts immediately to load the parser in background. Until
+	 * the parser is loaded every call of {@link #parse(String)} returns {@link UserAgent#EMPTY} without waiting.
+	 * 
+	 * @param loader
+	 *            creates the parser to which will be delegated as soon as it is available
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	public AsyncUserAgentStringParser(@Nonnull final Callable<? extends UserAgentStringParser> loader) {
+		this(loader, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Constructs an {@code AsyncUserAgentStringParser} which starts immediately to load the parser in background. Until
+	 * the parser is loaded every call of {@link #parse(String)} blocks at most the given timeout and returns
+	 * {@link UserAgent#EMPTY} if the parser is still not available.
+	 * 
+	 * @param loader
+	 *            creates the parser to which will be delegated as soon as it is available
+	 * @param timeout
+	 *            maximum time to wait for the parser during parsing ({@code 0} means not to wait)
+	 * @param unit
+	 *            unit of the given timeout
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if one of the given arguments is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalNegativeArgumentException
+	 *             if the given timeout is negative
+	 */
+	public AsyncUserAgentStringParser(@Nonnull final Callable<? extends UserAgentStringParser> loader, @Nonnegative final long timeout,
+			@Nonnull final TimeUnit unit) {
+		Check.notNull(loader, "loader");
+		Check.notNegative(timeout, "timeout");
+		Check.notNull(unit, "unit");
+
+		this.timeout = unit.toNanos(timeout);
+		readiness = new FutureTask<UserAgentStringParser>(new Callable<UserAgentStringParser>() {
+			@Override
+			public UserAgentStringParser call() throws Exception {
+				final UserAgentStringParser parser = Check.notNull(loader.call(), "loader.call()");
+				synchronized (lock) {
+					if (!shutdown) {
+						// publish before the future completes, so that waiting threads see the parser immediately
+						delegate = parser;
+						return parser;
+					}
+				}
+
+				// the loader ignored the interruption and finished after this parser has been shut down
+				LOG.debug("The user agent string parser has been loaded after shutdown and will be shut down immediately.");
+				parser.shutdown();
+				return null;
+			}
+		}) {
+			@Override
+			protected void done() {
+				await(this, 0);
+				executorService.shutdown();
+			}
+		};
+		executorService.execute(readiness);
+	}
+
+	/**
+	 * Returns the loaded parser or {@code null} if it is not available within the given time.
+	 * 
+	 * @param future
+	 *            loading of the parser
+	 * @param nanos
+	 *            time in nanoseconds to wait at most
+	 * @return the loaded parser or {@code null}
+	 */
+	@Nullable
+	private static UserAgentStringParser await(@Nonnull final Future<UserAgentStringParser> future, @Nonnegative final long nanos) {
+		UserAgentStringParser parser = null;
+		try {
+			if (future.isDone()) {
+				parser = future.get();
+			} else if (nanos > 0) {
+				parser = future.get(nanos, TimeUnit.NANOSECONDS);
+			}
+		} catch (final TimeoutException e) {
+			LOG.debug("The user agent string parser is not ready yet.");
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final ExecutionException e) {
+			LOG.warn(String.format(MSG_LOADING_FAILED, e.getCause().getLocalizedMessage()), e.getCause());
+		} catch (final CancellationException e) {
+			LOG.debug("Loading of the user agent string parser has been cancelled.");
+		}
+		return parser;
+	}
+
+	/**
+	 * Returns the version of the loaded <em>UAS data</em> or an empty string if the data are not loaded yet.
+	 */
+	@Override
+	public String getDataVersion() {
+		final UserAgentStringParser parser = delegate;
+		return parser != null ? parser.getDataVersion() : Data.EMPTY.getVersion();
+	}
+
+	/**
+	 * Gets the future which completes as soon as the parser is ready to use.
+	 * 
+	 * @return readiness of this parser
+	 */
+	@Nonnull
+	public Future<UserAgentStringParser> getReadiness() {
+		return readiness;
+	}
+
+	/**
+	 * Checks whether the parser has been loaded and is ready to use.
+	 * 
+	 * @return {@code true} if the parser is loaded, otherwise {@code false}
+	 */
+	public boolean isReady() {
+		return delegate != null;
+	}
+
+	@Override
+	public ReadableUserAgent parse(final String userAgent) {
+		UserAgentStringParser parser = delegate;
+		if (parser == null && !readiness.isDone()) {
+			parser = await(readiness, timeout);
+		}
+		return parser != null ? parser.parse(userAgent) : UserAgent.EMPTY;
+	}
+
+	/**
+	 * Cancels the loading if it is still in progress and shuts down the loaded parser. A parser which is loaded after the
+	 * shutdown (because the loader does not respond to the interruption) will be shut down as soon as it is available.
+	 */
+	@Override
+	@PreDestroy
+	public void shutdown() {
+		final UserAgentStringParser parser;
+		synchronized (lock) {
+			shutdown = true;
+			parser = delegate;
+		}
+		readiness.cancel(true);
+		ExecutorServices.shutdown(executorService);
+		if (parser != null) {
+			parser.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,481 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.internal.data.Data;
+
+/**
+ * Caches the results of another parser in a bounded map, in which the least recently used entries will be evicted
+ * first. The cached results belong to the <em>UAS data</em> with which they have been parsed, a result of an earlier
+ * version of the data will not be returned after an update.
+ * <p>
+ * With a {@link UserAgentCanonicalizer} user agent strings which differ only in parts that no pattern looks at share
+ * one entry. A canonical key will be trusted not until the parsing of the key led to the same result as the parsing of
+ * the user agent string which created the entry. Afterwards every n-th hit of a canonical key will be compared with the
+ * result of the original user agent string again. As soon as a result differs, the key will be rejected for the current
+ * <em>UAS data</em> and the user agent strings which map to it will be cached as they are.
+ * <p>
+ * Results of parsings which have been aborted, because they exhausted the budget of the parser (see
+ * {@link AbstractUserAgentStringParser#setBudget(ParseBudget)}), may be incomplete and will never be cached.
+ * <p>
+ * The most recently used results can be written into a snapshot (see {@link #writeSnapshot(OutputStream, int)}), which
+ * fills the cache after a restart (see {@link #readSnapshot(InputStream)}) if the parser works still with the same
+ * version of the <em>UAS data</em>.
+ */
+@ThreadSafe
+public final class CachingUserAgentStringParser implements UserAgentStringParser {
+
+	/**
+	 * Entry of the cache
+	 */
+	private static final class CachedResult {
+
+		/**
+		 * <em>UAS data</em> with which the result has been parsed
+		 */
+		@Nonnull
+		private final Data data;
+
+		/**
+		 * Number of hits of a canonical key
+		 */
+		private final AtomicLong hits = new AtomicLong();
+
+		/**
+		 * Result of the parsing or {@code null} if the canonical key has been rejected
+		 */
+		@Nullable
+		private final ReadableUserAgent result;
+
+		CachedResult(@Nonnull final Data data, @Nullable final ReadableUserAgent result) {
+			this.data = data;
+			this.result = result;
+		}
+
+	}
+
+	/**
+	 * Default maximum number of cached results
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	/**
+	 * Default rate of hits of a canonical key which will be compared with the result of the original user agent string
+	 */
+	public static final int DEFAULT_SAMPLE_RATE = 64;
+
+	/**
+	 * Cached results by user agent string or canonical key
+	 */
+	@GuardedBy("cache")
+	private final Map<String, CachedResult> cache;
+
+	/**
+	 * Canonicalizer of the user agent strings or {@code null} to cache every user agent string as it is
+	 */
+	@Nullable
+	private final UserAgentCanonicalizer canonicalizer;
+
+	/**
+	 * Parser to which will be delegated on a cache miss
+	 */
+	@Nonnull
+	private final AbstractUserAgentStringParser delegate;
+
+	/**
+	 * Number of answers from the cache
+	 */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/**
+	 * Maximum number of cached results
+	 */
+	@Nonnegative
+	private final int maximumSize;
+
+	/**
+	 * Number of parsings by the delegate because of a cache miss
+	 */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Number of canonical keys which have been rejected, because their result differed
+	 */
+	private final AtomicLong rejectedKeyCount = new AtomicLong();
+
+	/**
+	 * Rate of hits of a canonical key which will be compared with the result of the original user agent string
+	 */
+	@Nonnegative
+	private final int sampleRate;
+
+	/**
+	 * Constructs a cache for the results of the given parser, which caches every user agent string as it is.
+	 * 
+	 * @param delegate
+	 *            parser to which will be delegated on a cache miss
+	 * @param maximumSize
+	 *            maximum number of cached results
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given parser is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given size is not greater than {@code 0}
+	 */
+	public CachingUserAgentStringParser(@Nonnull final AbstractUserAgentStringParser delegate, @Nonnegative final int maximumSize) {
+		this(delegate, maximumSize, null, DEFAULT_SAMPLE_RATE);
+	}
+
+	/**
+	 * Constructs a cache for the results of the given parser.
+	 * 
+	 * @param delegate
+	 *            parser to which will be delegated on a cache miss
+	 * @param maximumSize
+	 *            maximum number of cached results
+	 * @param canonicalizer
+	 *            canonicalizer of the cache keys or {@code null} to cache every user agent string as it is
+	 * @param sampleRate
+	 *            rate of hits of a canonical key which will be compared with the result of the original user agent
+	 *            string ({@code 1} compares every hit)
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given parser is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given size or sample rate is not greater than {@code 0}
+	 */
+	public CachingUserAgentStringParser(@Nonnull final AbstractUserAgentStringParser delegate, @Nonnegative final int maximumSize,
+			@Nullable final UserAgentCanonicalizer canonicalizer, @Nonnegative final int sampleRate) {
+		Check.notNull(delegate, "delegate");
+		Check.stateIsTrue(maximumSize > 0, "Argument 'maximumSize' must be greater than 0, but was %s.", maximumSize);
+		Check.stateIsTrue(sampleRate > 0, "Argument 'sampleRate' must be greater than 0, but was %s.", sampleRate);
+		this.delegate = delegate;
+		this.maximumSize = maximumSize;
+		this.canonicalizer = canonicalizer;
+		this.sampleRate = sampleRate;
+		cache = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CachedResult> eldest) {
+				return size() > CachingUserAgentStringParser.this.maximumSize;
+			}
+		};
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Gets the cached entry of the given key, if it has been parsed with the given <em>UAS data</em>.
+	 */
+	@Nullable
+	private CachedResult get(@Nonnull final String key, @Nonnull final Data data) {
+		final CachedResult entry;
+		synchronized (cache) {
+			entry = cache.get(key);
+		}
+		return entry != null && entry.data == data ? entry : null;
+	}
+
+	/**
+	 * Gets the canonicalizer of the cache keys.
+	 * 
+	 * @return canonicalizer or {@code null} if every user agent string will be cached as it is
+	 */
+	@Nullable
+	public UserAgentCanonicalizer getCanonicalizer() {
+		return canonicalizer;
+	}
+
+	@Override
+	public String getDataVersion() {
+		return delegate.getDataVersion();
+	}
+
+	/**
+	 * Gets the parser to which will be delegated on a cache miss.
+	 * 
+	 * @return the parser whose results will be cached
+	 */
+	@Nonnull
+	public AbstractUserAgentStringParser getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Gets the number of answers from the cache.
+	 * 
+	 * @return number of cache hits
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Gets the maximum number of cached results.
+	 * 
+	 * @return maximum size of the cache
+	 */
+	@Nonnegative
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Gets the number of user agent strings which have not been answered from the cache.
+	 * 
+	 * @return number of cache misses
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Gets the number of canonical keys which have been rejected, because the result of a user agent string differed
+	 * from the cached result of its canonical key.
+	 * 
+	 * @return number of rejected keys
+	 */
+	public long getRejectedKeyCount() {
+		return rejectedKeyCount.get();
+	}
+
+	/**
+	 * Gets the rate of hits of a canonical key which will be compared with the result of the original user agent string.
+	 * 
+	 * @return sample rate
+	 */
+	@Nonnegative
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Gets the number of cached entries (including rejected canonical keys).
+	 * 
+	 * @return size of the cache
+	 */
+	@Nonnegative
+	public int getSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	@Override
+	public ReadableUserAgent parse(final String userAgent) {
+		if (userAgent == null) {
+			return delegate.parse(userAgent);
+		}
+
+		// work always with the same reference of data, so that a result is cached with the data it was parsed with
+		final Data data = delegate.getDataStore().getData();
+		final String key = canonicalizer != null ? canonicalizer.canonicalize(data, userAgent) : userAgent;
+		if (!key.equals(userAgent)) {
+			final CachedResult entry = get(key, data);
+			if (entry == null) {
+				missCount.incrementAndGet();
+				final MatchedEntries matches = new MatchedEntries();
+				final ReadableUserAgent result = delegate.parse(userAgent, data, matches);
+				// an aborted parsing may be incomplete, so that it can neither be cached nor compared
+				if (!matches.isAborted()) {
+					final MatchedEntries keyMatches = new MatchedEntries();
+					final ReadableUserAgent keyResult = delegate.parse(key, data, keyMatches);
+					if (!keyMatches.isAborted()) {
+						if (result.equals(keyResult)) {
+							put(key, new CachedResult(data, result));
+						} else {
+							reject(key, userAgent, data, result);
+						}
+					}
+				}
+				return result;
+			} else if (entry.result != null) {
+				if (entry.hits.incrementAndGet() % sampleRate != 0) {
+					hitCount.incrementAndGet();
+					return entry.result;
+				}
+				missCount.incrementAndGet();
+				final MatchedEntries matches = new MatchedEntries();
+				final ReadableUserAgent result = delegate.parse(userAgent, data, matches);
+				if (!matches.isAborted() && !result.equals(entry.result)) {
+					reject(key, userAgent, data, result);
+				}
+				return result;
+			}
+		}
+
+		final CachedResult entry = get(userAgent, data);
+		if (entry != null && entry.result != null) {
+			hitCount.incrementAndGet();
+			return entry.result;
+		}
+		missCount.incrementAndGet();
+		final MatchedEntries matches = new MatchedEntries();
+		final ReadableUserAgent result = delegate.parse(userAgent, data, matches);
+		if (entry == null && !matches.isAborted()) {
+			put(userAgent, new CachedResult(data, result));
+		}
+		return result;
+	}
+
+	private void put(@Nonnull final String key, @Nonnull final CachedResult entry) {
+		synchronized (cache) {
+			cache.put(key, entry);
+		}
+	}
+
+	/**
+	 * Fills the cache with the results of a snapshot, if it has been written with the version of the <em>UAS data</em>
+	 * with which this parser works currently. Results which are already cached will be kept.
+	 * 
+	 * @param in
+	 *            stream to read the snapshot from (will not be closed)
+	 * @return number of added results or {@code 0} if the snapshot belongs to another version of the <em>UAS data</em>
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 * @throws IOException
+	 *             if the stream cannot be read or does not contain a valid snapshot
+	 */
+	public int readSnapshot(@Nonnull final InputStream in) throws IOException {
+		final Data data = delegate.getDataStore().getData();
+		final Map<String, ReadableUserAgent> results = ParseResultSnapshot.read(in, data.getVersion());
+		if (results == null) {
+			return 0;
+		}
+		int added = 0;
+		synchronized (cache) {
+			for (final Map.Entry<String, ReadableUserAgent> entry : results.entrySet()) {
+				final CachedResult cached = cache.get(entry.getKey());
+				if (cached == null || cached.data != data) {
+					cache.put(entry.getKey(), new CachedResult(data, entry.getValue()));
+					added++;
+				}
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Rejects the given canonical key for the given <em>UAS data</em> and caches the result of the original user agent
+	 * string instead.
+	 */
+	private void reject(@Nonnull final String key, @Nonnull final String userAgent, @Nonnull final Data data,
+			@Nonnull final ReadableUserAgent result) {
+		rejectedKeyCount.incrementAndGet();
+		synchronized (cache) {
+			cache.put(key, new CachedResult(data, null));
+			cache.put(userAgent, new CachedResult(data, result));
+		}
+	}
+
+	/**
+	 * Removes all cached results and shuts down the parser to which will be delegated.
+	 */
+	@Override
+	@PreDestroy
+	public void shutdown() {
+		clear();
+		delegate.shutdown();
+	}
+
+	/**
+	 * Writes the most recently used results, which have been parsed with the current <em>UAS data</em>, as a snapshot to
+	 * the given stream. Rejected canonical keys will not be written.
+	 * 
+	 * @param out
+	 *            stream to write the snapshot to (will be finished, but not closed)
+	 * @param limit
+	 *            maximum number of results to write
+	 * @return number of written results
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given stream is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalNegativeArgumentException
+	 *             if the given limit is negative
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	public int writeSnapshot(@Nonnull final OutputStream out, @Nonnegative final int limit) throws IOException {
+		Check.notNull(out, "out");
+		Check.notNegative(limit, "limit");
+		final Data data = delegate.getDataStore().getData();
+		final List<Map.Entry<String, CachedResult>> entries;
+		synchronized (cache) {
+			entries = new ArrayList<Map.Entry<String, CachedResult>>(cache.entrySet());
+		}
+
+		// select the most recently used entries, but write them in order of use, so that reading keeps their recency
+		final List<Map.Entry<String, CachedResult>> selected = new ArrayList<Map.Entry<String, CachedResult>>();
+		for (int i = entries.size() - 1; i >= 0 && selected.size() < limit; i--) {
+			final CachedResult cached = entries.get(i).getValue();
+			if (cached.data == data && cached.result != null) {
+				selected.add(entries.get(i));
+			}
+		}
+		final Map<String, ReadableUserAgent> results = new LinkedHashMap<String, ReadableUserAgent>(selected.size() * 2);
+		for (int i = selected.size() - 1; i >= 0; i--) {
+			results.put(selected.get(i).getKey(), selected.get(i).getValue().result);
+		}
+		ParseResultSnapshot.write(out, data.getVersion(), results);
+		return results.size();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("CachingUserAgentStringParser [delegate=");
+		builder.append(delegate);
+		builder.append(", maximumSize=");
+		builder.append(maximumSize);
+		builder.append(", canonicalizer=");
+		builder.append(canonicalizer);
+		builder.append(", sampleRate=");
+		builder.append(sampleRate);
+		builder.append(", hitCount=");
+		builder.append(hitCount.get());
+		builder.append(", missCount=");
+		builder.append(missCount.get());
+		builder.append(", rejectedKeyCount=");
+		builder.append(rejectedKeyCount.get());
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,484 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.ReadableDeviceCategory.Category;
+import net.sf.uadetector.UserAgentFamily;
+
+/**
+ * User-Agent Client Hints of a request, which describe the browser, its platform and whether the device is mobile
+ * within structured header fields ({@code Sec-CH-UA}, {@code Sec-CH-UA-Mobile}, {@code Sec-CH-UA-Platform} and
+ * {@code Sec-CH-UA-Platform-Version}).
+ * <p>
+ * The header fields are read with a single pass over their values, so that no pattern has to be evaluated for the
+ * information they contain. Brands which are unknown or only sent to prevent sniffing (<em>GREASE</em>) will be
+ * ignored.
+ */
+@Immutable
+final class ClientHints {
+
+	/**
+	 * Brand of the open-source browser on which every browser which sends User-Agent Client Hints is based
+	 */
+	private static final String CHROMIUM = "Chromium";
+
+	/**
+	 * Name of the header field which lists the brands of the browser with their significant versions
+	 */
+	static final String SEC_CH_UA = "Sec-CH-UA";
+
+	/**
+	 * Name of the header field which contains the full version of the browser (deprecated in favor of
+	 * {@link #SEC_CH_UA_FULL_VERSION_LIST})
+	 */
+	static final String SEC_CH_UA_FULL_VERSION = "Sec-CH-UA-Full-Version";
+
+	/**
+	 * Name of the header field which lists the brands of the browser with their full versions
+	 */
+	static final String SEC_CH_UA_FULL_VERSION_LIST = "Sec-CH-UA-Full-Version-List";
+
+	/**
+	 * Name of the header field which indicates whether the browser runs on a mobile device
+	 */
+	static final String SEC_CH_UA_MOBILE = "Sec-CH-UA-Mobile";
+
+	/**
+	 * Name of the header field which names the platform (operating system) of the browser
+	 */
+	static final String SEC_CH_UA_PLATFORM = "Sec-CH-UA-Platform";
+
+	/**
+	 * Name of the header field which contains the version of the platform
+	 */
+	static final String SEC_CH_UA_PLATFORM_VERSION = "Sec-CH-UA-Platform-Version";
+
+	/**
+	 * Name of the header field which contains the user agent string
+	 */
+	static final String USER_AGENT = "User-Agent";
+
+	/**
+	 * Finds the value of the header field with the given name, which will be compared case-insensitive.
+	 * 
+	 * @param headers
+	 *            header fields by their names
+	 * @param name
+	 *            name of the header field
+	 * @return value of the header field or {@code null} if it is not present
+	 */
+	@Nullable
+	static String getHeader(@Nonnull final Map<String, String> headers, @Nonnull final String name) {
+		final String value = headers.get(name);
+		if (value != null) {
+			return value;
+		}
+		for (final Entry<String, String> header : headers.entrySet()) {
+			if (name.equalsIgnoreCase(header.getKey())) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the given brand is only sent to prevent sniffing, like {@code "Not A(Brand"},
+	 * {@code "Not=A?Brand"} or {@code " Not A;Brand"}.
+	 */
+	private static boolean isGrease(@Nonnull final String brand) {
+		final String trimmed = brand.trim();
+		return trimmed.startsWith("Not") && trimmed.contains("Brand");
+	}
+
+	/**
+	 * Reads the User-Agent Client Hints of the given header fields.
+	 * 
+	 * @param headers
+	 *            header fields by their names (compared case-insensitive)
+	 * @return the client hints or {@code null} if the header field {@code Sec-CH-UA} is not present
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nullable
+	static ClientHints parse(@Nonnull final Map<String, String> headers) {
+		Check.notNull(headers, "headers");
+		final String brands = getHeader(headers, SEC_CH_UA);
+		if (brands == null) {
+			return null;
+		}
+		final String fullVersionList = getHeader(headers, SEC_CH_UA_FULL_VERSION_LIST);
+		final String fullVersion = getHeader(headers, SEC_CH_UA_FULL_VERSION);
+		final String mobile = getHeader(headers, SEC_CH_UA_MOBILE);
+		final String platform = getHeader(headers, SEC_CH_UA_PLATFORM);
+		final String platformVersion = getHeader(headers, SEC_CH_UA_PLATFORM_VERSION);
+		return new ClientHints(parseBrands(brands), fullVersionList != null ? parseBrands(fullVersionList) : null,
+				fullVersion != null ? parseString(fullVersion) : null, parseBoolean(mobile), platform != null ? parseString(platform)
+						: "", platformVersion != null ? parseString(platformVersion) : "");
+	}
+
+	/**
+	 * Parses a structured boolean ({@code ?1} or {@code ?0}).
+	 * 
+	 * @return the boolean or {@code null} if the value is missing or malformed
+	 */
+	@Nullable
+	static Boolean parseBoolean(@Nullable final String value) {
+		if (value != null) {
+			final String trimmed = value.trim();
+			if ("?1".equals(trimmed)) {
+				return Boolean.TRUE;
+			} else if ("?0".equals(trimmed)) {
+				return Boolean.FALSE;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parses a structured list of brands with their versions, like
+	 * {@code "Chromium";v="118", "Google Chrome";v="118", "Not=A?Brand";v="99"}. Parsing stops at the first malformed
+	 * item, so that the brands before it are kept.
+	 * 
+	 * @param value
+	 *            value of a brand list
+	 * @return versions by brands in the order of the list
+	 */
+	@Nonnull
+	static Map<String, String> parseBrands(@Nonnull final String value) {
+		final Map<String, String> brands = new LinkedHashMap<String, String>(4);
+		final StringBuilder token = new StringBuilder(32);
+		int i = skipWhitespace(value, 0);
+		while (i < value.length() && value.charAt(i) == '"') {
+			i = readString(value, i, token);
+			if (i < 0) {
+				break;
+			}
+			final String brand = token.toString();
+			String version = "";
+			i = skipWhitespace(value, i);
+			while (i < value.length() && value.charAt(i) == ';') {
+				final int equals = value.indexOf('=', i);
+				if (equals < 0) {
+					return brands;
+				}
+				final String key = value.substring(i + 1, equals).trim();
+				i = skipWhitespace(value, equals + 1);
+				if (i < value.length() && value.charAt(i) == '"') {
+					i = readString(value, i, token);
+					if (i < 0) {
+						return brands;
+					}
+				} else {
+					token.setLength(0);
+					while (i < value.length() && value.charAt(i) != ';' && value.charAt(i) != ',') {
+						token.append(value.charAt(i++));
+					}
+				}
+				if ("v".equals(key)) {
+					version = token.toString().trim();
+				}
+				i = skipWhitespace(value, i);
+			}
+			if (!brands.containsKey(brand)) {
+				brands.put(brand, version);
+			}
+			if (i >= value.length() || value.charAt(i) != ',') {
+				break;
+			}
+			i = skipWhitespace(value, i + 1);
+		}
+		return brands;
+	}
+
+	/**
+	 * Parses a structured string, like {@code "Windows"}. A value which is not quoted will be taken as it is.
+	 */
+	@Nonnull
+	static String parseString(@Nonnull final String value) {
+		final String trimmed = value.trim();
+		if (trimmed.startsWith("\"")) {
+			final StringBuilder token = new StringBuilder(trimmed.length());
+			return readString(trimmed, 0, token) >= 0 ? token.toString() : "";
+		}
+		return trimmed;
+	}
+
+	/**
+	 * Reads the quoted string which starts at the given index into the passed builder (backslashes escape the next
+	 * character).
+	 * 
+	 * @return index after the closing quote or {@code -1} if the string is not terminated
+	 */
+	private static int readString(@Nonnull final String value, final int start, @Nonnull final StringBuilder token) {
+		token.setLength(0);
+		for (int i = start + 1; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"') {
+				return i + 1;
+			} else if (c == '\\' && i + 1 < value.length()) {
+				token.append(value.charAt(++i));
+			} else {
+				token.append(c);
+			}
+		}
+		return -1;
+	}
+
+	private static int skipWhitespace(@Nonnull final String value, final int start) {
+		int i = start;
+		while (i < value.length() && (value.charAt(i) == ' ' || value.charAt(i) == '\t')) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Significant versions by brands of the browser (without GREASE)
+	 */
+	@Nonnull
+	private final Map<String, String> brands;
+
+	/**
+	 * Full version of the browser or {@code null} if it is not hinted
+	 */
+	@Nullable
+	private final String fullVersion;
+
+	/**
+	 * Full versions by brands of the browser or {@code null} if they are not hinted
+	 */
+	@Nullable
+	private final Map<String, String> fullVersions;
+
+	/**
+	 * Whether the browser runs on a mobile device or {@code null} if it is unknown
+	 */
+	@Nullable
+	private final Boolean mobile;
+
+	/**
+	 * Name of the platform or an empty string
+	 */
+	@Nonnull
+	private final String platform;
+
+	/**
+	 * Version of the platform or an empty string
+	 */
+	@Nonnull
+	private final String platformVersion;
+
+	ClientHints(@Nonnull final Map<String, String> brands, @Nullable final Map<String, String> fullVersions,
+			@Nullable final String fullVersion, @Nullable final Boolean mobile, @Nonnull final String platform,
+			@Nonnull final String platformVersion) {
+		final Map<String, String> known = new LinkedHashMap<String, String>(brands.size());
+		for (final Entry<String, String> brand : brands.entrySet()) {
+			if (!isGrease(brand.getKey())) {
+				known.put(brand.getKey(), brand.getValue());
+			}
+		}
+		this.brands = Collections.unmodifiableMap(known);
+		this.fullVersions = fullVersions;
+		this.fullVersion = fullVersion;
+		this.mobile = mobile;
+		this.platform = platform;
+		this.platformVersion = platformVersion;
+	}
+
+	/**
+	 * Gets the most specific brand of the browser, which is the first brand besides {@code Chromium} (every browser
+	 * based on Chromium lists it too).
+	 * 
+	 * @return the brand or {@code null} if no brand is listed
+	 */
+	@Nullable
+	String getBrand() {
+		String result = null;
+		for (final String brand : brands.keySet()) {
+			if (!CHROMIUM.equals(brand)) {
+				return brand;
+			}
+			result = brand;
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the versions by brands of the browser, without brands which are only sent to prevent sniffing.
+	 * 
+	 * @return versions by brands
+	 */
+	@Nonnull
+	Map<String, String> getBrands() {
+		return brands;
+	}
+
+	/**
+	 * Gets the category of the device which is determined by the platform and whether the device is mobile.
+	 * 
+	 * @return the category or {@code null} if it is unknown whether the device is mobile
+	 */
+	@Nullable
+	Category getDeviceCategory() {
+		if (mobile == null) {
+			return null;
+		} else if (mobile.booleanValue()) {
+			return Category.SMARTPHONE;
+		}
+		final OperatingSystemFamily family = getOperatingSystemFamily();
+		return OperatingSystemFamily.ANDROID == family || OperatingSystemFamily.IOS == family ? Category.TABLET
+				: Category.PERSONAL_COMPUTER;
+	}
+
+	/**
+	 * Gets the family of the browser, if its brand is known. The family depends on whether the device is mobile or runs
+	 * a mobile platform (a tablet is not mobile, but its browser is the mobile one), so that it equals the family which
+	 * is determined by the patterns of the <em>UAS data</em>.
+	 * 
+	 * @return the family or {@code null} if the brand is unknown or it is unknown whether the device is mobile
+	 */
+	@Nullable
+	UserAgentFamily getFamily() {
+		final String brand = getBrand();
+		if (brand == null || mobile == null) {
+			return null;
+		}
+		final OperatingSystemFamily os = getOperatingSystemFamily();
+		final boolean isMobile = mobile.booleanValue() || OperatingSystemFamily.ANDROID == os || OperatingSystemFamily.IOS == os;
+		if ("Google Chrome".equals(brand)) {
+			return isMobile ? UserAgentFamily.CHROME_MOBILE : UserAgentFamily.CHROME;
+		} else if ("Microsoft Edge".equals(brand)) {
+			return isMobile ? UserAgentFamily.MICROSOFT_EDGE_MOBILE : UserAgentFamily.MICROSOFT_EDGE;
+		} else if (isMobile) {
+			return null;
+		} else if (CHROMIUM.equals(brand)) {
+			return UserAgentFamily.CHROMIUM;
+		} else if ("Opera".equals(brand)) {
+			return UserAgentFamily.OPERA;
+		} else if ("Yandex".equals(brand)) {
+			return UserAgentFamily.YANDEX_BROWSER;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the family of the operating system which is named by the platform.
+	 * 
+	 * @return the family or {@link OperatingSystemFamily#UNKNOWN} if the platform is unknown
+	 */
+	@Nonnull
+	OperatingSystemFamily getOperatingSystemFamily() {
+		if ("Windows".equals(platform)) {
+			return OperatingSystemFamily.WINDOWS;
+		} else if ("macOS".equals(platform)) {
+			return OperatingSystemFamily.OS_X;
+		} else if ("Android".equals(platform)) {
+			return OperatingSystemFamily.ANDROID;
+		} else if ("iOS".equals(platform)) {
+			return OperatingSystemFamily.IOS;
+		} else if ("Chrome OS".equals(platform) || "Chromium OS".equals(platform)) {
+			return OperatingSystemFamily.CHROME_OS;
+		} else if ("Linux".equals(platform)) {
+			return OperatingSystemFamily.LINUX;
+		}
+		return OperatingSystemFamily.UNKNOWN;
+	}
+
+	/**
+	 * Gets the name of the platform.
+	 * 
+	 * @return name of the platform or an empty string
+	 */
+	@Nonnull
+	String getPlatform() {
+		return platform;
+	}
+
+	/**
+	 * Gets the version of the platform.
+	 * 
+	 * @return version of the platform or an empty string
+	 */
+	@Nonnull
+	String getPlatformVersion() {
+		return platformVersion;
+	}
+
+	/**
+	 * Gets the version of the browser engine Blink, on which every browser which sends User-Agent Client Hints is based.
+	 * It is the version of the brand {@code Chromium}, which will be taken from {@code Sec-CH-UA-Full-Version-List} if
+	 * hinted, otherwise from {@code Sec-CH-UA}.
+	 * 
+	 * @return the version or an empty string if {@code Chromium} is not listed
+	 */
+	@Nonnull
+	String getEngineVersion() {
+		if (fullVersions != null && fullVersions.containsKey(CHROMIUM)) {
+			return fullVersions.get(CHROMIUM);
+		}
+		final String version = brands.get(CHROMIUM);
+		return version != null ? version : "";
+	}
+
+	/**
+	 * Gets the full version of the most specific brand (see {@link #getBrand()}), which is taken from
+	 * {@code Sec-CH-UA-Full-Version-List} or {@code Sec-CH-UA-Full-Version}.
+	 * 
+	 * @return the full version or {@code null} if it is not hinted
+	 */
+	@Nullable
+	String getFullVersion() {
+		final String brand = getBrand();
+		if (fullVersions != null && brand != null && fullVersions.containsKey(brand)) {
+			return fullVersions.get(brand);
+		}
+		return fullVersion;
+	}
+
+	/**
+	 * Gets the significant version of the most specific brand (see {@link #getBrand()}), which is usually only the
+	 * major version.
+	 * 
+	 * @return the version or an empty string if no brand is listed
+	 */
+	@Nonnull
+	String getVersion() {
+		final String brand = getBrand();
+		return brand != null ? brands.get(brand) : "";
+	}
+
+	/**
+	 * Checks whether the browser runs on a mobile device.
+	 * 
+	 * @return {@code true} or {@code false} or {@code null} if it is unknown
+	 */
+	@Nullable
+	Boolean isMobile() {
+		return mobile;
+	}
+
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+
+/**
+ * Coalesces concurrent parsings of the same user agent string: while a user agent string is parsed by the parser to
+ * which will be delegated, all other threads which ask for the same string wait for this parsing and share its result
+ * instead of parsing it again. This avoids a burst of identical parsings when a new user agent string shows up on many
+ * threads at once, for example after the release of a new browser version.
+ * <p>
+ * Only parsings which are in flight will be shared, a result will not be kept after its parsing has been completed. To
+ * keep results, delegate to a {@link CachingUserAgentStringParser}, so that only one thread parses a user agent string
+ * on a cache miss.
+ */
+@ThreadSafe
+public final class CoalescingUserAgentStringParser implements UserAgentStringParser {
+
+	/**
+	 * Throws the cause of a failed parsing in the waiting thread.
+	 */
+	private static RuntimeException rethrow(@Nonnull final Throwable cause) {
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		throw new IllegalStateException(cause);
+	}
+
+	/**
+	 * Number of parsings which have been shared with another thread instead of being computed
+	 */
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	/**
+	 * Number of parsings which have been computed by the parser to which will be delegated
+	 */
+	private final AtomicLong computedCount = new AtomicLong();
+
+	/**
+	 * Parser to which will be delegated
+	 */
+	@Nonnull
+	private final UserAgentStringParser delegate;
+
+	/**
+	 * Parsings in flight by user agent string
+	 */
+	@Nonnull
+	private final ConcurrentMap<String, FutureTask<ReadableUserAgent>> pending = new ConcurrentHashMap<String, FutureTask<ReadableUserAgent>>();
+
+	/**
+	 * Constructs a parser which coalesces concurrent parsings of the same user agent string.
+	 * 
+	 * @param delegate
+	 *            parser which parses the user agent strings
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	public CoalescingUserAgentStringParser(@Nonnull final UserAgentStringParser delegate) {
+		this.delegate = Check.notNull(delegate, "delegate");
+	}
+
+	/**
+	 * Gets the result of the given parsing.
+	 */
+	private ReadableUserAgent await(@Nonnull final FutureTask<ReadableUserAgent> task, @Nonnull final String userAgent) {
+		try {
+			return task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			computedCount.incrementAndGet();
+			return delegate.parse(userAgent);
+		} catch (final ExecutionException e) {
+			throw rethrow(e.getCause());
+		}
+	}
+
+	/**
+	 * Gets the number of parsings which waited for the same user agent string being parsed by another thread, which
+	 * is the number of saved duplicate computations.
+	 * 
+	 * @return number of coalesced parsings
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * Gets the number of parsings which have been computed by the parser to which will be delegated.
+	 * 
+	 * @return number of computed parsings
+	 */
+	public long getComputedCount() {
+		return computedCount.get();
+	}
+
+	@Override
+	public String getDataVersion() {
+		return delegate.getDataVersion();
+	}
+
+	/**
+	 * Gets the parser to which will be delegated.
+	 * 
+	 * @return parser which parses the user agent strings
+	 */
+	@Nonnull
+	public UserAgentStringParser getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Gets the number of user agent strings which are currently parsed.
+	 * 
+	 * @return number of parsings in flight
+	 */
+	public int getInFlightCount() {
+		return pending.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the same user agent string is currently parsed by another thread, this method waits for its result. A failure
+	 * of that parsing will be thrown in all waiting threads. If a waiting thread will be interrupted, it parses the user
+	 * agent string on its own and keeps the interrupted status.
+	 */
+	@Override
+	public ReadableUserAgent parse(final String userAgent) {
+		if (userAgent == null) {
+			return delegate.parse(userAgent);
+		}
+
+		final FutureTask<ReadableUserAgent> task = new FutureTask<ReadableUserAgent>(new Callable<ReadableUserAgent>() {
+			@Override
+			public ReadableUserAgent call() {
+				computedCount.incrementAndGet();
+				return delegate.parse(userAgent);
+			}
+		});
+		final FutureTask<ReadableUserAgent> inFlight = pending.putIfAbsent(userAgent, task);
+		if (inFlight == null) {
+			try {
+				task.run();
+			} finally {
+				pending.remove(userAgent, task);
+			}
+			return await(task, userAgent);
+		}
+		coalescedCount.incrementAndGet();
+		return await(inFlight, userAgent);
+	}
+
+	/**
+	 * Shuts down the parser to which will be delegated.
+	 */
+	@Override
+	@PreDestroy
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("CoalescingUserAgentStringParser [delegate=");
+		builder.append(delegate);
+		builder.append(", computedCount=");
+		builder.append(computedCount.get());
+		builder.append(", coalescedCount=");
+		builder.append(coalescedCount.get());
+		builder.append(", inFlightCount=");
+		builder.append(pending.size());
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
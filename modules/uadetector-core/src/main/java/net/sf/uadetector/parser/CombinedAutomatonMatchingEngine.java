@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+import net.sf.uadetector.internal.util.PatternAutomaton;
+
+/**
+ * Compiles all regular patterns of a stage into one {@link PatternAutomaton}, which determines the first matching
+ * pattern in a single pass over the user agent string. Only the patterns which the automaton cannot handle and which
+ * precede the found pattern will be evaluated with their regular expression. Finally the found pattern itself will be
+ * evaluated with its regular expression to extract the version from its capturing group.
+ * <p>
+ * User agent strings with line terminators or surrogates will be examined with an ordered scan.
+ */
+@ThreadSafe
+final class CombinedAutomatonMatchingEngine extends CompilingMatchingEngine<CombinedAutomatonMatchingEngine.Index> {
+
+	/**
+	 * Automaton of the patterns of a stage
+	 */
+	@Immutable
+	static final class Index {
+
+		@Nonnull
+		private final PatternAutomaton automaton;
+
+		/**
+		 * Entries of the stage in order of evaluation
+		 */
+		@Nonnull
+		private final Entry<?, ?>[] entries;
+
+		/**
+		 * Positions of the patterns which are not part of the automaton
+		 */
+		@Nonnull
+		private final int[] unsupported;
+
+		Index(@Nonnull final SortedMap<? extends OrderedPattern<?>, ?> map, @Nonnegative final int stateLimit) {
+			entries = map.entrySet().toArray(new Entry<?, ?>[map.size()]);
+			final List<Pattern> patterns = new ArrayList<Pattern>(entries.length);
+			for (final Entry<?, ?> entry : entries) {
+				patterns.add(((OrderedPattern<?>) entry.getKey()).getPattern());
+			}
+			automaton = new PatternAutomaton(patterns, stateLimit);
+			final List<Integer> positions = new ArrayList<Integer>();
+			for (int position = 0; position < entries.length; position++) {
+				if (!automaton.isSupported(position)) {
+					positions.add(position);
+				}
+			}
+			unsupported = new int[positions.size()];
+			for (int i = 0; i < unsupported.length; i++) {
+				unsupported[i] = positions.get(i);
+			}
+		}
+
+		@Nonnull
+		PatternAutomaton getAutomaton() {
+			return automaton;
+		}
+
+	}
+
+	/**
+	 * Maximum number of cached states of the automaton of every stage
+	 */
+	@Nonnegative
+	private final int stateLimit;
+
+	/**
+	 * Constructs an engine whose automata cache at most the given number of states per stage.
+	 * 
+	 * @param stateLimit
+	 *            maximum number of cached states per stage
+	 */
+	CombinedAutomatonMatchingEngine(@Nonnegative final int stateLimit) {
+		this.stateLimit = stateLimit;
+	}
+
+	@Override
+	@Nonnull
+	Index compile(@Nonnull final SortedMap<? extends OrderedPattern<?>, ?> map) {
+		return new Index(map, stateLimit);
+	}
+
+	@Override
+	@Nullable
+	@SuppressWarnings("unchecked")
+	<P extends OrderedPattern<P>, T> Entry<P, T> find(@Nonnull final Index index, @Nonnull final SortedMap<P, T> map,
+			@Nonnull final ParseContext context) {
+		final int found = index.automaton.findFirst(context.getUserAgent());
+		if (found == PatternAutomaton.UNSUPPORTED_INPUT) {
+			return scan(index, 0, context);
+		}
+
+		// patterns without automaton which precede the found one
+		final int end = found == PatternAutomaton.NO_MATCH ? index.entries.length : found;
+		for (final int position : index.unsupported) {
+			if (position >= end) {
+				break;
+			}
+			final Entry<P, T> entry = (Entry<P, T>) index.entries[position];
+			if (context.find(entry.getKey())) {
+				return entry;
+			}
+		}
+
+		// evaluate the found pattern to make its capturing group available (and continue in order, if it disagrees)
+		if (found != PatternAutomaton.NO_MATCH) {
+			return scan(index, found, context);
+		}
+		return null;
+	}
+
+	/**
+	 * Evaluates all patterns of a stage from the given position in order.
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private static <P extends OrderedPattern<P>, T> Entry<P, T> scan(@Nonnull final Index index, final int from,
+			@Nonnull final ParseContext context) {
+		for (int position = from; position < index.entries.length; position++) {
+			final Entry<P, T> entry = (Entry<P, T>) index.entries[position];
+			if (context.find(entry.getKey())) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "CombinedAutomatonMatchingEngine";
+	}
+
+}
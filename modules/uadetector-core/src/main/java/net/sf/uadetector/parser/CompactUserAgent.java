@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.VersionNumber;
+
+/**
+ * Result of a parsing in a compact form, which consists only of the IDs of the matched entries of the <em>UAS data</em>
+ * and the version numbers packed into {@code long} values, so that it can be stored in columns of primitive values.
+ * The full result can be restored with {@link CompactUserAgentResolver} against the same version of the <em>UAS
+ * data</em>. An ID of {@code -1} means that no entry of the kind has been matched.
+ * <p>
+ * A version number can be packed if it has no extension and consists of at most {@value #MAX_GROUPS} groups, which are
+ * empty or decimal numbers without leading zeros. The groups have different widths of 27, 11, 14 and 8 bits: the major
+ * number is wide enough for dates, which some engines use as version, the bugfix number for build numbers.
+ */
+@Immutable
+public final class CompactUserAgent {
+
+	/**
+	 * Number of bits of every packed group (a group with {@code n} bits holds values up to {@code 2^n - 2})
+	 */
+	private static final int[] GROUP_BITS = { 27, 11, 14, 8 };
+
+	/**
+	 * Maximum number of groups of a version number which can be packed
+	 */
+	public static final int MAX_GROUPS = GROUP_BITS.length;
+
+	/**
+	 * Value of a version number which cannot be packed
+	 */
+	public static final long NOT_PACKABLE = -1L;
+
+	/**
+	 * Position of the number of groups, which is stored above the groups
+	 */
+	private static final int COUNT_SHIFT = 60;
+
+	/**
+	 * Encodes the result of a parsing. Version numbers which cannot be packed will be encoded as {@link #NOT_PACKABLE}.
+	 * 
+	 * @param matches
+	 *            IDs of the entries which have been matched during the parsing
+	 * @param result
+	 *            builder which holds the result of the parsing
+	 * @return compact result
+	 */
+	@Nonnull
+	static CompactUserAgent encode(@Nonnull final MatchedEntries matches, @Nonnull final UserAgent.Builder result) {
+		return encode(matches, result.getVersionNumber(), result.getBrowserEngine().getVersionNumber(), result.getOperatingSystem()
+				.getVersionNumber());
+	}
+
+	/**
+	 * Encodes the result of a parsing. Version numbers which cannot be packed will be encoded as {@link #NOT_PACKABLE}.
+	 * 
+	 * @param matches
+	 *            IDs of the entries which have been matched during the parsing
+	 * @param result
+	 *            result of the parsing
+	 * @return compact result
+	 */
+	@Nonnull
+	static CompactUserAgent encode(@Nonnull final MatchedEntries matches, @Nonnull final UserAgent result) {
+		return encode(matches, result.getVersionNumber(), result.getBrowserEngine().getVersionNumber(), result.getOperatingSystem()
+				.getVersionNumber());
+	}
+
+	@Nonnull
+	private static CompactUserAgent encode(@Nonnull final MatchedEntries matches, @Nonnull final VersionNumber version,
+			@Nonnull final VersionNumber browserEngineVersion, @Nonnull final VersionNumber operatingSystemVersion) {
+		return new CompactUserAgent(matches.getRobotId(), matches.getBrowserId(), pack(version), matches.getBrowserEngineId(),
+				pack(browserEngineVersion), matches.getOperatingSystemId(), pack(operatingSystemVersion), matches.getDeviceId());
+	}
+
+	/**
+	 * Checks whether the given group is a decimal number without leading zeros which fits into the given number of
+	 * bits.
+	 * 
+	 * @return the value of the group plus one or {@code -1} if it cannot be packed
+	 */
+	private static long groupValue(@Nonnull final String group, final int bits) {
+		if (group.length() > 9 || group.length() > 1 && group.charAt(0) == '0') {
+			return -1;
+		}
+		long value = 0;
+		for (int i = 0; i < group.length(); i++) {
+			final char c = group.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + c - '0';
+		}
+		return value + 1 < 1L << bits ? value + 1 : -1;
+	}
+
+	/**
+	 * Packs a version number into a {@code long}. The number of groups is stored above the groups, every group is stored
+	 * as its value plus one, so that an empty group is stored as {@code 0}.
+	 * 
+	 * @param version
+	 *            version number to pack
+	 * @return packed version number or {@link #NOT_PACKABLE}
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	public static long pack(@Nonnull final VersionNumber version) {
+		Check.notNull(version, "version");
+		final List<String> groups = version.getGroups();
+		if (!version.getExtension().isEmpty() || groups.size() > MAX_GROUPS) {
+			return NOT_PACKABLE;
+		}
+		long packed = (long) groups.size() << COUNT_SHIFT;
+		int shift = 0;
+		for (int i = 0; i < groups.size(); i++) {
+			final String group = groups.get(i);
+			if (!group.isEmpty()) {
+				final long value = groupValue(group, GROUP_BITS[i]);
+				if (value < 0) {
+					return NOT_PACKABLE;
+				}
+				packed |= value << shift;
+			}
+			shift += GROUP_BITS[i];
+		}
+		return packed;
+	}
+
+	/**
+	 * Gets the groups of a version number which has been packed with {@link #pack(VersionNumber)} as numbers.
+	 * 
+	 * @param packed
+	 *            packed version number
+	 * @return the groups of the version number, in which an empty group is {@code -1}
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given value is not a packed version number
+	 */
+	@Nonnull
+	public static int[] toGroups(final long packed) {
+		final int[] groups = new int[groupCount(packed)];
+		int shift = 0;
+		for (int i = 0; i < groups.length; i++) {
+			groups[i] = (int) (packed >>> shift & (1L << GROUP_BITS[i]) - 1) - 1;
+			shift += GROUP_BITS[i];
+		}
+		return groups;
+	}
+
+	private static int groupCount(final long packed) {
+		Check.stateIsTrue(packed >= 0 && packed >>> COUNT_SHIFT <= MAX_GROUPS,
+				"Argument 'packed' must be a packed version number, but was %s.", packed);
+		return (int) (packed >>> COUNT_SHIFT);
+	}
+
+	/**
+	 * Unpacks a version number which has been packed with {@link #pack(VersionNumber)}.
+	 * 
+	 * @param packed
+	 *            packed version number
+	 * @return version number
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given value is not a packed version number
+	 */
+	@Nonnull
+	public static VersionNumber unpack(final long packed) {
+		final int[] values = toGroups(packed);
+		final List<String> groups = new ArrayList<String>(values.length);
+		for (final int value : values) {
+			groups.add(value < 0 ? VersionNumber.EMPTY_GROUP : String.valueOf(value));
+		}
+		return new VersionNumber(groups);
+	}
+
+	/**
+	 * ID of the matched browser engine or {@code -1}
+	 */
+	private final int browserEngineId;
+
+	/**
+	 * Packed version number of the browser engine
+	 */
+	private final long browserEngineVersion;
+
+	/**
+	 * ID of the matched browser or {@code -1}
+	 */
+	private final int browserId;
+
+	/**
+	 * ID of the device which describes the device category or {@code -1} for an unknown device category
+	 */
+	private final int deviceId;
+
+	/**
+	 * ID of the operating system or {@code -1}
+	 */
+	private final int operatingSystemId;
+
+	/**
+	 * Packed version number of the operating system
+	 */
+	private final long operatingSystemVersion;
+
+	/**
+	 * ID of the matched robot or {@code -1}
+	 */
+	private final int robotId;
+
+	/**
+	 * Packed version number of the user agent
+	 */
+	private final long version;
+
+	/**
+	 * Constructs a compact result, for example from values which have been stored before.
+	 * 
+	 * @param robotId
+	 *            ID of the matched robot or {@code -1}
+	 * @param browserId
+	 *            ID of the matched browser or {@code -1}
+	 * @param version
+	 *            packed version number of the user agent or {@link #NOT_PACKABLE}
+	 * @param browserEngineId
+	 *            ID of the matched browser engine or {@code -1}
+	 * @param browserEngineVersion
+	 *            packed version number of the browser engine or {@link #NOT_PACKABLE}
+	 * @param operatingSystemId
+	 *            ID of the operating system or {@code -1}
+	 * @param operatingSystemVersion
+	 *            packed version number of the operating system or {@link #NOT_PACKABLE}
+	 * @param deviceId
+	 *            ID of the device which describes the device category or {@code -1}
+	 */
+	public CompactUserAgent(final int robotId, final int browserId, final long version, final int browserEngineId,
+			final long browserEngineVersion, final int operatingSystemId, final long operatingSystemVersion, final int deviceId) {
+		this.robotId = robotId;
+		this.browserId = browserId;
+		this.version = version;
+		this.browserEngineId = browserEngineId;
+		this.browserEngineVersion = browserEngineVersion;
+		this.operatingSystemId = operatingSystemId;
+		this.operatingSystemVersion = operatingSystemVersion;
+		this.deviceId = deviceId;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final CompactUserAgent other = (CompactUserAgent) obj;
+		return robotId == other.robotId && browserId == other.browserId && version == other.version
+				&& browserEngineId == other.browserEngineId && browserEngineVersion == other.browserEngineVersion
+				&& operatingSystemId == other.operatingSystemId && operatingSystemVersion == other.operatingSystemVersion
+				&& deviceId == other.deviceId;
+	}
+
+	/**
+	 * Gets the ID of the matched browser engine (see {@link net.sf.uadetector.internal.data.domain.BrowserEngine#getId()}).
+	 * 
+	 * @return ID of the browser engine or {@code -1}
+	 */
+	public int getBrowserEngineId() {
+		return browserEngineId;
+	}
+
+	/**
+	 * Gets the packed version number of the browser engine.
+	 * 
+	 * @return packed version number or {@link #NOT_PACKABLE}
+	 */
+	public long getBrowserEngineVersion() {
+		return browserEngineVersion;
+	}
+
+	/**
+	 * Gets the ID of the matched browser (see {@link net.sf.uadetector.internal.data.domain.Browser#getId()}).
+	 * 
+	 * @return ID of the browser or {@code -1}
+	 */
+	public int getBrowserId() {
+		return browserId;
+	}
+
+	/**
+	 * Gets the ID of the device which describes the device category (see
+	 * {@link net.sf.uadetector.internal.data.domain.Device#getId()}).
+	 * 
+	 * @return ID of the device or {@code -1} if the device category is unknown
+	 */
+	public int getDeviceId() {
+		return deviceId;
+	}
+
+	/**
+	 * Gets the ID of the operating system, which has been taken from the browser or matched afterwards (see
+	 * {@link net.sf.uadetector.internal.data.domain.OperatingSystem#getId()}).
+	 * 
+	 * @return ID of the operating system or {@code -1}
+	 */
+	public int getOperatingSystemId() {
+		return operatingSystemId;
+	}
+
+	/**
+	 * Gets the packed version number of the operating system.
+	 * 
+	 * @return packed version number or {@link #NOT_PACKABLE}
+	 */
+	public long getOperatingSystemVersion() {
+		return operatingSystemVersion;
+	}
+
+	/**
+	 * Gets the ID of the matched robot (see {@link net.sf.uadetector.internal.data.domain.Robot#getId()}).
+	 * 
+	 * @return ID of the robot or {@code -1}
+	 */
+	public int getRobotId() {
+		return robotId;
+	}
+
+	/**
+	 * Gets the packed version number of the user agent.
+	 * 
+	 * @return packed version number or {@link #NOT_PACKABLE}
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + robotId;
+		result = prime * result + browserId;
+		result = prime * result + (int) (version ^ version >>> 32);
+		result = prime * result + browserEngineId;
+		result = prime * result + (int) (browserEngineVersion ^ browserEngineVersion >>> 32);
+		result = prime * result + operatingSystemId;
+		result = prime * result + (int) (operatingSystemVersion ^ operatingSystemVersion >>> 32);
+		result = prime * result + deviceId;
+		return result;
+	}
+
+	/**
+	 * Checks whether all version numbers could be packed, so that the full result can be restored. The version of a
+	 * robot will be restored from its name.
+	 * 
+	 * @return {@code true} if the full result can be restored, otherwise {@code false}
+	 */
+	public boolean isRestorable() {
+		return (robotId >= 0 || version != NOT_PACKABLE) && browserEngineVersion != NOT_PACKABLE && operatingSystemVersion != NOT_PACKABLE;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("CompactUserAgent [robotId=");
+		builder.append(robotId);
+		builder.append(", browserId=");
+		builder.append(browserId);
+		builder.append(", version=");
+		builder.append(version);
+		builder.append(", browserEngineId=");
+		builder.append(browserEngineId);
+		builder.append(", browserEngineVersion=");
+		builder.append(browserEngineVersion);
+		builder.append(", operatingSystemId=");
+		builder.append(operatingSystemId);
+		builder.append(", operatingSystemVersion=");
+		builder.append(operatingSystemVersion);
+		builder.append(", deviceId=");
+		builder.append(deviceId);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.DeviceCategory;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.VersionNumber;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.Browser;
+import net.sf.uadetector.internal.data.domain.BrowserEngine;
+import net.sf.uadetector.internal.data.domain.Device;
+import net.sf.uadetector.internal.data.domain.Identifiable;
+import net.sf.uadetector.internal.data.domain.OperatingSystem;
+import net.sf.uadetector.internal.data.domain.Robot;
+
+/**
+ * Restores the full result of a parsing from its compact form (see {@link CompactUserAgent}). The entries of the
+ * <em>UAS data</em> will be indexed by their IDs once per version of the data.
+ * <p>
+ * The restored result equals the result of the parsing, if the compact form is restorable (see
+ * {@link CompactUserAgent#isRestorable()}) and the same version of the <em>UAS data</em> is used. A version number
+ * which could not be packed will be restored as {@link VersionNumber#UNKNOWN}, only the version of a robot will be
+ * taken from its name like during parsing.
+ */
+@ThreadSafe
+public final class CompactUserAgentResolver {
+
+	/**
+	 * Entries of one version of the <em>UAS data</em> by their IDs
+	 */
+	@Immutable
+	private static final class Index {
+
+		@Nonnull
+		private final Map<Integer, BrowserEngine> browserEngines;
+
+		@Nonnull
+		private final Map<Integer, Browser> browsers;
+
+		@Nonnull
+		private final Data data;
+
+		@Nonnull
+		private final Map<Integer, Device> devices;
+
+		@Nonnull
+		private final Map<Integer, OperatingSystem> operatingSystems;
+
+		@Nonnull
+		private final Map<Integer, Robot> robots;
+
+		Index(@Nonnull final Data data) {
+			this.data = data;
+			browserEngines = index(data.getBrowserEngines());
+			browsers = index(data.getBrowsers());
+			devices = index(data.getDevices());
+			operatingSystems = index(data.getOperatingSystems());
+			robots = index(data.getRobots());
+		}
+
+	}
+
+	/**
+	 * Looks up an entry by its ID.
+	 * 
+	 * @return the entry or {@code null} if the ID is {@code -1}
+	 * @throws IllegalArgumentException
+	 *             if the ID is unknown
+	 */
+	@Nullable
+	private static <T> T find(@Nonnull final Map<Integer, T> entries, final int id) {
+		if (id < 0) {
+			return null;
+		}
+		final T entry = entries.get(id);
+		if (entry == null) {
+			throw new IllegalArgumentException("Unknown ID: " + id);
+		}
+		return entry;
+	}
+
+	@Nonnull
+	private static <T extends Identifiable> Map<Integer, T> index(@Nonnull final Collection<T> entries) {
+		final Map<Integer, T> index = new HashMap<Integer, T>(entries.size() * 2);
+		for (final T entry : entries) {
+			index.put(entry.getId(), entry);
+		}
+		return index;
+	}
+
+	@Nonnull
+	private static UserAgent resolve(@Nonnull final CompactUserAgent compact, @Nonnull final Index index) {
+		// the user agent string is not needed, because all versions are taken from the compact form
+		final UserAgent.Builder builder = new UserAgent.Builder("");
+		final Robot robot = find(index.robots, compact.getRobotId());
+		if (robot != null) {
+			robot.copyTo(builder);
+		}
+		final Browser browser = find(index.browsers, compact.getBrowserId());
+		if (browser != null) {
+			browser.copyTo(builder);
+		}
+		final BrowserEngine browserEngine = find(index.browserEngines, compact.getBrowserEngineId());
+		if (browserEngine != null) {
+			builder.setBrowserEngine(browserEngine, unpack(compact.getBrowserEngineVersion()));
+		}
+		final OperatingSystem operatingSystem = find(index.operatingSystems, compact.getOperatingSystemId());
+		if (operatingSystem != null) {
+			operatingSystem.copyTo(builder, unpack(compact.getOperatingSystemVersion()));
+		}
+		// the version of a robot is part of its name
+		builder.setVersionNumber(robot != null ? VersionNumber.parseLastVersionNumber(robot.getName()) : unpack(compact.getVersion()));
+		final Device device = find(index.devices, compact.getDeviceId());
+		if (device != null) {
+			builder.setDeviceCategory(new DeviceCategory(device.getCategory(), device.getIcon(), device.getInfoUrl(), device.getName()));
+		} else {
+			builder.setDeviceCategory(DeviceCategory.EMPTY);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Unpacks a version number or returns {@link VersionNumber#UNKNOWN} if it could not be packed.
+	 */
+	@Nonnull
+	private static VersionNumber unpack(final long packed) {
+		return packed != CompactUserAgent.NOT_PACKABLE ? CompactUserAgent.unpack(packed) : VersionNumber.UNKNOWN;
+	}
+
+	/**
+	 * Index of the <em>UAS data</em> which have been resolved against most recently
+	 */
+	@Nullable
+	private volatile Index index;
+
+	@Nonnull
+	private Index getIndex(@Nonnull final Data data) {
+		Index current = index;
+		if (current == null || current.data != data) {
+			current = new Index(data);
+			index = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Restores the full result of a parsing from its compact form.
+	 * 
+	 * @param compact
+	 *            compact form of the result
+	 * @param data
+	 *            <em>UAS data</em> with which the result has been parsed
+	 * @return the full result or {@code null} if an ID of the compact form does not belong to the given data
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if one of the given arguments is {@code null}
+	 */
+	@Nullable
+	public UserAgent resolve(@Nonnull final CompactUserAgent compact, @Nonnull final Data data) {
+		Check.notNull(compact, "compact");
+		Check.notNull(data, "data");
+		final Index current = getIndex(data);
+		try {
+			return resolve(compact, current);
+		} catch (final IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+}
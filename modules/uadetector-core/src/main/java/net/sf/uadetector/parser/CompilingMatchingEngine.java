@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+
+/**
+ * Base of the engines which compile an index for every stage of the <em>UAS data</em>. The indexes will be compiled
+ * as soon as the engine sees other <em>UAS data</em>, for example after an update, and are kept until then.
+ * <p>
+ * The indexes of the <em>UAS data</em> seen before will be kept too, so that a warm-up of new data (see
+ * {@link CorpusDataWarmUp#setParser(AbstractUserAgentStringParser)}) compiles their indexes before they will be
+ * published without evicting the indexes of the data which are still in use.
+ * 
+ * @param <I>
+ *            type of the index of a stage
+ */
+@ThreadSafe
+abstract class CompilingMatchingEngine<I> extends MatchingEngine {
+
+	/**
+	 * Indexes of all stages of one instance of <em>UAS data</em>
+	 */
+	@Immutable
+	private static final class Snapshot<I> {
+
+		@Nonnull
+		private final Data data;
+
+		@Nonnull
+		private final Map<SortedMap<?, ?>, I> indexes;
+
+		/**
+		 * Indexes of the <em>UAS data</em> seen before or {@code null}
+		 */
+		@Nullable
+		private final Snapshot<I> previous;
+
+		Snapshot(@Nonnull final Data data, @Nonnull final Map<SortedMap<?, ?>, I> indexes, @Nullable final Snapshot<I> previous) {
+			this.data = data;
+			this.indexes = indexes;
+			this.previous = previous;
+		}
+
+	}
+
+	/**
+	 * Indexes of the last seen <em>UAS data</em> (and of the data seen before) or {@code null}
+	 */
+	@Nullable
+	private volatile Snapshot<I> snapshot;
+
+	/**
+	 * Compiles the index of a stage.
+	 * 
+	 * @param map
+	 *            patterns of a stage in order of evaluation
+	 * @return index of the stage
+	 */
+	@Nonnull
+	abstract I compile(@Nonnull SortedMap<? extends OrderedPattern<?>, ?> map);
+
+	@Override
+	@Nullable
+	final <P extends OrderedPattern<P>, T> Entry<P, T> find(@Nonnull final Data data, @Nonnull final SortedMap<P, T> map,
+			@Nonnull final ParseContext context) {
+		final I index = getIndex(data, map);
+		if (index == null) {
+			return OrderedScanMatchingEngine.INSTANCE.find(data, map, context);
+		}
+		return find(index, map, context);
+	}
+
+	/**
+	 * Finds the first entry of a stage whose pattern matches the input of the passed context with the help of the
+	 * compiled index.
+	 * 
+	 * @param index
+	 *            index of the stage
+	 * @param map
+	 *            patterns of the stage in order of evaluation
+	 * @param context
+	 *            input to match
+	 * @return the first matching entry or {@code null} if no pattern matches
+	 */
+	@Nullable
+	abstract <P extends OrderedPattern<P>, T> Entry<P, T> find(@Nonnull I index, @Nonnull SortedMap<P, T> map,
+			@Nonnull ParseContext context);
+
+	/**
+	 * Gets the index of the given stage and compiles the indexes of all stages, if the <em>UAS data</em> are neither the
+	 * last seen nor the data seen before.
+	 * 
+	 * @param data
+	 *            <em>UAS data</em> to which the map belongs
+	 * @param map
+	 *            patterns of a stage
+	 * @return index of the stage or {@code null} if the map is not a stage of the given data
+	 */
+	@Nullable
+	final I getIndex(@Nonnull final Data data, @Nonnull final SortedMap<?, ?> map) {
+		Snapshot<I> current = snapshot;
+		if (current != null && current.data != data && current.previous != null && current.previous.data == data) {
+			// the data in use while new data are warmed up
+			return current.previous.indexes.get(map);
+		}
+		if (current == null || current.data != data) {
+			// concurrent compilations are harmless, the last one wins
+			final Map<SortedMap<?, ?>, I> indexes = new IdentityHashMap<SortedMap<?, ?>, I>(8);
+			indexes.put(data.getPatternToBrowserMap(), compile(data.getPatternToBrowserMap()));
+			indexes.put(data.getPatternToBrowserEngineMap(), compile(data.getPatternToBrowserEngineMap()));
+			indexes.put(data.getPatternToDeviceMap(), compile(data.getPatternToDeviceMap()));
+			indexes.put(data.getPatternToOperatingSystemMap(), compile(data.getPatternToOperatingSystemMap()));
+			current = new Snapshot<I>(data, indexes, current != null ? new Snapshot<I>(current.data, current.indexes, null) : null);
+			snapshot = current;
+		}
+		return current.indexes.get(map);
+	}
+
+}
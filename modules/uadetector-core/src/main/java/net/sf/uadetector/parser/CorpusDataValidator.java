@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.datastore.DataValidator;
+import net.sf.uadetector.internal.data.Data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Validates new <em>UAS data</em> by parsing a reference corpus of user agent strings with the current and the new
+ * data. New data will be considered as faulty if the parsing costs per user agent string regress beyond a threshold or
+ * if too many classifications change.
+ * <p>
+ * Depending on the {@link Mode} a faulty update will be rejected or only reported in the log.
+ */
+@ThreadSafe
+public final class CorpusDataValidator implements DataValidator {
+
+	/**
+	 * Defines how to deal with new <em>UAS data</em> which exceed a threshold.
+	 */
+	public enum Mode {
+
+		/**
+		 * Exceeded thresholds will only be logged, the new data will be accepted anyway
+		 */
+		LOG,
+
+		/**
+		 * New data which exceed a threshold will be rejected
+		 */
+		REJECT
+
+	}
+
+	/**
+	 * Default maximum ratio of changed classifications within the corpus
+	 */
+	public static final double DEFAULT_MAX_CHANGED_RATIO = 0.1;
+
+	/**
+	 * Default maximum ratio between the parsing costs of the new and the current data
+	 */
+	public static final double DEFAULT_MAX_COST_RATIO = 2.0;
+
+	/**
+	 * Corresponding default logger of this class
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(CorpusDataValidator.class);
+
+	/**
+	 * Number of timed rounds per data, the fastest one will be taken to reduce noise
+	 */
+	private static final int MEASUREMENT_ROUNDS = 3;
+
+	/**
+	 * Message for the log if too many classifications changed
+	 */
+	private static final String MSG_CHANGED_EXCEEDED = "%d of %d classifications changed with UAS data in version '%s' (ratio %.3f, allowed %.3f).";
+
+	/**
+	 * Message for the log if the parsing costs regressed
+	 */
+	private static final String MSG_COST_EXCEEDED = "Parsing with UAS data in version '%s' is %.2f times slower than with version '%s' (allowed %.2f).";
+
+	/**
+	 * Message for the log with the result of a validation
+	 */
+	private static final String MSG_VALIDATED = "UAS data in version '%s' validated: cost ratio %.2f, changed ratio %.3f";
+
+	/**
+	 * Compares the classification of two parsing results of the same user agent string.
+	 * 
+	 * @param a
+	 *            first result
+	 * @param b
+	 *            second result
+	 * @return {@code true} if both results are classified equally, otherwise {@code false}
+	 */
+	private static boolean isSameClassification(@Nonnull final ReadableUserAgent a, @Nonnull final ReadableUserAgent b) {
+		return a.getType() == b.getType() && a.getFamily() == b.getFamily() && a.getName().equals(b.getName())
+				&& a.getVersionNumber().equals(b.getVersionNumber())
+				&& a.getOperatingSystem().getFamily() == b.getOperatingSystem().getFamily()
+				&& a.getOperatingSystem().getName().equals(b.getOperatingSystem().getName())
+				&& a.getDeviceCategory().getCategory() == b.getDeviceCategory().getCategory();
+	}
+
+	/**
+	 * Parses all given user agent strings with the passed data.
+	 * 
+	 * @param corpus
+	 *            user agent strings
+	 * @param data
+	 *            <em>UAS data</em>
+	 * @return parsing results in the order of the corpus
+	 */
+	@Nonnull
+	private static List<ReadableUserAgent> parse(@Nonnull final List<String> corpus, @Nonnull final Data data) {
+		final List<ReadableUserAgent> results = new ArrayList<ReadableUserAgent>(corpus.size());
+		for (final String userAgent : corpus) {
+			results.add(AbstractUserAgentStringParser.examine(userAgent, data));
+		}
+		return results;
+	}
+
+	/**
+	 * Measures the time to parse the whole corpus with the passed data.
+	 * 
+	 * @param corpus
+	 *            user agent strings
+	 * @param data
+	 *            <em>UAS data</em>
+	 * @return elapsed time in nanoseconds
+	 */
+	private static long time(@Nonnull final List<String> corpus, @Nonnull final Data data) {
+		final long start = System.nanoTime();
+		for (final String userAgent : corpus) {
+			AbstractUserAgentStringParser.examine(userAgent, data);
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Reference corpus of user agent strings
+	 */
+	@Nonnull
+	private final List<String> corpus;
+
+	/**
+	 * Ratio of changed classifications of the last validation
+	 */
+	private volatile double lastChangedRatio;
+
+	/**
+	 * Ratio between the parsing costs of the candidate and the current data of the last validation
+	 */
+	private volatile double lastCostRatio;
+
+	/**
+	 * Maximum ratio of changed classifications within the corpus
+	 */
+	private final double maxChangedRatio;
+
+	/**
+	 * Maximum ratio between the parsing costs of the new and the current data
+	 */
+	private final double maxCostRatio;
+
+	/**
+	 * How to deal with new data which exceed a threshold
+	 */
+	@Nonnull
+	private final Mode mode;
+
+	/**
+	 * Constructs a validator which rejects new data with the default thresholds {@link #DEFAULT_MAX_COST_RATIO} and
+	 * {@link #DEFAULT_MAX_CHANGED_RATIO}.
+	 * 
+	 * @param corpus
+	 *            reference corpus of user agent strings
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalNullElementsException
+	 *             if the given corpus contains {@code null}
+	 */
+	public CorpusDataValidator(@Nonnull final Collection<String> corpus) {
+		this(corpus, DEFAULT_MAX_COST_RATIO, DEFAULT_MAX_CHANGED_RATIO, Mode.REJECT);
+	}
+
+	/**
+	 * Constructs a validator with the given thresholds.
+	 * 
+	 * @param corpus
+	 *            reference corpus of user agent strings
+	 * @param maxCostRatio
+	 *            maximum ratio between the parsing costs of the new and the current data (for example {@code 1.5} to
+	 *            allow a regression of 50%)
+	 * @param maxChangedRatio
+	 *            maximum ratio of changed classifications within the corpus (between {@code 0} and {@code 1})
+	 * @param mode
+	 *            how to deal with new data which exceed a threshold
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given corpus or mode is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalNullElementsException
+	 *             if the given corpus contains {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalNegativeArgumentException
+	 *             if one of the given ratios is negative
+	 * @throws net.sf.qualitycheck.exception.IllegalNaNArgumentException
+	 *             if one of the given ratios is not a number
+	 */
+	public CorpusDataValidator(@Nonnull final Collection<String> corpus, @Nonnegative final double maxCostRatio,
+			@Nonnegative final double maxChangedRatio, @Nonnull final Mode mode) {
+		Check.noNullElements(corpus, "corpus");
+		Check.notNegative(Check.notNaN(maxCostRatio, "maxCostRatio"), "maxCostRatio");
+		Check.notNegative(Check.notNaN(maxChangedRatio, "maxChangedRatio"), "maxChangedRatio");
+		Check.notNull(mode, "mode");
+		this.corpus = Collections.unmodifiableList(new ArrayList<String>(corpus));
+		this.maxCostRatio = maxCostRatio;
+		this.maxChangedRatio = maxChangedRatio;
+		this.mode = mode;
+	}
+
+	/**
+	 * Gets the reference corpus.
+	 * 
+	 * @return unmodifiable list of user agent strings
+	 */
+	@Nonnull
+	public List<String> getCorpus() {
+		return corpus;
+	}
+
+	/**
+	 * Gets the ratio of changed classifications of the last validation.
+	 * 
+	 * @return ratio between {@code 0} and {@code 1}
+	 */
+	@Nonnegative
+	public double getLastChangedRatio() {
+		return lastChangedRatio;
+	}
+
+	/**
+	 * Gets the ratio between the parsing costs of the candidate and the current data of the last validation.
+	 * 
+	 * @return cost ratio (greater than {@code 1} means the candidate is slower)
+	 */
+	@Nonnegative
+	public double getLastCostRatio() {
+		return lastCostRatio;
+	}
+
+	/**
+	 * Gets the way to deal with new data which exceed a threshold.
+	 * 
+	 * @return mode of this validator
+	 */
+	@Nonnull
+	public Mode getMode() {
+		return mode;
+	}
+
+	@Override
+	public boolean validate(@Nonnull final Data current, @Nonnull final Data candidate) {
+		Check.notNull(current, "current");
+		Check.notNull(candidate, "candidate");
+		if (corpus.isEmpty()) {
+			return true;
+		}
+
+		// the first pass compares the classifications and warms up both data
+		final List<ReadableUserAgent> expected = parse(corpus, current);
+		final List<ReadableUserAgent> actual = parse(corpus, candidate);
+		int changed = 0;
+		for (int i = 0; i < corpus.size(); i++) {
+			if (!isSameClassification(expected.get(i), actual.get(i))) {
+				changed++;
+			}
+		}
+
+		long currentNanos = Long.MAX_VALUE;
+		long candidateNanos = Long.MAX_VALUE;
+		for (int round = 0; round < MEASUREMENT_ROUNDS; round++) {
+			currentNanos = Math.min(currentNanos, time(corpus, current));
+			candidateNanos = Math.min(candidateNanos, time(corpus, candidate));
+		}
+
+		final double changedRatio = (double) changed / corpus.size();
+		final double costRatio = (double) candidateNanos / Math.max(currentNanos, 1L);
+		lastChangedRatio = changedRatio;
+		lastCostRatio = costRatio;
+		LOG.debug(String.format(MSG_VALIDATED, candidate.getVersion(), costRatio, changedRatio));
+
+		boolean valid = true;
+		if (costRatio > maxCostRatio) {
+			LOG.warn(String.format(MSG_COST_EXCEEDED, candidate.getVersion(), costRatio, current.getVersion(), maxCostRatio));
+			valid = false;
+		}
+		if (changedRatio > maxChangedRatio) {
+			LOG.warn(String.format(MSG_CHANGED_EXCEEDED, changed, corpus.size(), candidate.getVersion(), changedRatio, maxChangedRatio));
+			valid = false;
+		}
+		return valid || mode == Mode.LOG;
+	}
+
+}
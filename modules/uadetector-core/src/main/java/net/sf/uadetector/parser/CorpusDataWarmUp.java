@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.datastore.DataWarmUp;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.util.UrlUtil;
+
+/**
+ * Warms up new <em>UAS data</em> by parsing a corpus of user agent strings with them before they will be published.
+ * <p>
+ * The corpus consists of a fixed part (for example a bundled file with typical user agent strings, see
+ * {@link #read(URL, Charset, int)}) and a bounded sample of recent traffic, which can be fed via
+ * {@link #record(String)}. Each recorded user agent string overrides the oldest one as soon as the capacity is reached.
+ * <p>
+ * Without a parser the corpus will be parsed by evaluating the patterns in order. With the parser which will work with
+ * the new data (see {@link #setParser(AbstractUserAgentStringParser)}) the corpus will be parsed with its normalizer,
+ * lower case matching, budget and matching engine, so that an engine with an index compiles it during the warm-up
+ * and not on the first request after the data have been published.
+ */
+@ThreadSafe
+public final class CorpusDataWarmUp implements DataWarmUp {
+
+	/**
+	 * Default number of recorded user agent strings of recent traffic
+	 */
+	public static final int DEFAULT_RECENT_CAPACITY = 1000;
+
+	/**
+	 * Reads a corpus of user agent strings (one per line) from the given URL. Empty lines will be ignored.
+	 * 
+	 * @param url
+	 *            URL to a corpus of user agent strings
+	 * @param charset
+	 *            the character set in which the corpus should be read
+	 * @param recentCapacity
+	 *            maximum number of recorded user agent strings of recent traffic ({@code 0} to disable recording)
+	 * @return a warm-up with the read corpus
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if any of the given arguments is {@code null}
+	 * @throws net.sf.uadetector.exception.CanNotOpenStreamException
+	 *             if no stream to the given {@code URL} can be established
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Nonnull
+	public static CorpusDataWarmUp read(@Nonnull final URL url, @Nonnull final Charset charset, @Nonnegative final int recentCapacity)
+			throws IOException {
+		final List<String> corpus = new ArrayList<String>();
+		for (final String line : UrlUtil.read(url, charset).split("\r?\n")) {
+			if (!line.trim().isEmpty()) {
+				corpus.add(line);
+			}
+		}
+		return new CorpusDataWarmUp(corpus, recentCapacity);
+	}
+
+	/**
+	 * Fixed part of the corpus
+	 */
+	@Nonnull
+	private final List<String> corpus;
+
+	/**
+	 * Number of user agent strings which have been parsed during the last warm-up
+	 */
+	private volatile int lastParsed;
+
+	/**
+	 * Parser whose settings will be used during a warm-up or {@code null} to evaluate the patterns in order
+	 */
+	@Nullable
+	private volatile AbstractUserAgentStringParser parser;
+
+	/**
+	 * Ring buffer with recorded user agent strings of recent traffic
+	 */
+	@Nonnull
+	private final AtomicReferenceArray<String> recent;
+
+	/**
+	 * Position of the next recorded user agent string
+	 */
+	private final AtomicLong recentPosition = new AtomicLong();
+
+	/**
+	 * Constructs a warm-up which records up to {@link #DEFAULT_RECENT_CAPACITY} user agent strings of recent traffic
+	 * additionally to the given corpus.
+	 * 
+	 * @param corpus
+	 *            fixed user agent strings which will always be parsed
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	public CorpusDataWarmUp(@Nonnull final Collection<String> corpus) {
+		this(corpus, DEFAULT_RECENT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a warm-up which records up to the given number of user agent strings of recent traffic additionally
+	 * to the given corpus.
+	 * 
+	 * @param corpus
+	 *            fixed user agent strings which will always be parsed
+	 * @param recentCapacity
+	 *            maximum number of recorded user agent strings of recent traffic ({@code 0} to disable recording)
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given corpus is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalNullElementsException
+	 *             if the given corpus contains {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalNegativeArgumentException
+	 *             if the given capacity is negative
+	 */
+	public CorpusDataWarmUp(@Nonnull final Collection<String> corpus, @Nonnegative final int recentCapacity) {
+		Check.noNullElements(corpus, "corpus");
+		Check.notNegative(recentCapacity, "recentCapacity");
+		this.corpus = Collections.unmodifiableList(new ArrayList<String>(corpus));
+		recent = new AtomicReferenceArray<String>(recentCapacity);
+	}
+
+	/**
+	 * Gets the fixed part of the corpus.
+	 * 
+	 * @return unmodifiable list of user agent strings
+	 */
+	@Nonnull
+	public List<String> getCorpus() {
+		return corpus;
+	}
+
+	/**
+	 * Gets the number of user agent strings which have been parsed during the last warm-up.
+	 * 
+	 * @return number of parsed user agent strings
+	 */
+	@Nonnegative
+	public int getLastParsed() {
+		return lastParsed;
+	}
+
+	/**
+	 * Gets the parser whose settings will be used during a warm-up.
+	 * 
+	 * @return parser or {@code null} if no one is set
+	 */
+	@Nullable
+	public AbstractUserAgentStringParser getParser() {
+		return parser;
+	}
+
+	/**
+	 * Records an user agent string of recent traffic, which will be parsed during the next warm-up. This method is
+	 * cheap and intended to be called on the request path.
+	 * 
+	 * @param userAgent
+	 *            user agent string (will be ignored if {@code null} or if recording is disabled)
+	 */
+	public void record(@Nullable final String userAgent) {
+		if (userAgent != null && recent.length() > 0) {
+			recent.set((int) (recentPosition.getAndIncrement() % recent.length()), userAgent);
+		}
+	}
+
+	/**
+	 * Sets the parser whose normalizer, lower case matching, budget and matching engine will be used during a warm-up.
+	 * Usually this is the parser of the data store which runs this warm-up. Nothing will be recorded in the metrics,
+	 * the profiler or the interner of the parser.
+	 * 
+	 * @param parser
+	 *            parser or {@code null} to evaluate the patterns in order
+	 */
+	public void setParser(@Nullable final AbstractUserAgentStringParser parser) {
+		this.parser = parser;
+	}
+
+	@Override
+	public void warmUp(@Nonnull final Data data) {
+		Check.notNull(data, "data");
+		final AbstractUserAgentStringParser currentParser = parser;
+		int parsed = 0;
+		for (final String userAgent : corpus) {
+			warmUp(userAgent, data, currentParser);
+			parsed++;
+		}
+		for (int i = 0; i < recent.length(); i++) {
+			final String userAgent = recent.get(i);
+			if (userAgent != null) {
+				warmUp(userAgent, data, currentParser);
+				parsed++;
+			}
+		}
+		lastParsed = parsed;
+	}
+
+	private static void warmUp(@Nonnull final String userAgent, @Nonnull final Data data,
+			@Nullable final AbstractUserAgentStringParser parser) {
+		if (parser != null) {
+			parser.warmUp(userAgent, data);
+		} else {
+			AbstractUserAgentStringParser.examine(userAgent, data);
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.uadetector.BrowserEngineFamily;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.UserAgentFamily;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.Browser;
+import net.sf.uadetector.internal.data.domain.BrowserEngine;
+import net.sf.uadetector.internal.data.domain.OperatingSystem;
+
+/**
+ * Looks up the browser, browser engine or operating system of the <em>UAS data</em> which belongs to a family. The
+ * entries will be indexed by their families once per version of the data.
+ * <p>
+ * If several browsers or browser engines belong to the same family, the one with the lowest ID will be found. If
+ * several operating systems belong to the same family, the one which is named like the family will be preferred (for
+ * example {@code Linux} instead of {@code Linux (Ubuntu)}), otherwise the one with the lowest ID will be found.
+ */
+@ThreadSafe
+final class FamilyIndex {
+
+	/**
+	 * Entries of one version of the <em>UAS data</em> by their families
+	 */
+	@Immutable
+	private static final class Index {
+
+		@Nonnull
+		private final Map<BrowserEngineFamily, BrowserEngine> browserEngines;
+
+		@Nonnull
+		private final Map<UserAgentFamily, Browser> browsers;
+
+		@Nonnull
+		private final Data data;
+
+		@Nonnull
+		private final Map<OperatingSystemFamily, OperatingSystem> operatingSystems;
+
+		Index(@Nonnull final Data data) {
+			this.data = data;
+			browsers = new EnumMap<UserAgentFamily, Browser>(UserAgentFamily.class);
+			for (final Browser browser : data.getBrowsers()) {
+				final Browser current = browsers.get(browser.getFamily());
+				if (current == null || browser.getId() < current.getId()) {
+					browsers.put(browser.getFamily(), browser);
+				}
+			}
+			browserEngines = new EnumMap<BrowserEngineFamily, BrowserEngine>(BrowserEngineFamily.class);
+			for (final BrowserEngine browserEngine : data.getBrowserEngines()) {
+				final BrowserEngine current = browserEngines.get(browserEngine.getFamily());
+				if (current == null || browserEngine.getId() < current.getId()) {
+					browserEngines.put(browserEngine.getFamily(), browserEngine);
+				}
+			}
+			operatingSystems = new EnumMap<OperatingSystemFamily, OperatingSystem>(OperatingSystemFamily.class);
+			for (final OperatingSystem operatingSystem : data.getOperatingSystems()) {
+				final OperatingSystemFamily family = OperatingSystemFamily.evaluate(operatingSystem.getFamily());
+				final OperatingSystem current = operatingSystems.get(family);
+				if (current == null || rank(operatingSystem) < rank(current)) {
+					operatingSystems.put(family, operatingSystem);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Ranks an operating system within its family, so that the one named like the family comes first and the others
+	 * follow by their IDs.
+	 */
+	private static long rank(@Nonnull final OperatingSystem operatingSystem) {
+		final long id = operatingSystem.getId();
+		return operatingSystem.getName().equals(operatingSystem.getFamily()) ? id : id + Integer.MAX_VALUE + 1L;
+	}
+
+	/**
+	 * Index of the <em>UAS data</em> which have been searched most recently
+	 */
+	@Nullable
+	private volatile Index index;
+
+	/**
+	 * Finds the browser of the given family.
+	 * 
+	 * @param family
+	 *            family of a browser
+	 * @param data
+	 *            <em>UAS data</em> to search in
+	 * @return the browser or {@code null} if the data contain no browser of the family
+	 */
+	@Nullable
+	Browser findBrowser(@Nonnull final UserAgentFamily family, @Nonnull final Data data) {
+		return getIndex(data).browsers.get(family);
+	}
+
+	/**
+	 * Finds the browser engine of the given family.
+	 * 
+	 * @param family
+	 *            family of a browser engine
+	 * @param data
+	 *            <em>UAS data</em> to search in
+	 * @return the browser engine or {@code null} if the data contain no browser engine of the family
+	 */
+	@Nullable
+	BrowserEngine findBrowserEngine(@Nonnull final BrowserEngineFamily family, @Nonnull final Data data) {
+		return getIndex(data).browserEngines.get(family);
+	}
+
+	@Nonnull
+	private Index getIndex(@Nonnull final Data data) {
+		Index current = index;
+		if (current == null || current.data != data) {
+			current = new Index(data);
+			index = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Finds the operating system of the given family.
+	 * 
+	 * @param family
+	 *            family of an operating system
+	 * @param data
+	 *            <em>UAS data</em> to search in
+	 * @return the operating system or {@code null} if the data contain no operating system of the family
+	 */
+	@Nullable
+	OperatingSystem findOperatingSystem(@Nonnull final OperatingSystemFamily family, @Nonnull final Data data) {
+		return getIndex(data).operatingSystems.get(family);
+	}
+
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link CharSequence} which counts every character access of the regular expression engine and aborts the matching
+ * with a {@link BudgetExceededException} as soon as the step budget or the deadline is exceeded.
+ * <p>
+ * Subsequences (used for the extraction of groups after a successful match) are plain strings and not guarded.
+ */
+@NotThreadSafe
+final class GuardedCharSequence implements CharSequence {
+
+	/**
+	 * Thrown to abort a matching which exceeds its budget. To keep an abort cheap no stack trace will be filled in.
+	 */
+	static final class BudgetExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = -2637851244392582735L;
+
+		BudgetExceededException(@Nonnull final String message) {
+			super(message);
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+
+	}
+
+	/**
+	 * Budget of a parsing, which is shared by all sequences derived from the same user agent string
+	 */
+	@NotThreadSafe
+	private static final class Budget {
+
+		/**
+		 * Deadline as value of {@link System#nanoTime()} ({@code 0} means no deadline)
+		 */
+		private final long deadline;
+
+		/**
+		 * Maximum number of steps ({@code 0} means unlimited)
+		 */
+		private final long maxSteps;
+
+		/**
+		 * Number of character accesses so far
+		 */
+		private long steps;
+
+		Budget(@Nonnegative final long maxSteps, final long deadline) {
+			this.maxSteps = maxSteps;
+			this.deadline = deadline;
+		}
+
+		void step() {
+			steps++;
+			if (maxSteps > 0 && steps > maxSteps) {
+				throw new BudgetExceededException("The step budget of the parsing is exhausted.");
+			}
+			if (deadline != 0 && (steps & (DEADLINE_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() - deadline > 0) {
+				throw new BudgetExceededException("The time budget of the parsing is exhausted.");
+			}
+		}
+
+	}
+
+	/**
+	 * Number of steps between two checks of the deadline (must be a power of two)
+	 */
+	private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+	/**
+	 * Budget which will be charged for every character access
+	 */
+	@Nonnull
+	private final Budget budget;
+
+	/**
+	 * Guarded user agent string
+	 */
+	@Nonnull
+	private final String value;
+
+	private GuardedCharSequence(@Nonnull final String value, @Nonnull final Budget budget) {
+		this.value = value;
+		this.budget = budget;
+	}
+
+	GuardedCharSequence(@Nonnull final String value, @Nonnegative final long maxSteps, final long deadline) {
+		this(value, new Budget(maxSteps, deadline));
+	}
+
+	@Override
+	public char charAt(final int index) {
+		budget.step();
+		return value.charAt(index);
+	}
+
+	/**
+	 * Creates a sequence of another representation of the same user agent string (for example in lower case), which
+	 * charges the same budget.
+	 * 
+	 * @param other
+	 *            another representation of the guarded user agent string
+	 * @return guarded sequence sharing the budget of this sequence
+	 */
+	@Nonnull
+	GuardedCharSequence derive(@Nonnull final String other) {
+		return new GuardedCharSequence(other, budget);
+	}
+
+	/**
+	 * Gets the number of character accesses so far (including those of derived sequences).
+	 * 
+	 * @return number of steps
+	 */
+	long getSteps() {
+		return budget.steps;
+	}
+
+	@Override
+	public int length() {
+		return value.length();
+	}
+
+	@Override
+	public CharSequence subSequence(final int start, final int end) {
+		return value.substring(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return value;
+	}
+
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+import net.sf.uadetector.internal.util.LiteralAutomaton;
+import net.sf.uadetector.internal.util.PatternMatcher;
+
+/**
+ * Compiles for every stage of the <em>UAS data</em> an automaton over one key literal of each pattern. A pattern can
+ * only match if its key literal occurs in the user agent string, so a single scan over the user agent string in lower
+ * case determines the candidates of a stage. The candidates will then be evaluated in order, so that the result is the
+ * same as with an ordered scan. Patterns without a suitable literal are always candidates.
+ * <p>
+ * If the key literal of a pattern must occur at the beginning of the user agent string (like {@code Opera} of
+ * {@code ^Opera.*}), the pattern will not be added to the automaton but to a bucket of its first character, because it
+ * can only match user agent strings which start with this character.
+ */
+@ThreadSafe
+final class LiteralIndexMatchingEngine extends CompilingMatchingEngine<LiteralIndexMatchingEngine.Index> {
+
+	/**
+	 * Number of ASCII characters
+	 */
+	private static final int ASCII = 128;
+
+	/**
+	 * Index of the patterns of a stage
+	 */
+	@Immutable
+	static final class Index {
+
+		/**
+		 * Patterns which will be evaluated regardless of the scan
+		 */
+		@Nonnull
+		private final BitSet alwaysCandidates;
+
+		/**
+		 * Automaton over all key literals
+		 */
+		@Nonnull
+		private final LiteralAutomaton automaton;
+
+		/**
+		 * Positions of the patterns (in order of evaluation) whose key literal must occur at the beginning, by the first
+		 * character of the key literal
+		 */
+		@Nonnull
+		private final int[][] anchoredPatternsOfCharacter = new int[ASCII][];
+
+		/**
+		 * Entries of the stage in order of evaluation
+		 */
+		@Nonnull
+		private final Entry<?, ?>[] entries;
+
+		/**
+		 * Positions of the patterns (in order of evaluation) of every key literal
+		 */
+		@Nonnull
+		private final int[][] patternsOfLiteral;
+
+		Index(@Nonnull final SortedMap<? extends OrderedPattern<?>, ?> map) {
+			entries = map.entrySet().toArray(new Entry<?, ?>[map.size()]);
+
+			// count in how many patterns of the stage a literal occurs, to prefer rare literals as key
+			final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+			final List<List<String>> literalsOfPattern = new ArrayList<List<String>>(entries.length);
+			final List<String> anchoredLiterals = new ArrayList<String>(entries.length);
+			for (final Entry<?, ?> entry : entries) {
+				final List<String> literals = new ArrayList<String>();
+				final PatternMatcher matcher = ((OrderedPattern<?>) entry.getKey()).getPatternMatcher();
+				final boolean anchored = matcher.isAnchored() && !matcher.getLiterals().isEmpty();
+				anchoredLiterals.add(anchored ? PatternMatcher.toLowerCase(matcher.getLiterals().get(0)) : null);
+				for (final String literal : matcher.getLiterals()) {
+					final String lowerCase = PatternMatcher.toLowerCase(literal);
+					if (LiteralAutomaton.isSupported(lowerCase) && !literals.contains(lowerCase)) {
+						literals.add(lowerCase);
+						final Integer frequency = frequencies.get(lowerCase);
+						frequencies.put(lowerCase, frequency == null ? 1 : frequency + 1);
+					}
+				}
+				literalsOfPattern.add(literals);
+			}
+
+			final Map<String, List<Integer>> patternsByLiteral = new LinkedHashMap<String, List<Integer>>();
+			final Map<Character, List<Integer>> anchoredPatternsByCharacter = new HashMap<Character, List<Integer>>();
+			alwaysCandidates = new BitSet(entries.length);
+			for (int position = 0; position < entries.length; position++) {
+				final String key = selectKey(literalsOfPattern.get(position), frequencies);
+				if (key == null) {
+					alwaysCandidates.set(position);
+				} else if (key.equals(anchoredLiterals.get(position))) {
+					add(anchoredPatternsByCharacter, key.charAt(0), position);
+				} else {
+					add(patternsByLiteral, key, position);
+				}
+			}
+			for (final Entry<Character, List<Integer>> entry : anchoredPatternsByCharacter.entrySet()) {
+				anchoredPatternsOfCharacter[entry.getKey()] = toArray(entry.getValue());
+			}
+
+			automaton = new LiteralAutomaton(new ArrayList<String>(patternsByLiteral.keySet()));
+			patternsOfLiteral = new int[patternsByLiteral.size()][];
+			int id = 0;
+			for (final List<Integer> positions : patternsByLiteral.values()) {
+				patternsOfLiteral[id++] = toArray(positions);
+			}
+		}
+
+		private static <K> void add(@Nonnull final Map<K, List<Integer>> positionsByKey, @Nonnull final K key, final int position) {
+			List<Integer> positions = positionsByKey.get(key);
+			if (positions == null) {
+				positions = new ArrayList<Integer>(1);
+				positionsByKey.put(key, positions);
+			}
+			positions.add(position);
+		}
+
+		@Nonnull
+		private static int[] toArray(@Nonnull final List<Integer> positions) {
+			final int[] array = new int[positions.size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = positions.get(i);
+			}
+			return array;
+		}
+
+		/**
+		 * Determines the patterns which could match the given user agent string.
+		 * 
+		 * @param lowerCaseUserAgent
+		 *            user agent string in lower case
+		 * @return positions of the candidates in order of evaluation
+		 */
+		@Nonnull
+		BitSet candidates(@Nonnull final String lowerCaseUserAgent) {
+			final BitSet found = new BitSet(automaton.getLiteralCount());
+			automaton.scan(lowerCaseUserAgent, found);
+			final BitSet candidates = (BitSet) alwaysCandidates.clone();
+			for (int id = found.nextSetBit(0); id >= 0; id = found.nextSetBit(id + 1)) {
+				for (final int position : patternsOfLiteral[id]) {
+					candidates.set(position);
+				}
+			}
+			final int first = lowerCaseUserAgent.isEmpty() ? ASCII : lowerCaseUserAgent.charAt(0);
+			if (first < ASCII && anchoredPatternsOfCharacter[first] != null) {
+				for (final int position : anchoredPatternsOfCharacter[first]) {
+					candidates.set(position);
+				}
+			}
+			return candidates;
+		}
+
+		/**
+		 * Gets the number of patterns which are only candidates if the user agent string starts with the first character
+		 * of their key literal.
+		 * 
+		 * @return number of patterns in the buckets of the first characters
+		 */
+		int getAnchoredCount() {
+			int count = 0;
+			for (final int[] positions : anchoredPatternsOfCharacter) {
+				count += positions != null ? positions.length : 0;
+			}
+			return count;
+		}
+
+		/**
+		 * Gets the number of patterns which have no key literal and will therefore always be evaluated.
+		 * 
+		 * @return number of patterns without key literal
+		 */
+		int getAlwaysCandidateCount() {
+			return alwaysCandidates.cardinality();
+		}
+
+		@Nonnull
+		Entry<?, ?> getEntry(final int position) {
+			return entries[position];
+		}
+
+	}
+
+	/**
+	 * Selects the rarest literal of a pattern within its stage, whereby longer literals win a tie.
+	 * 
+	 * @param literals
+	 *            literals of a pattern
+	 * @param frequencies
+	 *            number of patterns of the stage in which a literal occurs
+	 * @return key literal or {@code null} if the pattern has no suitable literal
+	 */
+	@Nullable
+	private static String selectKey(@Nonnull final List<String> literals, @Nonnull final Map<String, Integer> frequencies) {
+		String key = null;
+		int keyFrequency = Integer.MAX_VALUE;
+		for (final String literal : literals) {
+			final int frequency = frequencies.get(literal);
+			if (frequency < keyFrequency || frequency == keyFrequency && literal.length() > key.length()) {
+				key = literal;
+				keyFrequency = frequency;
+			}
+		}
+		return key;
+	}
+
+	@Override
+	@Nonnull
+	Index compile(@Nonnull final SortedMap<? extends OrderedPattern<?>, ?> map) {
+		return new Index(map);
+	}
+
+	@Override
+	@Nullable
+	@SuppressWarnings("unchecked")
+	<P extends OrderedPattern<P>, T> Entry<P, T> find(@Nonnull final Index index, @Nonnull final SortedMap<P, T> map,
+			@Nonnull final ParseContext context) {
+		final BitSet candidates = index.candidates(context.getLowerCaseUserAgent());
+		for (int position = candidates.nextSetBit(0); position >= 0; position = candidates.nextSetBit(position + 1)) {
+			final Entry<P, T> entry = (Entry<P, T>) index.getEntry(position);
+			if (context.find(entry.getKey())) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "LiteralIndexMatchingEngine";
+	}
+
+}
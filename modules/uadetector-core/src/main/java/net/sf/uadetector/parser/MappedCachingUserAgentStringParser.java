@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.internal.data.Data;
+
+/**
+ * Caches the results of another parser in a {@link MappedResultCache}, so that several processes of a machine, which
+ * parse the same user agent strings, share their results.
+ * <p>
+ * A result will be stored in its compact form (see {@link CompactUserAgent}) and only if the compact form restores it
+ * exactly, otherwise the user agent string will be parsed every time. The cached results belong to the version of the
+ * <em>UAS data</em> with which they have been parsed, results of other versions will not be returned. Results of
+ * parsings which have been aborted, because they exhausted the budget of the parser, will never be stored.
+ */
+@ThreadSafe
+public final class MappedCachingUserAgentStringParser implements UserAgentStringParser {
+
+	/**
+	 * Hash code of the version of one <em>UAS data</em>
+	 */
+	@Immutable
+	private static final class DataVersion {
+
+		@Nonnull
+		private final Data data;
+
+		private final long hash;
+
+		DataVersion(@Nonnull final Data data) {
+			this.data = data;
+			hash = MappedResultCache.hash(data.getVersion());
+		}
+
+	}
+
+	/**
+	 * Table in which the results will be shared
+	 */
+	@Nonnull
+	private final MappedResultCache cache;
+
+	/**
+	 * Version of the <em>UAS data</em> which have been used most recently
+	 */
+	@Nullable
+	private volatile DataVersion dataVersion;
+
+	/**
+	 * Parser to which will be delegated on a cache miss
+	 */
+	@Nonnull
+	private final AbstractUserAgentStringParser delegate;
+
+	/**
+	 * Number of answers from the cache
+	 */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/**
+	 * Number of parsings by the delegate because of a cache miss
+	 */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Restores the results from their compact forms
+	 */
+	@Nonnull
+	private final CompactUserAgentResolver resolver = new CompactUserAgentResolver();
+
+	/**
+	 * Number of results which have been stored in the cache
+	 */
+	private final AtomicLong storeCount = new AtomicLong();
+
+	/**
+	 * Constructs a parser which shares the results of the given parser with other processes through the given cache.
+	 * 
+	 * @param delegate
+	 *            parser to which will be delegated on a cache miss
+	 * @param cache
+	 *            table in which the results will be shared
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if one of the given arguments is {@code null}
+	 */
+	public MappedCachingUserAgentStringParser(@Nonnull final AbstractUserAgentStringParser delegate,
+			@Nonnull final MappedResultCache cache) {
+		this.delegate = Check.notNull(delegate, "delegate");
+		this.cache = Check.notNull(cache, "cache");
+	}
+
+	/**
+	 * Gets the table in which the results will be shared.
+	 * 
+	 * @return cache of this parser
+	 */
+	@Nonnull
+	public MappedResultCache getCache() {
+		return cache;
+	}
+
+	@Override
+	public String getDataVersion() {
+		return delegate.getDataVersion();
+	}
+
+	/**
+	 * Gets the hash code of the version of the given <em>UAS data</em>, which will be calculated once per data.
+	 */
+	private long getDataVersion(@Nonnull final Data data) {
+		DataVersion current = dataVersion;
+		if (current == null || current.data != data) {
+			current = new DataVersion(data);
+			dataVersion = current;
+		}
+		return current.hash;
+	}
+
+	/**
+	 * Gets the parser to which will be delegated on a cache miss.
+	 * 
+	 * @return the parser whose results will be cached
+	 */
+	@Nonnull
+	public AbstractUserAgentStringParser getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Gets the number of answers from the cache.
+	 * 
+	 * @return number of cache hits
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Gets the number of user agent strings which have not been answered from the cache.
+	 * 
+	 * @return number of cache misses
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Gets the number of results which have been stored in the cache by this parser.
+	 * 
+	 * @return number of stored results
+	 */
+	public long getStoreCount() {
+		return storeCount.get();
+	}
+
+	@Override
+	public ReadableUserAgent parse(final String userAgent) {
+		if (userAgent == null) {
+			return delegate.parse(userAgent);
+		}
+
+		// work always with the same reference of data, so that a result is cached with the data it was parsed with
+		final Data data = delegate.getDataStore().getData();
+		final long version = getDataVersion(data);
+		final CompactUserAgent cached = cache.get(userAgent, version);
+		if (cached != null) {
+			final UserAgent result = resolver.resolve(cached, data);
+			if (result != null) {
+				hitCount.incrementAndGet();
+				return result;
+			}
+		}
+
+		missCount.incrementAndGet();
+		final MatchedEntries matches = new MatchedEntries();
+		final UserAgent result = delegate.parse(userAgent, data, matches);
+		final CompactUserAgent compact = CompactUserAgent.encode(matches, result);
+		if (!matches.isAborted() && compact.isRestorable() && result.equals(resolver.resolve(compact, data))
+				&& cache.put(userAgent, version, compact)) {
+			storeCount.incrementAndGet();
+		}
+		return result;
+	}
+
+	/**
+	 * Shuts down the parser to which will be delegated. The shared cache remains untouched.
+	 */
+	@Override
+	@PreDestroy
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("MappedCachingUserAgentStringParser [delegate=");
+		builder.append(delegate);
+		builder.append(", cache=");
+		builder.append(cache);
+		builder.append(", hitCount=");
+		builder.append(hitCount.get());
+		builder.append(", missCount=");
+		builder.append(missCount.get());
+		builder.append(", storeCount=");
+		builder.append(storeCount.get());
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,488 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Table of compact parse results (see {@link CompactUserAgent}) in a memory-mapped file, which can be shared by all
+ * processes of a machine that parse with the same version of the <em>UAS data</em>.
+ * <p>
+ * The table uses open addressing with linear probing over a fixed number of slots. A user agent string is identified
+ * by two independent hash codes and its length, the string itself will not be stored. Every slot carries the hash code
+ * of the version of the <em>UAS data</em> with which it has been written, so that entries of other versions will be
+ * ignored and overwritten after an update.
+ * <p>
+ * Readers do not lock. Every slot is guarded by a sequence number, which is odd while the slot is written: a writer
+ * locks the region of the slot in the file (which excludes writers of all processes), makes the sequence number odd,
+ * writes the content and publishes it by incrementing the sequence number again. A reader discards a slot whose
+ * sequence number is odd or has changed while reading. A writer which dies within the short window of writing a slot
+ * leaves an odd sequence number, but its lock will be released by the operating system, so that the slot can be
+ * written again.
+ * <p>
+ * The mapped memory is not covered by the Java Memory Model. Readers and writers therefore separate the accesses to
+ * the sequence number from the accesses to the content with full fences on both sides. As Java 6 offers no explicit
+ * fence, a fence is a volatile write followed by a volatile read, which HotSpot implements with a full memory barrier
+ * on every platform. The correctness of this table depends on that implementation.
+ * <p>
+ * The file will be mapped as long as the cache is reachable, but it will be kept open for locking until the cache is
+ * closed. A closed cache can still be read, but nothing will be stored anymore.
+ */
+@ThreadSafe
+public final class MappedResultCache implements Closeable {
+
+	/**
+	 * Corresponding default logger of this class
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MappedResultCache.class);
+
+	/**
+	 * Identifies a file of this cache
+	 */
+	private static final int MAGIC = 0x55414d43;
+
+	/**
+	 * Version of the layout of the file
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Size of the header of the file in bytes
+	 */
+	private static final int HEADER_SIZE = 64;
+
+	/**
+	 * Offset of the magic number in the header
+	 */
+	private static final int HEADER_MAGIC = 0;
+
+	/**
+	 * Offset of the format version in the header
+	 */
+	private static final int HEADER_FORMAT_VERSION = 4;
+
+	/**
+	 * Offset of the slot size in the header
+	 */
+	private static final int HEADER_SLOT_SIZE = 8;
+
+	/**
+	 * Offset of the number of slots in the header
+	 */
+	private static final int HEADER_CAPACITY = 12;
+
+	/**
+	 * Size of a slot in bytes
+	 */
+	private static final int SLOT_SIZE = 72;
+
+	/**
+	 * Offset of the sequence number of a slot, which is odd while the slot is written
+	 */
+	private static final int SEQUENCE = 0;
+
+	/**
+	 * Offset of the length of the user agent string
+	 */
+	private static final int LENGTH = 4;
+
+	/**
+	 * Offset of the 64-bit hash code of the user agent string ({@code 0} in an empty slot)
+	 */
+	private static final int HASH = 8;
+
+	/**
+	 * Offset of the hash code of the version of the <em>UAS data</em>
+	 */
+	private static final int DATA_VERSION = 16;
+
+	/**
+	 * Offset of the second hash code of the user agent string ({@link String#hashCode()})
+	 */
+	private static final int CHECKSUM = 24;
+
+	/**
+	 * Offset of the device ID
+	 */
+	private static final int DEVICE = 28;
+
+	/**
+	 * Offset of the robot ID
+	 */
+	private static final int ROBOT = 32;
+
+	/**
+	 * Offset of the browser ID
+	 */
+	private static final int BROWSER = 36;
+
+	/**
+	 * Offset of the browser engine ID
+	 */
+	private static final int BROWSER_ENGINE = 40;
+
+	/**
+	 * Offset of the operating system ID
+	 */
+	private static final int OPERATING_SYSTEM = 44;
+
+	/**
+	 * Offset of the packed version number of the user agent
+	 */
+	private static final int VERSION = 48;
+
+	/**
+	 * Offset of the packed version number of the browser engine
+	 */
+	private static final int BROWSER_ENGINE_VERSION = 56;
+
+	/**
+	 * Offset of the packed version number of the operating system
+	 */
+	private static final int OPERATING_SYSTEM_VERSION = 64;
+
+	/**
+	 * Maximum number of slots of a table
+	 */
+	public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE;
+
+	/**
+	 * Maximum number of slots which will be probed for a user agent string
+	 */
+	static final int MAX_PROBES = 8;
+
+	/**
+	 * Serializes the initialization of files within this process, because file locks are held by the whole process
+	 */
+	private static final Object INITIALIZATION_LOCK = new Object();
+
+	/**
+	 * Calculates a 64-bit hash code of the given text (FNV-1a over its characters), which is never {@code 0}.
+	 * 
+	 * @param text
+	 *            text to hash
+	 * @return hash code
+	 */
+	static long hash(@Nonnull final String text) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < text.length(); i++) {
+			hash ^= text.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash != 0 ? hash : 1;
+	}
+
+	/**
+	 * Reads the capacity of an existing table or initializes the file as an empty table with the given capacity.
+	 */
+	@Nonnegative
+	private static int initialize(@Nonnull final RandomAccessFile file, @Nonnegative final int capacity) throws IOException {
+		final FileChannel channel = file.getChannel();
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+		if (file.length() >= HEADER_SIZE) {
+			channel.read(header, 0);
+			final int existingCapacity = header.getInt(HEADER_CAPACITY);
+			if (header.getInt(HEADER_MAGIC) == MAGIC && header.getInt(HEADER_FORMAT_VERSION) == FORMAT_VERSION
+					&& header.getInt(HEADER_SLOT_SIZE) == SLOT_SIZE && existingCapacity > 0 && existingCapacity <= MAX_CAPACITY
+					&& file.length() == size(existingCapacity)) {
+				return existingCapacity;
+			}
+			LOG.info("The file '" + file + "' does not contain a valid result cache and will be initialized.");
+			header.clear();
+		}
+		file.setLength(0);
+		file.setLength(size(capacity));
+		header.putInt(HEADER_MAGIC, MAGIC);
+		header.putInt(HEADER_FORMAT_VERSION, FORMAT_VERSION);
+		header.putInt(HEADER_SLOT_SIZE, SLOT_SIZE);
+		header.putInt(HEADER_CAPACITY, capacity);
+		channel.write(header, 0);
+		return capacity;
+	}
+
+	private static long size(@Nonnegative final int capacity) {
+		return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+	}
+
+	/**
+	 * The mapped file in native byte order, which will only be accessed at absolute positions
+	 */
+	@Nonnull
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * Number of slots
+	 */
+	@Nonnegative
+	private final int capacity;
+
+	/**
+	 * Channel of the file, which locks the slots while they are written
+	 */
+	@Nonnull
+	private final FileChannel channel;
+
+	/**
+	 * Orders the accesses to a slot around its sequence number (see {@link #fullFence()}), because the mapped memory is
+	 * not covered by volatile semantics
+	 */
+	private volatile int fence;
+
+	/**
+	 * File of the table
+	 */
+	@Nonnull
+	private final File file;
+
+	/**
+	 * Opens the table in the given file or creates it with the given number of slots, if the file does not contain a
+	 * table. An existing table keeps its number of slots, so that all processes agree on its layout.
+	 * 
+	 * @param file
+	 *            file of the table
+	 * @param capacity
+	 *            number of slots of a new table
+	 * @throws IOException
+	 *             if the file cannot be read, written or mapped
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given file is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the capacity is not between {@code 1} and {@link #MAX_CAPACITY}
+	 */
+	public MappedResultCache(@Nonnull final File file, @Nonnegative final int capacity) throws IOException {
+		Check.notNull(file, "file");
+		Check.stateIsTrue(capacity > 0 && capacity <= MAX_CAPACITY, "Argument 'capacity' must be between 1 and %s, but was %s.",
+				MAX_CAPACITY, capacity);
+		this.file = file;
+
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		boolean mapped = false;
+		try {
+			channel = randomAccessFile.getChannel();
+			synchronized (INITIALIZATION_LOCK) {
+				final FileLock lock = channel.lock();
+				try {
+					this.capacity = initialize(randomAccessFile, capacity);
+					buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(this.capacity));
+					buffer.order(ByteOrder.nativeOrder());
+				} finally {
+					lock.release();
+				}
+			}
+			mapped = true;
+		} finally {
+			if (!mapped) {
+				randomAccessFile.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes the file of the table. The mapping remains valid, so that the table can still be read, but nothing will be
+	 * stored anymore.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Prevents that accesses to a slot will be reordered across this call, neither by the compiler nor by the processor.
+	 * A volatile write alone does not keep the following accesses behind it and a volatile read alone does not keep the
+	 * preceding accesses before it, but a volatile write followed by a volatile read does both (a StoreLoad barrier).
+	 */
+	private int fullFence() {
+		fence = 0;
+		return fence;
+	}
+
+	/**
+	 * Looks up the compact result of the given user agent string.
+	 * 
+	 * @param userAgent
+	 *            user agent string
+	 * @param dataVersion
+	 *            hash code of the version of the current <em>UAS data</em> (see {@link #hash(String)})
+	 * @return compact result or {@code null} if the table contains no result of the current data for the string
+	 */
+	@Nullable
+	CompactUserAgent get(@Nonnull final String userAgent, final long dataVersion) {
+		final long hash = hash(userAgent);
+		final int checksum = userAgent.hashCode();
+		final int start = index(hash);
+		for (int probe = 0; probe < MAX_PROBES; probe++) {
+			final int slot = slot(start + probe);
+			final int sequence = buffer.getInt(slot + SEQUENCE);
+			if ((sequence & 1) != 0) {
+				continue;
+			}
+			fullFence();
+			final long slotHash = buffer.getLong(slot + HASH);
+			if (slotHash == 0) {
+				// slots will be filled in probe order and never emptied
+				return null;
+			}
+			if (slotHash != hash || buffer.getInt(slot + LENGTH) != userAgent.length() || buffer.getInt(slot + CHECKSUM) != checksum
+					|| buffer.getLong(slot + DATA_VERSION) != dataVersion) {
+				continue;
+			}
+			final CompactUserAgent compact = new CompactUserAgent(buffer.getInt(slot + ROBOT), buffer.getInt(slot + BROWSER),
+					buffer.getLong(slot + VERSION), buffer.getInt(slot + BROWSER_ENGINE), buffer.getLong(slot + BROWSER_ENGINE_VERSION),
+					buffer.getInt(slot + OPERATING_SYSTEM), buffer.getLong(slot + OPERATING_SYSTEM_VERSION), buffer.getInt(slot + DEVICE));
+			fullFence();
+
+			// the slot has been overwritten while reading
+			return buffer.getInt(slot + SEQUENCE) == sequence ? compact : null;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the number of slots of the table.
+	 * 
+	 * @return number of slots
+	 */
+	@Nonnegative
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the file of the table.
+	 * 
+	 * @return file of the table
+	 */
+	@Nonnull
+	public File getFile() {
+		return file;
+	}
+
+	private int index(final long hash) {
+		return (int) ((hash >>> 1) % capacity);
+	}
+
+	/**
+	 * Stores the compact result of the given user agent string. The first probed slot which is empty, holds the same
+	 * string or a result of another version of the <em>UAS data</em> will be taken, otherwise the first probed slot
+	 * will be overwritten.
+	 * 
+	 * @param userAgent
+	 *            user agent string
+	 * @param dataVersion
+	 *            hash code of the version of the current <em>UAS data</em> (see {@link #hash(String)})
+	 * @param compact
+	 *            compact result
+	 * @return {@code true} if the result has been stored, {@code false} if the slot is written by someone else or the
+	 *         cache has been closed
+	 */
+	boolean put(@Nonnull final String userAgent, final long dataVersion, @Nonnull final CompactUserAgent compact) {
+		final long hash = hash(userAgent);
+		final int checksum = userAgent.hashCode();
+		final int start = index(hash);
+		int slot = slot(start);
+		for (int probe = 0; probe < MAX_PROBES; probe++) {
+			final int candidate = slot(start + probe);
+			final long slotHash = buffer.getLong(candidate + HASH);
+			if (slotHash == 0 || slotHash == hash && buffer.getInt(candidate + LENGTH) == userAgent.length()
+					&& buffer.getInt(candidate + CHECKSUM) == checksum || buffer.getLong(candidate + DATA_VERSION) != dataVersion) {
+				slot = candidate;
+				break;
+			}
+		}
+
+		final FileLock lock;
+		try {
+			lock = channel.tryLock(slot, SLOT_SIZE, false);
+		} catch (final OverlappingFileLockException e) {
+			// the slot is written by another thread of this process
+			return false;
+		} catch (final IOException e) {
+			LOG.debug("The slot could not be locked: " + e.getLocalizedMessage());
+			return false;
+		}
+		if (lock == null) {
+			return false;
+		}
+		try {
+			// an odd sequence number is left by a writer which died while writing
+			final int sequence = buffer.getInt(slot + SEQUENCE) | 1;
+			buffer.putInt(slot + SEQUENCE, sequence);
+			fullFence();
+			buffer.putInt(slot + LENGTH, userAgent.length());
+			buffer.putLong(slot + HASH, hash);
+			buffer.putLong(slot + DATA_VERSION, dataVersion);
+			buffer.putInt(slot + CHECKSUM, checksum);
+			buffer.putInt(slot + DEVICE, compact.getDeviceId());
+			buffer.putInt(slot + ROBOT, compact.getRobotId());
+			buffer.putInt(slot + BROWSER, compact.getBrowserId());
+			buffer.putInt(slot + BROWSER_ENGINE, compact.getBrowserEngineId());
+			buffer.putInt(slot + OPERATING_SYSTEM, compact.getOperatingSystemId());
+			buffer.putLong(slot + VERSION, compact.getVersion());
+			buffer.putLong(slot + BROWSER_ENGINE_VERSION, compact.getBrowserEngineVersion());
+			buffer.putLong(slot + OPERATING_SYSTEM_VERSION, compact.getOperatingSystemVersion());
+			fullFence();
+			buffer.putInt(slot + SEQUENCE, sequence + 1);
+			return true;
+		} finally {
+			try {
+				lock.release();
+			} catch (final IOException e) {
+				LOG.debug("The slot could not be unlocked: " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Gets the position of a slot in the mapped file.
+	 */
+	private int slot(final int index) {
+		return HEADER_SIZE + index % capacity * SLOT_SIZE;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("MappedResultCache [file=");
+		builder.append(file);
+		builder.append(", capacity=");
+		builder.append(capacity);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
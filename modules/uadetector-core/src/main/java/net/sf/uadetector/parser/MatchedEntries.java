@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Records the IDs of the entries of the <em>UAS data</em> which have been matched during a single parsing. An ID of
+ * {@code -1} means that no entry of the kind has been matched.
+ */
+@NotThreadSafe
+final class MatchedEntries {
+
+	/**
+	 * Whether the parsing has been aborted, because it exhausted its budget (see {@link ParseBudget}), so that its
+	 * result may be incomplete
+	 */
+	private boolean aborted;
+
+	/**
+	 * ID of the matched browser engine
+	 */
+	private int browserEngineId = -1;
+
+	/**
+	 * ID of the matched browser
+	 */
+	private int browserId = -1;
+
+	/**
+	 * ID of the device which describes the device category
+	 */
+	private int deviceId = -1;
+
+	/**
+	 * ID of the operating system which has been taken from the browser or matched afterwards
+	 */
+	private int operatingSystemId = -1;
+
+	/**
+	 * ID of the matched robot
+	 */
+	private int robotId = -1;
+
+	int getBrowserEngineId() {
+		return browserEngineId;
+	}
+
+	int getBrowserId() {
+		return browserId;
+	}
+
+	int getDeviceId() {
+		return deviceId;
+	}
+
+	int getOperatingSystemId() {
+		return operatingSystemId;
+	}
+
+	int getRobotId() {
+		return robotId;
+	}
+
+	boolean isAborted() {
+		return aborted;
+	}
+
+	void setAborted(final boolean aborted) {
+		this.aborted = aborted;
+	}
+
+	void setBrowserEngineId(final int browserEngineId) {
+		this.browserEngineId = browserEngineId;
+	}
+
+	void setBrowserId(final int browserId) {
+		this.browserId = browserId;
+	}
+
+	void setDeviceId(final int deviceId) {
+		this.deviceId = deviceId;
+	}
+
+	void setOperatingSystemId(final int operatingSystemId) {
+		this.operatingSystemId = operatingSystemId;
+	}
+
+	void setRobotId(final int robotId) {
+		this.robotId = robotId;
+	}
+
+}
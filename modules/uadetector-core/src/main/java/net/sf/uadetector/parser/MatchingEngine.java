@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+import net.sf.uadetector.internal.util.PatternAutomaton;
+
+/**
+ * Finds the first pattern of a stage (browsers, browser engines, operating systems or devices) which matches an user
+ * agent string.
+ * <p>
+ * Every engine must return the same entry as evaluating all patterns in their natural order would return. An engine
+ * can be set with {@link AbstractUserAgentStringParser#setMatchingEngine(MatchingEngine)}, by default the patterns
+ * will be evaluated in order one after another (see {@link #orderedScan()}).
+ */
+public abstract class MatchingEngine {
+
+	/**
+	 * Creates an engine which compiles all regular patterns of a stage into one automaton as soon as it sees new
+	 * <em>UAS data</em>. During parsing a single pass over the user agent string determines the first matching pattern
+	 * of a stage, so that the costs depend on the length of the user agent string rather than on the number of
+	 * patterns. Patterns which are not regular (see {@link PatternAutomaton#isSupported(java.util.regex.Pattern)}) will
+	 * still be evaluated with their regular expressions.
+	 * <p>
+	 * The states of the automata will be constructed lazily during parsing and cached (at most
+	 * {@link PatternAutomaton#DEFAULT_STATE_LIMIT} per stage), so the engine pays off as soon as the cache is warm. An
+	 * instance keeps the automata of the last seen <em>UAS data</em>, so it should be shared by all parsing of a parser.
+	 * 
+	 * @return new engine with combined automata
+	 */
+	@Nonnull
+	public static MatchingEngine createCombinedAutomaton() {
+		return createCombinedAutomaton(PatternAutomaton.DEFAULT_STATE_LIMIT);
+	}
+
+	/**
+	 * Creates an engine like {@link #createCombinedAutomaton()}, whose automata cache at most the given number of
+	 * states per stage. A state takes a few hundred bytes and the cache will be cleared when it is full, so a larger
+	 * limit trades memory for fewer constructions of states when the user agent strings are very diverse.
+	 * 
+	 * @param stateLimit
+	 *            maximum number of cached states per stage
+	 * @return new engine with combined automata
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given limit is not greater than {@code 0}
+	 */
+	@Nonnull
+	public static MatchingEngine createCombinedAutomaton(@Nonnegative final int stateLimit) {
+		Check.stateIsTrue(stateLimit > 0, "Argument 'stateLimit' must be greater than 0, but was %s.", stateLimit);
+		return new CombinedAutomatonMatchingEngine(stateLimit);
+	}
+
+	/**
+	 * Creates an engine which compiles an index over the literals of all patterns as soon as it sees new <em>UAS
+	 * data</em>. During parsing the user agent string will be scanned once per stage for all literals and only the
+	 * patterns whose literal occurs will be evaluated.
+	 * <p>
+	 * An instance keeps the index of the last seen <em>UAS data</em>, so it should be shared by all parsing of a
+	 * parser.
+	 * 
+	 * @return new engine with a literal index
+	 */
+	@Nonnull
+	public static MatchingEngine createLiteralIndex() {
+		return new LiteralIndexMatchingEngine();
+	}
+
+	/**
+	 * Gets the engine which evaluates the patterns in order one after another.
+	 * 
+	 * @return engine which scans the patterns in order
+	 */
+	@Nonnull
+	public static MatchingEngine orderedScan() {
+		return OrderedScanMatchingEngine.INSTANCE;
+	}
+
+	/**
+	 * Only the engines of this package are supported.
+	 */
+	MatchingEngine() {
+		// intentionally empty
+	}
+
+	/**
+	 * Finds the first entry of the given map whose pattern matches the input of the passed context. Every evaluation of
+	 * a pattern must take place with {@link ParseContext#find(OrderedPattern)}, so that the matching group is available
+	 * afterwards.
+	 * 
+	 * @param data
+	 *            <em>UAS data</em> to which the map belongs
+	 * @param map
+	 *            patterns of a stage in order of evaluation
+	 * @param context
+	 *            input to match
+	 * @return the first matching entry or {@code null} if no pattern matches
+	 */
+	@Nullable
+	abstract <P extends OrderedPattern<P>, T> Entry<P, T> find(@Nonnull Data data, @Nonnull SortedMap<P, T> map,
+			@Nonnull ParseContext context);
+
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+
+/**
+ * Evaluates the patterns of a stage in order one after another until one matches.
+ */
+@Immutable
+final class OrderedScanMatchingEngine extends MatchingEngine {
+
+	/**
+	 * The only instance of this engine
+	 */
+	static final OrderedScanMatchingEngine INSTANCE = new OrderedScanMatchingEngine();
+
+	private OrderedScanMatchingEngine() {
+		// use the singleton
+	}
+
+	@Override
+	@Nullable
+	<P extends OrderedPattern<P>, T> Entry<P, T> find(@Nonnull final Data data, @Nonnull final SortedMap<P, T> map,
+			@Nonnull final ParseContext context) {
+		for (final Entry<P, T> entry : map.entrySet()) {
+			if (context.find(entry.getKey())) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "OrderedScanMatchingEngine";
+	}
+
+}
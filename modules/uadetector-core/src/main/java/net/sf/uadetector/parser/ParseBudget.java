@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+
+/**
+ * Limits the work which a single parsing may spend in pattern matching. Adversarial or very long user agent strings
+ * can cause catastrophic backtracking in some patterns of the <em>UAS data</em>; a budget aborts such a parsing instead
+ * of tying up the calling thread.
+ * <p>
+ * A budget consists of a maximum number of steps (character accesses of the regular expression engine) and a
+ * timeout. Both limits apply to the whole parsing; a value of {@code 0} disables the corresponding limit.
+ * 
+ * @see AbstractUserAgentStringParser#setBudget(ParseBudget)
+ */
+@Immutable
+public final class ParseBudget {
+
+	/**
+	 * Maximum number of character accesses per parsing ({@code 0} means unlimited)
+	 */
+	@Nonnegative
+	private final long maxSteps;
+
+	/**
+	 * Maximum time per parsing in nanoseconds ({@code 0} means unlimited)
+	 */
+	@Nonnegative
+	private final long timeoutNanos;
+
+	/**
+	 * Constructs a budget.
+	 * 
+	 * @param maxSteps
+	 *            maximum number of character accesses per parsing ({@code 0} means unlimited)
+	 * @param timeout
+	 *            maximum time per parsing ({@code 0} means unlimited)
+	 * @param unit
+	 *            unit of the given timeout
+	 * @throws net.sf.qualitycheck.exception.IllegalNegativeArgumentException
+	 *             if one of the given limits is negative
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given unit is {@code null}
+	 */
+	public ParseBudget(@Nonnegative final long maxSteps, @Nonnegative final long timeout, @Nonnull final TimeUnit unit) {
+		Check.notNegative(maxSteps, "maxSteps");
+		Check.notNegative(timeout, "timeout");
+		Check.notNull(unit, "unit");
+		this.maxSteps = maxSteps;
+		timeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Gets the maximum number of character accesses per parsing.
+	 * 
+	 * @return maximum number of steps ({@code 0} means unlimited)
+	 */
+	@Nonnegative
+	public long getMaxSteps() {
+		return maxSteps;
+	}
+
+	/**
+	 * Gets the maximum time per parsing in nanoseconds.
+	 * 
+	 * @return timeout in nanoseconds ({@code 0} means unlimited)
+	 */
+	@Nonnegative
+	public long getTimeoutNanos() {
+		return timeoutNanos;
+	}
+
+	/**
+	 * Wraps the given user agent string into a sequence which enforces this budget from now on.
+	 * 
+	 * @param userAgent
+	 *            user agent string
+	 * @return guarded sequence
+	 */
+	@Nonnull
+	GuardedCharSequence guard(@Nonnull final String userAgent) {
+		final long deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+		return new GuardedCharSequence(userAgent, maxSteps, deadline);
+	}
+
+}
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+import net.sf.uadetector.internal.util.PatternMatcher;
+
+/**
+ * Holds everything a single parsing needs besides the <em>UAS data</em>: the input which will be matched against the
+ * patterns and the optional instrumentation.
+ * <p>
+ * In lower case mode the user agent string will be converted once into lower case, so that case-insensitive patterns
+ * can be evaluated by their case-sensitive lower case forms (see {@link PatternMatcher#getLowerCasePattern()}).
+ * Capturing groups are always taken from the original user agent string.
+ */
+@NotThreadSafe
+final class ParseContext {
+
+	/**
+	 * Creates a context for the given user agent string.
+	 * 
+	 * @param userAgent
+	 *            user agent string
+	 * @param budget
+	 *            budget which limits the matching or {@code null}
+	 * @param lowerCase
+	 *            whether case-insensitive patterns should be evaluated against the user agent string in lower case
+	 * @param profiler
+	 *            profiler to record the costs of every pattern or {@code null}
+	 * @param engine
+	 *            engine which finds the first matching pattern of a stage or {@code null} for the ordered scan
+	 * @param matches
+	 *            receives the IDs of the matched entries
+	 * @return new context
+	 */
+	@Nonnull
+	static ParseContext create(@Nonnull final String userAgent, @Nullable final ParseBudget budget, final boolean lowerCase,
+			@Nullable final PatternProfiler profiler, @Nullable final MatchingEngine engine, @Nonnull final MatchedEntries matches) {
+		final String lowerCaseUserAgent = lowerCase ? PatternMatcher.toLowerCase(userAgent) : null;
+		final MatchingEngine matchingEngine = engine != null ? engine : MatchingEngine.orderedScan();
+		if (budget == null) {
+			return new ParseContext(userAgent, userAgent, lowerCaseUserAgent, lowerCaseUserAgent, profiler, matchingEngine, matches);
+		}
+		final GuardedCharSequence input = budget.guard(userAgent);
+		return new ParseContext(userAgent, input, lowerCaseUserAgent,
+				lowerCaseUserAgent != null ? input.derive(lowerCaseUserAgent) : null, profiler, matchingEngine, matches);
+	}
+
+	/**
+	 * Engine which finds the first matching pattern of a stage
+	 */
+	@Nonnull
+	private final MatchingEngine engine;
+
+	/**
+	 * Number of evaluated patterns so far
+	 */
+	@Nonnegative
+	private int evaluations;
+
+	/**
+	 * Input which will be matched against the patterns
+	 */
+	@Nonnull
+	private final CharSequence input;
+
+	/**
+	 * User agent string in lower case, if already converted
+	 */
+	@Nullable
+	private String lowerCaseUserAgent;
+
+	/**
+	 * Input in lower case which will be matched against the lower case forms of case-insensitive patterns or
+	 * {@code null}
+	 */
+	@Nullable
+	private final CharSequence lowerCaseInput;
+
+	/**
+	 * Matcher of the last successful search, if the regular expression had to be evaluated
+	 */
+	@Nullable
+	private Matcher match;
+
+	/**
+	 * IDs of the entries which have been matched so far
+	 */
+	@Nonnull
+	private final MatchedEntries matches;
+
+	/**
+	 * Profiler to record the costs of every pattern or {@code null}
+	 */
+	@Nullable
+	private final PatternProfiler profiler;
+
+	/**
+	 * The original user agent string
+	 */
+	@Nonnull
+	private final String userAgent;
+
+	/**
+	 * Constructs a context without instrumentation which uses the ordered scan.
+	 * 
+	 * @param userAgent
+	 *            user agent string which will be matched against the patterns
+	 */
+	ParseContext(@Nonnull final String userAgent) {
+		this(userAgent, new MatchedEntries());
+	}
+
+	/**
+	 * Constructs a context without instrumentation which uses the ordered scan.
+	 * 
+	 * @param userAgent
+	 *            user agent string which will be matched against the patterns
+	 * @param matches
+	 *            receives the IDs of the matched entries
+	 */
+	ParseContext(@Nonnull final String userAgent, @Nonnull final MatchedEntries matches) {
+		this(userAgent, userAgent, null, null, null, MatchingEngine.orderedScan(), matches);
+	}
+
+	/**
+	 * Constructs a context.
+	 * 
+	 * @param userAgent
+	 *            the original user agent string
+	 * @param input
+	 *            input which will be matched against the patterns
+	 * @param lowerCaseUserAgent
+	 *            the user agent string in lower case or {@code null}
+	 * @param lowerCaseInput
+	 *            the input in lower case or {@code null}
+	 * @param profiler
+	 *            profiler to record the costs of every pattern or {@code null}
+	 * @param engine
+	 *            engine which finds the first matching pattern of a stage
+	 * @param matches
+	 *            receives the IDs of the matched entries
+	 */
+	private ParseContext(@Nonnull final String userAgent, @Nonnull final CharSequence input, @Nullable final String lowerCaseUserAgent,
+			@Nullable final CharSequence lowerCaseInput, @Nullable final PatternProfiler profiler, @Nonnull final MatchingEngine engine,
+			@Nonnull final MatchedEntries matches) {
+		this.userAgent = userAgent;
+		this.input = input;
+		this.lowerCaseUserAgent = lowerCaseUserAgent;
+		this.lowerCaseInput = lowerCaseInput;
+		this.profiler = profiler;
+		this.engine = engine;
+		this.matches = matches;
+	}
+
+	/**
+	 * Searches the given pattern in the input and records its costs, if a profiler is set. The specialized matcher of
+	 * the pattern will be consulted first, so that the regular expression will only be evaluated if the literals of the
+	 * pattern occur in the input.
+	 * 
+	 * @param pattern
+	 *            pattern of the <em>UAS data</em>
+	 * @return {@code true} if the pattern is found, otherwise {@code false}
+	 */
+	boolean find(@Nonnull final OrderedPattern<?> pattern) {
+		evaluations++;
+		if (profiler == null) {
+			return find(pattern.getPatternMatcher());
+		}
+		final long start = System.nanoTime();
+		final boolean found = find(pattern.getPatternMatcher());
+		profiler.record(pattern, System.nanoTime() - start, found);
+		return found;
+	}
+
+	private boolean find(@Nonnull final PatternMatcher patternMatcher) {
+		match = null;
+		final Pattern lowerCasePattern = patternMatcher.getLowerCasePattern();
+		if (lowerCaseInput != null && (lowerCasePattern != null || patternMatcher.isExact() && patternMatcher.isIgnoreCase())) {
+			if (!patternMatcher.mayMatchLowerCase(lowerCaseInput)) {
+				return false;
+			}
+			return patternMatcher.isExact() || find(lowerCasePattern.matcher(lowerCaseInput), patternMatcher.isBeginAnchored());
+		}
+
+		if (!patternMatcher.mayMatch(input)) {
+			return false;
+		}
+		return patternMatcher.isExact() || find(patternMatcher.getPattern().matcher(input), patternMatcher.isBeginAnchored());
+	}
+
+	/**
+	 * Evaluates a regular expression. A pattern which is anchored at the beginning will only be tried at the start of
+	 * the input.
+	 */
+	private boolean find(@Nonnull final Matcher matcher, final boolean beginAnchored) {
+		if (beginAnchored ? matcher.lookingAt() : matcher.find()) {
+			match = matcher;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the engine which finds the first matching pattern of a stage.
+	 * 
+	 * @return matching engine
+	 */
+	@Nonnull
+	MatchingEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Gets the number of patterns which have been evaluated with {@link #find(OrderedPattern)} so far.
+	 * 
+	 * @return number of evaluations
+	 */
+	@Nonnegative
+	int getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Gets the first capturing group of the last successful {@link #find(OrderedPattern)} from the original input.
+	 * 
+	 * @return the first group ({@code ""} if it did not participate in the match) or {@code null} if the pattern has no
+	 *         capturing groups
+	 */
+	@Nullable
+	String getFirstGroup() {
+		if (match == null || match.groupCount() == 0) {
+			return null;
+		}
+		final int start = match.start(1);
+		// the lower case input has the same length, therefore the indices are valid for the original input too
+		return start < 0 ? "" : input.subSequence(start, match.end(1)).toString();
+	}
+
+	/**
+	 * Gets the IDs of the entries of the <em>UAS data</em> which have been matched so far.
+	 * 
+	 * @return matched entries
+	 */
+	@Nonnull
+	MatchedEntries getMatches() {
+		return matches;
+	}
+
+	/**
+	 * Gets the original user agent string. The returned string is not guarded by a budget.
+	 * 
+	 * @return user agent string
+	 */
+	@Nonnull
+	String getUserAgent() {
+		return userAgent;
+	}
+
+	/**
+	 * Gets the original user agent string in lower case (see {@link PatternMatcher#toLowerCase(String)}). The conversion
+	 * takes place at most once per parsing. The returned string is not guarded by a budget.
+	 * 
+	 * @return user agent string in lower case
+	 */
+	@Nonnull
+	String getLowerCaseUserAgent() {
+		if (lowerCaseUserAgent == null) {
+			lowerCaseUserAgent = PatternMatcher.toLowerCase(userAgent);
+		}
+		return lowerCaseUserAgent;
+	}
+
+}
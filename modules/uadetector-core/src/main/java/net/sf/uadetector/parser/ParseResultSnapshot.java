@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.BrowserEngine;
+import net.sf.uadetector.BrowserEngineFamily;
+import net.sf.uadetector.DeviceCategory;
+import net.sf.uadetector.OperatingSystem;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.ReadableDeviceCategory;
+import net.sf.uadetector.ReadableDeviceCategory.Category;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.UserAgentFamily;
+import net.sf.uadetector.UserAgentType;
+import net.sf.uadetector.VersionNumber;
+
+/**
+ * Writes and reads a snapshot of parsing results, so that a result cache can be filled after a restart without parsing
+ * its working set again.
+ * <p>
+ * A snapshot belongs to the version of the <em>UAS data</em> with which its results have been parsed and will only be
+ * read for the same version. It is compressed with GZIP and stores every distinct string (user agent strings, names,
+ * URLs, version groups and the names of the enum constants) once in a table, to which the results refer by index.
+ */
+final class ParseResultSnapshot {
+
+	/**
+	 * Decodes results whose strings refer to a table
+	 */
+	private static final class Reader {
+
+		@Nonnull
+		private final DataInputStream input;
+
+		@Nonnull
+		private final String[] strings;
+
+		Reader(@Nonnull final DataInputStream input, @Nonnull final String[] strings) {
+			this.input = input;
+			this.strings = strings;
+		}
+
+		@Nonnull
+		BrowserEngine browserEngine() throws IOException {
+			return new BrowserEngine(BrowserEngineFamily.valueOf(string()), string(), versionNumber());
+		}
+
+		@Nonnull
+		DeviceCategory deviceCategory() throws IOException {
+			final Category category = Category.valueOf(string());
+			final String icon = string();
+			final String infoUrl = string();
+			final String name = string();
+
+			// the empty category has an empty name, which is not allowed for other categories
+			if (name.isEmpty() && category == DeviceCategory.EMPTY.getCategory() && icon.equals(DeviceCategory.EMPTY.getIcon())
+					&& infoUrl.equals(DeviceCategory.EMPTY.getInfoUrl())) {
+				return DeviceCategory.EMPTY;
+			}
+			return new DeviceCategory(category, icon, infoUrl, name);
+		}
+
+		@Nonnull
+		OperatingSystem operatingSystem() throws IOException {
+			return new OperatingSystem(OperatingSystemFamily.valueOf(string()), string(), string(), string(), string(), string(), string(),
+					versionNumber());
+		}
+
+		@Nonnull
+		String string() throws IOException {
+			final int index = input.readInt();
+			if (index < 0 || index >= strings.length) {
+				throw new IOException("Invalid string reference in snapshot: " + index);
+			}
+			return strings[index];
+		}
+
+		@Nonnull
+		UserAgent userAgent() throws IOException {
+			return new UserAgent(deviceCategory(), UserAgentFamily.valueOf(string()), string(), string(), operatingSystem(), string(),
+					string(), UserAgentType.valueOf(string()), string(), string(), versionNumber(), browserEngine());
+		}
+
+		@Nonnull
+		VersionNumber versionNumber() throws IOException {
+			final int size = readCount(input);
+			final List<String> groups = new ArrayList<String>(size);
+			for (int i = 0; i < size; i++) {
+				groups.add(string());
+			}
+			return new VersionNumber(groups, string());
+		}
+
+	}
+
+	/**
+	 * Encodes results into references to a table of distinct strings
+	 */
+	private static final class Writer {
+
+		@Nonnull
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+		@Nonnull
+		private final List<Integer> references = new ArrayList<Integer>();
+
+		@Nonnull
+		private final List<String> strings = new ArrayList<String>();
+
+		void browserEngine(@Nonnull final BrowserEngine engine) {
+			string(engine.getFamily().name());
+			string(engine.getInfoUrl());
+			versionNumber(engine.getVersionNumber());
+		}
+
+		void deviceCategory(@Nonnull final ReadableDeviceCategory category) {
+			string(category.getCategory().name());
+			string(category.getIcon());
+			string(category.getInfoUrl());
+			string(category.getName());
+		}
+
+		void operatingSystem(@Nonnull final OperatingSystem os) {
+			string(os.getFamily().name());
+			string(os.getFamilyName());
+			string(os.getIcon());
+			string(os.getName());
+			string(os.getProducer());
+			string(os.getProducerUrl());
+			string(os.getUrl());
+			versionNumber(os.getVersionNumber());
+		}
+
+		void string(@Nonnull final String string) {
+			Integer index = indexes.get(string);
+			if (index == null) {
+				index = strings.size();
+				strings.add(string);
+				indexes.put(string, index);
+			}
+			references.add(index);
+		}
+
+		void userAgent(@Nonnull final ReadableUserAgent userAgent) {
+			deviceCategory(userAgent.getDeviceCategory());
+			string(userAgent.getFamily().name());
+			string(userAgent.getIcon());
+			string(userAgent.getName());
+			operatingSystem(userAgent.getOperatingSystem());
+			string(userAgent.getProducer());
+			string(userAgent.getProducerUrl());
+			string(userAgent.getType().name());
+			string(userAgent.getTypeName());
+			string(userAgent.getUrl());
+			versionNumber(userAgent.getVersionNumber());
+			browserEngine(userAgent.getBrowserEngine());
+		}
+
+		void versionNumber(@Nonnull final VersionNumber version) {
+			references.add(version.getGroups().size());
+			for (final String group : version.getGroups()) {
+				string(group);
+			}
+			string(version.getExtension());
+		}
+
+	}
+
+	/**
+	 * Character set of the strings of a snapshot
+	 */
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * Version of the format of a snapshot
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Identifies the beginning of a snapshot
+	 */
+	private static final int MAGIC = 0x55415352;
+
+	/**
+	 * Maximum number of entries or strings in a snapshot, to reject corrupted files before allocating memory
+	 */
+	private static final int MAX_COUNT = 1 << 24;
+
+	/**
+	 * Reads a snapshot from the given stream, if it belongs to the given version of the <em>UAS data</em>.
+	 * 
+	 * @param in
+	 *            stream to read from
+	 * @param dataVersion
+	 *            version of the <em>UAS data</em> with which the results will be used
+	 * @return results by key in the order in which they have been written or {@code null} if the snapshot belongs to
+	 *         another version of the <em>UAS data</em>
+	 * @throws IOException
+	 *             if the stream cannot be read or does not contain a valid snapshot
+	 */
+	@Nullable
+	static Map<String, ReadableUserAgent> read(@Nonnull final InputStream in, @Nonnull final String dataVersion) throws IOException {
+		Check.notNull(in, "in");
+		Check.notNull(dataVersion, "dataVersion");
+		final DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+		if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+			throw new IOException("The stream does not contain a snapshot of parsing results.");
+		}
+		if (!dataVersion.equals(readString(input))) {
+			return null;
+		}
+
+		final String[] strings = new String[readCount(input)];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = readString(input);
+		}
+		final int count = readCount(input);
+		final Map<String, ReadableUserAgent> results = new LinkedHashMap<String, ReadableUserAgent>(count * 2);
+		final Reader reader = new Reader(input, strings);
+		try {
+			for (int i = 0; i < count; i++) {
+				final String key = reader.string();
+				results.put(key, reader.userAgent());
+			}
+		} catch (final RuntimeException e) {
+			// unknown enum constant or a value which is rejected by a constructor, e.g. an invalid version number
+			throw new IOException("The snapshot contains an invalid result: " + e.getLocalizedMessage(), e);
+		}
+		return results;
+	}
+
+	private static int readCount(@Nonnull final DataInputStream input) throws IOException {
+		final int count = input.readInt();
+		if (count < 0 || count > MAX_COUNT) {
+			throw new IOException("Invalid number of elements in snapshot: " + count);
+		}
+		return count;
+	}
+
+	@Nonnull
+	private static String readString(@Nonnull final DataInputStream input) throws IOException {
+		final byte[] bytes = new byte[readCount(input)];
+		input.readFully(bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	/**
+	 * Writes a snapshot of the given results to the given stream. The stream will be finished, but not closed.
+	 * 
+	 * @param out
+	 *            stream to write to
+	 * @param dataVersion
+	 *            version of the <em>UAS data</em> with which the results have been parsed
+	 * @param results
+	 *            results by key
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	static void write(@Nonnull final OutputStream out, @Nonnull final String dataVersion,
+			@Nonnull final Map<String, ? extends ReadableUserAgent> results) throws IOException {
+		Check.notNull(out, "out");
+		Check.notNull(dataVersion, "dataVersion");
+		Check.notNull(results, "results");
+		final Writer writer = new Writer();
+		for (final Entry<String, ? extends ReadableUserAgent> entry : results.entrySet()) {
+			writer.string(entry.getKey());
+			writer.userAgent(entry.getValue());
+		}
+
+		final GZIPOutputStream zip = new GZIPOutputStream(out);
+		final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(zip));
+		output.writeInt(MAGIC);
+		output.writeInt(FORMAT_VERSION);
+		writeString(output, dataVersion);
+		output.writeInt(writer.strings.size());
+		for (final String string : writer.strings) {
+			writeString(output, string);
+		}
+		output.writeInt(results.size());
+		for (int i = 0; i < writer.references.size(); i++) {
+			output.writeInt(writer.references.get(i));
+		}
+		output.flush();
+		zip.finish();
+	}
+
+	private static void writeString(@Nonnull final DataOutputStream output, @Nonnull final String string) throws IOException {
+		final byte[] bytes = string.getBytes(CHARSET);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private ParseResultSnapshot() {
+		// This class is not intended to create objects from it.
+	}
+
+}
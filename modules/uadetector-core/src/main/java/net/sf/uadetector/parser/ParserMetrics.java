@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.datastore.AbstractUpdateOperation;
+
+/**
+ * Collects low-overhead metrics of an {@link AbstractUserAgentStringParser}: the time spent in every stage of the
+ * parsing (as cumulative values and as logarithmic histogram), the number of patterns tried before a match, the rate
+ * of unknown user agents and the outcome of background updates.
+ * <p>
+ * The metrics will only be collected while an instance is set via
+ * {@link AbstractUserAgentStringParser#setMetrics(ParserMetrics)}, otherwise the parser runs without any
+ * instrumentation. The metrics can be published as MXBean with {@link #register(ObjectName)}.
+ */
+@ThreadSafe
+public final class ParserMetrics implements ParserMetricsMXBean {
+
+	/**
+	 * Stages of the parsing in the order in which they will be executed
+	 */
+	public enum Stage {
+
+		/**
+		 * Comparison with the user agent strings of known robots
+		 */
+		ROBOT,
+
+		/**
+		 * Examination of the browser patterns
+		 */
+		BROWSER,
+
+		/**
+		 * Examination of the browser engine patterns
+		 */
+		BROWSER_ENGINE,
+
+		/**
+		 * Examination of the operating system patterns
+		 */
+		OPERATING_SYSTEM,
+
+		/**
+		 * Examination of the device patterns
+		 */
+		DEVICE_CATEGORY
+
+	}
+
+	/**
+	 * Counters of a single stage
+	 */
+	private static final class StageRecorder {
+
+		private final AtomicLong count = new AtomicLong();
+
+		/**
+		 * Bucket {@code i} counts executions which took less than {@code 2^i} nanoseconds (and at least
+		 * {@code 2^(i-1)})
+		 */
+		private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		private final AtomicLong patternsTried = new AtomicLong();
+
+		private final AtomicLong totalNanos = new AtomicLong();
+
+		private long percentile(final long total, final double fraction) {
+			final long rank = (long) Math.ceil(total * fraction);
+			long seen = 0;
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+				seen += histogram.get(i);
+				if (seen >= rank) {
+					return i == HISTOGRAM_BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+				}
+			}
+			return 0;
+		}
+
+		void record(final long nanos, final int tried) {
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			patternsTried.addAndGet(tried);
+			histogram.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+			long max;
+			do {
+				max = maxNanos.get();
+			} while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+		}
+
+		void reset() {
+			count.set(0);
+			totalNanos.set(0);
+			patternsTried.set(0);
+			maxNanos.set(0);
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+				histogram.set(i, 0);
+			}
+		}
+
+		StageStatistics snapshot(final Stage stage) {
+			final long total = count.get();
+			return new StageStatistics(stage.name(), total, totalNanos.get(), maxNanos.get(), percentile(total, 0.5), percentile(total,
+					0.99), patternsTried.get());
+		}
+
+	}
+
+	/**
+	 * Number of histogram buckets (one for every possible bit length of a non-negative {@code long})
+	 */
+	private static final int HISTOGRAM_BUCKETS = 64;
+
+	/**
+	 * Number of parsings which have been aborted because their budget was exhausted
+	 */
+	private final AtomicLong abortCount = new AtomicLong();
+
+	/**
+	 * Number of recorded parsings
+	 */
+	private final AtomicLong parseCount = new AtomicLong();
+
+	/**
+	 * Name under which this instance has been registered, otherwise {@code null}
+	 */
+	private final AtomicReference<ObjectName> registeredName = new AtomicReference<ObjectName>();
+
+	/**
+	 * Counters of every stage (in the order of {@link Stage#values()})
+	 */
+	private final StageRecorder[] stages;
+
+	/**
+	 * Number of parsings which ended with an unknown user agent type
+	 */
+	private final AtomicLong unknownCount = new AtomicLong();
+
+	/**
+	 * Update operation of the data store of the observed parser, if it is updating
+	 */
+	@Nullable
+	private volatile AbstractUpdateOperation updateOperation;
+
+	/**
+	 * Constructs an empty set of metrics.
+	 */
+	public ParserMetrics() {
+		stages = new StageRecorder[Stage.values().length];
+		for (int i = 0; i < stages.length; i++) {
+			stages[i] = new StageRecorder();
+		}
+	}
+
+	@Override
+	public long getAbortCount() {
+		return abortCount.get();
+	}
+
+	@Override
+	public long getDataChangeCount() {
+		final AbstractUpdateOperation operation = updateOperation;
+		return operation != null ? operation.getDataChangeCount() : 0;
+	}
+
+	@Override
+	public long getFailedUpdateCount() {
+		final AbstractUpdateOperation operation = updateOperation;
+		return operation != null ? operation.getFailedUpdateCount() : 0;
+	}
+
+	@Override
+	public long getLastUpdateDuration() {
+		final AbstractUpdateOperation operation = updateOperation;
+		return operation != null ? operation.getLastUpdateDuration() : 0;
+	}
+
+	@Override
+	public long getParseCount() {
+		return parseCount.get();
+	}
+
+	/**
+	 * Gets the statistics of the given stage of the parsing.
+	 * 
+	 * @param stage
+	 *            stage of the parsing
+	 * @return snapshot of the statistics
+	 */
+	@Nonnull
+	public StageStatistics getStage(@Nonnull final Stage stage) {
+		Check.notNull(stage, "stage");
+		return stages[stage.ordinal()].snapshot(stage);
+	}
+
+	@Override
+	public List<StageStatistics> getStages() {
+		final List<StageStatistics> result = new ArrayList<StageStatistics>(stages.length);
+		for (final Stage stage : Stage.values()) {
+			result.add(getStage(stage));
+		}
+		return result;
+	}
+
+	@Override
+	public long getUnknownCount() {
+		return unknownCount.get();
+	}
+
+	@Override
+	public double getUnknownRate() {
+		final long count = parseCount.get();
+		return count > 0 ? (double) unknownCount.get() / count : 0;
+	}
+
+	@Override
+	public long getUpdateCount() {
+		final AbstractUpdateOperation operation = updateOperation;
+		return operation != null ? operation.getUpdateCount() : 0;
+	}
+
+	/**
+	 * Records a parsing which has been aborted because its budget was exhausted.
+	 */
+	void recordAbort() {
+		abortCount.incrementAndGet();
+	}
+
+	/**
+	 * Records a finished parsing.
+	 * 
+	 * @param unknown
+	 *            whether the user agent type is unknown
+	 */
+	void recordParse(final boolean unknown) {
+		parseCount.incrementAndGet();
+		if (unknown) {
+			unknownCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records an execution of a stage of the parsing.
+	 * 
+	 * @param stage
+	 *            stage of the parsing
+	 * @param nanos
+	 *            elapsed time in nanoseconds
+	 * @param patternsTried
+	 *            number of patterns (or robots) which have been tried
+	 */
+	void recordStage(@Nonnull final Stage stage, @Nonnegative final long nanos, @Nonnegative final int patternsTried) {
+		stages[stage.ordinal()].record(Math.max(nanos, 0L), patternsTried);
+	}
+
+	/**
+	 * Registers this instance as MXBean at the platform {@link MBeanServer}.
+	 * 
+	 * @param name
+	 *            name under which the metrics will be published
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if this instance is already registered
+	 * @throws IllegalStateException
+	 *             if the registration fails
+	 */
+	public void register(@Nonnull final ObjectName name) {
+		Check.notNull(name, "name");
+		Check.stateIsTrue(registeredName.compareAndSet(null, name), "The metrics are already registered.");
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		} catch (final JMException e) {
+			registeredName.set(null);
+			throw new IllegalStateException("The metrics could not be registered: " + e.getLocalizedMessage(), e);
+		}
+	}
+
+	@Override
+	public void reset() {
+		for (final StageRecorder stage : stages) {
+			stage.reset();
+		}
+		abortCount.set(0);
+		parseCount.set(0);
+		unknownCount.set(0);
+	}
+
+	/**
+	 * Sets the update operation whose outcomes should be published with these metrics.
+	 * 
+	 * @param updateOperation
+	 *            update operation of the observed parser or {@code null}
+	 */
+	void setUpdateOperation(@Nullable final AbstractUpdateOperation updateOperation) {
+		this.updateOperation = updateOperation;
+	}
+
+	/**
+	 * Unregisters this instance from the platform {@link MBeanServer}, if it has been registered.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the unregistration fails
+	 */
+	public void unregister() {
+		final ObjectName name = registeredName.getAndSet(null);
+		if (name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			} catch (final JMException e) {
+				throw new IllegalStateException("The metrics could not be unregistered: " + e.getLocalizedMessage(), e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link ParserMetrics} to publish the metrics of an {@link AbstractUserAgentStringParser} via
+ * JMX.
+ */
+public interface ParserMetricsMXBean {
+
+	/**
+	 * Gets the number of parsings which have been aborted because their budget was exhausted.
+	 * 
+	 * @return number of aborted parsings
+	 */
+	long getAbortCount();
+
+	/**
+	 * Gets the number of background updates which replaced the <em>UAS data</em>.
+	 * 
+	 * @return number of updates with new data or {@code 0} if the parser is not updating
+	 */
+	long getDataChangeCount();
+
+	/**
+	 * Gets the number of background updates which terminated with an exception.
+	 * 
+	 * @return number of failed updates or {@code 0} if the parser is not updating
+	 */
+	long getFailedUpdateCount();
+
+	/**
+	 * Gets the duration of the last background update in milliseconds.
+	 * 
+	 * @return duration of the last update or {@code 0} if the parser is not updating
+	 */
+	long getLastUpdateDuration();
+
+	/**
+	 * Gets the number of recorded parsings.
+	 * 
+	 * @return number of parsed user agent strings
+	 */
+	long getParseCount();
+
+	/**
+	 * Gets the statistics of every stage of the parsing.
+	 * 
+	 * @return statistics in the order in which the stages will be executed
+	 */
+	List<StageStatistics> getStages();
+
+	/**
+	 * Gets the number of parsings which ended with an unknown user agent type.
+	 * 
+	 * @return number of unknown user agents
+	 */
+	long getUnknownCount();
+
+	/**
+	 * Gets the ratio of parsings which ended with an unknown user agent type.
+	 * 
+	 * @return ratio between {@code 0} and {@code 1}
+	 */
+	double getUnknownRate();
+
+	/**
+	 * Gets the number of finished background updates (regardless of their outcome).
+	 * 
+	 * @return number of finished updates or {@code 0} if the parser is not updating
+	 */
+	long getUpdateCount();
+
+	/**
+	 * Resets all recorded parse metrics.
+	 */
+	void reset();
+
+}
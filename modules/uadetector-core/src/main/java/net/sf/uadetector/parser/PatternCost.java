@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.util.RegularExpressionConverter;
+
+/**
+ * Snapshot of the cumulative costs of a single pattern recorded by {@link PatternProfiler}.
+ */
+@Immutable
+public final class PatternCost {
+
+	/**
+	 * Kind of the <em>UAS data</em> to which a pattern belongs
+	 */
+	public enum Kind {
+
+		/**
+		 * Pattern of a browser
+		 */
+		BROWSER,
+
+		/**
+		 * Pattern of a browser engine
+		 */
+		BROWSER_ENGINE,
+
+		/**
+		 * Pattern of a device
+		 */
+		DEVICE,
+
+		/**
+		 * Pattern of an operating system
+		 */
+		OPERATING_SYSTEM
+
+	}
+
+	private final long evaluations;
+
+	private final long hits;
+
+	private final int id;
+
+	@Nonnull
+	private final Kind kind;
+
+	@Nonnull
+	private final String perlRegularExpression;
+
+	private final int position;
+
+	private final long totalNanos;
+
+	/**
+	 * Constructs a snapshot of the costs of a pattern.
+	 * 
+	 * @param kind
+	 *            kind of the pattern
+	 * @param id
+	 *            identification number of the pattern
+	 * @param position
+	 *            position of the pattern in its set of patterns
+	 * @param pattern
+	 *            compiled regular expression
+	 * @param evaluations
+	 *            number of evaluations
+	 * @param hits
+	 *            number of evaluations which matched
+	 * @param totalNanos
+	 *            cumulative time of all evaluations in nanoseconds
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given kind or pattern is {@code null}
+	 */
+	public PatternCost(@Nonnull final Kind kind, final int id, final int position, @Nonnull final Pattern pattern,
+			@Nonnegative final long evaluations, @Nonnegative final long hits, @Nonnegative final long totalNanos) {
+		this.kind = Check.notNull(kind, "kind");
+		this.id = id;
+		this.position = position;
+		perlRegularExpression = RegularExpressionConverter.convertPatternToPerlRegex(Check.notNull(pattern, "pattern"));
+		this.evaluations = evaluations;
+		this.hits = hits;
+		this.totalNanos = totalNanos;
+	}
+
+	/**
+	 * Gets the number of evaluations of the pattern.
+	 * 
+	 * @return number of evaluations
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Gets the number of evaluations which matched.
+	 * 
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the identification number of the pattern.
+	 * 
+	 * @return identification number
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the kind of the pattern.
+	 * 
+	 * @return kind of the pattern
+	 */
+	@Nonnull
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Gets the average time of an evaluation of the pattern in nanoseconds.
+	 * 
+	 * @return average evaluation time or {@code 0} if the pattern has not been evaluated
+	 */
+	public long getMeanNanos() {
+		return evaluations > 0 ? totalNanos / evaluations : 0;
+	}
+
+	/**
+	 * Gets the pattern as PERL style regular expression, as it is defined in the <em>UAS data</em>.
+	 * 
+	 * @return PERL style regular expression
+	 */
+	@Nonnull
+	public String getPerlRegularExpression() {
+		return perlRegularExpression;
+	}
+
+	/**
+	 * Gets the position of the pattern in its set of patterns.
+	 * 
+	 * @return position of the pattern
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Gets the cumulative time of all evaluations of the pattern in nanoseconds.
+	 * 
+	 * @return cumulative evaluation time
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("PatternCost [kind=");
+		builder.append(kind);
+		builder.append(", id=");
+		builder.append(id);
+		builder.append(", position=");
+		builder.append(position);
+		builder.append(", evaluations=");
+		builder.append(evaluations);
+		builder.append(", hits=");
+		builder.append(hits);
+		builder.append(", totalNanos=");
+		builder.append(totalNanos);
+		builder.append(", perlRegularExpression=");
+		builder.append(perlRegularExpression);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
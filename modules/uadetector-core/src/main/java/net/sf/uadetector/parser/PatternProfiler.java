@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.data.domain.BrowserEnginePattern;
+import net.sf.uadetector.internal.data.domain.BrowserPattern;
+import net.sf.uadetector.internal.data.domain.DevicePattern;
+import net.sf.uadetector.internal.data.domain.OperatingSystemPattern;
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+
+/**
+ * Records the cumulative costs of every pattern which has been evaluated by an {@link AbstractUserAgentStringParser}
+ * since profiling has been enabled via {@link AbstractUserAgentStringParser#setProfiler(PatternProfiler)}.
+ * <p>
+ * Profiling adds two calls of {@link System#nanoTime()} to every pattern evaluation and is therefore intended to be
+ * enabled only temporarily, for example to find the patterns which dominate the CPU profile.
+ */
+@ThreadSafe
+public final class PatternProfiler {
+
+	/**
+	 * Counters of a single pattern
+	 */
+	private static final class Counter {
+
+		private final AtomicLong evaluations = new AtomicLong();
+
+		private final AtomicLong hits = new AtomicLong();
+
+		private final int id;
+
+		@Nonnull
+		private final PatternCost.Kind kind;
+
+		@Nonnull
+		private final OrderedPattern<?> pattern;
+
+		private final AtomicLong totalNanos = new AtomicLong();
+
+		Counter(@Nonnull final PatternCost.Kind kind, final int id, @Nonnull final OrderedPattern<?> pattern) {
+			this.kind = kind;
+			this.id = id;
+			this.pattern = pattern;
+		}
+
+		PatternCost snapshot() {
+			return new PatternCost(kind, id, pattern.getPosition(), pattern.getPattern(), evaluations.get(), hits.get(), totalNanos.get());
+		}
+
+	}
+
+	/**
+	 * Orders the most expensive patterns first
+	 */
+	private static final Comparator<PatternCost> MOST_EXPENSIVE_FIRST = new Comparator<PatternCost>() {
+		@Override
+		public int compare(final PatternCost a, final PatternCost b) {
+			return a.getTotalNanos() < b.getTotalNanos() ? 1 : a.getTotalNanos() > b.getTotalNanos() ? -1 : 0;
+		}
+	};
+
+	/**
+	 * Creates the counter of the given pattern.
+	 * 
+	 * @param pattern
+	 *            pattern of the <em>UAS data</em>
+	 * @return a new counter
+	 */
+	private static Counter createCounter(@Nonnull final OrderedPattern<?> pattern) {
+		if (pattern instanceof BrowserPattern) {
+			return new Counter(PatternCost.Kind.BROWSER, ((BrowserPattern) pattern).getId(), pattern);
+		} else if (pattern instanceof BrowserEnginePattern) {
+			return new Counter(PatternCost.Kind.BROWSER_ENGINE, ((BrowserEnginePattern) pattern).getId(), pattern);
+		} else if (pattern instanceof DevicePattern) {
+			return new Counter(PatternCost.Kind.DEVICE, ((DevicePattern) pattern).getId(), pattern);
+		}
+		return new Counter(PatternCost.Kind.OPERATING_SYSTEM, ((OperatingSystemPattern) pattern).getId(), pattern);
+	}
+
+	/**
+	 * Counters of every evaluated pattern
+	 */
+	private final ConcurrentMap<OrderedPattern<?>, Counter> counters = new ConcurrentHashMap<OrderedPattern<?>, Counter>();
+
+	/**
+	 * Gets the costs of all evaluated patterns.
+	 * 
+	 * @return costs of all patterns, ordered by their cumulative time (the most expensive first)
+	 */
+	@Nonnull
+	public List<PatternCost> getCosts() {
+		final List<PatternCost> costs = new ArrayList<PatternCost>(counters.size());
+		for (final Counter counter : counters.values()) {
+			costs.add(counter.snapshot());
+		}
+		Collections.sort(costs, MOST_EXPENSIVE_FIRST);
+		return costs;
+	}
+
+	/**
+	 * Gets the most expensive patterns.
+	 * 
+	 * @param limit
+	 *            maximum number of patterns
+	 * @return costs of the most expensive patterns, ordered by their cumulative time
+	 * @throws net.sf.qualitycheck.exception.IllegalNegativeArgumentException
+	 *             if the given limit is negative
+	 */
+	@Nonnull
+	public List<PatternCost> getMostExpensive(@Nonnegative final int limit) {
+		Check.notNegative(limit, "limit");
+		final List<PatternCost> costs = getCosts();
+		return costs.size() > limit ? new ArrayList<PatternCost>(costs.subList(0, limit)) : costs;
+	}
+
+	/**
+	 * Gets a human-readable report of the most expensive patterns, one pattern per line.
+	 * 
+	 * @param limit
+	 *            maximum number of patterns
+	 * @return report of the most expensive patterns
+	 * @throws net.sf.qualitycheck.exception.IllegalNegativeArgumentException
+	 *             if the given limit is negative
+	 */
+	@Nonnull
+	public String getReport(@Nonnegative final int limit) {
+		final StringBuilder report = new StringBuilder();
+		for (final PatternCost cost : getMostExpensive(limit)) {
+			report.append(String.format("%-16s id=%-6d position=%-6d total=%10dus evaluations=%-10d hits=%-10d mean=%6dns %s%n",
+					cost.getKind(), cost.getId(), cost.getPosition(), cost.getTotalNanos() / 1000, cost.getEvaluations(), cost.getHits(),
+					cost.getMeanNanos(), cost.getPerlRegularExpression()));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Records an evaluation of the given pattern.
+	 * 
+	 * @param pattern
+	 *            evaluated pattern
+	 * @param nanos
+	 *            elapsed time in nanoseconds
+	 * @param hit
+	 *            whether the pattern has been found
+	 */
+	void record(@Nonnull final OrderedPattern<?> pattern, final long nanos, final boolean hit) {
+		Counter counter = counters.get(pattern);
+		if (counter == null) {
+			final Counter created = createCounter(pattern);
+			counter = counters.putIfAbsent(pattern, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		counter.evaluations.incrementAndGet();
+		counter.totalNanos.addAndGet(nanos);
+		if (hit) {
+			counter.hits.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes all recorded costs.
+	 */
+	public void reset() {
+		counters.clear();
+	}
+
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+
+/**
+ * Snapshot of the metrics of a single stage of the parsing (for example the examination of browser patterns) recorded
+ * by {@link ParserMetrics}.
+ */
+@Immutable
+public final class StageStatistics {
+
+	private final long count;
+
+	private final long maxNanos;
+
+	@Nonnull
+	private final String name;
+
+	private final long p50Nanos;
+
+	private final long p99Nanos;
+
+	private final long patternsTried;
+
+	private final long totalNanos;
+
+	/**
+	 * Constructs a snapshot of the metrics of a stage.
+	 * 
+	 * @param name
+	 *            name of the stage
+	 * @param count
+	 *            number of executions
+	 * @param totalNanos
+	 *            cumulative time of all executions in nanoseconds
+	 * @param maxNanos
+	 *            longest execution in nanoseconds
+	 * @param p50Nanos
+	 *            approximated median of the execution time in nanoseconds
+	 * @param p99Nanos
+	 *            approximated 99th percentile of the execution time in nanoseconds
+	 * @param patternsTried
+	 *            cumulative number of patterns tried in all executions
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given name is {@code null}
+	 */
+	public StageStatistics(@Nonnull final String name, @Nonnegative final long count, @Nonnegative final long totalNanos,
+			@Nonnegative final long maxNanos, @Nonnegative final long p50Nanos, @Nonnegative final long p99Nanos,
+			@Nonnegative final long patternsTried) {
+		this.name = Check.notNull(name, "name");
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.p50Nanos = p50Nanos;
+		this.p99Nanos = p99Nanos;
+		this.patternsTried = patternsTried;
+	}
+
+	/**
+	 * Gets the number of executions of this stage.
+	 * 
+	 * @return number of executions
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the longest execution of this stage in nanoseconds.
+	 * 
+	 * @return longest execution time
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * Gets the average execution time of this stage in nanoseconds.
+	 * 
+	 * @return average execution time or {@code 0} if the stage has not been executed yet
+	 */
+	public long getMeanNanos() {
+		return count > 0 ? totalNanos / count : 0;
+	}
+
+	/**
+	 * Gets the average number of patterns tried per execution of this stage.
+	 * 
+	 * @return average number of tried patterns or {@code 0} if the stage has not been executed yet
+	 */
+	public double getMeanPatternsTried() {
+		return count > 0 ? (double) patternsTried / count : 0;
+	}
+
+	/**
+	 * Gets the name of this stage.
+	 * 
+	 * @return name of the stage
+	 */
+	@Nonnull
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the approximated median of the execution time of this stage in nanoseconds.
+	 * 
+	 * @return upper bound of the histogram bucket which contains the median
+	 */
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	/**
+	 * Gets the approximated 99th percentile of the execution time of this stage in nanoseconds.
+	 * 
+	 * @return upper bound of the histogram bucket which contains the 99th percentile
+	 */
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	/**
+	 * Gets the cumulative number of patterns tried in all executions of this stage.
+	 * 
+	 * @return number of tried patterns
+	 */
+	public long getPatternsTried() {
+		return patternsTried;
+	}
+
+	/**
+	 * Gets the cumulative time of all executions of this stage in nanoseconds.
+	 * 
+	 * @return cumulative execution time
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("StageStatistics [name=");
+		builder.append(name);
+		builder.append(", count=");
+		builder.append(count);
+		builder.append(", meanNanos=");
+		builder.append(getMeanNanos());
+		builder.append(", p50Nanos=");
+		builder.append(p50Nanos);
+		builder.append(", p99Nanos=");
+		builder.append(p99Nanos);
+		builder.append(", maxNanos=");
+		builder.append(maxNanos);
+		builder.append(", meanPatternsTried=");
+		builder.append(getMeanPatternsTried());
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+import net.sf.uadetector.internal.util.LiteralAutomaton;
+import net.sf.uadetector.internal.util.PatternMatcher;
+
+/**
+ * Computes cache keys for user agent strings, so that user agent strings which differ only in parts that no pattern of
+ * the <em>UAS data</em> looks at (for example build IDs, session tokens, locale tags or tracking suffixes) share the
+ * same entry of a result cache.
+ * <p>
+ * The vocabulary of the <em>UAS data</em> consists of all words (runs of ASCII letters and digits with at least two
+ * characters) of the regular expressions of all stages. A user agent string will be split into product tokens and the
+ * {@code ;}-separated parts of its comments (see {@link UserAgentTokens}), and every part which contains no character of
+ * an occurrence of a word of the vocabulary and does not start with a digit will be replaced by {@link #MASK}. Whitespace, separators and parentheses
+ * remain as they are. A user agent string of a robot will never be changed, because robots are identified by the whole
+ * string.
+ * <p>
+ * The vocabulary only approximates what a pattern depends on (a pattern may match any characters with a wildcard), so
+ * a cache must not trust a canonical key without verification: {@link CachingUserAgentStringParser} checks that the
+ * parsing of the canonical key leads to the same result as the parsing of the original user agent string before the
+ * key will be shared.
+ */
+@ThreadSafe
+public final class UserAgentCanonicalizer {
+
+	/**
+	 * Vocabulary of a version of the <em>UAS data</em>
+	 */
+	@Immutable
+	private static final class Vocabulary {
+
+		/**
+		 * Automaton which finds the words of the regular expressions in a lower case user agent string
+		 */
+		@Nonnull
+		private final LiteralAutomaton automaton;
+
+		/**
+		 * <em>UAS data</em> of this vocabulary
+		 */
+		@Nonnull
+		private final Data data;
+
+		Vocabulary(@Nonnull final Data data) {
+			this.data = data;
+			final Set<String> words = new LinkedHashSet<String>();
+			addWords(data.getPatternToBrowserMap().keySet(), words);
+			addWords(data.getPatternToBrowserEngineMap().keySet(), words);
+			addWords(data.getPatternToOperatingSystemMap().keySet(), words);
+			addWords(data.getPatternToDeviceMap().keySet(), words);
+			automaton = new LiteralAutomaton(new ArrayList<String>(words));
+		}
+
+	}
+
+	/**
+	 * Replacement of every masked part of a user agent string
+	 */
+	public static final String MASK = "*";
+
+	/**
+	 * Minimum length of a word of a regular expression
+	 */
+	private static final int MIN_WORD_LENGTH = 2;
+
+	/**
+	 * Adds all words of the regular expression of the given patterns in lower case to the given set.
+	 */
+	private static void addWords(@Nonnull final Set<? extends OrderedPattern<?>> patterns, @Nonnull final Set<String> words) {
+		for (final OrderedPattern<?> pattern : patterns) {
+			addWords(pattern.getPattern().pattern(), words);
+		}
+	}
+
+	/**
+	 * Adds all runs of ASCII letters and digits of the given regular expression in lower case to the given set.
+	 * Escaped characters and character classes interrupt a word.
+	 */
+	static void addWords(@Nonnull final String regex, @Nonnull final Set<String> words) {
+		int start = -1;
+		int i = 0;
+		while (i <= regex.length()) {
+			final char c = i < regex.length() ? regex.charAt(i) : '\\';
+			if (isWordCharacter(c)) {
+				if (start < 0) {
+					start = i;
+				}
+				i++;
+				continue;
+			}
+			if (start >= 0 && i - start >= MIN_WORD_LENGTH) {
+				words.add(PatternMatcher.toLowerCase(regex.substring(start, i)));
+			}
+			start = -1;
+			if (c == '\\') {
+				i += 2;
+			} else if (c == '[') {
+				i = skipCharacterClass(regex, i);
+			} else {
+				i++;
+			}
+		}
+	}
+
+	private static boolean isCovered(@Nonnull final BitSet covered, @Nonnegative final int from, @Nonnegative final int to) {
+		final int next = covered.nextSetBit(from);
+		return next >= 0 && next < to;
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Checks whether the part of the user agent string between the given offsets can be masked: it must contain no
+	 * character of a word of the vocabulary, must not start with a digit (a version number which a pattern may capture
+	 * after a word of another part) and must not already be the mask.
+	 */
+	private static boolean isMaskable(@Nonnull final String userAgent, @Nonnull final BitSet covered, @Nonnegative final int from,
+			@Nonnegative final int to) {
+		if (from >= to || isDigit(userAgent.charAt(from)) || isCovered(covered, from, to)) {
+			return false;
+		}
+		return to - from != MASK.length() || !userAgent.startsWith(MASK, from);
+	}
+
+	private static boolean isWordCharacter(final char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isDigit(c);
+	}
+
+	/**
+	 * Gets the position after the character class which starts at the given position.
+	 */
+	private static int skipCharacterClass(@Nonnull final String regex, @Nonnegative final int start) {
+		int i = start + 1;
+		if (i < regex.length() && regex.charAt(i) == '^') {
+			i++;
+		}
+		if (i < regex.length() && regex.charAt(i) == ']') {
+			i++;
+		}
+		int depth = 1;
+		while (i < regex.length()) {
+			final char c = regex.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Number of inputs which have been changed
+	 */
+	private final AtomicLong canonicalizedCount = new AtomicLong();
+
+	/**
+	 * Number of canonicalized inputs
+	 */
+	private final AtomicLong inputCount = new AtomicLong();
+
+	/**
+	 * Vocabulary of the last used <em>UAS data</em>
+	 */
+	private volatile Vocabulary vocabulary;
+
+	/**
+	 * Computes the cache key of the given user agent string.
+	 * 
+	 * @param data
+	 *            <em>UAS data</em> with which the user agent string will be parsed
+	 * @param userAgent
+	 *            user agent string
+	 * @return canonical form of the user agent string or the given user agent string itself if nothing has been masked
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if one of the given arguments is {@code null}
+	 */
+	@Nonnull
+	public String canonicalize(@Nonnull final Data data, @Nonnull final String userAgent) {
+		Check.notNull(data, "data");
+		Check.notNull(userAgent, "userAgent");
+		inputCount.incrementAndGet();
+		final Vocabulary current = getVocabulary(data);
+		if (data.getRobotTable().findPosition(userAgent) >= 0) {
+			return userAgent;
+		}
+
+		final BitSet covered = new BitSet(userAgent.length());
+		current.automaton.mark(PatternMatcher.toLowerCase(userAgent), covered);
+		final UserAgentTokens tokens = UserAgentTokens.tokenize(userAgent);
+		StringBuilder builder = null;
+		int copied = 0;
+		for (int i = 0; i < tokens.getCount(); i++) {
+			int start = tokens.getStart(i);
+			int end = tokens.getEnd(i);
+			if (tokens.isComment(i)) {
+				start++;
+				if (end > start && userAgent.charAt(end - 1) == ')') {
+					end--;
+				}
+			}
+
+			// product tokens are one part, comments are split at semicolons
+			int partStart = start;
+			while (partStart < end) {
+				int partEnd = userAgent.indexOf(';', partStart);
+				if (partEnd < 0 || partEnd > end) {
+					partEnd = end;
+				}
+				int from = partStart;
+				int to = partEnd;
+				while (from < to && userAgent.charAt(from) == ' ') {
+					from++;
+				}
+				while (to > from && userAgent.charAt(to - 1) == ' ') {
+					to--;
+				}
+				if (isMaskable(userAgent, covered, from, to)) {
+					if (builder == null) {
+						builder = new StringBuilder(userAgent.length());
+					}
+					builder.append(userAgent, copied, from);
+					builder.append(MASK);
+					copied = to;
+				}
+				partStart = partEnd + 1;
+			}
+		}
+		if (builder == null) {
+			return userAgent;
+		}
+		canonicalizedCount.incrementAndGet();
+		builder.append(userAgent, copied, userAgent.length());
+		return builder.toString();
+	}
+
+	/**
+	 * Gets the number of inputs which have been changed.
+	 * 
+	 * @return number of canonicalized user agent strings which differ from their originals
+	 */
+	public long getCanonicalizedCount() {
+		return canonicalizedCount.get();
+	}
+
+	/**
+	 * Gets the number of inputs.
+	 * 
+	 * @return number of user agent strings which have been passed to {@link #canonicalize(Data, String)}
+	 */
+	public long getInputCount() {
+		return inputCount.get();
+	}
+
+	/**
+	 * Gets the vocabulary of the given <em>UAS data</em> and builds it, if the data have been changed since the last
+	 * call.
+	 */
+	@Nonnull
+	private Vocabulary getVocabulary(@Nonnull final Data data) {
+		Vocabulary current = vocabulary;
+		if (current == null || current.data != data) {
+			current = new Vocabulary(data);
+			vocabulary = current;
+		}
+		return current;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("UserAgentCanonicalizer [inputCount=");
+		builder.append(inputCount.get());
+		builder.append(", canonicalizedCount=");
+		builder.append(canonicalizedCount.get());
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.BrowserEngine;
+import net.sf.uadetector.DeviceCategory;
+import net.sf.uadetector.OperatingSystem;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.VersionNumber;
+
+/**
+ * Shares structurally equal parse results and their immutable parts, so that a large number of cached results
+ * occupies only one instance per distinct value. A result which has been interned once will be returned for every
+ * equal result, its operating system, device category, browser engine, version number and strings are interned as
+ * well.
+ * <p>
+ * The number of interned values is bounded. As soon as the limit is reached, further values will be returned as they
+ * are, until the interner is cleared. A parser clears its interner as soon as the <em>UAS data</em> have been updated
+ * (see {@link AbstractUserAgentStringParser#setInterner(UserAgentInterner)}).
+ */
+@ThreadSafe
+public final class UserAgentInterner {
+
+	/**
+	 * Default maximum number of interned values
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 100000;
+
+	/**
+	 * Maximum number of interned values
+	 */
+	@Nonnegative
+	private final int maximumSize;
+
+	/**
+	 * Interned values by themselves (values of different types are never equal)
+	 */
+	@Nonnull
+	private final ConcurrentMap<Object, Object> pool = new ConcurrentHashMap<Object, Object>();
+
+	/**
+	 * Number of values which have been replaced by an interned instance
+	 */
+	private final AtomicLong sharedCount = new AtomicLong();
+
+	/**
+	 * Number of interned values
+	 */
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * Constructs an interner which holds at most {@link #DEFAULT_MAXIMUM_SIZE} values.
+	 */
+	public UserAgentInterner() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Constructs an interner which holds at most the given number of values.
+	 * 
+	 * @param maximumSize
+	 *            maximum number of interned values
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given size is not greater than {@code 0}
+	 */
+	public UserAgentInterner(@Nonnegative final int maximumSize) {
+		Check.stateIsTrue(maximumSize > 0, "Argument 'maximumSize' must be greater than 0, but was %s.", maximumSize);
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Adds the given value, if no equal value has been interned and the limit is not reached.
+	 * 
+	 * @return the interned value or the given value
+	 */
+	@Nonnull
+	@SuppressWarnings("unchecked")
+	private <T> T add(@Nonnull final T value) {
+		if (size.get() >= maximumSize) {
+			return value;
+		}
+		final Object interned = pool.putIfAbsent(value, value);
+		if (interned == null) {
+			size.incrementAndGet();
+			return value;
+		}
+		sharedCount.incrementAndGet();
+		return (T) interned;
+	}
+
+	/**
+	 * Removes all interned values.
+	 */
+	public void clear() {
+		pool.clear();
+		size.set(0);
+	}
+
+	/**
+	 * Looks up the interned instance which equals the given value.
+	 * 
+	 * @return the interned instance or {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T get(@Nonnull final T value) {
+		final Object interned = pool.get(value);
+		if (interned != null) {
+			sharedCount.incrementAndGet();
+		}
+		return (T) interned;
+	}
+
+	/**
+	 * Gets the maximum number of interned values.
+	 * 
+	 * @return maximum size
+	 */
+	@Nonnegative
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Gets the number of values which have been replaced by an interned instance.
+	 * 
+	 * @return number of shared values
+	 */
+	public long getSharedCount() {
+		return sharedCount.get();
+	}
+
+	/**
+	 * Gets the number of interned values.
+	 * 
+	 * @return size of the interner
+	 */
+	@Nonnegative
+	public int getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Interns a browser engine and its parts.
+	 * 
+	 * @param browserEngine
+	 *            browser engine
+	 * @return the interned instance which equals the given browser engine
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public BrowserEngine intern(@Nonnull final BrowserEngine browserEngine) {
+		Check.notNull(browserEngine, "browserEngine");
+		final BrowserEngine interned = get(browserEngine);
+		if (interned != null) {
+			return interned;
+		}
+		return add(new BrowserEngine(browserEngine.getFamily(), intern(browserEngine.getInfoUrl()),
+				intern(browserEngine.getVersionNumber())));
+	}
+
+	/**
+	 * Interns a device category and its parts.
+	 * 
+	 * @param deviceCategory
+	 *            device category
+	 * @return the interned instance which equals the given device category
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public DeviceCategory intern(@Nonnull final DeviceCategory deviceCategory) {
+		Check.notNull(deviceCategory, "deviceCategory");
+		if (DeviceCategory.EMPTY.equals(deviceCategory)) {
+			return DeviceCategory.EMPTY;
+		}
+		final DeviceCategory interned = get(deviceCategory);
+		if (interned != null) {
+			return interned;
+		}
+		return add(new DeviceCategory(deviceCategory.getCategory(), intern(deviceCategory.getIcon()),
+				intern(deviceCategory.getInfoUrl()), intern(deviceCategory.getName())));
+	}
+
+	/**
+	 * Interns an operating system and its parts.
+	 * 
+	 * @param operatingSystem
+	 *            operating system
+	 * @return the interned instance which equals the given operating system
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public OperatingSystem intern(@Nonnull final OperatingSystem operatingSystem) {
+		Check.notNull(operatingSystem, "operatingSystem");
+		final OperatingSystem interned = get(operatingSystem);
+		if (interned != null) {
+			return interned;
+		}
+		return add(new OperatingSystem(operatingSystem.getFamily(), intern(operatingSystem.getFamilyName()),
+				intern(operatingSystem.getIcon()), intern(operatingSystem.getName()), intern(operatingSystem.getProducer()),
+				intern(operatingSystem.getProducerUrl()), intern(operatingSystem.getUrl()), intern(operatingSystem.getVersionNumber())));
+	}
+
+	/**
+	 * Interns a string.
+	 * 
+	 * @param text
+	 *            string
+	 * @return the interned instance which equals the given string
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public String intern(@Nonnull final String text) {
+		Check.notNull(text, "text");
+		final String interned = get(text);
+		return interned != null ? interned : add(text);
+	}
+
+	/**
+	 * Interns a result of a parsing and all its parts.
+	 * 
+	 * @param userAgent
+	 *            result of a parsing
+	 * @return the interned instance which equals the given result
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public UserAgent intern(@Nonnull final UserAgent userAgent) {
+		Check.notNull(userAgent, "userAgent");
+		final UserAgent interned = get(userAgent);
+		if (interned != null) {
+			return interned;
+		}
+		return add(new UserAgent(intern(userAgent.getDeviceCategory()), userAgent.getFamily(), intern(userAgent.getIcon()),
+				intern(userAgent.getName()), intern(userAgent.getOperatingSystem()), intern(userAgent.getProducer()),
+				intern(userAgent.getProducerUrl()), userAgent.getType(), intern(userAgent.getTypeName()), intern(userAgent.getUrl()),
+				intern(userAgent.getVersionNumber()), intern(userAgent.getBrowserEngine())));
+	}
+
+	/**
+	 * Interns a version number.
+	 * 
+	 * @param versionNumber
+	 *            version number
+	 * @return the interned instance which equals the given version number
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public VersionNumber intern(@Nonnull final VersionNumber versionNumber) {
+		Check.notNull(versionNumber, "versionNumber");
+		final VersionNumber interned = get(versionNumber);
+		return interned != null ? interned : add(versionNumber);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("UserAgentInterner [maximumSize=");
+		builder.append(maximumSize);
+		builder.append(", size=");
+		builder.append(size.get());
+		builder.append(", sharedCount=");
+		builder.append(sharedCount.get());
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
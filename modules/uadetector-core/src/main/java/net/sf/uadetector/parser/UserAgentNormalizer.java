@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.sf.qualitycheck.Check;
+
+/**
+ * Preprocesses every user agent string before it will be parsed, so that the costs of a parsing are bounded by the
+ * configured maximum length regardless of what a client sends. User agent strings in the wild can be many kilobytes
+ * long and contain repeated whitespace, line breaks or other control characters, while every pattern of every stage
+ * scans the whole input.
+ * <p>
+ * A normalizer can
+ * <ul>
+ * <li>collapse every run of whitespace (including tabs and line breaks) into a single space and remove leading and
+ * trailing whitespace,</li>
+ * <li>strip all other control characters and</li>
+ * <li>truncate the result at a maximum length (without leaving a trailing space or the first half of a surrogate pair).</li>
+ * </ul>
+ * The normalization takes a single pass and stops as soon as the maximum length is reached. A user agent string which
+ * needs no changes will be returned as it is. The normalizer counts how often it changed or truncated an input.
+ * 
+ * @see AbstractUserAgentStringParser#setNormalizer(UserAgentNormalizer)
+ */
+@ThreadSafe
+public final class UserAgentNormalizer {
+
+	/**
+	 * Default maximum length of a normalized user agent string
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 512;
+
+	private static boolean isWhitespace(final char c) {
+		return c <= ' ' && Character.isWhitespace(c);
+	}
+
+	/**
+	 * Number of inputs which have been changed
+	 */
+	private final AtomicLong changedCount = new AtomicLong();
+
+	/**
+	 * Whether runs of whitespace will be collapsed into a single space
+	 */
+	private final boolean collapseWhitespace;
+
+	/**
+	 * Number of normalized inputs
+	 */
+	private final AtomicLong inputCount = new AtomicLong();
+
+	/**
+	 * Maximum length of a normalized user agent string ({@code 0} means unlimited)
+	 */
+	@Nonnegative
+	private final int maxLength;
+
+	/**
+	 * Whether control characters will be removed
+	 */
+	private final boolean stripControlCharacters;
+
+	/**
+	 * Number of inputs which have been truncated
+	 */
+	private final AtomicLong truncatedCount = new AtomicLong();
+
+	/**
+	 * Constructs a normalizer which collapses whitespace, strips control characters and truncates at
+	 * {@link #DEFAULT_MAX_LENGTH}.
+	 */
+	public UserAgentNormalizer() {
+		this(DEFAULT_MAX_LENGTH, true, true);
+	}
+
+	/**
+	 * Constructs a normalizer.
+	 * 
+	 * @param maxLength
+	 *            maximum length of a normalized user agent string ({@code 0} means unlimited)
+	 * @param collapseWhitespace
+	 *            whether runs of whitespace will be collapsed into a single space and leading and trailing whitespace
+	 *            will be removed
+	 * @param stripControlCharacters
+	 *            whether control characters (which are not collapsed as whitespace) will be removed
+	 * @throws net.sf.qualitycheck.exception.IllegalNegativeArgumentException
+	 *             if the given maximum length is negative
+	 */
+	public UserAgentNormalizer(@Nonnegative final int maxLength, final boolean collapseWhitespace, final boolean stripControlCharacters) {
+		Check.notNegative(maxLength, "maxLength");
+		this.maxLength = maxLength;
+		this.collapseWhitespace = collapseWhitespace;
+		this.stripControlCharacters = stripControlCharacters;
+	}
+
+	/**
+	 * Ends a truncated result neither with a space nor with the first half of a surrogate pair.
+	 */
+	@Nonnull
+	private String cut(@Nonnull final String truncated) {
+		int end = trimEnd(truncated, truncated.length());
+		if (end > 0 && Character.isHighSurrogate(truncated.charAt(end - 1))) {
+			end = trimEnd(truncated, end - 1);
+		}
+		return truncated.substring(0, end);
+	}
+
+	/**
+	 * Creates the result buffer with all characters before the given index, if it does not exist yet. Up to this index
+	 * nothing has been changed.
+	 */
+	@Nonnull
+	private StringBuilder copy(final StringBuilder result, @Nonnull final String userAgent, @Nonnegative final int end) {
+		if (result != null) {
+			return result;
+		}
+		final StringBuilder builder = new StringBuilder(maxLength > 0 ? Math.min(maxLength, userAgent.length()) : userAgent.length());
+		builder.append(userAgent, 0, trimEnd(userAgent, end));
+		return builder;
+	}
+
+	/**
+	 * Gets the number of inputs which have been changed by this normalizer.
+	 * 
+	 * @return number of changed inputs
+	 */
+	public long getChangedCount() {
+		return changedCount.get();
+	}
+
+	/**
+	 * Gets the number of inputs which have been normalized by this normalizer.
+	 * 
+	 * @return number of inputs
+	 */
+	public long getInputCount() {
+		return inputCount.get();
+	}
+
+	/**
+	 * Gets the maximum length of a normalized user agent string.
+	 * 
+	 * @return maximum length ({@code 0} means unlimited)
+	 */
+	@Nonnegative
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Gets the number of inputs which have been truncated at the maximum length.
+	 * 
+	 * @return number of truncated inputs
+	 */
+	public long getTruncatedCount() {
+		return truncatedCount.get();
+	}
+
+	/**
+	 * Checks whether runs of whitespace will be collapsed into a single space.
+	 * 
+	 * @return {@code true} if whitespace will be collapsed, otherwise {@code false}
+	 */
+	public boolean isCollapseWhitespace() {
+		return collapseWhitespace;
+	}
+
+	/**
+	 * Checks whether control characters will be removed.
+	 * 
+	 * @return {@code true} if control characters will be removed, otherwise {@code false}
+	 */
+	public boolean isStripControlCharacters() {
+		return stripControlCharacters;
+	}
+
+	/**
+	 * Normalizes the given user agent string.
+	 * 
+	 * @param userAgent
+	 *            user agent string
+	 * @return normalized user agent string (the same instance if nothing had to be changed)
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	public String normalize(@Nonnull final String userAgent) {
+		Check.notNull(userAgent, "userAgent");
+		inputCount.incrementAndGet();
+
+		final int limit = maxLength > 0 ? maxLength : Integer.MAX_VALUE;
+		final int length = userAgent.length();
+		StringBuilder result = null;
+		boolean pendingSpace = false;
+		boolean truncated = false;
+		int i = 0;
+		for (; i < length; i++) {
+			final char c = userAgent.charAt(i);
+			final boolean whitespace = collapseWhitespace && isWhitespace(c);
+			// length of the output so far, without a pending space
+			final int size = result != null ? result.length() : pendingSpace ? i - 1 : i;
+			if (whitespace) {
+				// a run of whitespace is kept as a single space only between two other characters
+				if (c != ' ' || pendingSpace || size == 0) {
+					result = copy(result, userAgent, i);
+				}
+				pendingSpace = size > 0;
+				continue;
+			}
+			if (stripControlCharacters && Character.isISOControl(c)) {
+				result = copy(result, userAgent, i);
+				continue;
+			}
+			if (size + (pendingSpace ? 2 : 1) > limit) {
+				truncated = true;
+				break;
+			}
+			if (result != null) {
+				if (pendingSpace) {
+					result.append(' ');
+				}
+				result.append(c);
+			}
+			pendingSpace = false;
+		}
+
+		final String normalized;
+		if (truncated) {
+			normalized = cut(result != null ? result.toString() : userAgent.substring(0, i));
+			truncatedCount.incrementAndGet();
+		} else if (result != null) {
+			normalized = result.toString();
+		} else if (pendingSpace) {
+			// trailing whitespace
+			normalized = userAgent.substring(0, trimEnd(userAgent, length));
+		} else {
+			normalized = userAgent;
+		}
+		if (normalized != userAgent) {
+			changedCount.incrementAndGet();
+		}
+		return normalized;
+	}
+
+	/**
+	 * Removes a trailing space before the given index of an unchanged prefix.
+	 */
+	private int trimEnd(@Nonnull final String userAgent, @Nonnegative final int end) {
+		return collapseWhitespace && end > 0 && userAgent.charAt(end - 1) == ' ' ? end - 1 : end;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("UserAgentNormalizer [maxLength=");
+		builder.append(maxLength);
+		builder.append(", collapseWhitespace=");
+		builder.append(collapseWhitespace);
+		builder.append(", stripControlCharacters=");
+		builder.append(stripControlCharacters);
+		builder.append(", inputCount=");
+		builder.append(inputCount.get());
+		builder.append(", changedCount=");
+		builder.append(changedCount.get());
+		builder.append(", truncatedCount=");
+		builder.append(truncatedCount.get());
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
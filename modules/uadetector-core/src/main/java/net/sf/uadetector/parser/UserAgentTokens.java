@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import net.sf.qualitycheck.Check;
+
+/**
+ * Splits a user agent string in a single pass into product tokens ({@code name/version}) and comment tokens
+ * ({@code (...)}) and keeps their offsets, so that the parts of a user agent string can be accessed without scanning it
+ * again.
+ * <p>
+ * Tokens are separated by whitespace (all characters up to {@code ' '}) or by the beginning of a comment. A comment
+ * ends with its matching closing parenthesis, nested comments are part of the enclosing one. An unterminated comment
+ * extends to the end of the user agent string. A product without a slash has no version.
+ * <p>
+ * The tokens are used to canonicalize cache keys (see {@link UserAgentCanonicalizer}), the patterns of the
+ * <em>UAS data</em> are still matched against the whole user agent string.
+ */
+@Immutable
+final class UserAgentTokens {
+
+	/**
+	 * Number of offsets which will be stored per token
+	 */
+	private static final int FIELDS = 3;
+
+	/**
+	 * Initial number of tokens for which space will be reserved
+	 */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/**
+	 * Offset of the end of the name of a comment token
+	 */
+	private static final int NO_NAME = -1;
+
+	private static boolean isSeparator(final char c) {
+		return c <= ' ';
+	}
+
+	/**
+	 * Splits the given user agent string into tokens.
+	 * 
+	 * @param userAgent
+	 *            user agent string
+	 * @return tokens of the user agent string
+	 * @throws net.sf.qualitycheck.exception.IllegalNullArgumentException
+	 *             if the given argument is {@code null}
+	 */
+	@Nonnull
+	static UserAgentTokens tokenize(@Nonnull final String userAgent) {
+		Check.notNull(userAgent, "userAgent");
+		int[] offsets = new int[INITIAL_CAPACITY * FIELDS];
+		int count = 0;
+		final int length = userAgent.length();
+		int position = 0;
+		while (position < length) {
+			final int start = position;
+			int nameEnd = NO_NAME;
+			char c = userAgent.charAt(position);
+			if (isSeparator(c)) {
+				position++;
+				continue;
+			}
+			if (c == '(') {
+				int depth = 0;
+				do {
+					c = userAgent.charAt(position++);
+					if (c == '(') {
+						depth++;
+					} else if (c == ')') {
+						depth--;
+					}
+				} while (depth > 0 && position < length);
+			} else {
+				do {
+					if (c == '/' && nameEnd == NO_NAME) {
+						nameEnd = position;
+					}
+					position++;
+				} while (position < length && !isSeparator(c = userAgent.charAt(position)) && c != '(');
+				if (nameEnd == NO_NAME) {
+					nameEnd = position;
+				}
+			}
+
+			if (offsets.length == count * FIELDS) {
+				final int[] grown = new int[offsets.length * 2];
+				System.arraycopy(offsets, 0, grown, 0, offsets.length);
+				offsets = grown;
+			}
+			offsets[count * FIELDS] = start;
+			offsets[count * FIELDS + 1] = nameEnd;
+			offsets[count * FIELDS + 2] = position;
+			count++;
+		}
+		return new UserAgentTokens(userAgent, offsets, count);
+	}
+
+	/**
+	 * Number of tokens
+	 */
+	@Nonnegative
+	private final int count;
+
+	/**
+	 * Start, end of name (or {@code -1} for comments) and end of every token
+	 */
+	@Nonnull
+	private final int[] offsets;
+
+	/**
+	 * The tokenized user agent string
+	 */
+	@Nonnull
+	private final String userAgent;
+
+	private UserAgentTokens(@Nonnull final String userAgent, @Nonnull final int[] offsets, @Nonnegative final int count) {
+		this.userAgent = userAgent;
+		this.offsets = offsets;
+		this.count = count;
+	}
+
+	private int checkIndex(final int index) {
+		Check.stateIsTrue(index >= 0 && index < count, "Token index %s is out of range.", index);
+		return index * FIELDS;
+	}
+
+	/**
+	 * Gets the number of tokens.
+	 * 
+	 * @return number of tokens
+	 */
+	@Nonnegative
+	int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the offset after the last character of the token with the given index.
+	 * 
+	 * @param index
+	 *            index of the token
+	 * @return exclusive end offset within the user agent string
+	 */
+	@Nonnegative
+	int getEnd(@Nonnegative final int index) {
+		return offsets[checkIndex(index) + 2];
+	}
+
+	/**
+	 * Gets the name of the product token with the given index.
+	 * 
+	 * @param index
+	 *            index of the token
+	 * @return name of the product or {@code null} if the token is a comment
+	 */
+	@Nullable
+	String getName(@Nonnegative final int index) {
+		final int offset = checkIndex(index);
+		final int nameEnd = offsets[offset + 1];
+		return nameEnd == NO_NAME ? null : userAgent.substring(offsets[offset], nameEnd);
+	}
+
+	/**
+	 * Gets the offset of the first character of the token with the given index.
+	 * 
+	 * @param index
+	 *            index of the token
+	 * @return start offset within the user agent string
+	 */
+	@Nonnegative
+	int getStart(@Nonnegative final int index) {
+		return offsets[checkIndex(index)];
+	}
+
+	/**
+	 * Gets the text of the token with the given index, for comments including their parentheses.
+	 * 
+	 * @param index
+	 *            index of the token
+	 * @return text of the token
+	 */
+	@Nonnull
+	String getText(@Nonnegative final int index) {
+		final int offset = checkIndex(index);
+		return userAgent.substring(offsets[offset], offsets[offset + 2]);
+	}
+
+	/**
+	 * Gets the tokenized user agent string.
+	 * 
+	 * @return user agent string
+	 */
+	@Nonnull
+	String getUserAgent() {
+		return userAgent;
+	}
+
+	/**
+	 * Gets the version of the product token with the given index.
+	 * 
+	 * @param index
+	 *            index of the token
+	 * @return version of the product (which may be empty) or {@code null} if the token is a comment or a product
+	 *         without a slash
+	 */
+	@Nullable
+	String getVersion(@Nonnegative final int index) {
+		final int offset = checkIndex(index);
+		final int nameEnd = offsets[offset + 1];
+		final int end = offsets[offset + 2];
+		return nameEnd == NO_NAME || nameEnd == end ? null : userAgent.substring(nameEnd + 1, end);
+	}
+
+	/**
+	 * Searches the first product token with the given name.
+	 * 
+	 * @param name
+	 *            name of the product
+	 * @return index of the token or {@code -1} if there is no such product
+	 */
+	int indexOfProduct(@Nonnull final String name) {
+		Check.notNull(name, "name");
+		for (int i = 0; i < count; i++) {
+			final int start = offsets[i * FIELDS];
+			if (offsets[i * FIELDS + 1] - start == name.length() && userAgent.startsWith(name, start)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if the token with the given index is a comment.
+	 * 
+	 * @param index
+	 *            index of the token
+	 * @return {@code true} if the token is a comment, otherwise {@code false}
+	 */
+	boolean isComment(@Nonnegative final int index) {
+		return offsets[checkIndex(index) + 1] == NO_NAME;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("UserAgentTokens [");
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(getText(i));
+		}
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
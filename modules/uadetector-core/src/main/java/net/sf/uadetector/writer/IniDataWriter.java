@@ -29,6 +29,7 @@ import javax.annotation.concurrent.ThreadSafe;
 import net.sf.qualitycheck.Check;
 import net.sf.uadetector.internal.data.BrowserOperatingSystemMappingComparator;
 import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.DataProfile;
 import net.sf.uadetector.internal.data.IdentifiableComparator;
 import net.sf.uadetector.internal.data.OrderedPatternComparator;
 import net.sf.uadetector.internal.data.domain.Browser;
@@ -293,10 +294,16 @@ public final class IniDataWriter {
 	 *            output stream to write
 	 * @throws IOException
 	 *             if the given output stream can not be written
+
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given data have not been built with {@link DataProfile#FULL}, because the patterns by ID and
+	 *             the mappings between browsers and operating systems are only kept by this profile
 	 */
 	public static void write(@Nonnull final Data data, @Nonnull final OutputStream outputStream) throws IOException {
 		Check.notNull(data, "data");
 		Check.notNull(outputStream, "outputStream");
+		Check.stateIsTrue(data.getProfile() == DataProfile.FULL, "Argument 'data' must be built with profile %s to be written, but was %s.",
+				DataProfile.FULL, data.getProfile());
 
 		final StringBuilder doc = new StringBuilder(10000);
 
@@ -39,6 +39,7 @@ import javax.xml.transform.stream.StreamResult;
 import net.sf.qualitycheck.Check;
 import net.sf.uadetector.internal.data.BrowserOperatingSystemMappingComparator;
 import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.DataProfile;
 import net.sf.uadetector.internal.data.IdentifiableComparator;
 import net.sf.uadetector.internal.data.OrderedPatternComparator;
 import net.sf.uadetector.internal.data.domain.Browser;
@@ -466,11 +467,17 @@ public final class XmlDataWriter {
 	 *             If a DocumentBuilder cannot be created which satisfies the configuration requested.
 	 * @throws TransformerException
 	 *             If an unrecoverable error occurs during the course of the transformation.
+
+	 * @throws net.sf.qualitycheck.exception.IllegalStateOfArgumentException
+	 *             if the given data have not been built with {@link DataProfile#FULL}, because the patterns by ID and
+	 *             the mappings between browsers and operating systems are only kept by this profile
 	 */
 	public static void write(@Nonnull final Data data, @Nonnull final OutputStream outputStream) throws ParserConfigurationException,
 			TransformerException {
 		Check.notNull(data, "data");
 		Check.notNull(outputStream, "outputStream");
+		Check.stateIsTrue(data.getProfile() == DataProfile.FULL, "Argument 'data' must be built with profile %s to be written, but was %s.",
+				DataProfile.FULL, data.getProfile());
 
 		final Document doc = newDocumentBuilder().newDocument();
 
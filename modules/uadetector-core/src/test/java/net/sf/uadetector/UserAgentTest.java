@@ -202,6 +202,18 @@ public class UserAgentTest {
 		assertThat(ua1.hashCode() == ua2.hashCode()).isFalse();
 	}
 
+	@Test
+	public void equals_equalDeviceCategories() {
+		final UserAgent ua1 = new UserAgent(new DeviceCategory(Category.TABLET, "icon", "info", "Tablet"), UserAgentFamily.CHROMIUM, "icon",
+				"name", OperatingSystem.EMPTY, "producer", "producer url", UserAgentType.BROWSER, "type", "url",
+				VersionParser.parseVersion("1"), BrowserEngine.UNKNOWN);
+		final UserAgent ua2 = new UserAgent(new DeviceCategory(Category.TABLET, "icon", "info", "Tablet"), UserAgentFamily.CHROMIUM, "icon",
+				"name", OperatingSystem.EMPTY, "producer", "producer url", UserAgentType.BROWSER, "type", "url",
+				VersionParser.parseVersion("1"), BrowserEngine.UNKNOWN);
+		assertThat(ua2).isEqualTo(ua1);
+		assertThat(ua1.hashCode() == ua2.hashCode()).isTrue();
+	}
+
 	@Test
 	public void equals_EMPTY() {
 		assertThat(UserAgent.EMPTY).isEqualTo(UserAgent.EMPTY);
@@ -384,4 +384,19 @@ public class VersionParserTest {
 		assertThat(v.toVersionString()).isEqualTo(version);
 	}
 
+	@Test
+	public void parseVersion_plainVersionNumber() {
+		final VersionNumber v = VersionParser.parseVersion("50.0.2661.102");
+		assertThat(v.getGroups()).containsExactly("50", "0", "2661", "102");
+		assertThat(v.getExtension()).isEqualTo(VersionNumber.EMPTY_EXTENSION);
+		assertThat(VersionParser.parseFirstVersionNumber("007").getMajor()).isEqualTo("007");
+
+		// not plain, therefore evaluated by the regular expression
+		assertThat(VersionParser.parseVersion("1.2.").getExtension()).isEqualTo(".");
+		assertThat(VersionParser.parseVersion("1..2").getMajor()).isEqualTo("1");
+		assertThat(VersionParser.parseVersion("1..2").getExtension()).isEqualTo("..2");
+		assertThat(VersionParser.parseVersion(".1").getExtension()).isEqualTo(".1");
+		assertThat(VersionParser.parseVersion("").toVersionString()).isEmpty();
+	}
+
 }
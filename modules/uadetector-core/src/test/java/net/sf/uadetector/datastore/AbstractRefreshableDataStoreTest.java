@@ -39,6 +39,44 @@ public class AbstractRefreshableDataStoreTest {
 		assertThat(store.getData()).isSameAs(data2);
 	}
 
+	@Test
+	public void setData_withFailingWarmUp() {
+		final TestXmlDataStore store = new TestXmlDataStore();
+		store.setWarmUp(new DataWarmUp() {
+			@Override
+			public void warmUp(final Data data) {
+				throw new IllegalStateException("broken warm-up");
+			}
+		});
+		final Data data2 = new DataBlueprint().version("test-version").build();
+		store.setData(data2);
+		assertThat(store.getData()).isSameAs(data2);
+	}
+
+	@Test
+	public void setData_withWarmUp() {
+		final TestXmlDataStore store = new TestXmlDataStore();
+		final Data previous = store.getData();
+		final Data data2 = new DataBlueprint().version("test-version").build();
+		store.setWarmUp(new DataWarmUp() {
+			@Override
+			public void warmUp(final Data data) {
+				// the candidate must not be published during the warm-up
+				assertThat(data).isSameAs(data2);
+				assertThat(store.getData()).isSameAs(previous);
+				try {
+					Thread.sleep(20);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		assertThat(store.getWarmUpDuration()).isEqualTo(0);
+		store.setData(data2);
+		assertThat(store.getData()).isSameAs(data2);
+		assertThat(store.getWarmUpDuration()).isGreaterThanOrEqualTo(20);
+	}
+
 	@Test(expected = IllegalStateOfArgumentException.class)
 	public void setData_withEmptyData() {
 		final TestXmlDataStore store = new TestXmlDataStore();
@@ -1,10 +1,151 @@
 package net.sf.uadetector.datastore;
 
 import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 
 public class AbstractUpdateOperationTest {
 
+	private static final class BlockingUpdateOperation extends AbstractUpdateOperation {
+
+		private final AtomicInteger calls = new AtomicInteger();
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		BlockingUpdateOperation() {
+			super(new TestXmlDataStore());
+		}
+
+		@Override
+		public void call() {
+			calls.incrementAndGet();
+			started.countDown();
+			try {
+				release.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	/**
+	 * Finds the warning about the given failure, other operations of concurrent tests log into the appender too
+	 */
+	private static ILoggingEvent findWarning(final ListAppender<ILoggingEvent> appender, final Throwable failure) {
+		synchronized (appender) {
+			for (final ILoggingEvent event : appender.list) {
+				if (event.getLevel() == Level.WARN && event.getThrowableProxy() != null
+						&& failure.getMessage().equals(event.getThrowableProxy().getMessage())) {
+					return event;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void submit_attachesToUpdateInFlight() throws Exception {
+		final BlockingUpdateOperation operation = new BlockingUpdateOperation();
+		try {
+			final Future<Void> first = operation.submit();
+			assertThat(operation.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+			// further triggers while the update is running
+			operation.run();
+			final Future<Void> second = operation.submit();
+			assertThat(second).isSameAs(first);
+			assertThat(first.isDone()).isFalse();
+
+			operation.release.countDown();
+			first.get(5, TimeUnit.SECONDS);
+			assertThat(first.isDone()).isTrue();
+			assertThat(operation.calls.get()).isEqualTo(1);
+
+			// a trigger after completion starts a new update
+			final Future<Void> third = operation.submit();
+			third.get(5, TimeUnit.SECONDS);
+			assertThat(third).isNotSameAs(first);
+			assertThat(operation.calls.get()).isEqualTo(2);
+		} finally {
+			operation.release.countDown();
+			operation.shutdown();
+		}
+	}
+
+	@Test
+	public void submit_recordsOutcome() throws Exception {
+		final BlockingUpdateOperation operation = new BlockingUpdateOperation();
+		try {
+			assertThat(operation.getUpdateCount()).isEqualTo(0);
+			operation.release.countDown();
+			operation.submit().get(5, TimeUnit.SECONDS);
+			assertThat(operation.getUpdateCount()).isEqualTo(1);
+			assertThat(operation.getFailedUpdateCount()).isEqualTo(0);
+			assertThat(operation.getDataChangeCount()).isEqualTo(0);
+		} finally {
+			operation.shutdown();
+		}
+	}
+
+	@Test
+	public void submit_logsFailure() throws Exception {
+		final RuntimeException failure = new IllegalStateException("broken update");
+		final AbstractUpdateOperation operation = new AbstractUpdateOperation(new TestXmlDataStore()) {
+			@Override
+			public void call() {
+				throw failure;
+			}
+		};
+		final Logger logger = (Logger) LoggerFactory.getLogger(AbstractUpdateOperation.class);
+		final ListAppender<ILoggingEvent> appender = new ListAppender<ILoggingEvent>();
+		appender.start();
+		logger.addAppender(appender);
+		try {
+			try {
+				operation.submit().get(5, TimeUnit.SECONDS);
+				throw new AssertionError("failure not propagated");
+			} catch (final ExecutionException e) {
+				assertThat(e.getCause()).isSameAs(failure);
+			}
+			assertThat(operation.getFailedUpdateCount()).isEqualTo(1);
+
+			// the failure will be logged after the waiting threads have been released
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (findWarning(appender, failure) == null && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			final ILoggingEvent warning = findWarning(appender, failure);
+			assertThat(warning).isNotNull();
+			assertThat(warning.getThrowableProxy().getClassName()).isEqualTo(IllegalStateException.class.getName());
+		} finally {
+			logger.detachAppender(appender);
+			operation.shutdown();
+		}
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void submit_afterShutdown() {
+		final BlockingUpdateOperation operation = new BlockingUpdateOperation();
+		operation.shutdown();
+		operation.submit();
+	}
+
 	@Test
 	public void hasUpdate_true() {
 		assertThat(AbstractUpdateOperation.hasUpdate("20130310-02", "20130310-01")).isTrue();
@@ -15,12 +15,35 @@
  ******************************************************************************/
 package net.sf.uadetector.datastore;
 
+import static org.fest.assertions.Assertions.assertThat;
 import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.internal.data.Data;
 
 import org.junit.Test;
 
 public class UpdateOperationTaskTest {
 
+	@Test
+	public void call_updateRejectedByValidator() {
+		final TestXmlDataStore store = new TestXmlDataStore();
+		final Data current = store.getData();
+		store.setValidator(new DataValidator() {
+			@Override
+			public boolean validate(final Data current, final Data candidate) {
+				return false;
+			}
+		});
+		new UpdateOperationTask(store).call();
+		assertThat(store.getData()).isSameAs(current);
+	}
+
+	@Test
+	public void call_withoutValidator() {
+		final TestXmlDataStore store = new TestXmlDataStore();
+		new UpdateOperationTask(store).call();
+		assertThat(store.getData().getVersion()).isEqualTo(TestXmlDataStore.VERSION_NEWER);
+	}
+
 	@Test(expected = IllegalNullArgumentException.class)
 	public void construct_dataStore_isNull() {
 		new UpdateOperationTask(null);
@@ -15,6 +15,7 @@
  ******************************************************************************/
 package net.sf.uadetector.datastore;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.Charset;
@@ -23,6 +24,8 @@ import javax.annotation.Nonnull;
 
 import net.sf.uadetector.datareader.DataReader;
 import net.sf.uadetector.datareader.XmlDataReader;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.util.FileUtil;
 
 import static org.fest.assertions.Assertions.assertThat;
 import org.junit.Rule;
@@ -46,9 +49,57 @@ public class UpdateOperationWithCacheFileTaskTest_call {
 
 	}
 
+	private static final class FixedValidator implements DataValidator {
+
+		private final boolean accept;
+
+		private int calls;
+
+		FixedValidator(final boolean accept) {
+			this.accept = accept;
+		}
+
+		@Override
+		public boolean validate(final Data current, final Data candidate) {
+			calls++;
+			return accept;
+		}
+
+	}
+
 	@Rule
 	public final TemporaryFolder folder = new TemporaryFolder();
 
+	@Test
+	public void call_updateAcceptedByValidator() throws IOException {
+		final DataStore fallback = new SimpleXmlDataStore(TestXmlDataStore.DATA_URL, TestXmlDataStore.VERSION_URL);
+		final DataStoreWhichFallsBack store = new DataStoreWhichFallsBack(new XmlDataReader(), TestXmlDataStore.DATA_URL_NEWER,
+				TestXmlDataStore.VERSION_URL_NEWER, DataStore.DEFAULT_CHARSET, fallback);
+		final FixedValidator validator = new FixedValidator(true);
+		store.setValidator(validator);
+
+		final File cache = folder.newFile("cache_file.tmp");
+		new UpdateOperationWithCacheFileTask(store, cache).call();
+		assertThat(validator.calls).isEqualTo(1);
+		assertThat(store.getData().getVersion()).isEqualTo(TestXmlDataStore.VERSION_NEWER);
+		assertThat(FileUtil.isEmpty(cache, DataStore.DEFAULT_CHARSET)).isFalse();
+	}
+
+	@Test
+	public void call_updateRejectedByValidator() throws IOException {
+		final DataStore fallback = new SimpleXmlDataStore(TestXmlDataStore.DATA_URL, TestXmlDataStore.VERSION_URL);
+		final DataStoreWhichFallsBack store = new DataStoreWhichFallsBack(new XmlDataReader(), TestXmlDataStore.DATA_URL_NEWER,
+				TestXmlDataStore.VERSION_URL_NEWER, DataStore.DEFAULT_CHARSET, fallback);
+		final FixedValidator validator = new FixedValidator(false);
+		store.setValidator(validator);
+
+		final File cache = folder.newFile("cache_file.tmp");
+		new UpdateOperationWithCacheFileTask(store, cache).call();
+		assertThat(validator.calls).isEqualTo(1);
+		assertThat(store.getData()).isSameAs(fallback.getData());
+		assertThat(FileUtil.isEmpty(cache, DataStore.DEFAULT_CHARSET)).isTrue();
+	}
+
 	@Test
 	public void call_updateFails_fallbackIsNewer_differentVersion() throws IOException {
 		final DataStore fallback = new TestXmlDataStore();
@@ -333,6 +333,11 @@ public class DataBuilderTest {
 		new DataBuilder().build();
 	}
 
+	@Test(expected = IllegalNullArgumentException.class)
+	public void setProfile_null() {
+		new DataBuilder().setProfile(null);
+	}
+
 	@Test(expected = IllegalNullArgumentException.class)
 	public void setVersion_null() {
 		final DataBuilder b = new DataBuilder();
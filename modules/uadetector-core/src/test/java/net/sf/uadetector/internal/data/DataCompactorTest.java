@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.data;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.datareader.XmlDataReader;
+import net.sf.uadetector.datastore.AbstractDataStore;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+import net.sf.uadetector.internal.data.domain.Browser;
+import net.sf.uadetector.internal.data.domain.BrowserEngine;
+import net.sf.uadetector.internal.data.domain.Device;
+import net.sf.uadetector.internal.data.domain.OperatingSystem;
+import net.sf.uadetector.internal.data.domain.Robot;
+import net.sf.uadetector.parser.UserAgentStringParserImpl;
+import net.sf.uadetector.writer.IniDataWriter;
+import net.sf.uadetector.writer.XmlDataWriter;
+
+import org.junit.Test;
+
+public class DataCompactorTest {
+
+	private static class ProfileDataStore extends AbstractDataStore {
+
+		protected ProfileDataStore(final DataProfile profile) {
+			super(new XmlDataReader(profile), TestXmlDataStore.DATA_URL, TestXmlDataStore.VERSION_URL, DEFAULT_CHARSET);
+		}
+
+	}
+
+	private static final String[] USER_AGENTS = {
+			"Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+			"Mozilla/5.0 (iPhone; CPU iPhone OS 6_1_3 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 Mobile/10B329 Safari/8536.25",
+			"Opera/9.80 (Windows NT 6.1; WOW64) Presto/2.12.388 Version/12.15",
+			"Mozilla/5.0 (compatible; MSIE 10.0; Windows NT 6.2; Trident/6.0)", "192.comAgent", "" };
+
+	/**
+	 * Collects all strings held by the entries of the given data (robots are kept outside of the heap).
+	 */
+	private static List<String> collectStrings(final Data data) {
+		final List<String> strings = new ArrayList<String>();
+		for (final Browser browser : data.getBrowsers()) {
+			add(strings, browser.getFamilyName(), browser.getIcon(), browser.getInfoUrl(), browser.getProducer(),
+					browser.getProducerUrl(), browser.getUrl());
+		}
+		for (final OperatingSystem os : data.getOperatingSystems()) {
+			add(strings, os.getName(), os.getFamily(), os.getIcon(), os.getInfoUrl(), os.getProducer(), os.getProducerUrl(),
+					os.getUrl());
+		}
+		for (final Device device : data.getDevices()) {
+			add(strings, device.getName(), device.getIcon(), device.getInfoUrl());
+		}
+		for (final BrowserEngine engine : data.getBrowserEngines()) {
+			add(strings, engine.getFamilyName(), engine.getInfoUrl());
+		}
+		return strings;
+	}
+
+	private static void add(final List<String> strings, final String... values) {
+		for (final String value : values) {
+			strings.add(value);
+		}
+	}
+
+	/**
+	 * Estimates the retained heap size of the given strings, counting every instance once (header, hash and
+	 * reference to the array, plus the array header and its characters).
+	 */
+	private static long estimateFootprint(final Collection<String> strings) {
+		final Map<String, Boolean> instances = new IdentityHashMap<String, Boolean>();
+		long size = 0;
+		for (final String value : strings) {
+			if (instances.put(value, Boolean.TRUE) == null) {
+				size += 24 + 16 + 2 * value.length();
+			}
+		}
+		return size;
+	}
+
+	private static int countInstances(final Collection<String> strings) {
+		final Map<String, Boolean> instances = new IdentityHashMap<String, Boolean>();
+		for (final String value : strings) {
+			instances.put(value, Boolean.TRUE);
+		}
+		return instances.size();
+	}
+
+	private static Data read(final DataProfile profile) {
+		return new XmlDataReader(profile).read(TestXmlDataStore.DATA_URL, DataStore.DEFAULT_CHARSET);
+	}
+
+	@Test
+	public void compact_sharesStringsAndKeepsParsing() {
+		final Data full = read(DataProfile.FULL);
+		final Data compact = read(DataProfile.COMPACT);
+
+		final List<String> fullStrings = collectStrings(full);
+		final List<String> compactStrings = collectStrings(compact);
+		assertThat(compactStrings).isEqualTo(fullStrings);
+		assertThat(countInstances(compactStrings)).isEqualTo(new HashSet<String>(compactStrings).size());
+		assertThat(countInstances(compactStrings)).isLessThan(countInstances(fullStrings));
+		assertThat(estimateFootprint(compactStrings)).isLessThan(estimateFootprint(fullStrings));
+
+		// redundant structures are dropped
+		assertThat(full.getProfile()).isEqualTo(DataProfile.FULL);
+		assertThat(compact.getProfile()).isEqualTo(DataProfile.COMPACT);
+		assertThat(compact.getBrowserPatterns()).isEmpty();
+		assertThat(compact.getOperatingSystemPatterns()).isEmpty();
+		assertThat(compact.getDevicePatterns()).isEmpty();
+		assertThat(compact.getBrowserEnginePatterns()).isEmpty();
+		assertThat(compact.getBrowserToOperatingSystemMappings()).isEmpty();
+		assertThat(compact.getPatternToBrowserMap().size()).isEqualTo(full.getPatternToBrowserMap().size());
+
+		// browsers refer to the operating systems of the data
+		final Map<OperatingSystem, Boolean> systems = new IdentityHashMap<OperatingSystem, Boolean>();
+		for (final OperatingSystem os : compact.getOperatingSystems()) {
+			systems.put(os, Boolean.TRUE);
+		}
+		for (final Browser browser : compact.getBrowsers()) {
+			if (browser.getOperatingSystem() != null) {
+				assertThat(systems.containsKey(browser.getOperatingSystem())).isTrue();
+			}
+		}
+
+		final UserAgentStringParserImpl<DataStore> fullParser = new UserAgentStringParserImpl<DataStore>(new ProfileDataStore(DataProfile.FULL));
+		final UserAgentStringParserImpl<DataStore> compactParser = new UserAgentStringParserImpl<DataStore>(new ProfileDataStore(
+				DataProfile.COMPACT));
+		for (final String userAgent : USER_AGENTS) {
+			assertThat(compactParser.parse(userAgent)).as(userAgent).isEqualTo(fullParser.parse(userAgent));
+		}
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void construct_profile_full() {
+		new DataCompactor(DataProfile.FULL);
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void write_compact_asIni() throws Exception {
+		IniDataWriter.write(read(DataProfile.COMPACT), new ByteArrayOutputStream());
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void write_slim_asXml() throws Exception {
+		XmlDataWriter.write(read(DataProfile.SLIM), new ByteArrayOutputStream());
+	}
+
+	@Test
+	public void slim_dropsPresentationMetadata() {
+		final Data full = read(DataProfile.FULL);
+		final Data slim = read(DataProfile.SLIM);
+		assertThat(estimateFootprint(collectStrings(slim))).isLessThan(estimateFootprint(collectStrings(read(DataProfile.COMPACT))));
+		for (final Browser browser : slim.getBrowsers()) {
+			assertThat(browser.getIcon()).isEmpty();
+			assertThat(browser.getInfoUrl()).isEmpty();
+		}
+		for (final OperatingSystem os : slim.getOperatingSystems()) {
+			assertThat(os.getIcon()).isEmpty();
+			assertThat(os.getInfoUrl()).isEmpty();
+		}
+		for (final Robot robot : slim.getRobots()) {
+			assertThat(robot.getIcon()).isEmpty();
+			assertThat(robot.getInfoUrl()).isEmpty();
+		}
+
+		final UserAgentStringParserImpl<DataStore> fullParser = new UserAgentStringParserImpl<DataStore>(new ProfileDataStore(DataProfile.FULL));
+		final UserAgentStringParserImpl<DataStore> slimParser = new UserAgentStringParserImpl<DataStore>(new ProfileDataStore(
+				DataProfile.SLIM));
+		assertThat(slim.getRobots().size()).isEqualTo(full.getRobots().size());
+		for (final String userAgent : USER_AGENTS) {
+			final ReadableUserAgent expected = fullParser.parse(userAgent);
+			final ReadableUserAgent actual = slimParser.parse(userAgent);
+			assertThat(actual.getName()).as(userAgent).isEqualTo(expected.getName());
+			assertThat(actual.getType()).as(userAgent).isEqualTo(expected.getType());
+			assertThat(actual.getVersionNumber()).as(userAgent).isEqualTo(expected.getVersionNumber());
+			assertThat(actual.getOperatingSystem().getName()).as(userAgent).isEqualTo(expected.getOperatingSystem().getName());
+			assertThat(actual.getDeviceCategory().getCategory()).as(userAgent).isEqualTo(expected.getDeviceCategory().getCategory());
+			assertThat(actual.getIcon()).isEmpty();
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.data;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.UserAgentFamily;
+import net.sf.uadetector.internal.data.domain.Robot;
+
+import org.junit.Test;
+
+public class RobotTableTest {
+
+	private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+	private static Robot createRobot(final int id, final String userAgentString) {
+		return new Robot(id, "Robot " + id, UserAgentFamily.GOOGLEBOT, "Googlebot", "/list-of-ua/bot-detail?bot=" + id,
+				"Producer ä", "http://producer.example/", userAgentString, "bot_" + id + ".png");
+	}
+
+	@Test
+	public void find() {
+		final List<Robot> robots = new ArrayList<Robot>();
+		for (int i = 0; i < 200; i++) {
+			robots.add(createRobot(i, "Bot/" + i + " (+http://example.com/bot)"));
+		}
+		final RobotTable table = RobotTable.of(robots);
+		assertThat(table.size()).isEqualTo(200);
+		assertThat(table.getMemoryUsage()).isGreaterThan(0);
+		for (int i = 0; i < robots.size(); i++) {
+			assertThat(table.findPosition(robots.get(i).getUserAgentString())).isEqualTo(i);
+			assertThat(table.find(robots.get(i).getUserAgentString())).isEqualTo(robots.get(i));
+		}
+		assertThat(table.find("Bot/1 (+http://example.com/bot) ")).isNull();
+		assertThat(table.find("bot/1 (+http://example.com/bot)")).isNull();
+		assertThat(table.findPosition("")).isEqualTo(-1);
+		assertThat(table).isEqualTo(robots);
+		assertThat(table.hashCode()).isEqualTo(robots.hashCode());
+	}
+
+	@Test
+	public void find_collidingHashCodes() {
+		// "Aa" and "BB" have the same hash code
+		final RobotTable table = RobotTable.of(Arrays.asList(createRobot(1, "Aa"), createRobot(2, "BB")));
+		assertThat(table.find("Aa").getId()).isEqualTo(1);
+		assertThat(table.find("BB").getId()).isEqualTo(2);
+		assertThat(table.find("Ab")).isNull();
+		assertThat(table.findPosition(ByteBuffer.wrap("BB".getBytes(LATIN_1)))).isEqualTo(1);
+		assertThat(table.findPosition(ByteBuffer.wrap("xAax".getBytes(LATIN_1), 1, 2))).isEqualTo(0);
+		assertThat(table.findPosition(ByteBuffer.wrap("Ab".getBytes(LATIN_1)))).isEqualTo(-1);
+	}
+
+	@Test
+	public void findPosition_bytes_latin1() {
+		final RobotTable table = RobotTable.of(Arrays.asList(createRobot(1, "Bot"), createRobot(2, "R\u00f6bot/1.0")));
+		assertThat(table.findPosition(ByteBuffer.wrap("R\u00f6bot/1.0".getBytes(LATIN_1)))).isEqualTo(1);
+		final ByteBuffer direct = ByteBuffer.allocateDirect(3);
+		direct.put("Bot".getBytes(LATIN_1));
+		direct.flip();
+		assertThat(table.findPosition(direct)).isEqualTo(0);
+		assertThat(direct.position()).isEqualTo(0);
+		assertThat(table.findPosition(ByteBuffer.wrap("Bo".getBytes(LATIN_1)))).isEqualTo(-1);
+	}
+
+	@Test
+	public void find_duplicateUserAgentString() {
+		final RobotTable table = RobotTable.of(Arrays.asList(createRobot(1, "Bot"), createRobot(2, "Bot")));
+		assertThat(table.find("Bot").getId()).isEqualTo(1);
+		assertThat(table.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void find_empty() {
+		final RobotTable table = RobotTable.of(Collections.<Robot> emptyList());
+		assertThat(table.isEmpty()).isTrue();
+		assertThat(table.find("Bot")).isNull();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void get_outOfRange() {
+		RobotTable.of(Arrays.asList(createRobot(1, "Bot"))).get(1);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void of_null() {
+		RobotTable.of(null);
+	}
+
+	@Test
+	public void of_table() {
+		final RobotTable table = RobotTable.of(Arrays.asList(createRobot(1, "Bot")));
+		assertThat(RobotTable.of(table)).isSameAs(table);
+	}
+
+	@Test
+	public void serialize() throws Exception {
+		final RobotTable table = RobotTable.of(Arrays.asList(createRobot(1, "Bot"), createRobot(2, "Crawler")));
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(table);
+		out.close();
+		final Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertThat(copy).isInstanceOf(RobotTable.class);
+		assertThat(copy).isEqualTo(table);
+		assertThat(((RobotTable) copy).find("Crawler").getId()).isEqualTo(2);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void unmodifiable() {
+		RobotTable.of(new ArrayList<Robot>()).add(createRobot(1, "Bot"));
+	}
+
+}
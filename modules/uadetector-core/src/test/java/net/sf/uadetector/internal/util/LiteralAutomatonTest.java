@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.util;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+
+import org.junit.Test;
+
+public class LiteralAutomatonTest {
+
+	private static BitSet scan(final LiteralAutomaton automaton, final String input) {
+		final BitSet found = new BitSet();
+		automaton.scan(input, found);
+		return found;
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_literals_isNull() {
+		new LiteralAutomaton(null);
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void construct_literals_withEmptyLiteral() {
+		new LiteralAutomaton(Arrays.asList("a", ""));
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void construct_literals_withNonAsciiLiteral() {
+		new LiteralAutomaton(Arrays.asList("über"));
+	}
+
+	@Test
+	public void isSupported() {
+		assertThat(LiteralAutomaton.isSupported("firefox/")).isTrue();
+		assertThat(LiteralAutomaton.isSupported("")).isFalse();
+		assertThat(LiteralAutomaton.isSupported("über")).isFalse();
+	}
+
+	@Test
+	public void mark_consistentWithIndexOf() {
+		final List<String> literals = Arrays.asList("he", "she", "hers", "firefox/", "x");
+		final LiteralAutomaton automaton = new LiteralAutomaton(literals);
+		final String[] inputs = { "ushers", "gecko/20100101 firefox/21.0", "", "xhe x" };
+		for (final String input : inputs) {
+			final BitSet expected = new BitSet();
+			for (final String literal : literals) {
+				for (int i = input.indexOf(literal); i >= 0; i = input.indexOf(literal, i + 1)) {
+					expected.set(i, i + literal.length());
+				}
+			}
+			final BitSet covered = new BitSet();
+			automaton.mark(input, covered);
+			assertThat(covered).as(input).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void scan_consistentWithIndexOf() {
+		final List<String> literals = Arrays.asList("he", "she", "his", "hers", "firefox/", "fire", "x", "mozilla/5.0 (");
+		final LiteralAutomaton automaton = new LiteralAutomaton(literals);
+		assertThat(automaton.getLiteralCount()).isEqualTo(literals.size());
+		final String[] inputs = { "ushers", "mozilla/5.0 (windows nt 6.1; rv:21.0) gecko/20100101 firefox/21.0", "hishe", "",
+				"firéfox/ x", "mozilla/5.0 mozilla/5.0 (" };
+		for (final String input : inputs) {
+			final BitSet found = scan(automaton, input);
+			for (int id = 0; id < literals.size(); id++) {
+				assertThat(found.get(id)).as(literals.get(id) + " in '" + input + "'").isEqualTo(input.contains(automaton.getLiteral(id)));
+			}
+		}
+	}
+
+	@Test
+	public void scan_duplicateLiterals() {
+		final LiteralAutomaton automaton = new LiteralAutomaton(Arrays.asList("ab", "ab"));
+		final BitSet found = scan(automaton, "xaby");
+		assertThat(found.cardinality()).isEqualTo(2);
+	}
+
+	@Test
+	public void scan_noLiterals() {
+		final LiteralAutomaton automaton = new LiteralAutomaton(Collections.<String> emptyList());
+		assertThat(automaton.getStateCount()).isEqualTo(1);
+		assertThat(scan(automaton, "anything").isEmpty()).isTrue();
+	}
+
+	@Test
+	public void scan_sharedPrefixes() {
+		final List<String> literals = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			literals.add("version/" + i);
+		}
+		final LiteralAutomaton automaton = new LiteralAutomaton(literals);
+		final BitSet found = scan(automaton, "opera/9.80 presto/2.12.388 version/12.15");
+		assertThat(found.get(1)).isTrue();
+		assertThat(found.get(12)).isTrue();
+		assertThat(found.cardinality()).isEqualTo(2);
+	}
+
+}
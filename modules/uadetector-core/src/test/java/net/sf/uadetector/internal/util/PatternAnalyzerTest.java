@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.util;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+import net.sf.uadetector.internal.util.PatternMatcher.Strategy;
+
+import org.junit.Test;
+
+public class PatternAnalyzerTest {
+
+	private static final String[] USER_AGENTS = { "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+			"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_8_3) AppleWebKit/536.29.13 (KHTML, like Gecko) Version/6.0.4 Safari/536.29.13",
+			"Mozilla/5.0 (Linux; Android 4.1.1; Nexus 7 Build/JRO03D) AppleWebKit/535.19 (KHTML, like Gecko) Chrome/18.0.1025.166 Safari/535.19",
+			"Mozilla/5.0 (iPhone; CPU iPhone OS 6_1_3 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 Mobile/10B329 Safari/8536.25",
+			"Mozilla/5.0 (compatible; MSIE 10.0; Windows NT 6.2; Trident/6.0)", "Opera/9.80 (X11; Linux x86_64) Presto/2.12.388 Version/12.15",
+			"Googlebot/2.1 (+http://www.google.com/bot.html)", "curl/7.29.0", "" };
+
+	private static PatternMatcher analyze(final String regex, final int flags) {
+		return PatternAnalyzer.analyze(Pattern.compile(regex, flags));
+	}
+
+	private static void assertLowerCaseConsistent(final PatternMatcher matcher, final String input) {
+		final Pattern lowerCasePattern = matcher.getLowerCasePattern();
+		if (lowerCasePattern != null) {
+			final Matcher expected = matcher.getPattern().matcher(input);
+			final Matcher actual = lowerCasePattern.matcher(PatternMatcher.toLowerCase(input));
+			final boolean found = expected.find();
+			assertThat(actual.find()).as(matcher + " on '" + input + "'").isEqualTo(found);
+			if (found) {
+				for (int group = 0; group <= expected.groupCount(); group++) {
+					assertThat(actual.start(group)).isEqualTo(expected.start(group));
+					assertThat(actual.end(group)).isEqualTo(expected.end(group));
+				}
+			}
+		}
+		if (matcher.isIgnoreCase()) {
+			assertThat(matcher.mayMatchLowerCase(PatternMatcher.toLowerCase(input))).isEqualTo(matcher.mayMatch(input));
+		}
+	}
+
+	private static void assertConsistent(final PatternMatcher matcher, final String input) {
+		final boolean found = matcher.getPattern().matcher(input).find();
+		if (matcher.isBeginAnchored()) {
+			assertThat(matcher.getPattern().matcher(input).lookingAt()).as(matcher + " on '" + input + "'").isEqualTo(found);
+		}
+		if (matcher.isExact()) {
+			assertThat(matcher.mayMatch(input)).as(matcher + " on '" + input + "'").isEqualTo(found);
+		} else if (found) {
+			assertThat(matcher.mayMatch(input)).as(matcher + " on '" + input + "'").isTrue();
+		}
+	}
+
+	@Test
+	public void analyze_alternation() {
+		final PatternMatcher matcher = analyze("Firefox|Iceweasel", Pattern.CASE_INSENSITIVE);
+		assertThat(matcher.getStrategy()).isEqualTo(Strategy.REGULAR_EXPRESSION);
+		assertThat(matcher.getLiterals()).isEmpty();
+	}
+
+	@Test
+	public void analyze_anchoredLiteralSequence() {
+		final PatternMatcher matcher = analyze("^Mozilla.*Android.*Nexus 7", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+		assertThat(matcher.getStrategy()).isEqualTo(Strategy.LITERALS);
+		assertThat(matcher.isAnchored()).isTrue();
+		assertThat(matcher.getLiterals()).containsExactly("mozilla", "android", "nexus 7");
+		assertThat(matcher.mayMatch(USER_AGENTS[2])).isTrue();
+		assertThat(matcher.mayMatch("Opera Mozilla Android Nexus 7")).isFalse();
+		assertThat(matcher.mayMatch("Mozilla Nexus 7 Android")).isFalse();
+	}
+
+	@Test
+	public void analyze_beginAnchored() {
+		final int flags = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+		assertThat(analyze("^Mozilla.*Android.*Nexus 7", flags).isBeginAnchored()).isTrue();
+		assertThat(analyze("^FlyCast\\/([0-9\\.]+)", flags).isBeginAnchored()).isTrue();
+		assertThat(analyze("^Mozilla.*(Firefox|Iceweasel)[\\|(]", flags).isBeginAnchored()).isTrue();
+		assertThat(analyze("^(?!.*Opera).*MSIE", flags).isBeginAnchored()).isTrue();
+		assertThat(analyze("^Mozilla|Opera", flags).isBeginAnchored()).isFalse();
+		assertThat(analyze("^?Mozilla", flags).isBeginAnchored()).isFalse();
+		assertThat(analyze("^Mozilla", Pattern.MULTILINE).isBeginAnchored()).isFalse();
+		assertThat(analyze("^\\Q|\\E", flags).isBeginAnchored()).isFalse();
+		assertThat(analyze("Mozilla", flags).isBeginAnchored()).isFalse();
+		assertThat(analyze("^Mozilla", Pattern.COMMENTS).isBeginAnchored()).isFalse();
+	}
+
+	@Test
+	public void analyze_captureGroup() {
+		final PatternMatcher matcher = analyze("Firefox\\/([0-9\\.]+)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+		assertThat(matcher.getStrategy()).isEqualTo(Strategy.PREFILTERED_REGULAR_EXPRESSION);
+		assertThat(matcher.getLiterals()).containsExactly("firefox/");
+		assertThat(matcher.mayMatch(USER_AGENTS[0])).isTrue();
+		assertThat(matcher.mayMatch(USER_AGENTS[1])).isFalse();
+	}
+
+	@Test
+	public void analyze_caseSensitive() {
+		final PatternMatcher matcher = analyze("Windows Phone OS 7", 0);
+		assertThat(matcher.getStrategy()).isEqualTo(Strategy.LITERALS);
+		assertThat(matcher.mayMatch("Windows Phone OS 7.5")).isTrue();
+		assertThat(matcher.mayMatch("windows phone os 7.5")).isFalse();
+	}
+
+	@Test
+	public void analyze_dotWithoutDotAll() {
+		final PatternMatcher matcher = analyze("Mozilla.*Gecko", Pattern.CASE_INSENSITIVE);
+		assertThat(matcher.getStrategy()).isEqualTo(Strategy.PREFILTERED_REGULAR_EXPRESSION);
+		assertThat(matcher.mayMatch("Mozilla\nGecko")).isTrue();
+		assertConsistent(matcher, "Mozilla\nGecko");
+	}
+
+	@Test
+	public void analyze_inlineFlags() {
+		assertThat(analyze("(?i)firefox", 0).getStrategy()).isEqualTo(Strategy.REGULAR_EXPRESSION);
+	}
+
+	@Test
+	public void analyze_literal() {
+		final PatternMatcher matcher = analyze("Lynx", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+		assertThat(matcher.getStrategy()).isEqualTo(Strategy.LITERALS);
+		assertThat(matcher.isAnchored()).isFalse();
+		assertThat(matcher.mayMatch("lynx/2.8.7")).isTrue();
+		assertThat(matcher.mayMatch("LYNX")).isTrue();
+		assertThat(matcher.mayMatch("Lyn")).isFalse();
+	}
+
+	@Test
+	public void analyze_nonAsciiIgnoreCase() {
+		final PatternMatcher matcher = analyze("été", Pattern.CASE_INSENSITIVE);
+		assertThat(matcher.getStrategy()).isEqualTo(Strategy.LITERALS);
+		assertConsistent(matcher, "ÉTÉ");
+		assertConsistent(matcher, "éTé");
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void analyze_null() {
+		PatternAnalyzer.analyze(null);
+	}
+
+	@Test
+	public void analyze_optionalCharacter() {
+		final PatternMatcher matcher = analyze("^Mozilla\\/?5\\.0 Opera+x", 0);
+		assertThat(matcher.getStrategy()).isEqualTo(Strategy.PREFILTERED_REGULAR_EXPRESSION);
+		assertThat(matcher.isAnchored()).isTrue();
+		assertThat(matcher.getLiterals()).containsExactly("Mozilla", "5.0 Opera", "x");
+	}
+
+	@Test
+	public void analyze_possessiveGap() {
+		final PatternMatcher matcher = analyze("a.*+b", Pattern.DOTALL);
+		assertThat(matcher.isExact()).isFalse();
+		assertConsistent(matcher, "ab");
+	}
+
+	@Test
+	public void analyze_unicodeCase() {
+		assertThat(analyze("firefox", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE).getStrategy()).isEqualTo(
+				Strategy.REGULAR_EXPRESSION);
+	}
+
+	@Test
+	public void analyze_unsupportedEscape() {
+		assertThat(analyze("\\Qa|b\\E", 0).getStrategy()).isEqualTo(Strategy.REGULAR_EXPRESSION);
+		assertThat(analyze("a\\x41", 0).getStrategy()).isEqualTo(Strategy.REGULAR_EXPRESSION);
+		assertThat(analyze("(a)\\1", 0).getStrategy()).isEqualTo(Strategy.REGULAR_EXPRESSION);
+	}
+
+	@Test
+	public void toLowerCase() {
+		assertThat(PatternMatcher.toLowerCase("MoZiLLa/5.0 [ÄÖÜ]")).isEqualTo("mozilla/5.0 [ÄÖÜ]");
+		final String lowerCase = "opera/9.80";
+		assertThat(PatternMatcher.toLowerCase(lowerCase)).isSameAs(lowerCase);
+	}
+
+	@Test
+	public void toLowerCasePattern() {
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("Firefox", 0))).isNull();
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("Fire|Fox", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)))
+				.isNull();
+
+		final Pattern pattern = PatternAnalyzer.toLowerCasePattern(Pattern.compile(
+				"^Mozilla.*(?:Nook|BNTV\\d+)\\W[A-Z_]+\\/([0-9A-F\\.]+)\\S", Pattern.CASE_INSENSITIVE | Pattern.DOTALL));
+		assertThat(pattern.pattern()).isEqualTo("^mozilla.*(?:nook|bntv\\d+)\\W[a-z_]+\\/([0-9a-f\\.]+)\\S");
+		assertThat(pattern.flags()).isEqualTo(Pattern.DOTALL);
+	}
+
+	@Test
+	public void toLowerCasePattern_notConvertible() {
+		final int flags = Pattern.CASE_INSENSITIVE;
+		// ranges over letters of both cases
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("[A-z]", flags))).isNull();
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("[0-z]", flags))).isNull();
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("[\\.-Z]", flags))).isNull();
+		// escapes which could denote upper case letters
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("\\x41", flags))).isNull();
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("\\p{Lu}", flags))).isNull();
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("\\QA\\E", flags))).isNull();
+		// inline flags and back references
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("(?-i)A", flags))).isNull();
+		assertThat(PatternAnalyzer.toLowerCasePattern(Pattern.compile("(a)\\1", flags))).isNull();
+	}
+
+	@Test
+	public void analyze_uasData_sameAnswersAsRegularExpression() {
+		final Data data = new TestXmlDataStore().getData();
+		final List<OrderedPattern<?>> patterns = new ArrayList<OrderedPattern<?>>();
+		patterns.addAll(data.getPatternToBrowserMap().keySet());
+		patterns.addAll(data.getPatternToOperatingSystemMap().keySet());
+		patterns.addAll(data.getPatternToDeviceMap().keySet());
+		patterns.addAll(data.getPatternToBrowserEngineMap().keySet());
+
+		// inputs built from the literals of all patterns hit also the rarely matching patterns
+		final List<String> inputs = new ArrayList<String>();
+		for (final String userAgent : USER_AGENTS) {
+			inputs.add(userAgent);
+		}
+		int exact = 0;
+		for (final OrderedPattern<?> pattern : patterns) {
+			final PatternMatcher matcher = pattern.getPatternMatcher();
+			if (matcher.isExact()) {
+				exact++;
+			}
+			final StringBuilder input = new StringBuilder();
+			for (final String literal : matcher.getLiterals()) {
+				input.append(literal).append(' ');
+			}
+			inputs.add(input.toString());
+			inputs.add(input.toString().toUpperCase());
+		}
+		assertThat(exact).isGreaterThan(0);
+
+		for (final OrderedPattern<?> pattern : patterns) {
+			for (final String input : inputs) {
+				assertConsistent(pattern.getPatternMatcher(), input);
+				assertLowerCaseConsistent(pattern.getPatternMatcher(), input);
+			}
+		}
+	}
+
+}
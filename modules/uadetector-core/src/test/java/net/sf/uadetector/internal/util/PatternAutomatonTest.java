@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.internal.util;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+
+import org.junit.Test;
+
+public class PatternAutomatonTest {
+
+	private static final String[] USER_AGENTS = { "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+			"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_8_3) AppleWebKit/536.29.13 (KHTML, like Gecko) Version/6.0.4 Safari/536.29.13",
+			"Mozilla/5.0 (Linux; Android 4.1.1; Nexus 7 Build/JRO03D) AppleWebKit/535.19 (KHTML, like Gecko) Chrome/18.0.1025.166 Safari/535.19",
+			"Mozilla/5.0 (iPhone; CPU iPhone OS 6_1_3 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 Mobile/10B329 Safari/8536.25",
+			"Mozilla/5.0 (compatible; MSIE 10.0; Windows NT 6.2; Trident/6.0)", "Opera/9.80 (X11; Linux x86_64) Presto/2.12.388 Version/12.15",
+			"Googlebot/2.1 (+http://www.google.com/bot.html)", "curl/7.29.0", "abc", "ABC", "a", "x_y-z", "äbcÄ", "" };
+
+	private static void assertFirstMatch(final List<Pattern> patterns, final PatternAutomaton automaton, final String input) {
+		int expected = PatternAutomaton.NO_MATCH;
+		for (int i = 0; i < patterns.size(); i++) {
+			if (automaton.isSupported(i) && patterns.get(i).matcher(input).find()) {
+				expected = i;
+				break;
+			}
+		}
+		assertThat(automaton.findFirst(input)).as(patterns + " on '" + input + "'").isEqualTo(expected);
+	}
+
+	private static List<Pattern> compile(final int flags, final String... regexes) {
+		final List<Pattern> patterns = new ArrayList<Pattern>();
+		for (final String regex : regexes) {
+			patterns.add(Pattern.compile(regex, flags));
+		}
+		return patterns;
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_patterns_isNull() {
+		new PatternAutomaton(null);
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void construct_stateLimit_isZero() {
+		new PatternAutomaton(new ArrayList<Pattern>(), 0);
+	}
+
+	@Test
+	public void findFirst_consistentWithFind() {
+		final String[] regexes = { "^Mozilla.*Android.*AppleWebKit.*Chrome/([0-9\\.]+)", "firefox/([0-9a-z\\+\\-\\.]+)", "^abc$",
+				"^$", "[^a-z]", "[a-c]{2,3}", "x(?:_|-)?y", "(?i)msie ([0-9]+)", "(?s-i:Version)/6", "\\d\\.\\d{2}\\b", "b?c*$",
+				"\\w+\\s\\(", "[\\x41-\\u0043]", "ä", "(a|b|)+c", "Safari/85.*$", "x[-_]y[-_]z", "\\(compatible;.*\\)$", "^.$",
+				"curl|wget", "\\Qabc\\E", "bot(?=\\.html)", "(a)\\1" };
+		for (final int flags : new int[] { 0, Pattern.CASE_INSENSITIVE, Pattern.DOTALL | Pattern.CASE_INSENSITIVE }) {
+			final List<Pattern> patterns = compile(flags, regexes);
+			final PatternAutomaton automaton = new PatternAutomaton(patterns);
+			for (final String userAgent : USER_AGENTS) {
+				assertFirstMatch(patterns, automaton, userAgent);
+			}
+			// every pattern on its own
+			for (final Pattern pattern : patterns) {
+				final List<Pattern> single = Arrays.asList(pattern);
+				final PatternAutomaton singleAutomaton = new PatternAutomaton(single);
+				for (final String userAgent : USER_AGENTS) {
+					assertFirstMatch(single, singleAutomaton, userAgent);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void findFirst_smallStateLimit() {
+		final List<Pattern> patterns = compile(Pattern.CASE_INSENSITIVE | Pattern.DOTALL, "^Mozilla.*Windows.*Firefox", "Safari/([0-9]+)",
+				"Version/6", "bot", "^Mozilla");
+		final PatternAutomaton automaton = new PatternAutomaton(patterns, 2);
+		for (int round = 0; round < 3; round++) {
+			for (final String userAgent : USER_AGENTS) {
+				assertFirstMatch(patterns, automaton, userAgent);
+			}
+		}
+		assertThat(automaton.getCachedStateCount()).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	public void findFirst_unsupportedInput() {
+		final PatternAutomaton automaton = new PatternAutomaton(compile(0, "a$"));
+		assertThat(automaton.findFirst("a\n")).isEqualTo(PatternAutomaton.UNSUPPORTED_INPUT);
+		assertThat(automaton.findFirst("b😀a")).isEqualTo(PatternAutomaton.UNSUPPORTED_INPUT);
+		assertThat(automaton.findFirst("a")).isEqualTo(0);
+		assertThat(automaton.findFirst("b")).isEqualTo(PatternAutomaton.NO_MATCH);
+	}
+
+	@Test
+	public void findFirst_withUasData() {
+		final Data data = new TestXmlDataStore().getData();
+		final List<Pattern> patterns = new ArrayList<Pattern>();
+		for (final OrderedPattern<?> pattern : data.getPatternToBrowserMap().keySet()) {
+			patterns.add(pattern.getPattern());
+		}
+		final PatternAutomaton automaton = new PatternAutomaton(patterns);
+		assertThat(automaton.getPatternCount()).isEqualTo(patterns.size());
+		for (final String userAgent : USER_AGENTS) {
+			assertFirstMatch(patterns, automaton, userAgent);
+		}
+	}
+
+	@Test
+	public void isSupported() {
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("^Mozilla.*(Chrome|Chromium)/([0-9\\.]+)$", Pattern.DOTALL))).isTrue();
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("(?s:a.)*[^\\d\\s]{1,3}?"))).isTrue();
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("(a)\\1"))).isFalse();
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("a(?!b)"))).isFalse();
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("a*+"))).isFalse();
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("\\bword"))).isFalse();
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("[a-z&&[^x]]"))).isFalse();
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("^a", Pattern.MULTILINE))).isFalse();
+		assertThat(PatternAutomaton.isSupported(Pattern.compile("a", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE))).isFalse();
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void isSupported_pattern_isNull() {
+		PatternAutomaton.isSupported(null);
+	}
+
+}
@@ -3,6 +3,7 @@ package net.sf.uadetector.parser;
 import static org.fest.assertions.Assertions.assertThat;
 
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -16,12 +17,17 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.BrowserEngineFamily;
 import net.sf.uadetector.DeviceCategory;
+import net.sf.uadetector.OperatingSystemFamily;
 import net.sf.uadetector.ReadableUserAgent;
 import net.sf.uadetector.UserAgentFamily;
 import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.UserAgentType;
 import net.sf.uadetector.datareader.DataReader;
 import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
 import net.sf.uadetector.internal.data.Data;
 import net.sf.uadetector.internal.data.domain.Browser;
 import net.sf.uadetector.internal.data.domain.BrowserEngine;
@@ -43,6 +49,27 @@ import com.google.common.collect.Sets;
 
 public class AbstractUserAgentStringParserTest {
 
+	private static void assertSameResults(final MatchingEngine engine) {
+		final String[] userAgents = { "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+				"Mozilla/5.0 (Linux; Android 4.1.1; Nexus 7 Build/JRO03D) AppleWebKit/535.19 (KHTML, like Gecko) Chrome/18.0.1025.166 Safari/535.19",
+				"MOZILLA/5.0 (IPHONE; CPU IPHONE OS 6_1_3 LIKE MAC OS X) APPLEWEBKIT/536.26 (KHTML, LIKE GECKO) VERSION/6.0B MOBILE/10B329",
+				"Opera/9.80 (X11; Linux x86_64) Presto/2.12.388 Version/12.15", "Googlebot/2.1 (+http://www.google.com/bot.html)",
+				"Mozilla/5.0 (Windows NT 6.1)\r\nFirefox/21.0", "" };
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		assertThat(parser.getMatchingEngine()).isNull();
+		for (final String userAgent : userAgents) {
+			parser.setMatchingEngine(null);
+			final ReadableUserAgent expected = parser.parse(userAgent);
+			parser.setMatchingEngine(engine);
+			assertThat(parser.parse(userAgent).toString()).isEqualTo(expected.toString());
+			parser.setLowerCaseMatching(true);
+			assertThat(parser.parse(userAgent).toString()).isEqualTo(expected.toString());
+			parser.setLowerCaseMatching(false);
+		}
+		assertThat(parser.getMatchingEngine()).isSameAs(engine);
+	}
+
+
 	@Test
 	public void examineAsBrowser_noMatchingSubGroupToGatherVersionNumber() {
 		// create data structures
@@ -121,4 +148,168 @@ public class AbstractUserAgentStringParserTest {
 		assertThat(ua2.getDeviceCategory()).isEqualTo(DeviceCategory.EMPTY);
 	}
 
+	@Test
+	public void parse_lowerCaseMatching() {
+		final String[] userAgents = { "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+				"Mozilla/5.0 (Linux; Android 4.1.1; Nexus 7 Build/JRO03D) AppleWebKit/535.19 (KHTML, like Gecko) Chrome/18.0.1025.166 Safari/535.19",
+				"MOZILLA/5.0 (IPHONE; CPU IPHONE OS 6_1_3 LIKE MAC OS X) APPLEWEBKIT/536.26 (KHTML, LIKE GECKO) VERSION/6.0B MOBILE/10B329",
+				"Opera/9.80 (X11; Linux x86_64) Presto/2.12.388 Version/12.15", "Googlebot/2.1 (+http://www.google.com/bot.html)", "" };
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		assertThat(parser.isLowerCaseMatching()).isFalse();
+		for (final String userAgent : userAgents) {
+			parser.setLowerCaseMatching(false);
+			final ReadableUserAgent expected = parser.parse(userAgent);
+			parser.setLowerCaseMatching(true);
+			assertThat(parser.parse(userAgent).toString()).isEqualTo(expected.toString());
+		}
+		assertThat(parser.isLowerCaseMatching()).isTrue();
+	}
+
+	@Test
+	public void parse_bytes() {
+		final String[] userAgents = { "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+				"Opera/9.80 (X11; Linux x86_64) Presto/2.12.388 Version/12.15", "192.comAgent", "192.comAgent ", "Mozilla/5.0 (\u00e9)", "" };
+		final Charset latin1 = Charset.forName("ISO-8859-1");
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		for (final String userAgent : userAgents) {
+			final ReadableUserAgent expected = parser.parse(userAgent);
+			final byte[] bytes = ("<" + userAgent + ">").getBytes(latin1);
+			assertThat(parser.parse(bytes, 1, bytes.length - 2)).as(userAgent).isEqualTo(expected);
+			assertThat(parser.parse(new StringBuilder(userAgent))).as(userAgent).isEqualTo(expected);
+
+			final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+			direct.put(bytes);
+			direct.position(1);
+			direct.limit(bytes.length - 1);
+			assertThat(parser.parse(direct)).as(userAgent).isEqualTo(expected);
+			assertThat(direct.position()).isEqualTo(1);
+		}
+		assertThat(parser.parse("192.comAgent".getBytes(latin1), 0, 12).getType()).isEqualTo(UserAgentType.ROBOT);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void parse_bytes_outOfRange() {
+		new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore()).parse(new byte[2], 1, 2);
+	}
+
+	@Test
+	public void parse_clientHints() {
+		final String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/118.0.0.0 Safari/537.36";
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("user-agent", userAgent);
+		headers.put("sec-ch-ua", "\"Chromium\";v=\"118\", \"Google Chrome\";v=\"118\", \"Not=A?Brand\";v=\"99\"");
+		headers.put("Sec-CH-UA-Full-Version-List", "\"Chromium\";v=\"118.0.5993.88\", \"Google Chrome\";v=\"118.0.5993.88\"");
+		headers.put("Sec-CH-UA-Mobile", "?0");
+		headers.put("Sec-CH-UA-Platform", "\"Windows\"");
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final ReadableUserAgent expected = parser.parse(userAgent);
+		final ReadableUserAgent agent = parser.parse(headers);
+		assertThat(agent.getFamily()).isEqualTo(UserAgentFamily.CHROME);
+		assertThat(agent.getVersionNumber().toVersionString()).isEqualTo("118.0.5993.88");
+		assertThat(agent.getDeviceCategory().getCategory()).isEqualTo(DeviceCategory.Category.PERSONAL_COMPUTER);
+		assertThat(agent.getOperatingSystem().getFamily()).isEqualTo(expected.getOperatingSystem().getFamily());
+		assertThat(agent.getBrowserEngine().getFamily()).isEqualTo(BrowserEngineFamily.BLINK);
+		assertThat(agent.getBrowserEngine().getVersionNumber().toVersionString()).isEqualTo("118.0.5993.88");
+
+		// without a platform the operating system is taken from the user agent string
+		headers.remove("Sec-CH-UA-Platform");
+		assertThat(parser.parse(headers).getOperatingSystem()).isEqualTo(expected.getOperatingSystem());
+		headers.put("Sec-CH-UA-Platform", "\"Windows\"");
+
+		// without a user agent string the operating system is taken from the platform
+		headers.remove("user-agent");
+		headers.put("Sec-CH-UA-Mobile", "?1");
+		headers.put("Sec-CH-UA-Platform", "\"Android\"");
+		headers.put("Sec-CH-UA-Platform-Version", "\"13.0.0\"");
+		final ReadableUserAgent mobile = parser.parse(headers);
+		assertThat(mobile.getFamily()).isEqualTo(UserAgentFamily.CHROME_MOBILE);
+		assertThat(mobile.getDeviceCategory().getCategory()).isEqualTo(DeviceCategory.Category.SMARTPHONE);
+		assertThat(mobile.getOperatingSystem().getFamily()).isEqualTo(OperatingSystemFamily.ANDROID);
+		assertThat(mobile.getOperatingSystem().getVersionNumber().toVersionString()).isEqualTo("13.0.0");
+		assertThat(mobile.getOperatingSystem().getIcon()).isNotEmpty();
+
+		// a tablet uses the mobile browser
+		headers.put("Sec-CH-UA-Mobile", "?0");
+		final ReadableUserAgent tablet = parser.parse(headers);
+		assertThat(tablet.getFamily()).isEqualTo(UserAgentFamily.CHROME_MOBILE);
+		assertThat(tablet.getDeviceCategory().getCategory()).isEqualTo(DeviceCategory.Category.TABLET);
+	}
+
+	@Test
+	public void parse_clientHints_withoutFullVersion() {
+		final String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/118.0.5993.88 Safari/537.36";
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("User-Agent", userAgent);
+		headers.put("Sec-CH-UA", "\"Chromium\";v=\"118\", \"Google Chrome\";v=\"118\", \"Not=A?Brand\";v=\"99\"");
+		headers.put("Sec-CH-UA-Mobile", "?0");
+		headers.put("Sec-CH-UA-Platform", "\"Windows\"");
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+
+		// only the significant version is hinted, the user agent string is not examined
+		final ReadableUserAgent agent = parser.parse(headers);
+		assertThat(agent.getFamily()).isEqualTo(UserAgentFamily.CHROME);
+		assertThat(agent.getVersionNumber().toVersionString()).isEqualTo("118");
+		assertThat(agent.getBrowserEngine().getFamily()).isEqualTo(BrowserEngineFamily.BLINK);
+		assertThat(agent.getBrowserEngine().getVersionNumber().toVersionString()).isEqualTo("118");
+		assertThat(agent.getOperatingSystem().getFamily()).isEqualTo(OperatingSystemFamily.WINDOWS);
+		assertThat(agent.getDeviceCategory().getCategory()).isEqualTo(DeviceCategory.Category.PERSONAL_COMPUTER);
+
+		headers.remove("User-Agent");
+		assertThat(parser.parse(headers).getVersionNumber().toVersionString()).isEqualTo("118");
+	}
+
+	@Test
+	public void parse_clientHints_robot() {
+		final String userAgent = "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)";
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("User-Agent", userAgent);
+		headers.put("Sec-CH-UA", "\"Chromium\";v=\"118\", \"Google Chrome\";v=\"118\", \"Not=A?Brand\";v=\"99\"");
+		headers.put("Sec-CH-UA-Mobile", "?0");
+		headers.put("Sec-CH-UA-Platform", "\"Linux\"");
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final ReadableUserAgent agent = parser.parse(headers);
+		assertThat(agent.getType()).isEqualTo(UserAgentType.ROBOT);
+		assertThat(agent).isEqualTo(parser.parse(userAgent));
+	}
+
+	@Test
+	public void parse_clientHints_fallback() {
+		final String userAgent = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final ReadableUserAgent expected = parser.parse(userAgent);
+
+		// no hints
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("User-Agent", userAgent);
+		assertThat(parser.parse(headers)).isEqualTo(expected);
+
+		// unknown brand
+		headers.put("Sec-CH-UA", "\"Not A(Brand\";v=\"99\", \"Brave\";v=\"118\", \"Chromium\";v=\"118\"");
+		headers.put("Sec-CH-UA-Mobile", "?0");
+		assertThat(parser.parse(headers)).isEqualTo(expected);
+
+		// unknown whether the device is mobile
+		headers.put("Sec-CH-UA", "\"Google Chrome\";v=\"118\"");
+		headers.remove("Sec-CH-UA-Mobile");
+		assertThat(parser.parse(headers)).isEqualTo(expected);
+
+		assertThat(parser.parse(new HashMap<String, String>())).isEqualTo(parser.parse(""));
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void parse_clientHints_null() {
+		new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore()).parse((Map<String, String>) null);
+	}
+
+	@Test
+	public void parse_combinedAutomatonMatchingEngine() {
+		assertSameResults(MatchingEngine.createCombinedAutomaton());
+		assertSameResults(MatchingEngine.createCombinedAutomaton(1));
+	}
+
+	@Test
+	public void parse_literalIndexMatchingEngine() {
+		assertSameResults(MatchingEngine.createLiteralIndex());
+	}
+
 }
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.qualitycheck.exception.IllegalNegativeArgumentException;
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.datastore.NotUpdateableXmlDataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+
+import org.junit.Test;
+
+public class AsyncUserAgentStringParserTest {
+
+	private static final class BlockingLoader implements Callable<UserAgentStringParser> {
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public UserAgentStringParser call() throws Exception {
+			release.await();
+			return new UserAgentStringParserImpl<NotUpdateableXmlDataStore>(new NotUpdateableXmlDataStore());
+		}
+
+	}
+
+	private static final class UninterruptibleLoader implements Callable<UserAgentStringParser> {
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private final CountDownLatch shutdown = new CountDownLatch(1);
+
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		@Override
+		public UserAgentStringParser call() {
+			started.countDown();
+			while (release.getCount() > 0) {
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					// ignores the interruption on purpose
+				}
+			}
+			return new UserAgentStringParserImpl<NotUpdateableXmlDataStore>(new NotUpdateableXmlDataStore()) {
+				@Override
+				public void shutdown() {
+					shutdown.countDown();
+					super.shutdown();
+				}
+			};
+		}
+
+	}
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_loader_null() {
+		new AsyncUserAgentStringParser(null);
+	}
+
+	@Test(expected = IllegalNegativeArgumentException.class)
+	public void construct_timeout_negative() {
+		new AsyncUserAgentStringParser(new BlockingLoader(), -1, TimeUnit.SECONDS);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_unit_null() {
+		new AsyncUserAgentStringParser(new BlockingLoader(), 1, null);
+	}
+
+	@Test
+	public void parse_afterLoadingFailed() throws Exception {
+		final AsyncUserAgentStringParser parser = new AsyncUserAgentStringParser(new Callable<UserAgentStringParser>() {
+			@Override
+			public UserAgentStringParser call() {
+				throw new IllegalStateException("broken");
+			}
+		}, 1, TimeUnit.SECONDS);
+		try {
+			parser.getReadiness().get();
+			fail("loading must fail");
+		} catch (final ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+		}
+		assertThat(parser.isReady()).isFalse();
+		assertThat(parser.parse(FIREFOX)).isSameAs(UserAgent.EMPTY);
+		parser.shutdown();
+	}
+
+	@Test
+	public void parse_beforeAndAfterReadiness() throws Exception {
+		final BlockingLoader loader = new BlockingLoader();
+		final AsyncUserAgentStringParser parser = new AsyncUserAgentStringParser(loader);
+		assertThat(parser.isReady()).isFalse();
+		assertThat(parser.getDataVersion()).isEqualTo("");
+		assertThat(parser.parse(FIREFOX)).isSameAs(UserAgent.EMPTY);
+
+		loader.release.countDown();
+		assertThat(parser.getReadiness().get()).isNotNull();
+		assertThat(parser.isReady()).isTrue();
+		assertThat(parser.getDataVersion()).isEqualTo(TestXmlDataStore.VERSION_OLDER);
+		assertThat(parser.parse(FIREFOX).getName()).isEqualTo("Firefox");
+		parser.shutdown();
+	}
+
+	@Test
+	public void parse_waitsForReadiness() throws Exception {
+		final AsyncUserAgentStringParser parser = new AsyncUserAgentStringParser(new Callable<UserAgentStringParser>() {
+			@Override
+			public UserAgentStringParser call() {
+				return new UserAgentStringParserImpl<NotUpdateableXmlDataStore>(new NotUpdateableXmlDataStore());
+			}
+		}, 1, TimeUnit.MINUTES);
+		assertThat(parser.parse(FIREFOX).getName()).isEqualTo("Firefox");
+		parser.shutdown();
+	}
+
+	@Test
+	public void parse_withinTimeout() throws Exception {
+		final BlockingLoader loader = new BlockingLoader();
+		final AsyncUserAgentStringParser parser = new AsyncUserAgentStringParser(loader, 10, TimeUnit.MILLISECONDS);
+		assertThat(parser.parse(FIREFOX)).isSameAs(UserAgent.EMPTY);
+		loader.release.countDown();
+		parser.getReadiness().get();
+		assertThat(parser.parse(FIREFOX).getName()).isEqualTo("Firefox");
+		parser.shutdown();
+	}
+
+	@Test
+	public void shutdown_beforeLoaderIgnoringInterruptFinishes() throws Exception {
+		final UninterruptibleLoader loader = new UninterruptibleLoader();
+		final AsyncUserAgentStringParser parser = new AsyncUserAgentStringParser(loader);
+		assertThat(loader.started.await(10, TimeUnit.SECONDS)).isTrue();
+
+		// waits for the loader until the executor is shut down abruptly
+		parser.shutdown();
+		assertThat(parser.getReadiness().isCancelled()).isTrue();
+
+		loader.release.countDown();
+		assertThat(loader.shutdown.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(parser.isReady()).isFalse();
+		assertThat(parser.parse(FIREFOX)).isSameAs(UserAgent.EMPTY);
+	}
+
+	@Test
+	public void shutdown_beforeReadiness() {
+		final AsyncUserAgentStringParser parser = new AsyncUserAgentStringParser(new BlockingLoader());
+		parser.shutdown();
+		assertThat(parser.getReadiness().isCancelled()).isTrue();
+		assertThat(parser.parse(FIREFOX)).isSameAs(UserAgent.EMPTY);
+	}
+
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+import net.sf.uadetector.BrowserEngine;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.UserAgentType;
+import net.sf.uadetector.VersionNumber;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+import net.sf.uadetector.internal.data.Data;
+
+import org.junit.Test;
+
+public class CachingUserAgentStringParserTest {
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	private static UserAgentStringParserImpl<DataStore> createParser() {
+		return new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_delegate_null() {
+		new CachingUserAgentStringParser(null, 10);
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void construct_maximumSize_zero() {
+		new CachingUserAgentStringParser(createParser(), 0);
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void construct_sampleRate_zero() {
+		new CachingUserAgentStringParser(createParser(), 10, new UserAgentCanonicalizer(), 0);
+	}
+
+	@Test
+	public void parse() {
+		final UserAgentStringParserImpl<DataStore> delegate = createParser();
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(delegate, 10);
+		assertThat(parser.getDelegate()).isSameAs(delegate);
+		assertThat(parser.getCanonicalizer()).isNull();
+		assertThat(parser.getDataVersion()).isEqualTo(delegate.getDataVersion());
+		final ReadableUserAgent result = parser.parse(FIREFOX);
+		assertThat(result).isEqualTo(delegate.parse(FIREFOX));
+		assertThat(parser.parse(FIREFOX)).isSameAs(result);
+		assertThat(parser.parse(FIREFOX.replace("WOW64", "XQZW"))).isNotSameAs(result);
+		assertThat(parser.getHitCount()).isEqualTo(1);
+		assertThat(parser.getMissCount()).isEqualTo(2);
+		assertThat(parser.getSize()).isEqualTo(2);
+		assertThat(parser.toString()).contains("hitCount=1");
+		parser.clear();
+		assertThat(parser.getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void parse_afterUpdate() {
+		final TestXmlDataStore store = new TestXmlDataStore();
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(new UserAgentStringParserImpl<DataStore>(store), 10);
+		final ReadableUserAgent result = parser.parse(FIREFOX);
+		store.refresh();
+		assertThat(parser.getDataVersion()).isEqualTo(TestXmlDataStore.VERSION_NEWER);
+		assertThat(parser.parse(FIREFOX)).isNotSameAs(result);
+		assertThat(parser.getHitCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void parse_budgetExhausted() {
+		final UserAgentStringParserImpl<DataStore> delegate = createParser();
+		final ReadableUserAgent expected = delegate.parse(FIREFOX);
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(delegate, 10);
+		delegate.setBudget(new ParseBudget(1, 0, TimeUnit.MILLISECONDS));
+		assertThat(parser.parse(FIREFOX).getType()).isEqualTo(UserAgentType.UNKNOWN);
+		assertThat(parser.getSize()).isEqualTo(0);
+
+		// the aborted result has not been cached
+		delegate.setBudget(null);
+		assertThat(parser.parse(FIREFOX)).isEqualTo(expected);
+		assertThat(parser.getSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void parse_budgetExhausted_canonicalKey() {
+		final UserAgentStringParserImpl<DataStore> delegate = createParser();
+		final ReadableUserAgent expected = delegate.parse(FIREFOX);
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(delegate, 10, new UserAgentCanonicalizer(), 1);
+		final String other = FIREFOX.replace("WOW64", "XQZW");
+		delegate.setBudget(new ParseBudget(1, 0, TimeUnit.MILLISECONDS));
+		assertThat(parser.parse(other).getType()).isEqualTo(UserAgentType.UNKNOWN);
+		assertThat(parser.getSize()).isEqualTo(0);
+
+		// an aborted verification does not reject the canonical key
+		delegate.setBudget(null);
+		assertThat(parser.parse(other)).isEqualTo(expected);
+		delegate.setBudget(new ParseBudget(1, 0, TimeUnit.MILLISECONDS));
+		assertThat(parser.parse(other).getType()).isEqualTo(UserAgentType.UNKNOWN);
+		assertThat(parser.getRejectedKeyCount()).isEqualTo(0);
+		assertThat(parser.getSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void parse_evictsLeastRecentlyUsed() {
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(createParser(), 2);
+		parser.parse("a");
+		parser.parse("b");
+		parser.parse("a");
+		parser.parse("c");
+		assertThat(parser.getSize()).isEqualTo(2);
+		parser.parse("a");
+		assertThat(parser.getHitCount()).isEqualTo(2);
+		parser.parse("b");
+		assertThat(parser.getHitCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void parse_null() {
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(createParser(), 10);
+		try {
+			parser.parse(null);
+		} catch (final IllegalNullArgumentException e) {
+			// the same as the delegate
+		}
+		assertThat(parser.getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void parse_rejectsCanonicalKeyWithDifferentResult() {
+		final UserAgentStringParserImpl<DataStore> delegate = createParser();
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(delegate, 10, new UserAgentCanonicalizer(), 1);
+		assertThat(parser.parse("WebCopier v4.2")).isEqualTo(delegate.parse("WebCopier v4.2"));
+		assertThat(parser.parse("WebCopier v4.2")).isEqualTo(delegate.parse("WebCopier v4.2"));
+		assertThat(parser.parse("WebCopier v3.0")).isEqualTo(delegate.parse("WebCopier v3.0"));
+		assertThat(parser.getRejectedKeyCount()).isEqualTo(1);
+		assertThat(parser.getHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void parse_rejectsCanonicalKeyWithDifferentBrowserEngine() {
+		final UserAgentStringParserImpl<DataStore> delegate = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore()) {
+			@Override
+			UserAgent parse(final String userAgent, final Data data, final MatchedEntries matches) {
+				final UserAgent result = super.parse(userAgent, data, matches);
+				if (!userAgent.contains(UserAgentCanonicalizer.MASK)) {
+					return result;
+				}
+
+				// the canonical key leads to another version of the browser engine only
+				final BrowserEngine engine = new BrowserEngine(result.getBrowserEngine().getFamily(), result.getBrowserEngine().getInfoUrl(),
+						new VersionNumber("1"));
+				return new UserAgent(result.getDeviceCategory(), result.getFamily(), result.getIcon(), result.getName(),
+						result.getOperatingSystem(), result.getProducer(), result.getProducerUrl(), result.getType(), result.getTypeName(),
+						result.getUrl(), result.getVersionNumber(), engine);
+			}
+		};
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(delegate, 10, new UserAgentCanonicalizer(), 1);
+		final String other = FIREFOX.replace("WOW64", "XQZW");
+		assertThat(parser.parse(other)).isEqualTo(delegate.parse(other));
+		assertThat(parser.getRejectedKeyCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void parse_sharesCanonicalKey() {
+		final UserAgentStringParserImpl<DataStore> delegate = createParser();
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(delegate, 10, new UserAgentCanonicalizer(), 2);
+		final ReadableUserAgent result = parser.parse(FIREFOX);
+		final String other = FIREFOX.replace("WOW64", "XQZW");
+		assertThat(parser.parse(other)).isSameAs(result);
+		assertThat(result).isEqualTo(delegate.parse(other));
+
+		// every second hit will be verified
+		assertThat(parser.parse(other)).isNotSameAs(result).isEqualTo(result);
+		assertThat(parser.getHitCount()).isEqualTo(1);
+		assertThat(parser.getMissCount()).isEqualTo(2);
+		assertThat(parser.getRejectedKeyCount()).isEqualTo(0);
+		assertThat(parser.getSize()).isEqualTo(1);
+		assertThat(parser.getSampleRate()).isEqualTo(2);
+		assertThat(parser.getMaximumSize()).isEqualTo(10);
+	}
+
+	@Test
+	public void snapshot() throws IOException {
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(createParser(), 10);
+		final ReadableUserAgent firefox = parser.parse(FIREFOX);
+		parser.parse("a");
+		parser.parse("b");
+		parser.parse(FIREFOX);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertThat(parser.writeSnapshot(out, 2)).isEqualTo(2);
+
+		// a restarted parser answers the most recently used user agent strings from the cache
+		final CachingUserAgentStringParser restarted = new CachingUserAgentStringParser(createParser(), 10);
+		assertThat(restarted.readSnapshot(new ByteArrayInputStream(out.toByteArray()))).isEqualTo(2);
+		assertThat(restarted.getSize()).isEqualTo(2);
+		assertThat(restarted.parse(FIREFOX)).isEqualTo(firefox);
+		restarted.parse("b");
+		assertThat(restarted.getHitCount()).isEqualTo(2);
+		assertThat(restarted.getMissCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void snapshot_otherDataVersion() throws IOException {
+		final CachingUserAgentStringParser parser = new CachingUserAgentStringParser(createParser(), 10);
+		parser.parse(FIREFOX);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertThat(parser.writeSnapshot(out, 10)).isEqualTo(1);
+
+		final TestXmlDataStore store = new TestXmlDataStore();
+		store.refresh();
+		final CachingUserAgentStringParser updated = new CachingUserAgentStringParser(new UserAgentStringParserImpl<DataStore>(store), 10);
+		assertThat(updated.readSnapshot(new ByteArrayInputStream(out.toByteArray()))).isEqualTo(0);
+		assertThat(updated.getSize()).isEqualTo(0);
+	}
+
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.ReadableDeviceCategory.Category;
+import net.sf.uadetector.UserAgentFamily;
+
+import org.junit.Test;
+
+public class ClientHintsTest {
+
+	private static ClientHints hints(final String brands, final String mobile, final String platform) {
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("sec-ch-ua", brands);
+		headers.put("SEC-CH-UA-MOBILE", mobile);
+		headers.put("Sec-CH-UA-Platform", platform);
+		return ClientHints.parse(headers);
+	}
+
+	private static Map<String, String> map(final String... entries) {
+		final Map<String, String> map = new LinkedHashMap<String, String>();
+		for (int i = 0; i < entries.length; i += 2) {
+			map.put(entries[i], entries[i + 1]);
+		}
+		return map;
+	}
+
+	@Test
+	public void getDeviceCategory() {
+		assertThat(hints("\"Google Chrome\";v=\"118\"", "?1", "\"Android\"").getDeviceCategory()).isEqualTo(Category.SMARTPHONE);
+		assertThat(hints("\"Google Chrome\";v=\"118\"", "?0", "\"Android\"").getDeviceCategory()).isEqualTo(Category.TABLET);
+		assertThat(hints("\"Google Chrome\";v=\"118\"", "?0", "\"Windows\"").getDeviceCategory()).isEqualTo(Category.PERSONAL_COMPUTER);
+		assertThat(hints("\"Google Chrome\";v=\"118\"", "1", "\"Windows\"").getDeviceCategory()).isNull();
+	}
+
+	@Test
+	public void getEngineVersion() {
+		assertThat(hints("\"Chromium\";v=\"118\", \"Google Chrome\";v=\"118\"", "?0", "").getEngineVersion()).isEqualTo("118");
+		assertThat(hints("\"Opera\";v=\"104\"", "?0", "").getEngineVersion()).isEmpty();
+
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Sec-CH-UA", "\"Chromium\";v=\"118\", \"Google Chrome\";v=\"118\"");
+		headers.put("Sec-CH-UA-Full-Version-List", "\"Chromium\";v=\"118.0.5993.88\", \"Google Chrome\";v=\"118.0.5993.89\"");
+		assertThat(ClientHints.parse(headers).getEngineVersion()).isEqualTo("118.0.5993.88");
+	}
+
+	@Test
+	public void getFamily() {
+		assertThat(hints("\"Chromium\";v=\"118\", \"Google Chrome\";v=\"118\", \"Not=A?Brand\";v=\"99\"", "?0", "").getFamily()).isEqualTo(
+				UserAgentFamily.CHROME);
+		assertThat(hints("\"Not_A Brand\";v=\"8\", \"Chromium\";v=\"120\", \"Google Chrome\";v=\"120\"", "?1", "").getFamily())
+				.isEqualTo(UserAgentFamily.CHROME_MOBILE);
+		assertThat(hints("\"Not.A/Brand\";v=\"8\", \"Chromium\";v=\"114\", \"Microsoft Edge\";v=\"114\"", "?0", "").getFamily()).isEqualTo(
+				UserAgentFamily.MICROSOFT_EDGE);
+		assertThat(hints("\"Chromium\";v=\"118\", \"Opera\";v=\"104\"", "?0", "").getFamily()).isEqualTo(UserAgentFamily.OPERA);
+		assertThat(hints("\"Chromium\";v=\"118\"", "?0", "").getFamily()).isEqualTo(UserAgentFamily.CHROMIUM);
+		assertThat(hints("\"Chromium\";v=\"118\"", "?1", "").getFamily()).isNull();
+		assertThat(hints("\"Brave\";v=\"118\", \"Chromium\";v=\"118\"", "?0", "").getFamily()).isNull();
+		assertThat(hints("\"Not A(Brand\";v=\"99\"", "?0", "").getFamily()).isNull();
+		assertThat(hints("\" Not A;Brand\";v=\"99\", \"Chromium\";v=\"89\"", "?0", "").getBrand()).isEqualTo("Chromium");
+
+		// the browser of a tablet is the mobile one
+		assertThat(hints("\"Google Chrome\";v=\"118\"", "?0", "\"Android\"").getFamily()).isEqualTo(UserAgentFamily.CHROME_MOBILE);
+		assertThat(hints("\"Microsoft Edge\";v=\"118\"", "?0", "\"iOS\"").getFamily()).isEqualTo(
+				UserAgentFamily.MICROSOFT_EDGE_MOBILE);
+		assertThat(hints("\"Opera\";v=\"104\"", "?0", "\"Android\"").getFamily()).isNull();
+	}
+
+	@Test
+	public void getOperatingSystemFamily() {
+		assertThat(hints("", "?0", "\"Windows\"").getOperatingSystemFamily()).isEqualTo(OperatingSystemFamily.WINDOWS);
+		assertThat(hints("", "?0", "\"macOS\"").getOperatingSystemFamily()).isEqualTo(OperatingSystemFamily.OS_X);
+		assertThat(hints("", "?0", "\"Chrome OS\"").getOperatingSystemFamily()).isEqualTo(OperatingSystemFamily.CHROME_OS);
+		assertThat(hints("", "?0", "Linux").getOperatingSystemFamily()).isEqualTo(OperatingSystemFamily.LINUX);
+		assertThat(hints("", "?0", "\"Unknown\"").getOperatingSystemFamily()).isEqualTo(OperatingSystemFamily.UNKNOWN);
+	}
+
+	@Test
+	public void parse_fullVersionList() {
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Sec-CH-UA", "\"Chromium\";v=\"118\", \"Google Chrome\";v=\"118\"");
+		headers.put("Sec-CH-UA-Full-Version-List", "\"Chromium\";v=\"118.0.5993.88\", \"Google Chrome\";v=\"118.0.5993.88\"");
+		headers.put("Sec-CH-UA-Platform-Version", "\"15.0.0\"");
+		final ClientHints hints = ClientHints.parse(headers);
+		assertThat(hints.getBrand()).isEqualTo("Google Chrome");
+		assertThat(hints.getFullVersion()).isEqualTo("118.0.5993.88");
+		assertThat(hints.getVersion()).isEqualTo("118");
+		assertThat(hints.getPlatformVersion()).isEqualTo("15.0.0");
+		assertThat(hints.isMobile()).isNull();
+	}
+
+	@Test
+	public void parse_fullVersion() {
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Sec-CH-UA", "\"Chromium\";v=\"118\", \"Google Chrome\";v=\"118\"");
+		assertThat(ClientHints.parse(headers).getFullVersion()).isNull();
+		headers.put("Sec-CH-UA-Full-Version", "\"118.0.5993.88\"");
+		assertThat(ClientHints.parse(headers).getFullVersion()).isEqualTo("118.0.5993.88");
+	}
+
+	@Test
+	public void parse_withoutHints() {
+		assertThat(ClientHints.parse(Collections.singletonMap("User-Agent", "Mozilla/5.0"))).isNull();
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void parse_null() {
+		ClientHints.parse(null);
+	}
+
+	@Test
+	public void parseBrands() {
+		assertThat(ClientHints.parseBrands("\"A\";v=\"1\", \"B\\\"C\";v=2;x=\"y\",\"D\"")).isEqualTo(
+				map("A", "1", "B\"C", "2", "D", ""));
+		assertThat(ClientHints.parseBrands("")).isEmpty();
+
+		// parsing stops at the first malformed item
+		assertThat(ClientHints.parseBrands("\"A\";v=\"1\", B;v=\"2\"")).isEqualTo(map("A", "1"));
+		assertThat(ClientHints.parseBrands("\"A\";v=\"1\", \"B")).isEqualTo(map("A", "1"));
+	}
+
+	@Test
+	public void parseString() {
+		assertThat(ClientHints.parseString(" \"Windows\" ")).isEqualTo("Windows");
+		assertThat(ClientHints.parseString("Windows")).isEqualTo("Windows");
+		assertThat(ClientHints.parseString("\"Win")).isEqualTo("");
+	}
+
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+
+import org.junit.Test;
+
+public class CoalescingUserAgentStringParserTest {
+
+	/**
+	 * Parser which blocks every parsing until it will be released
+	 */
+	private static final class BlockingParser implements UserAgentStringParser {
+
+		private final AtomicInteger parsings = new AtomicInteger();
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public String getDataVersion() {
+			return "blocking";
+		}
+
+		@Override
+		public ReadableUserAgent parse(final String userAgent) {
+			parsings.incrementAndGet();
+			try {
+				release.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if ("broken".equals(userAgent)) {
+				throw new IllegalStateException(userAgent);
+			}
+			return new UserAgent.Builder(userAgent).build();
+		}
+
+		@Override
+		public void shutdown() {
+			release.countDown();
+		}
+
+	}
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	private static final int THREADS = 8;
+
+	private static List<Future<ReadableUserAgent>> submit(final ExecutorService executor, final UserAgentStringParser parser,
+			final String userAgent) {
+		final List<Future<ReadableUserAgent>> futures = new ArrayList<Future<ReadableUserAgent>>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(new Callable<ReadableUserAgent>() {
+				@Override
+				public ReadableUserAgent call() {
+					return parser.parse(userAgent);
+				}
+			}));
+		}
+		return futures;
+	}
+
+	private static void waitForCoalescedCount(final CoalescingUserAgentStringParser parser, final long count) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 10000;
+		while (parser.getCoalescedCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(parser.getCoalescedCount()).isEqualTo(count);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_delegate_null() {
+		new CoalescingUserAgentStringParser(null);
+	}
+
+	@Test
+	public void parse() {
+		final UserAgentStringParserImpl<DataStore> delegate = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final CoalescingUserAgentStringParser parser = new CoalescingUserAgentStringParser(delegate);
+		assertThat(parser.getDelegate()).isSameAs(delegate);
+		assertThat(parser.getDataVersion()).isEqualTo(delegate.getDataVersion());
+		assertThat(parser.parse(FIREFOX)).isEqualTo(delegate.parse(FIREFOX));
+		assertThat(parser.parse(FIREFOX)).isEqualTo(delegate.parse(FIREFOX));
+		assertThat(parser.getComputedCount()).isEqualTo(2);
+		assertThat(parser.getCoalescedCount()).isEqualTo(0);
+		assertThat(parser.getInFlightCount()).isEqualTo(0);
+		assertThat(parser.toString()).contains("computedCount=2");
+	}
+
+	@Test
+	public void parse_concurrentFailure() throws Exception {
+		final BlockingParser delegate = new BlockingParser();
+		final CoalescingUserAgentStringParser parser = new CoalescingUserAgentStringParser(delegate);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<ReadableUserAgent>> futures = submit(executor, parser, "broken");
+			waitForCoalescedCount(parser, THREADS - 1);
+			delegate.release.countDown();
+			for (final Future<ReadableUserAgent> future : futures) {
+				try {
+					future.get(10, TimeUnit.SECONDS);
+					fail("parsing must fail");
+				} catch (final ExecutionException e) {
+					assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+				}
+			}
+			assertThat(delegate.parsings.get()).isEqualTo(1);
+			assertThat(parser.getInFlightCount()).isEqualTo(0);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void parse_concurrentSameUserAgent() throws Exception {
+		final BlockingParser delegate = new BlockingParser();
+		final CoalescingUserAgentStringParser parser = new CoalescingUserAgentStringParser(delegate);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<ReadableUserAgent>> futures = submit(executor, parser, FIREFOX);
+			waitForCoalescedCount(parser, THREADS - 1);
+			assertThat(parser.getInFlightCount()).isEqualTo(1);
+			delegate.release.countDown();
+			final ReadableUserAgent result = futures.get(0).get(10, TimeUnit.SECONDS);
+			for (final Future<ReadableUserAgent> future : futures) {
+				assertThat(future.get(10, TimeUnit.SECONDS)).isSameAs(result);
+			}
+			assertThat(delegate.parsings.get()).isEqualTo(1);
+			assertThat(parser.getComputedCount()).isEqualTo(1);
+			assertThat(parser.getInFlightCount()).isEqualTo(0);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void shutdown() {
+		final BlockingParser delegate = new BlockingParser();
+		new CoalescingUserAgentStringParser(delegate).shutdown();
+		assertThat(delegate.release.getCount()).isEqualTo(0);
+	}
+
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.VersionNumber;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+import net.sf.uadetector.internal.data.Data;
+
+import org.junit.Test;
+
+public class CompactUserAgentTest {
+
+	private static final String[] USER_AGENTS = { "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+			"Mozilla/5.0 (iPhone; CPU iPhone OS 6_1_3 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 Mobile/10B329 Safari/8536.25",
+			"192.comAgent", "unknown agent", "" };
+
+	private static VersionNumber roundTrip(final VersionNumber version) {
+		final long packed = CompactUserAgent.pack(version);
+		assertThat(packed).isNotEqualTo(CompactUserAgent.NOT_PACKABLE);
+		return CompactUserAgent.unpack(packed);
+	}
+
+	@Test
+	public void encode_resolve() {
+		final Data data = new TestXmlDataStore().getData();
+		final CompactUserAgentResolver resolver = new CompactUserAgentResolver();
+		for (final String userAgent : USER_AGENTS) {
+			final MatchedEntries matches = new MatchedEntries();
+			final UserAgent.Builder builder = new UserAgent.Builder(userAgent);
+			AbstractUserAgentStringParser.examine(builder, data, new ParseContext(userAgent, matches), null);
+			final UserAgent result = builder.build();
+			final CompactUserAgent compact = CompactUserAgent.encode(matches, result);
+			assertThat(compact.isRestorable()).as(userAgent).isTrue();
+			assertThat(resolver.resolve(compact, data)).as(userAgent).isEqualTo(result);
+		}
+	}
+
+	@Test
+	public void encode_versionWithExtension() {
+		final UserAgent result = new UserAgent.Builder("").setVersionNumber(new VersionNumber(Arrays.asList("3", "0"), "b2")).build();
+		final CompactUserAgent compact = CompactUserAgent.encode(new MatchedEntries(), result);
+		assertThat(compact.getVersion()).isEqualTo(CompactUserAgent.NOT_PACKABLE);
+		assertThat(compact.isRestorable()).isFalse();
+		final UserAgent resolved = new CompactUserAgentResolver().resolve(compact, new TestXmlDataStore().getData());
+		assertThat(resolved.getVersionNumber()).isEqualTo(VersionNumber.UNKNOWN);
+	}
+
+	@Test
+	public void pack_notPackable() {
+		assertThat(CompactUserAgent.pack(new VersionNumber(Arrays.asList("1", "2"), "-beta"))).isEqualTo(CompactUserAgent.NOT_PACKABLE);
+		assertThat(CompactUserAgent.pack(new VersionNumber(Arrays.asList("1", "2", "3", "4", "5")))).isEqualTo(
+				CompactUserAgent.NOT_PACKABLE);
+		assertThat(CompactUserAgent.pack(new VersionNumber("5", "05"))).isEqualTo(CompactUserAgent.NOT_PACKABLE);
+		assertThat(CompactUserAgent.pack(new VersionNumber("1", "2047"))).isEqualTo(CompactUserAgent.NOT_PACKABLE);
+		assertThat(CompactUserAgent.pack(new VersionNumber("2010020406"))).isEqualTo(CompactUserAgent.NOT_PACKABLE);
+	}
+
+	@Test
+	public void pack_unpack() {
+		assertThat(roundTrip(VersionNumber.UNKNOWN)).isEqualTo(VersionNumber.UNKNOWN);
+		assertThat(roundTrip(new VersionNumber("21", "0", ""))).isEqualTo(new VersionNumber("21", "0", ""));
+		assertThat(roundTrip(new VersionNumber("0", "", "0"))).isEqualTo(new VersionNumber("0", "", "0"));
+		final VersionNumber widest = new VersionNumber(Arrays.asList("20100101", "2046", "16382", "254"));
+		assertThat(roundTrip(widest)).isEqualTo(widest);
+		assertThat(roundTrip(new VersionNumber(Arrays.<String> asList()))).isEqualTo(new VersionNumber(Arrays.<String> asList()));
+	}
+
+	@Test
+	public void parseCompact() {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final CompactUserAgentResolver resolver = new CompactUserAgentResolver();
+		for (final String userAgent : USER_AGENTS) {
+			final CompactUserAgent compact = parser.parseCompact(userAgent);
+			assertThat(resolver.resolve(compact, parser.getDataStore().getData())).as(userAgent).isEqualTo(parser.parse(userAgent));
+		}
+		final CompactUserAgent firefox = parser.parseCompact(USER_AGENTS[0]);
+		assertThat(firefox.getBrowserId()).isGreaterThanOrEqualTo(0);
+		assertThat(firefox.getRobotId()).isEqualTo(-1);
+		assertThat(CompactUserAgent.toGroups(firefox.getVersion())).isEqualTo(new int[] { 21, 0, -1 });
+		assertThat(parser.parseCompact(USER_AGENTS[2]).getRobotId()).isGreaterThanOrEqualTo(0);
+		assertThat(parser.parseCompact(USER_AGENTS[0])).isEqualTo(firefox);
+	}
+
+	@Test
+	public void toGroups() {
+		assertThat(CompactUserAgent.toGroups(CompactUserAgent.pack(new VersionNumber("6", "", "3")))).isEqualTo(new int[] { 6, -1, 3 });
+		assertThat(CompactUserAgent.toGroups(CompactUserAgent.pack(VersionNumber.UNKNOWN))).isEqualTo(new int[] { -1, -1, -1 });
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void unpack_notPackable() {
+		CompactUserAgent.unpack(CompactUserAgent.NOT_PACKABLE);
+	}
+
+	@Test
+	public void resolve_unknownId() {
+		final Data data = new TestXmlDataStore().getData();
+		final CompactUserAgent compact = new CompactUserAgent(-1, Integer.MAX_VALUE, 0, -1, 0, -1, 0, -1);
+		assertThat(new CompactUserAgentResolver().resolve(compact, data)).isNull();
+	}
+
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.qualitycheck.exception.IllegalNaNArgumentException;
+import net.sf.qualitycheck.exception.IllegalNegativeArgumentException;
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.datastore.NotUpdateableXmlDataStore;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.DataBlueprint;
+import net.sf.uadetector.parser.CorpusDataValidator.Mode;
+
+import org.junit.Test;
+
+public class CorpusDataValidatorTest {
+
+	private static final List<String> CORPUS = Arrays.asList(
+			"Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+			"Mozilla/5.0 (iPhone; CPU iPhone OS 6_0 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 Mobile/10A5376e Safari/8536.25",
+			"Googlebot/2.1 (+http://www.google.com/bot.html)");
+
+	private static final Data DATA = new NotUpdateableXmlDataStore().getData();
+
+	private static final Data DATA_WITHOUT_PATTERNS = new DataBlueprint().version("without-patterns").build();
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_corpus_null() {
+		new CorpusDataValidator(null);
+	}
+
+	@Test(expected = IllegalNegativeArgumentException.class)
+	public void construct_maxChangedRatio_negative() {
+		new CorpusDataValidator(CORPUS, 1, -0.1, Mode.REJECT);
+	}
+
+	@Test(expected = IllegalNaNArgumentException.class)
+	public void construct_maxCostRatio_nan() {
+		new CorpusDataValidator(CORPUS, Double.NaN, 0, Mode.REJECT);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_mode_null() {
+		new CorpusDataValidator(CORPUS, 1, 0, null);
+	}
+
+	@Test
+	public void validate_changedClassifications_log() {
+		final CorpusDataValidator validator = new CorpusDataValidator(CORPUS, Double.MAX_VALUE, 0, Mode.LOG);
+		assertThat(validator.validate(DATA, DATA_WITHOUT_PATTERNS)).isTrue();
+		assertThat(validator.getLastChangedRatio()).isGreaterThan(0);
+	}
+
+	@Test
+	public void validate_changedClassifications_reject() {
+		final CorpusDataValidator validator = new CorpusDataValidator(CORPUS, Double.MAX_VALUE, 0.1, Mode.REJECT);
+		assertThat(validator.validate(DATA, DATA_WITHOUT_PATTERNS)).isFalse();
+		assertThat(validator.getLastChangedRatio()).isGreaterThan(0.1);
+	}
+
+	@Test
+	public void validate_costRegression_reject() {
+		// the data without patterns are much cheaper, so the inverse direction must exceed any small threshold
+		final CorpusDataValidator validator = new CorpusDataValidator(CORPUS, 1, 1, Mode.REJECT);
+		assertThat(validator.validate(DATA_WITHOUT_PATTERNS, DATA)).isFalse();
+		assertThat(validator.getLastCostRatio()).isGreaterThan(1);
+	}
+
+	@Test
+	public void validate_emptyCorpus() {
+		final CorpusDataValidator validator = new CorpusDataValidator(Collections.<String> emptyList(), 0, 0, Mode.REJECT);
+		assertThat(validator.validate(DATA, DATA_WITHOUT_PATTERNS)).isTrue();
+	}
+
+	@Test
+	public void validate_sameData() {
+		// timings of such a small corpus are too noisy to check the cost ratio here
+		final CorpusDataValidator validator = new CorpusDataValidator(CORPUS, Double.MAX_VALUE, 0, Mode.REJECT);
+		assertThat(validator.validate(DATA, DATA)).isTrue();
+		assertThat(validator.getLastChangedRatio()).isEqualTo(0);
+	}
+
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.qualitycheck.exception.IllegalNegativeArgumentException;
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.qualitycheck.exception.IllegalNullElementsException;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.NotUpdateableXmlDataStore;
+import net.sf.uadetector.internal.data.Data;
+import net.sf.uadetector.internal.data.domain.OrderedPattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CorpusDataWarmUpTest {
+
+	/**
+	 * Scans the patterns in order and counts the compilations of its index
+	 */
+	private static final class CountingMatchingEngine extends CompilingMatchingEngine<Object> {
+
+		private final AtomicInteger compilations = new AtomicInteger();
+
+		@Override
+		Object compile(final SortedMap<? extends OrderedPattern<?>, ?> map) {
+			compilations.incrementAndGet();
+			return map;
+		}
+
+		@Override
+		<P extends OrderedPattern<P>, T> Entry<P, T> find(final Object index, final SortedMap<P, T> map, final ParseContext context) {
+			for (final Entry<P, T> entry : map.entrySet()) {
+				if (context.find(entry.getKey())) {
+					return entry;
+				}
+			}
+			return null;
+		}
+
+	}
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private static final Data DATA = new NotUpdateableXmlDataStore().getData();
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	private static final String GOOGLEBOT = "Googlebot/2.1 (+http://www.google.com/bot.html)";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_corpus_null() {
+		new CorpusDataWarmUp(null);
+	}
+
+	@Test(expected = IllegalNullElementsException.class)
+	public void construct_corpus_withNullElement() {
+		new CorpusDataWarmUp(Arrays.asList(FIREFOX, null));
+	}
+
+	@Test(expected = IllegalNegativeArgumentException.class)
+	public void construct_recentCapacity_negative() {
+		new CorpusDataWarmUp(Collections.<String> emptyList(), -1);
+	}
+
+	@Test
+	public void read() throws Exception {
+		final File file = folder.newFile("corpus.txt");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), CHARSET);
+		try {
+			writer.write(FIREFOX + "\n\n" + GOOGLEBOT + "\r\n");
+		} finally {
+			writer.close();
+		}
+		final CorpusDataWarmUp warmUp = CorpusDataWarmUp.read(file.toURI().toURL(), CHARSET, 0);
+		assertThat(warmUp.getCorpus()).containsExactly(FIREFOX, GOOGLEBOT);
+	}
+
+	@Test
+	public void record_disabled() {
+		final CorpusDataWarmUp warmUp = new CorpusDataWarmUp(Collections.<String> emptyList(), 0);
+		warmUp.record(FIREFOX);
+		warmUp.warmUp(DATA);
+		assertThat(warmUp.getLastParsed()).isEqualTo(0);
+	}
+
+	@Test
+	public void record_overridesOldest() {
+		final CorpusDataWarmUp warmUp = new CorpusDataWarmUp(Arrays.asList(FIREFOX), 2);
+		warmUp.record(null);
+		warmUp.record(FIREFOX);
+		warmUp.record(GOOGLEBOT);
+		warmUp.record(FIREFOX);
+		warmUp.warmUp(DATA);
+		assertThat(warmUp.getLastParsed()).isEqualTo(3);
+	}
+
+	@Test
+	public void warmUp_compilesIndexOfParser() {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new NotUpdateableXmlDataStore());
+		final CountingMatchingEngine engine = new CountingMatchingEngine();
+		parser.setMatchingEngine(engine);
+		final ReadableUserAgent expected = parser.parse(FIREFOX);
+		assertThat(engine.compilations.get()).isEqualTo(4);
+
+		final CorpusDataWarmUp warmUp = new CorpusDataWarmUp(Arrays.asList(FIREFOX, GOOGLEBOT), 0);
+		warmUp.setParser(parser);
+		assertThat(warmUp.getParser()).isSameAs(parser);
+		final Data candidate = new NotUpdateableXmlDataStore().getData();
+		warmUp.warmUp(candidate);
+		assertThat(engine.compilations.get()).isEqualTo(8);
+
+		// neither the data in use nor the warmed up data will be compiled again
+		assertThat(parser.parse(FIREFOX)).isEqualTo(expected);
+		assertThat(parser.parse(FIREFOX, candidate, null)).isEqualTo(expected);
+		assertThat(engine.compilations.get()).isEqualTo(8);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void warmUp_null() {
+		new CorpusDataWarmUp(Collections.<String> emptyList()).warmUp(null);
+	}
+
+}
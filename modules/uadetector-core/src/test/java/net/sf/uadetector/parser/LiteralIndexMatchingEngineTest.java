@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.BitSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import net.sf.uadetector.internal.data.domain.BrowserPattern;
+import net.sf.uadetector.internal.util.PatternMatcher;
+
+import org.junit.Test;
+
+public class LiteralIndexMatchingEngineTest {
+
+	private static LiteralIndexMatchingEngine.Index createIndex(final String... regexes) {
+		final SortedMap<BrowserPattern, String> map = new TreeMap<BrowserPattern, String>();
+		for (int i = 0; i < regexes.length; i++) {
+			map.put(new BrowserPattern(i + 1, Pattern.compile(regexes[i], Pattern.CASE_INSENSITIVE | Pattern.DOTALL), i + 1), regexes[i]);
+		}
+		return new LiteralIndexMatchingEngine.Index(map);
+	}
+
+	private static BitSet candidates(final LiteralIndexMatchingEngine.Index index, final String userAgent) {
+		return index.candidates(PatternMatcher.toLowerCase(userAgent));
+	}
+
+	@Test
+	public void candidates_anchoredPatternsByFirstCharacter() {
+		final LiteralIndexMatchingEngine.Index index = createIndex("^Opera.*Presto", "^FlyCast\\/([0-9\\.]+)", "Firefox\\/([0-9\\.]+)",
+				"^Mozilla.*Android.*OPR\\/([0-9\\.]+)", "[0-9]+");
+		assertThat(index.getAnchoredCount()).isEqualTo(2);
+		assertThat(index.getAlwaysCandidateCount()).isEqualTo(1);
+
+		assertThat(candidates(index, "Opera/9.80 (X11; Linux x86_64) Presto/2.12.388").toString()).isEqualTo("{0, 4}");
+		assertThat(candidates(index, "flycast/1.0").toString()).isEqualTo("{1, 4}");
+		// FlyCast occurs, but not at the beginning
+		assertThat(candidates(index, "Mozilla/5.0 FlyCast/1.0 Firefox/21.0").toString()).isEqualTo("{2, 3, 4}");
+		assertThat(candidates(index, "Mozilla/5.0 (Linux; Android 4.4) OPR/20.0").toString()).isEqualTo("{3, 4}");
+		assertThat(candidates(index, "").toString()).isEqualTo("{4}");
+		assertThat(candidates(index, "éOpera").toString()).isEqualTo("{4}");
+	}
+
+}
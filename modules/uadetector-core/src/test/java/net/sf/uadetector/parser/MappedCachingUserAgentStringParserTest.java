@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgentType;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCachingUserAgentStringParserTest {
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_cache_null() {
+		new MappedCachingUserAgentStringParser(new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore()), null);
+	}
+
+	@Test
+	public void parse() throws IOException {
+		final File file = folder.newFile();
+		final UserAgentStringParserImpl<DataStore> delegate = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final MappedCachingUserAgentStringParser parser = new MappedCachingUserAgentStringParser(delegate, new MappedResultCache(file,
+				64));
+		assertThat(parser.getDelegate()).isSameAs(delegate);
+		assertThat(parser.getDataVersion()).isEqualTo(delegate.getDataVersion());
+		final ReadableUserAgent result = parser.parse(FIREFOX);
+		assertThat(result).isEqualTo(delegate.parse(FIREFOX));
+		assertThat(parser.getMissCount()).isEqualTo(1);
+		assertThat(parser.getStoreCount()).isEqualTo(1);
+		assertThat(parser.parse(FIREFOX)).isEqualTo(result);
+		assertThat(parser.getHitCount()).isEqualTo(1);
+
+		// another parser (as in another process) on the same file
+		final MappedCachingUserAgentStringParser other = new MappedCachingUserAgentStringParser(new UserAgentStringParserImpl<DataStore>(
+				new TestXmlDataStore()), new MappedResultCache(file, 64));
+		assertThat(other.parse(FIREFOX)).isEqualTo(result);
+		assertThat(other.getHitCount()).isEqualTo(1);
+		assertThat(other.getMissCount()).isEqualTo(0);
+		assertThat(other.toString()).contains("hitCount=1");
+	}
+
+	@Test
+	public void parse_budgetExhausted() throws IOException {
+		final UserAgentStringParserImpl<DataStore> delegate = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final ReadableUserAgent expected = delegate.parse(FIREFOX);
+		final MappedCachingUserAgentStringParser parser = new MappedCachingUserAgentStringParser(delegate, new MappedResultCache(
+				folder.newFile(), 64));
+		delegate.setBudget(new ParseBudget(1, 0, TimeUnit.MILLISECONDS));
+		assertThat(parser.parse(FIREFOX).getType()).isEqualTo(UserAgentType.UNKNOWN);
+		assertThat(parser.getStoreCount()).isEqualTo(0);
+
+		// the aborted result has not been shared
+		delegate.setBudget(null);
+		assertThat(parser.parse(FIREFOX)).isEqualTo(expected);
+		assertThat(parser.getHitCount()).isEqualTo(0);
+		assertThat(parser.getStoreCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void parse_afterUpdate() throws IOException {
+		final TestXmlDataStore store = new TestXmlDataStore();
+		final MappedCachingUserAgentStringParser parser = new MappedCachingUserAgentStringParser(new UserAgentStringParserImpl<DataStore>(
+				store), new MappedResultCache(folder.newFile(), 64));
+		parser.parse(FIREFOX);
+		store.refresh();
+		assertThat(parser.parse(FIREFOX)).isEqualTo(new UserAgentStringParserImpl<DataStore>(store).parse(FIREFOX));
+		assertThat(parser.getHitCount()).isEqualTo(0);
+		assertThat(parser.getMissCount()).isEqualTo(2);
+	}
+
+}
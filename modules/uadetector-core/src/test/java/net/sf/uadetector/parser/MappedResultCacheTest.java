@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedResultCacheTest {
+
+	private static final long DATA_VERSION = MappedResultCache.hash("20130321-01");
+
+	private static CompactUserAgent compact(final int browserId) {
+		return new CompactUserAgent(-1, browserId, 1L << 60, 2, 0, 3, 0, 4);
+	}
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void close() throws IOException {
+		final MappedResultCache cache = new MappedResultCache(folder.newFile(), 16);
+		assertThat(cache.put("a", DATA_VERSION, compact(1))).isTrue();
+		cache.close();
+		assertThat(cache.get("a", DATA_VERSION)).isEqualTo(compact(1));
+		assertThat(cache.put("b", DATA_VERSION, compact(2))).isFalse();
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void construct_capacity_zero() throws IOException {
+		new MappedResultCache(folder.newFile(), 0);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_file_null() throws IOException {
+		new MappedResultCache(null, 16);
+	}
+
+	@Test
+	public void construct_invalidFile() throws IOException {
+		final File file = folder.newFile();
+		final FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { 1, 2, 3 });
+		out.close();
+		final MappedResultCache cache = new MappedResultCache(file, 16);
+		assertThat(cache.getCapacity()).isEqualTo(16);
+		assertThat(cache.get("a", DATA_VERSION)).isNull();
+	}
+
+	@Test
+	public void get_otherDataVersion() throws IOException {
+		final MappedResultCache cache = new MappedResultCache(folder.newFile(), 16);
+		assertThat(cache.put("a", DATA_VERSION, compact(1))).isTrue();
+		assertThat(cache.get("a", MappedResultCache.hash("20130321-02"))).isNull();
+
+		// a result of another version will be overwritten
+		assertThat(cache.put("a", MappedResultCache.hash("20130321-02"), compact(2))).isTrue();
+		assertThat(cache.get("a", MappedResultCache.hash("20130321-02"))).isEqualTo(compact(2));
+		assertThat(cache.get("a", DATA_VERSION)).isNull();
+	}
+
+	@Test
+	public void hash() {
+		assertThat(MappedResultCache.hash("")).isNotEqualTo(0);
+		assertThat(MappedResultCache.hash("a")).isNotEqualTo(MappedResultCache.hash("b"));
+	}
+
+	@Test
+	public void put_concurrently() throws Exception {
+		final MappedResultCache cache = new MappedResultCache(folder.newFile(), 64);
+		final int threads = 4;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger wrong = new AtomicInteger();
+		final Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (final InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 10000; i++) {
+						final String userAgent = "agent " + i % 200;
+						cache.put(userAgent, DATA_VERSION, compact(i % 200));
+						final CompactUserAgent found = cache.get(userAgent, DATA_VERSION);
+						if (found != null && !found.equals(compact(i % 200))) {
+							wrong.incrementAndGet();
+						}
+					}
+				}
+			};
+			workers[t].start();
+		}
+		start.countDown();
+		for (final Thread worker : workers) {
+			worker.join();
+		}
+		assertThat(wrong.get()).isEqualTo(0);
+	}
+
+	@Test
+	public void put_afterDeadWriter() throws IOException {
+		final File file = folder.newFile();
+		final MappedResultCache cache = new MappedResultCache(file, 1);
+		assertThat(cache.put("a", DATA_VERSION, compact(1))).isTrue();
+
+		// a writer died while writing the only slot and left its sequence number odd
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			final ByteBuffer sequence = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+			sequence.putInt(0, 3);
+			randomAccessFile.getChannel().write(sequence, 64);
+		} finally {
+			randomAccessFile.close();
+		}
+		assertThat(cache.get("a", DATA_VERSION)).isNull();
+		assertThat(cache.put("a", DATA_VERSION, compact(2))).isTrue();
+		assertThat(cache.get("a", DATA_VERSION)).isEqualTo(compact(2));
+	}
+
+	@Test
+	public void put_get() throws IOException {
+		final MappedResultCache cache = new MappedResultCache(folder.newFile(), 16);
+		assertThat(cache.get("a", DATA_VERSION)).isNull();
+		assertThat(cache.put("a", DATA_VERSION, compact(1))).isTrue();
+		assertThat(cache.put("b", DATA_VERSION, compact(2))).isTrue();
+		assertThat(cache.get("a", DATA_VERSION)).isEqualTo(compact(1));
+		assertThat(cache.get("b", DATA_VERSION)).isEqualTo(compact(2));
+		assertThat(cache.put("a", DATA_VERSION, compact(3))).isTrue();
+		assertThat(cache.get("a", DATA_VERSION)).isEqualTo(compact(3));
+		assertThat(cache.get("c", DATA_VERSION)).isNull();
+	}
+
+	@Test
+	public void put_moreKeysThanSlots() throws IOException {
+		final MappedResultCache cache = new MappedResultCache(folder.newFile(), 4);
+		for (int i = 0; i < 100; i++) {
+			assertThat(cache.put("agent " + i, DATA_VERSION, compact(i))).isTrue();
+			assertThat(cache.get("agent " + i, DATA_VERSION)).isEqualTo(compact(i));
+		}
+	}
+
+	@Test
+	public void reopen_sharesEntriesAndCapacity() throws IOException {
+		final File file = folder.newFile();
+		final MappedResultCache first = new MappedResultCache(file, 32);
+		first.put("a", DATA_VERSION, compact(1));
+		final MappedResultCache second = new MappedResultCache(file, 8);
+		assertThat(second.getCapacity()).isEqualTo(32);
+		assertThat(second.getFile()).isEqualTo(file);
+		assertThat(second.get("a", DATA_VERSION)).isEqualTo(compact(1));
+		second.put("b", DATA_VERSION, compact(2));
+		assertThat(first.get("b", DATA_VERSION)).isEqualTo(compact(2));
+		assertThat(first.toString()).contains("capacity=32");
+	}
+
+}
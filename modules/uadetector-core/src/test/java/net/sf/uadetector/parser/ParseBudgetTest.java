@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.qualitycheck.exception.IllegalNegativeArgumentException;
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgentType;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.NotUpdateableXmlDataStore;
+
+import org.junit.Test;
+
+public class ParseBudgetTest {
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	@Test(expected = IllegalNegativeArgumentException.class)
+	public void construct_negativeSteps() {
+		new ParseBudget(-1, 0, TimeUnit.MILLISECONDS);
+	}
+
+	@Test(expected = IllegalNegativeArgumentException.class)
+	public void construct_negativeTimeout() {
+		new ParseBudget(0, -1, TimeUnit.MILLISECONDS);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void construct_nullUnit() {
+		new ParseBudget(0, 0, null);
+	}
+
+	@Test
+	public void guard_catastrophicBacktracking() {
+		final GuardedCharSequence input = new ParseBudget(10000, 0, TimeUnit.MILLISECONDS).guard("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!");
+		try {
+			Pattern.compile("(a+)+b").matcher(input).find();
+			throw new AssertionError("budget not enforced");
+		} catch (final GuardedCharSequence.BudgetExceededException e) {
+			assertThat(input.getSteps()).isEqualTo(10001);
+			assertThat(e.getStackTrace()).isEmpty();
+		}
+	}
+
+	@Test(expected = GuardedCharSequence.BudgetExceededException.class)
+	public void guard_deadline() {
+		final GuardedCharSequence input = new ParseBudget(0, 1, TimeUnit.NANOSECONDS).guard("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!");
+		Pattern.compile("(a+)+b").matcher(input).find();
+	}
+
+	@Test
+	public void guard_unlimited() {
+		final GuardedCharSequence input = new ParseBudget(0, 0, TimeUnit.MILLISECONDS).guard(FIREFOX);
+		final Matcher matcher = Pattern.compile("Firefox/([0-9.]+)").matcher(input);
+		assertThat(matcher.find()).isTrue();
+		assertThat(matcher.group(1)).isEqualTo("21.0");
+		assertThat(input.getSteps()).isGreaterThan(0);
+		assertThat(input.length()).isEqualTo(FIREFOX.length());
+		assertThat(input.toString()).isEqualTo(FIREFOX);
+	}
+
+	@Test
+	public void parse_budgetExhausted() {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new NotUpdateableXmlDataStore());
+		final ParserMetrics metrics = new ParserMetrics();
+		parser.setMetrics(metrics);
+		parser.setBudget(new ParseBudget(1, 0, TimeUnit.MILLISECONDS));
+		assertThat(parser.getBudget().getMaxSteps()).isEqualTo(1);
+
+		final ReadableUserAgent agent = parser.parse(FIREFOX);
+		assertThat(agent.getType()).isEqualTo(UserAgentType.UNKNOWN);
+		assertThat(parser.getAbortedParseCount()).isEqualTo(1);
+		assertThat(metrics.getAbortCount()).isEqualTo(1);
+		assertThat(metrics.getParseCount()).isEqualTo(1);
+
+		metrics.reset();
+		assertThat(metrics.getAbortCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void parse_withinBudget() {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new NotUpdateableXmlDataStore());
+		final ReadableUserAgent expected = parser.parse(FIREFOX);
+		parser.setBudget(new ParseBudget(1000000, 1, TimeUnit.MINUTES));
+		final ReadableUserAgent agent = parser.parse(FIREFOX);
+		assertThat(agent.toString()).isEqualTo(expected.toString());
+		assertThat(parser.getAbortedParseCount()).isEqualTo(0);
+
+		parser.setBudget(null);
+		assertThat(parser.getBudget()).isNull();
+		assertThat(parser.parse(FIREFOX).toString()).isEqualTo(expected.toString());
+	}
+
+}
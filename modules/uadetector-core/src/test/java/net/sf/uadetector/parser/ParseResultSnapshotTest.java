@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+
+import org.junit.Test;
+
+public class ParseResultSnapshotTest {
+
+	private static final String[] USER_AGENTS = {
+			"Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0",
+			"Mozilla/5.0 (Linux; U; Android 4.0.3; de-de; GT-I9100 Build/IML74K) AppleWebKit/534.30 (KHTML, like Gecko) Version/4.0 Mobile Safari/534.30",
+			"Mozilla/5.0 (iPhone; CPU iPhone OS 6_1_3 like Mac OS X) AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 Mobile/10B329 Safari/8536.25",
+			"Googlebot/2.1 (+http://www.google.com/bot.html)", "", "ünknown 😀" };
+
+	/**
+	 * Replaces the first string of the table of an uncompressed snapshot which is equal to {@code search}
+	 */
+	private static byte[] replaceString(final byte[] snapshot, final String search, final String replacement) throws IOException {
+		final ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+		final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(snapshot));
+		final byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			uncompressed.write(buffer, 0, read);
+		}
+		final byte[] bytes = uncompressed.toByteArray();
+		final byte[] entry = new byte[4 + search.length()];
+		entry[3] = (byte) search.length();
+		System.arraycopy(search.getBytes("US-ASCII"), 0, entry, 4, search.length());
+		for (int i = 0; i <= bytes.length - entry.length; i++) {
+			if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + entry.length), entry)) {
+				System.arraycopy(replacement.getBytes("US-ASCII"), 0, bytes, i + 4, search.length());
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				final GZIPOutputStream zip = new GZIPOutputStream(out);
+				zip.write(bytes);
+				zip.close();
+				return out.toByteArray();
+			}
+		}
+		throw new IllegalStateException("String not found in snapshot: " + search);
+	}
+
+	private static byte[] write(final String dataVersion, final Map<String, ReadableUserAgent> results) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParseResultSnapshot.write(out, dataVersion, results);
+		return out.toByteArray();
+	}
+
+	@Test(expected = IOException.class)
+	public void read_corrupted() throws IOException {
+		final byte[] bytes = write("1", new LinkedHashMap<String, ReadableUserAgent>());
+		bytes[bytes.length / 2] ^= 0x55;
+		ParseResultSnapshot.read(new ByteArrayInputStream(bytes), "1");
+	}
+
+	@Test(expected = IOException.class)
+	public void read_invalidVersionNumber() throws IOException {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final Map<String, ReadableUserAgent> results = new LinkedHashMap<String, ReadableUserAgent>();
+		results.put("k", parser.parse(USER_AGENTS[0]));
+
+		// the version number rejects a non-numeric group with an exception of Quality-Check
+		ParseResultSnapshot.read(new ByteArrayInputStream(replaceString(write("v", results), "21", "2x")), "v");
+	}
+
+	@Test(expected = IOException.class)
+	public void read_noSnapshot() throws IOException {
+		ParseResultSnapshot.read(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), "1");
+	}
+
+	@Test(expected = IOException.class)
+	public void read_truncated() throws IOException {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final Map<String, ReadableUserAgent> results = new LinkedHashMap<String, ReadableUserAgent>();
+		results.put("k", parser.parse(USER_AGENTS[0]));
+		final byte[] bytes = write("v", results);
+		ParseResultSnapshot.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 12)), "v");
+	}
+
+	@Test
+	public void read_otherDataVersion() throws IOException {
+		final Map<String, ReadableUserAgent> results = new LinkedHashMap<String, ReadableUserAgent>();
+		results.put("a", UserAgent.EMPTY);
+		assertThat(ParseResultSnapshot.read(new ByteArrayInputStream(write("1", results)), "2")).isNull();
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final Map<String, ReadableUserAgent> results = new LinkedHashMap<String, ReadableUserAgent>();
+		for (final String userAgent : USER_AGENTS) {
+			results.put(userAgent, parser.parse(userAgent));
+		}
+		results.put("empty", UserAgent.EMPTY);
+
+		final byte[] bytes = write(parser.getDataVersion(), results);
+		final Map<String, ReadableUserAgent> read = ParseResultSnapshot.read(new ByteArrayInputStream(bytes), parser.getDataVersion());
+		assertThat(read).isEqualTo(results);
+		assertThat(read.keySet().toArray()).isEqualTo(results.keySet().toArray());
+
+		// strings are stored once
+		final Map<String, ReadableUserAgent> twice = new LinkedHashMap<String, ReadableUserAgent>(results);
+		for (final String userAgent : USER_AGENTS) {
+			twice.put(userAgent + " ", parser.parse(userAgent));
+		}
+		assertThat(write(parser.getDataVersion(), twice).length).isLessThan(2 * bytes.length);
+	}
+
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.NotUpdateableXmlDataStore;
+import net.sf.uadetector.parser.ParserMetrics.Stage;
+
+import org.junit.Test;
+
+public class ParserMetricsTest {
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	private static final String UNKNOWN = "no user agent at all";
+
+	@Test
+	public void parse_withMetrics() {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new NotUpdateableXmlDataStore());
+		final UserAgent expected = parser.parse(FIREFOX);
+
+		final ParserMetrics metrics = new ParserMetrics();
+		parser.setMetrics(metrics);
+		assertThat(parser.getMetrics()).isSameAs(metrics);
+		final UserAgent actual = parser.parse(FIREFOX);
+		assertThat(actual.getName()).isEqualTo(expected.getName());
+		assertThat(actual.getVersionNumber()).isEqualTo(expected.getVersionNumber());
+		assertThat(actual.getOperatingSystem()).isEqualTo(expected.getOperatingSystem());
+		assertThat(actual.getDeviceCategory().getCategory()).isEqualTo(expected.getDeviceCategory().getCategory());
+		parser.parse(UNKNOWN);
+
+		assertThat(metrics.getParseCount()).isEqualTo(2);
+		assertThat(metrics.getUnknownCount()).isEqualTo(1);
+		assertThat(metrics.getUnknownRate()).isEqualTo(0.5);
+		assertThat(metrics.getStages()).hasSize(Stage.values().length);
+		for (final Stage stage : Stage.values()) {
+			final StageStatistics statistics = metrics.getStage(stage);
+			assertThat(statistics.getName()).isEqualTo(stage.name());
+			assertThat(statistics.getCount()).isEqualTo(2);
+			assertThat(statistics.getMaxNanos()).isGreaterThanOrEqualTo(statistics.getMeanNanos());
+			assertThat(statistics.getP99Nanos()).isGreaterThanOrEqualTo(statistics.getP50Nanos());
+		}
+		assertThat(metrics.getStage(Stage.ROBOT).getMeanPatternsTried()).isGreaterThan(0);
+		assertThat(metrics.getStage(Stage.BROWSER).getPatternsTried()).isGreaterThan(0);
+
+		// no updating parser
+		assertThat(metrics.getUpdateCount()).isEqualTo(0);
+
+		metrics.reset();
+		assertThat(metrics.getParseCount()).isEqualTo(0);
+		assertThat(metrics.getStage(Stage.BROWSER).getCount()).isEqualTo(0);
+
+		parser.setMetrics(null);
+		parser.parse(FIREFOX);
+		assertThat(metrics.getParseCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void register() throws Exception {
+		final ParserMetrics metrics = new ParserMetrics();
+		final ObjectName name = new ObjectName("net.sf.uadetector:type=ParserMetrics,name=test");
+		metrics.register(name);
+		try {
+			assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ParseCount")).isEqualTo(0L);
+			assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Stages")).isNotNull();
+		} finally {
+			metrics.unregister();
+		}
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name)).isFalse();
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void register_twice() throws Exception {
+		final ParserMetrics metrics = new ParserMetrics();
+		final ObjectName name = new ObjectName("net.sf.uadetector:type=ParserMetrics,name=twice");
+		metrics.register(name);
+		try {
+			metrics.register(name);
+		} finally {
+			metrics.unregister();
+		}
+	}
+
+	@Test
+	public void setMetrics_updatingParser() {
+		final UpdatingUserAgentStringParserImpl parser = new UpdatingUserAgentStringParserImpl(new NotUpdateableXmlDataStore());
+		try {
+			final ParserMetrics metrics = new ParserMetrics();
+			parser.setMetrics(metrics);
+			assertThat(metrics.getFailedUpdateCount()).isEqualTo(0);
+		} finally {
+			parser.shutdown();
+		}
+	}
+
+}
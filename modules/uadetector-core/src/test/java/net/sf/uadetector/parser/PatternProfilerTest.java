@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.List;
+
+import net.sf.qualitycheck.exception.IllegalNegativeArgumentException;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.NotUpdateableXmlDataStore;
+
+import org.junit.Test;
+
+public class PatternProfilerTest {
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	@Test(expected = IllegalNegativeArgumentException.class)
+	public void getMostExpensive_negativeLimit() {
+		new PatternProfiler().getMostExpensive(-1);
+	}
+
+	@Test
+	public void parse_withProfiler() {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new NotUpdateableXmlDataStore());
+		final PatternProfiler profiler = new PatternProfiler();
+		parser.setProfiler(profiler);
+		assertThat(parser.getProfiler()).isSameAs(profiler);
+		assertThat(parser.parse(FIREFOX).getName()).isEqualTo("Firefox");
+		parser.parse(FIREFOX);
+
+		final List<PatternCost> costs = profiler.getCosts();
+		assertThat(costs).isNotEmpty();
+		long hits = 0;
+		for (int i = 0; i < costs.size(); i++) {
+			final PatternCost cost = costs.get(i);
+			assertThat(cost.getEvaluations()).isEqualTo(2);
+			assertThat(cost.getPerlRegularExpression()).startsWith("/");
+			if (i > 0) {
+				assertThat(cost.getTotalNanos()).isLessThanOrEqualTo(costs.get(i - 1).getTotalNanos());
+			}
+			hits += cost.getHits();
+		}
+		// both parsings hit the same patterns
+		assertThat(hits).isGreaterThan(0);
+		assertThat(hits % 2).isEqualTo(0);
+
+		assertThat(profiler.getMostExpensive(3)).hasSize(3);
+		assertThat(profiler.getReport(3).split("\n")).hasSize(3);
+
+		profiler.reset();
+		assertThat(profiler.getCosts()).isEmpty();
+
+		parser.setProfiler(null);
+		parser.parse(FIREFOX);
+		assertThat(profiler.getCosts()).isEmpty();
+	}
+
+	@Test
+	public void parse_withProfilerAndMetrics() {
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new NotUpdateableXmlDataStore());
+		final PatternProfiler profiler = new PatternProfiler();
+		final ParserMetrics metrics = new ParserMetrics();
+		parser.setProfiler(profiler);
+		parser.setMetrics(metrics);
+		parser.parse(FIREFOX);
+		assertThat(metrics.getParseCount()).isEqualTo(1);
+		assertThat(profiler.getCosts()).isNotEmpty();
+	}
+
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+import net.sf.uadetector.internal.data.Data;
+
+import org.junit.Test;
+
+public class UserAgentCanonicalizerTest {
+
+	private static final DataStore DATA_STORE = new TestXmlDataStore();
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	@Test
+	public void addWords() {
+		final Set<String> words = new LinkedHashSet<String>();
+		UserAgentCanonicalizer.addWords("^Mozilla/5\\.0 \\(([^;]+); U; (Android|iPad) [0-9]\\w+\\(?i\\)", words);
+		UserAgentCanonicalizer.addWords("(?i)OPERA[/ ](\\d+)\\.nt", words);
+		assertThat(words.toString()).isEqualTo("[mozilla, android, ipad, opera, nt]");
+	}
+
+	@Test
+	public void canonicalize() {
+		final UserAgentCanonicalizer canonicalizer = new UserAgentCanonicalizer();
+		final Data data = DATA_STORE.getData();
+		final String key = canonicalizer.canonicalize(data, FIREFOX);
+		assertThat(key).isEqualTo("Mozilla/5.0 (Windows NT 6.1; *; rv:21.0) Gecko/20100101 Firefox/21.0");
+		assertThat(canonicalizer.canonicalize(data, FIREFOX.replace("WOW64", "XQZW"))).isEqualTo(key);
+		assertThat(canonicalizer.canonicalize(data, key)).isSameAs(key);
+		assertThat(canonicalizer.getInputCount()).isEqualTo(3);
+		assertThat(canonicalizer.getCanonicalizedCount()).isEqualTo(2);
+		assertThat(canonicalizer.toString()).contains("canonicalizedCount=2");
+
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(DATA_STORE);
+		assertThat(parser.parse(key)).isEqualTo(parser.parse(FIREFOX));
+	}
+
+	@Test
+	public void canonicalize_keepsVersionNumbers() {
+		final UserAgentCanonicalizer canonicalizer = new UserAgentCanonicalizer();
+		assertThat(canonicalizer.canonicalize(DATA_STORE.getData(), "XQZW 1.2 (3.4; XQZW)")).isEqualTo("* 1.2 (3.4; *)");
+	}
+
+	@Test
+	public void canonicalize_robot() {
+		final Data data = DATA_STORE.getData();
+		final String robot = data.getRobots().get(0).getUserAgentString();
+		assertThat(new UserAgentCanonicalizer().canonicalize(data, robot)).isSameAs(robot);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void canonicalize_data_null() {
+		new UserAgentCanonicalizer().canonicalize(null, FIREFOX);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void canonicalize_userAgent_null() {
+		new UserAgentCanonicalizer().canonicalize(DATA_STORE.getData(), null);
+	}
+
+	@Test
+	public void canonicalize_withoutWords() {
+		final UserAgentCanonicalizer canonicalizer = new UserAgentCanonicalizer();
+		assertThat(canonicalizer.canonicalize(Data.EMPTY, "a/1 (b; c)d  e (f")).isEqualTo("* (*; *)*  * (*");
+		assertThat(canonicalizer.canonicalize(Data.EMPTY, "")).isEqualTo("");
+		assertThat(canonicalizer.canonicalize(Data.EMPTY, "( ; ;)")).isEqualTo("( ; ;)");
+	}
+
+}
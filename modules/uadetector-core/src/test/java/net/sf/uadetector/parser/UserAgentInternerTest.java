@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+import net.sf.uadetector.DeviceCategory;
+import net.sf.uadetector.UserAgent;
+import net.sf.uadetector.VersionNumber;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+
+import org.junit.Test;
+
+public class UserAgentInternerTest {
+
+	private static final String FIREFOX_21 = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	private static final String FIREFOX_20 = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:20.0) Gecko/20100101 Firefox/20.0";
+
+	private static final String WEBKIT_530 = "Mozilla/5.0 (Linux; U; Android 2.1; en-us; Nexus One Build/ERD62) AppleWebKit/530.17 (KHTML, like Gecko) Version/4.0 Mobile Safari/530.17";
+
+	private static final String WEBKIT_533 = "Mozilla/5.0 (Linux; U; Android 2.1; en-us; Nexus One Build/ERD62) AppleWebKit/533.1 (KHTML, like Gecko) Version/4.0 Mobile Safari/530.17";
+
+	private static UserAgentStringParserImpl<DataStore> createParser() {
+		return new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void construct_maximumSize_zero() {
+		new UserAgentInterner(0);
+	}
+
+	@Test
+	public void intern() {
+		final UserAgentStringParserImpl<DataStore> parser = createParser();
+		final UserAgentInterner interner = new UserAgentInterner();
+		final UserAgent first = interner.intern(parser.parse(FIREFOX_21));
+		final UserAgent parsed = parser.parse(FIREFOX_21);
+		assertThat(parsed).isNotSameAs(first);
+		assertThat(interner.intern(parsed)).isSameAs(first);
+		assertThat(first).isEqualTo(parsed);
+
+		// another version of the same browser shares the parts
+		final UserAgent other = interner.intern(parser.parse(FIREFOX_20));
+		assertThat(other).isNotSameAs(first);
+		assertThat(other.getOperatingSystem()).isSameAs(first.getOperatingSystem());
+		assertThat(other.getDeviceCategory()).isSameAs(first.getDeviceCategory());
+		assertThat(other.getName()).isSameAs(first.getName());
+		assertThat(other.getBrowserEngine()).isSameAs(first.getBrowserEngine());
+		assertThat(interner.getSharedCount()).isGreaterThan(0);
+		assertThat(interner.toString()).contains("size=" + interner.getSize());
+	}
+
+	@Test
+	public void intern_differentBrowserEngineVersions() {
+		final UserAgentStringParserImpl<DataStore> parser = createParser();
+		parser.setInterner(new UserAgentInterner());
+		final UserAgent first = parser.parse(WEBKIT_530);
+		final UserAgent second = parser.parse(WEBKIT_533);
+		assertThat(first.getBrowserEngine().getVersionNumber().toVersionString()).isEqualTo("530.17");
+		assertThat(second.getBrowserEngine().getVersionNumber().toVersionString()).isEqualTo("533.1");
+		assertThat(second).isNotEqualTo(first);
+		assertThat(parser.parse(WEBKIT_530)).isSameAs(first);
+	}
+
+	@Test
+	public void intern_emptyDeviceCategory() {
+		final UserAgentInterner interner = new UserAgentInterner();
+		assertThat(interner.intern(DeviceCategory.EMPTY)).isSameAs(DeviceCategory.EMPTY);
+		assertThat(interner.getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void intern_maximumSize() {
+		final UserAgentInterner interner = new UserAgentInterner(2);
+		assertThat(interner.getMaximumSize()).isEqualTo(2);
+		final VersionNumber first = interner.intern(new VersionNumber("1"));
+		assertThat(interner.intern(new VersionNumber("1"))).isSameAs(first);
+		interner.intern(new VersionNumber("2"));
+		final VersionNumber third = new VersionNumber("3");
+		assertThat(interner.intern(third)).isSameAs(third);
+		assertThat(interner.intern(new VersionNumber("3"))).isNotSameAs(third);
+		assertThat(interner.getSize()).isEqualTo(2);
+		interner.clear();
+		assertThat(interner.getSize()).isEqualTo(0);
+		assertThat(interner.intern(third)).isSameAs(third);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void intern_null() {
+		new UserAgentInterner().intern((UserAgent) null);
+	}
+
+	@Test
+	public void parse_withInterner() {
+		final UserAgentStringParserImpl<DataStore> parser = createParser();
+		final UserAgentInterner interner = new UserAgentInterner();
+		parser.setInterner(interner);
+		assertThat(parser.getInterner()).isSameAs(interner);
+		assertThat(parser.parse(FIREFOX_21)).isSameAs(parser.parse(FIREFOX_21));
+		parser.setInterner(null);
+		assertThat(parser.parse(FIREFOX_21)).isNotSameAs(parser.parse(FIREFOX_21));
+	}
+
+	@Test
+	public void parse_withInterner_clearedOnDataUpdate() {
+		final UserAgentInterner interner = new UserAgentInterner();
+		final UserAgentStringParserImpl<DataStore> parser = createParser();
+		parser.setInterner(interner);
+		final UserAgent first = parser.parse(FIREFOX_21);
+		parser.parse(FIREFOX_20);
+		final int size = interner.getSize();
+
+		// another instance of the data behaves like an update
+		final UserAgentStringParserImpl<DataStore> updated = createParser();
+		updated.setInterner(interner);
+		assertThat(updated.parse(FIREFOX_21)).isNotSameAs(first);
+		assertThat(interner.getSize()).isLessThan(size);
+	}
+
+}
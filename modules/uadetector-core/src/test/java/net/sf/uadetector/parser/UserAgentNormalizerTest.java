@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Random;
+
+import net.sf.qualitycheck.exception.IllegalNegativeArgumentException;
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.datastore.DataStore;
+import net.sf.uadetector.datastore.TestXmlDataStore;
+
+import org.junit.Test;
+
+public class UserAgentNormalizerTest {
+
+	/**
+	 * Straightforward implementation of the normalization to compare with.
+	 */
+	private static String expected(final String input, final int maxLength, final boolean collapse, final boolean strip) {
+		final StringBuilder builder = new StringBuilder();
+		for (final char c : input.toCharArray()) {
+			if (collapse && c <= ' ' && Character.isWhitespace(c)) {
+				builder.append(' ');
+			} else if (!strip || !Character.isISOControl(c)) {
+				builder.append(c);
+			}
+		}
+		String result = builder.toString();
+		if (collapse) {
+			result = result.replaceAll(" +", " ").replaceAll("^ | $", "");
+		}
+		if (maxLength > 0 && result.length() > maxLength) {
+			result = result.substring(0, maxLength);
+			if (collapse) {
+				result = result.replaceAll(" $", "");
+			}
+			if (result.length() > 0 && Character.isHighSurrogate(result.charAt(result.length() - 1))) {
+				result = result.substring(0, result.length() - 1);
+			}
+			if (collapse) {
+				result = result.replaceAll(" $", "");
+			}
+		}
+		return result;
+	}
+
+	@Test(expected = IllegalNegativeArgumentException.class)
+	public void construct_negativeMaxLength() {
+		new UserAgentNormalizer(-1, true, true);
+	}
+
+	@Test
+	public void normalize() {
+		final UserAgentNormalizer normalizer = new UserAgentNormalizer();
+		assertThat(normalizer.normalize(" \tMozilla/5.0  (X11;\r\n Linux\u0000 x86_64)\u0085 Gecko ")).isEqualTo(
+				"Mozilla/5.0 (X11; Linux x86_64) Gecko");
+		assertThat(normalizer.normalize("Mozilla/5.0 (X11; \u0001 Linux)")).isEqualTo("Mozilla/5.0 (X11; Linux)");
+		assertThat(normalizer.getInputCount()).isEqualTo(2);
+		assertThat(normalizer.getChangedCount()).isEqualTo(2);
+		assertThat(normalizer.getTruncatedCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void normalize_disabledOptions() {
+		final UserAgentNormalizer normalizer = new UserAgentNormalizer(0, false, false);
+		final String userAgent = " Mozilla/5.0 \t(X11;\r\n\u0000 Linux) ";
+		assertThat(normalizer.normalize(userAgent)).isSameAs(userAgent);
+		assertThat(new UserAgentNormalizer(0, false, true).normalize(userAgent)).isEqualTo(" Mozilla/5.0 (X11; Linux) ");
+		assertThat(new UserAgentNormalizer(0, true, false).normalize(userAgent)).isEqualTo("Mozilla/5.0 (X11; \u0000 Linux)");
+		assertThat(normalizer.getChangedCount()).isEqualTo(0);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void normalize_null() {
+		new UserAgentNormalizer().normalize(null);
+	}
+
+	@Test
+	public void normalize_sameAsStraightforwardImplementation() {
+		final char[] alphabet = { 'a', 'b', ' ', ' ', '\t', '\n', '\u0001', '\u007f', '\uD83D', '\uDE00', 'é' };
+		final Random random = new Random(42);
+		for (int n = 0; n < 20000; n++) {
+			final char[] chars = new char[random.nextInt(14)];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = alphabet[random.nextInt(alphabet.length)];
+			}
+			final String input = new String(chars);
+			final int maxLength = random.nextInt(10);
+			final boolean collapse = random.nextBoolean();
+			final boolean strip = random.nextBoolean();
+			final UserAgentNormalizer normalizer = new UserAgentNormalizer(maxLength, collapse, strip);
+			final String normalized = normalizer.normalize(input);
+			assertThat(normalized).as(normalizer + " of '" + input + "'").isEqualTo(expected(input, maxLength, collapse, strip));
+			assertThat(normalizer.getChangedCount()).isEqualTo(normalized.equals(input) ? 0 : 1);
+		}
+	}
+
+	@Test
+	public void normalize_truncate() {
+		final UserAgentNormalizer normalizer = new UserAgentNormalizer(10, true, true);
+		assertThat(normalizer.normalize("Mozilla/5.0 (X11; Linux x86_64)")).isEqualTo("Mozilla/5.");
+		assertThat(normalizer.normalize("Mozilla/5 (X11)")).isEqualTo("Mozilla/5");
+		assertThat(normalizer.normalize("Mozilla/5😀")).isEqualTo("Mozilla/5");
+		assertThat(normalizer.normalize("Mozilla/5.")).isEqualTo("Mozilla/5.");
+		assertThat(normalizer.getInputCount()).isEqualTo(4);
+		assertThat(normalizer.getChangedCount()).isEqualTo(3);
+		assertThat(normalizer.getTruncatedCount()).isEqualTo(3);
+		assertThat(normalizer.toString()).contains("truncatedCount=3");
+	}
+
+	@Test
+	public void parse_withNormalizer() {
+		final String userAgent = "Mozilla/5.0 (Windows NT 6.1;\r\n WOW64; rv:21.0)   Gecko/20100101 Firefox/21.0";
+		final String normalized = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+		final UserAgentStringParserImpl<DataStore> parser = new UserAgentStringParserImpl<DataStore>(new TestXmlDataStore());
+		final String expected = parser.parse(normalized).toString();
+		assertThat(parser.getNormalizer()).isNull();
+		final UserAgentNormalizer normalizer = new UserAgentNormalizer();
+		parser.setNormalizer(normalizer);
+		assertThat(parser.getNormalizer()).isSameAs(normalizer);
+		assertThat(parser.parse(userAgent).toString()).isEqualTo(expected);
+		parser.setLowerCaseMatching(true);
+		assertThat(parser.parse(userAgent).toString()).isEqualTo(expected);
+		assertThat(normalizer.getChangedCount()).isEqualTo(2);
+	}
+
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.qualitycheck.exception.IllegalStateOfArgumentException;
+
+import org.junit.Test;
+
+public class UserAgentTokensTest {
+
+	@Test
+	public void indexOfProduct() {
+		final UserAgentTokens tokens = UserAgentTokens
+				.tokenize("Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/50.0 Safari/537.36");
+		assertThat(tokens.indexOfProduct("Mozilla")).isEqualTo(0);
+		assertThat(tokens.indexOfProduct("Chrome")).isEqualTo(4);
+		assertThat(tokens.indexOfProduct("Chrom")).isEqualTo(-1);
+		assertThat(tokens.indexOfProduct("Gecko")).isEqualTo(-1);
+		assertThat(tokens.getVersion(tokens.indexOfProduct("Safari"))).isEqualTo("537.36");
+	}
+
+	@Test(expected = IllegalStateOfArgumentException.class)
+	public void getStart_outOfRange() {
+		UserAgentTokens.tokenize("Opera/9.80").getStart(1);
+	}
+
+	@Test
+	public void tokenize() {
+		final String userAgent = "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/50.0.2661.102 Safari/537.36";
+		final UserAgentTokens tokens = UserAgentTokens.tokenize(userAgent);
+		assertThat(tokens.getCount()).isEqualTo(6);
+		assertThat(tokens.getUserAgent()).isSameAs(userAgent);
+		assertThat(tokens.getName(0)).isEqualTo("Mozilla");
+		assertThat(tokens.getVersion(0)).isEqualTo("5.0");
+		assertThat(tokens.isComment(1)).isTrue();
+		assertThat(tokens.getName(1)).isNull();
+		assertThat(tokens.getVersion(1)).isNull();
+		assertThat(tokens.getText(1)).isEqualTo("(Windows NT 6.1; WOW64)");
+		assertThat(tokens.getStart(1)).isEqualTo(12);
+		assertThat(tokens.getEnd(1)).isEqualTo(35);
+		assertThat(tokens.getText(3)).isEqualTo("(KHTML, like Gecko)");
+		assertThat(tokens.getName(4)).isEqualTo("Chrome");
+		assertThat(tokens.getVersion(4)).isEqualTo("50.0.2661.102");
+		assertThat(tokens.getEnd(5)).isEqualTo(userAgent.length());
+		assertThat(tokens.toString()).isEqualTo(
+				"UserAgentTokens [Mozilla/5.0, (Windows NT 6.1; WOW64), AppleWebKit/537.36, (KHTML, like Gecko), Chrome/50.0.2661.102, Safari/537.36]");
+	}
+
+	@Test
+	public void tokenize_empty() {
+		assertThat(UserAgentTokens.tokenize("").getCount()).isEqualTo(0);
+		assertThat(UserAgentTokens.tokenize(" \t\r\n").getCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void tokenize_irregular() {
+		final UserAgentTokens tokens = UserAgentTokens.tokenize("Mobile  Opera/9.80(X11; (nested) Linux)Presto/ Version/1/2 (unterminated (");
+		assertThat(tokens.toString()).isEqualTo(
+				"UserAgentTokens [Mobile, Opera/9.80, (X11; (nested) Linux), Presto/, Version/1/2, (unterminated (]");
+		assertThat(tokens.getName(0)).isEqualTo("Mobile");
+		assertThat(tokens.getVersion(0)).isNull();
+		assertThat(tokens.getVersion(3)).isEmpty();
+		assertThat(tokens.getName(4)).isEqualTo("Version");
+		assertThat(tokens.getVersion(4)).isEqualTo("1/2");
+		assertThat(tokens.isComment(5)).isTrue();
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void tokenize_null() {
+		UserAgentTokens.tokenize(null);
+	}
+
+}
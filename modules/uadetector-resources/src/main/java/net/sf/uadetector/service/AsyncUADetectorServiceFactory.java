@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2013 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector.service;
+
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import net.sf.qualitycheck.Check;
+import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.datastore.CachingXmlDataStore;
+import net.sf.uadetector.datastore.OnlineXmlDataStore;
+import net.sf.uadetector.parser.AsyncUserAgentStringParser;
+import net.sf.uadetector.parser.UpdatingUserAgentStringParserImpl;
+import net.sf.uadetector.parser.UserAgentStringParserImpl;
+import net.sf.uadetector.service.UADetectorServiceFactory.ResourceModuleXmlDataStore;
+
+/**
+ * Service factory to get preconfigured instances of {@code UserAgentStringParser} implementations which are returned
+ * immediately while the <em>UAS data</em> will be loaded in background.
+ * 
+ * <p>
+ * In contrast to {@link UADetectorServiceFactory} this class does not read the <em>UAS data</em> of this module during
+ * class initialization. Every returned {@link AsyncUserAgentStringParser} provides a readiness future, which completes
+ * when the data are loaded. Until then a parser answers with {@link net.sf.uadetector.UserAgent#EMPTY} or waits at most
+ * the given timeout.
+ * 
+ * <p>
+ * Each call starts a new loading, so keep a reference to the returned parser and shut it down when it is no longer
+ * needed.
+ */
+public final class AsyncUADetectorServiceFactory {
+
+	/**
+	 * Returns a parser which loads the <em>UAS data</em> of the cache file (or of this module if the cache file is empty)
+	 * in background and checks afterwards at regular intervals for new versions of the <em>UAS data</em>.
+	 * 
+	 * @param dataUrl
+	 *            URL to <em>UAS data</em>
+	 * @param versionUrl
+	 *            URL to version information about the given <em>UAS data</em>
+	 * @param timeout
+	 *            maximum time to wait for the data during parsing ({@code 0} means to answer with an empty result)
+	 * @param unit
+	 *            unit of the given timeout
+	 * @return an user agent string parser with updating service which loads itself in background
+	 */
+	@Nonnull
+	public static AsyncUserAgentStringParser getCachingAndUpdatingParser(@Nonnull final URL dataUrl, @Nonnull final URL versionUrl,
+			@Nonnegative final long timeout, @Nonnull final TimeUnit unit) {
+		Check.notNull(dataUrl, "dataUrl");
+		Check.notNull(versionUrl, "versionUrl");
+		return new AsyncUserAgentStringParser(new Callable<UserAgentStringParser>() {
+			@Override
+			public UserAgentStringParser call() {
+				return new UpdatingUserAgentStringParserImpl(CachingXmlDataStore.createCachingXmlDataStore(dataUrl, versionUrl,
+						new ResourceModuleXmlDataStore()));
+			}
+		}, timeout, unit);
+	}
+
+	/**
+	 * Returns a parser which loads the <em>UAS data</em> of this module in background and checks afterwards at regular
+	 * intervals for new versions of the <em>UAS data</em>.
+	 * 
+	 * @param dataUrl
+	 *            URL to <em>UAS data</em>
+	 * @param versionUrl
+	 *            URL to version information about the given <em>UAS data</em>
+	 * @param timeout
+	 *            maximum time to wait for the data during parsing ({@code 0} means to answer with an empty result)
+	 * @param unit
+	 *            unit of the given timeout
+	 * @return an user agent string parser with updating service which loads itself in background
+	 */
+	@Nonnull
+	public static AsyncUserAgentStringParser getOnlineUpdatingParser(@Nonnull final URL dataUrl, @Nonnull final URL versionUrl,
+			@Nonnegative final long timeout, @Nonnull final TimeUnit unit) {
+		Check.notNull(dataUrl, "dataUrl");
+		Check.notNull(versionUrl, "versionUrl");
+		return new AsyncUserAgentStringParser(new Callable<UserAgentStringParser>() {
+			@Override
+			public UserAgentStringParser call() {
+				return new UpdatingUserAgentStringParserImpl(new OnlineXmlDataStore(dataUrl, versionUrl, new ResourceModuleXmlDataStore()));
+			}
+		}, timeout, unit);
+	}
+
+	/**
+	 * Returns a parser without updating functions which loads the <em>UAS data</em> of this module in background.
+	 * 
+	 * @param timeout
+	 *            maximum time to wait for the data during parsing ({@code 0} means to answer with an empty result)
+	 * @param unit
+	 *            unit of the given timeout
+	 * @return an user agent string parser which loads itself in background
+	 */
+	@Nonnull
+	public static AsyncUserAgentStringParser getResourceModuleParser(@Nonnegative final long timeout, @Nonnull final TimeUnit unit) {
+		return new AsyncUserAgentStringParser(new Callable<UserAgentStringParser>() {
+			@Override
+			public UserAgentStringParser call() {
+				return new UserAgentStringParserImpl<ResourceModuleXmlDataStore>(new ResourceModuleXmlDataStore());
+			}
+		}, timeout, unit);
+	}
+
+	private AsyncUADetectorServiceFactory() {
+		// This class is not intended to create objects from it.
+	}
+
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.uadetector;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.qualitycheck.exception.IllegalNegativeArgumentException;
+import net.sf.qualitycheck.exception.IllegalNullArgumentException;
+import net.sf.uadetector.parser.AsyncUserAgentStringParser;
+import net.sf.uadetector.service.AsyncUADetectorServiceFactory;
+import net.sf.uadetector.service.UADetectorServiceFactory;
+
+import org.junit.Test;
+
+public class AsyncUADetectorServiceFactoryTest {
+
+	private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:21.0) Gecko/20100101 Firefox/21.0";
+
+	private static final URL URL = UADetectorServiceFactory.ResourceModuleXmlDataStore.UAS_DATA;
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void getCachingAndUpdatingParser_dataUrl_null() {
+		AsyncUADetectorServiceFactory.getCachingAndUpdatingParser(null, URL, 0, TimeUnit.SECONDS);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void getCachingAndUpdatingParser_versionUrl_null() {
+		AsyncUADetectorServiceFactory.getCachingAndUpdatingParser(URL, null, 0, TimeUnit.SECONDS);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void getOnlineUpdatingParser_dataUrl_null() {
+		AsyncUADetectorServiceFactory.getOnlineUpdatingParser(null, URL, 0, TimeUnit.SECONDS);
+	}
+
+	@Test(expected = IllegalNullArgumentException.class)
+	public void getOnlineUpdatingParser_versionUrl_null() {
+		AsyncUADetectorServiceFactory.getOnlineUpdatingParser(URL, null, 0, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void getResourceModuleParser() throws Exception {
+		final AsyncUserAgentStringParser parser = AsyncUADetectorServiceFactory.getResourceModuleParser(0, TimeUnit.SECONDS);
+		assertThat(parser.getReadiness().get()).isNotNull();
+		assertThat(parser.isReady()).isTrue();
+		assertThat(parser.getDataVersion()).isEqualTo(UADetectorServiceFactory.getResourceModuleParser().getDataVersion());
+		assertThat(parser.parse(FIREFOX).getName()).isEqualTo("Firefox");
+		parser.shutdown();
+	}
+
+	@Test
+	public void getResourceModuleParser_newLoadingOnEveryCall() {
+		final AsyncUserAgentStringParser first = AsyncUADetectorServiceFactory.getResourceModuleParser(0, TimeUnit.SECONDS);
+		final AsyncUserAgentStringParser second = AsyncUADetectorServiceFactory.getResourceModuleParser(0, TimeUnit.SECONDS);
+		assertThat(first).isNotSameAs(second);
+		first.shutdown();
+		second.shutdown();
+	}
+
+	@Test(expected = IllegalNegativeArgumentException.class)
+	public void getResourceModuleParser_timeout_negative() {
+		AsyncUADetectorServiceFactory.getResourceModuleParser(-1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void getResourceModuleParser_waitsForReadiness() {
+		final AsyncUserAgentStringParser parser = AsyncUADetectorServiceFactory.getResourceModuleParser(1, TimeUnit.MINUTES);
+		assertThat(parser.parse(FIREFOX).getName()).isEqualTo("Firefox");
+		parser.shutdown();
+	}
+
+}